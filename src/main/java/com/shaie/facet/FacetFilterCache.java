@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.facet;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Caches, per segment, the bitsets of the documents which are associated with facet values, so that filtering by the
+ * same facet values again does not read their postings. Bitsets are keyed by the segment's core and the facet value's
+ * drill-down term: they do not reflect deletions, which are applied by the searcher, and therefore remain valid until
+ * the segment is merged away. All bitsets of a segment are evicted when its core is closed.
+ *
+ * <p>
+ * The cache holds up to a maximum number of bytes, evicting the least recently used bitsets first, so that the
+ * frequently filtered facet values stay cached. Segments whose readers have no core cache helper are never cached.
+ * </p>
+ */
+public class FacetFilterCache implements Accountable {
+
+    private final long maxRamBytesUsed;
+    /** The cached bitsets in access order, so that the first entry is the least recently used. */
+    private final LinkedHashMap<CacheKey, FixedBitSet> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /** The cores for which a closed listener was registered. */
+    private final Set<IndexReader.CacheKey> cores = Sets.newHashSet();
+    private long ramBytesUsed = 0;
+
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long numEvictions = 0;
+
+    public FacetFilterCache(long maxRamBytesUsed) {
+        this.maxRamBytesUsed = maxRamBytesUsed;
+    }
+
+    /**
+     * Returns the documents of the segment which contain the given term, ignoring deletions. The returned bitset is
+     * shared, and must not be modified.
+     */
+    public FixedBitSet getDocs(LeafReader reader, Term term) throws IOException {
+        final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+        if (cacheHelper == null) {
+            return readDocs(reader, term);
+        }
+        final CacheKey cacheKey = new CacheKey(cacheHelper.getKey(), term);
+        synchronized (this) {
+            final FixedBitSet docs = cache.get(cacheKey);
+            if (docs != null) {
+                ++numHits;
+                return docs;
+            }
+            ++numMisses;
+        }
+
+        final FixedBitSet docs = readDocs(reader, term);
+        synchronized (this) {
+            if (cores.add(cacheKey.core)) {
+                cacheHelper.addClosedListener(new IndexReader.ClosedListener() {
+                    @Override
+                    public void onClose(IndexReader.CacheKey core) {
+                        evictCore(core);
+                    }
+                });
+            }
+            final FixedBitSet previous = cache.put(cacheKey, docs);
+            if (previous != null) {
+                ramBytesUsed -= previous.ramBytesUsed();
+            }
+            ramBytesUsed += docs.ramBytesUsed();
+            evictIfNeeded();
+        }
+        return docs;
+    }
+
+    /** Returns the number of cached bitsets. */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getNumHits() {
+        return numHits;
+    }
+
+    public synchronized long getNumMisses() {
+        return numMisses;
+    }
+
+    /** Returns the number of bitsets which were evicted since the cache was full. */
+    public synchronized long getNumEvictions() {
+        return numEvictions;
+    }
+
+    @Override
+    public synchronized long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+
+    private void evictIfNeeded() {
+        final Iterator<FixedBitSet> it = cache.values().iterator();
+        while (ramBytesUsed > maxRamBytesUsed && it.hasNext()) {
+            ramBytesUsed -= it.next().ramBytesUsed();
+            it.remove();
+            ++numEvictions;
+        }
+    }
+
+    private synchronized void evictCore(IndexReader.CacheKey core) {
+        cores.remove(core);
+        final Iterator<Map.Entry<CacheKey, FixedBitSet>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<CacheKey, FixedBitSet> entry = it.next();
+            if (entry.getKey().core == core) {
+                ramBytesUsed -= entry.getValue().ramBytesUsed();
+                it.remove();
+            }
+        }
+    }
+
+    private static FixedBitSet readDocs(LeafReader reader, Term term) throws IOException {
+        final FixedBitSet docs = new FixedBitSet(reader.maxDoc());
+        final PostingsEnum postings = reader.postings(term, PostingsEnum.NONE);
+        if (postings != null) {
+            docs.or(postings);
+        }
+        return docs;
+    }
+
+    private static final class CacheKey {
+
+        private final IndexReader.CacheKey core;
+        private final Term term;
+
+        CacheKey(IndexReader.CacheKey core, Term term) {
+            this.core = core;
+            this.term = term;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * core.hashCode() + term.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return core == other.core && term.equals(other.term);
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.facet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.FixedBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A filter which matches the documents that are associated with all of the included facet values, and with none of
+ * the excluded facet values, e.g. "NOT Author/Lisa AND NOT Author/Bob". Unlike {@code MUST_NOT} clauses on
+ * {@link DrillDownQuery#term(String, String, String...) drill-down terms}, which read the terms' postings on every
+ * search, it combines the per-segment bitsets of the facet values, which are cached in a {@link FacetFilterCache},
+ * with word-wise bit operations as the search advances, without allocating a bitset for the result. It is meant to be
+ * added as a {@link org.apache.lucene.search.BooleanClause.Occur#FILTER FILTER} clause, and does not score.
+ *
+ * <p>
+ * Facet values are given as their drill-down terms, which can be obtained with
+ * {@link #facetTerm(FacetsConfig, String, String...)}. A filter with no included values matches all documents which
+ * are not excluded.
+ * </p>
+ */
+public class FacetFilterQuery extends Query {
+
+    private final FacetFilterCache cache;
+    private final List<Term> includes;
+    private final List<Term> excludes;
+
+    public FacetFilterQuery(FacetFilterCache cache, List<Term> includes, List<Term> excludes) {
+        this.cache = cache;
+        this.includes = ImmutableList.copyOf(includes);
+        this.excludes = ImmutableList.copyOf(excludes);
+    }
+
+    /** Returns the drill-down term of the given facet value. */
+    public static Term facetTerm(FacetsConfig config, String dim, String... path) {
+        return DrillDownQuery.term(config.getDimConfig(dim).indexFieldName, dim, path);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+        return new ConstantScoreWeight(this, boost) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                final DocIdSetIterator docs = getDocs(context.reader());
+                if (docs == null) {
+                    return null;
+                }
+                return new ConstantScoreScorer(this, score(), docs);
+            }
+
+            @Override
+            public void extractTerms(Set<Term> terms) {
+                terms.addAll(includes);
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext context) {
+                // the bitsets of the facet values are already cached
+                return false;
+            }
+        };
+    }
+
+    /** Returns the documents which pass the filter, or {@code null} if the segment is empty. */
+    private DocIdSetIterator getDocs(LeafReader reader) throws IOException {
+        final int maxDoc = reader.maxDoc();
+        if (maxDoc == 0) {
+            return null;
+        }
+        final long[][] includeBits = new long[includes.size()][];
+        for (int i = 0; i < includeBits.length; i++) {
+            includeBits[i] = cache.getDocs(reader, includes.get(i)).getBits();
+        }
+        final long[][] excludeBits = new long[excludes.size()][];
+        for (int i = 0; i < excludeBits.length; i++) {
+            excludeBits[i] = cache.getDocs(reader, excludes.get(i)).getBits();
+        }
+        return new CombinedBitsIterator(maxDoc, includeBits, excludeBits);
+    }
+
+    @Override
+    public String toString(String field) {
+        final StringBuilder sb = new StringBuilder("FacetFilterQuery(");
+        for (final Term include : includes) {
+            sb.append('+').append(include).append(' ');
+        }
+        for (final Term exclude : excludes) {
+            sb.append('-').append(exclude).append(' ');
+        }
+        if (sb.charAt(sb.length() - 1) == ' ') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!sameClassAs(obj)) {
+            return false;
+        }
+        final FacetFilterQuery other = (FacetFilterQuery) obj;
+        return cache == other.cache && includes.equals(other.includes) && excludes.equals(other.excludes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * classHash() + includes.hashCode()) + excludes.hashCode();
+    }
+
+    /**
+     * Iterates over the documents which are set in all the included bitsets and in none of the excluded ones. The
+     * bitsets are combined one word at a time as the iterator advances, so the result is never materialized.
+     */
+    private static final class CombinedBitsIterator extends DocIdSetIterator {
+
+        private final int maxDoc;
+        private final int numWords;
+        private final long[][] includeBits;
+        private final long[][] excludeBits;
+        private int doc = -1;
+        private int wordIndex = -1;
+        /** The remaining bits of the current word, i.e. those which were not iterated over yet. */
+        private long word = 0;
+
+        CombinedBitsIterator(int maxDoc, long[][] includeBits, long[][] excludeBits) {
+            this.maxDoc = maxDoc;
+            this.numWords = FixedBitSet.bits2words(maxDoc);
+            this.includeBits = includeBits;
+            this.excludeBits = excludeBits;
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            while (word == 0) {
+                if (++wordIndex >= numWords) {
+                    return doc = NO_MORE_DOCS;
+                }
+                word = combine(wordIndex);
+            }
+            doc = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            // clear the lowest set bit
+            word &= word - 1;
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (target >= maxDoc) {
+                return doc = NO_MORE_DOCS;
+            }
+            wordIndex = target >> 6;
+            // shifts are mod 64, so this keeps the bits of target and above
+            word = combine(wordIndex) & (-1L << target);
+            return nextDoc();
+        }
+
+        @Override
+        public long cost() {
+            return maxDoc;
+        }
+
+        private long combine(int index) {
+            long result = index == numWords - 1 ? -1L >>> -maxDoc : -1L;
+            for (final long[] bits : includeBits) {
+                result &= bits[index];
+            }
+            for (final long[] bits : excludeBits) {
+                result &= ~bits[index];
+            }
+            return result;
+        }
+    }
+
+}
@@ -42,7 +42,14 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
 
-/** Demonstrates how to restrict a search to not match documents with a specific facet. */
+/**
+ * Demonstrates how to restrict a search to not match documents with a specific facet.
+ *
+ * <p>
+ * A {@code MUST_NOT} clause reads the postings of the excluded facet value on every search. When the same facet values
+ * are excluded frequently, {@link FacetFilterQuery} is faster, since it caches their per-segment bitsets.
+ * </p>
+ */
 public class NotDrillDownExample {
 
     private static final String AUTHOR_FACET = "Author";
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.facet;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
+import org.apache.lucene.facet.taxonomy.IntTaxonomyFacets;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.search.ConjunctionDISI;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Counts taxonomy facets like {@link FastTaxonomyFacetCounts}, but counts the matching segments in parallel. The
+ * segments are split into groups of roughly equal numbers of hits, and every group is counted by its own task into its
+ * own {@code int[]}, so that tasks share no state. The per-task counts are then summed, and the hierarchical dimensions
+ * are rolled up.
+ *
+ * <p>
+ * To also collect the matching documents in parallel, search with an {@link IndexSearcher} that was created with an
+ * executor, using {@link #collect(IndexSearcher, Query)}. The executor should not be the one which runs the searcher's
+ * tasks, if those may wait for the counting to complete.
+ * </p>
+ */
+public class ParallelTaxonomyFacetCounts extends IntTaxonomyFacets {
+
+    /** Counts the facets of the default index field, with up to {@code numThreads} tasks on the executor. */
+    public ParallelTaxonomyFacetCounts(TaxonomyReader taxoReader, FacetsConfig config, FacetsCollector fc,
+            ExecutorService executor, int numThreads) throws IOException {
+        this(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, taxoReader, config, fc, executor, numThreads);
+    }
+
+    public ParallelTaxonomyFacetCounts(String indexFieldName, TaxonomyReader taxoReader, FacetsConfig config,
+            FacetsCollector fc, ExecutorService executor, int numThreads) throws IOException {
+        super(indexFieldName, taxoReader, config, fc);
+        final int[] counts = count(fc.getMatchingDocs(), executor, numThreads);
+        for (int ord = 0; ord < counts.length; ord++) {
+            if (counts[ord] != 0) {
+                increment(ord, counts[ord]);
+            }
+        }
+        rollup();
+    }
+
+    /** Collects the documents matching the query, in parallel if the searcher was created with an executor. */
+    public static FacetsCollector collect(IndexSearcher searcher, Query query) throws IOException {
+        return searcher.search(query, new FacetsCollectorManager());
+    }
+
+    @Override
+    protected boolean useHashTable(FacetsCollector fc, TaxonomyReader taxoReader) {
+        // the counts are merged from dense arrays
+        return false;
+    }
+
+    private int[] count(List<MatchingDocs> matchingDocs, ExecutorService executor, int numThreads)
+            throws IOException {
+        final int taxoSize = taxoReader.getSize();
+        final List<List<MatchingDocs>> groups = split(matchingDocs, numThreads);
+        if (groups.size() <= 1) {
+            final int[] counts = new int[taxoSize];
+            for (final List<MatchingDocs> group : groups) {
+                count(group, counts);
+            }
+            return counts;
+        }
+
+        // the calling thread counts the first group, rather than wait idly
+        final List<Future<int[]>> futures = Lists.newArrayList();
+        for (final List<MatchingDocs> group : groups.subList(1, groups.size())) {
+            futures.add(executor.submit(new Callable<int[]>() {
+                @Override
+                public int[] call() throws IOException {
+                    final int[] counts = new int[taxoSize];
+                    count(group, counts);
+                    return counts;
+                }
+            }));
+        }
+        final int[] counts = new int[taxoSize];
+        count(groups.get(0), counts);
+        for (final Future<int[]> future : futures) {
+            final int[] groupCounts = get(future);
+            for (int ord = 0; ord < taxoSize; ord++) {
+                counts[ord] += groupCounts[ord];
+            }
+        }
+        return counts;
+    }
+
+    /** Counts the ordinals of the matching documents, as encoded by {@link FacetsConfig}. */
+    private void count(List<MatchingDocs> matchingDocs, int[] counts) throws IOException {
+        for (final MatchingDocs hits : matchingDocs) {
+            final BinaryDocValues dv = hits.context.reader().getBinaryDocValues(indexFieldName);
+            final DocIdSetIterator docs = hits.bits.iterator();
+            if (dv == null || docs == null) {
+                continue;
+            }
+            final DocIdSetIterator it = ConjunctionDISI.intersectIterators(Arrays.asList(docs, dv));
+            for (int doc = it.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = it.nextDoc()) {
+                final BytesRef bytesRef = dv.binaryValue();
+                final byte[] bytes = bytesRef.bytes;
+                final int end = bytesRef.offset + bytesRef.length;
+                int ord = 0;
+                int prev = 0;
+                for (int offset = bytesRef.offset; offset < end; offset++) {
+                    final byte b = bytes[offset];
+                    if (b >= 0) {
+                        prev = ord = ((ord << 7) | b) + prev;
+                        ++counts[ord];
+                        ord = 0;
+                    } else {
+                        ord = (ord << 7) | (b & 0x7F);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the segments with hits into up to {@code numGroups} groups, assigning the segments with the most hits
+     * first, each to the group with the fewest hits so far.
+     */
+    private static List<List<MatchingDocs>> split(List<MatchingDocs> matchingDocs, int numGroups) {
+        final List<MatchingDocs> sorted = Lists.newArrayList();
+        for (final MatchingDocs hits : matchingDocs) {
+            if (hits.totalHits > 0) {
+                sorted.add(hits);
+            }
+        }
+        Collections.sort(sorted, new Comparator<MatchingDocs>() {
+            @Override
+            public int compare(MatchingDocs md1, MatchingDocs md2) {
+                return Integer.compare(md2.totalHits, md1.totalHits);
+            }
+        });
+        final List<List<MatchingDocs>> groups = Lists.newArrayList();
+        final long[] groupHits = new long[Math.min(Math.max(1, numGroups), sorted.size())];
+        for (int i = 0; i < groupHits.length; i++) {
+            groups.add(Lists.<MatchingDocs> newArrayList());
+        }
+        for (final MatchingDocs hits : sorted) {
+            int minGroup = 0;
+            for (int i = 1; i < groups.size(); i++) {
+                if (groupHits[i] < groupHits[minGroup]) {
+                    minGroup = i;
+                }
+            }
+            groups.get(minGroup).add(hits);
+            groupHits[minGroup] += hits.totalHits;
+        }
+        return groups;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+}
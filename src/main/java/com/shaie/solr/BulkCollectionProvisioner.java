@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
+import com.shaie.solr.solrj.CreateCollectionResponse;
+
+/**
+ * Provisions many collections at once. Config sets are uploaded first with {@link ConfigSetUploader}, which writes only
+ * the modified files, in batches. Collections are then created concurrently through an
+ * {@link AsyncCollectionAdminHelper}, which bounds the number of in-flight requests and tracks them with async IDs.
+ * Collections which already exist in the cached cluster state are skipped without sending any request.
+ *
+ * <p>
+ * The progress of a running provisioning can be polled with {@link #getProgress()}, and is also reported to an
+ * optional {@link ProgressListener} after every collection.
+ * </p>
+ */
+public class BulkCollectionProvisioner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkCollectionProvisioner.class);
+
+    /** Notified whenever a collection is created, skipped or failed. */
+    public static interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    private final CloudSolrClient solrClient;
+    private final AsyncCollectionAdminHelper collectionAdminHelper;
+    private final ProgressListener progressListener;
+
+    private final AtomicInteger numTotal = new AtomicInteger();
+    private final AtomicInteger numCreated = new AtomicInteger();
+    private final AtomicInteger numExisting = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+
+    public BulkCollectionProvisioner(CloudSolrClient solrClient, AsyncCollectionAdminHelper collectionAdminHelper) {
+        this(solrClient, collectionAdminHelper, null);
+    }
+
+    public BulkCollectionProvisioner(CloudSolrClient solrClient, AsyncCollectionAdminHelper collectionAdminHelper,
+            ProgressListener progressListener) {
+        this.solrClient = solrClient;
+        this.collectionAdminHelper = collectionAdminHelper;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Uploads the config sets (keyed by config name) and creates the collections. The config sets are uploaded before
+     * this method returns, while the returned future completes when all collections were created or failed.
+     */
+    public CompletableFuture<Report> provision(Map<String, Path> configSets, List<CollectionSpec> collections) {
+        final long startTime = System.currentTimeMillis();
+        final ConfigSetUploader uploader = new ConfigSetUploader(solrClient.getZkStateReader().getZkClient());
+        final Map<String, ConfigSetUploader.Result> uploads = Maps.newLinkedHashMap();
+        for (final Map.Entry<String, Path> configSet : configSets.entrySet()) {
+            uploads.put(configSet.getKey(), uploader.upload(configSet.getKey(), configSet.getValue()));
+        }
+
+        numTotal.addAndGet(collections.size());
+        final List<String> created = Collections.synchronizedList(Lists.<String> newArrayList());
+        final List<String> existing = Collections.synchronizedList(Lists.<String> newArrayList());
+        final Map<String, Throwable> failed = Collections.synchronizedMap(Maps.<String, Throwable> newLinkedHashMap());
+        final List<CompletableFuture<CreateCollectionResponse>> futures = Lists.newArrayList();
+        for (final CollectionSpec spec : collections) {
+            futures.add(collectionAdminHelper.createCollection(spec.name, spec.numShards, spec.numReplicas,
+                    spec.configName).whenComplete(new BiConsumer<CreateCollectionResponse, Throwable>() {
+                        @Override
+                        public void accept(CreateCollectionResponse response, Throwable error) {
+                            if (error != null) {
+                                LOGGER.warn("Failed to create collection [{}]", spec.name, error);
+                                failed.put(spec.name, error);
+                                numFailed.incrementAndGet();
+                            } else if (response == null) {
+                                existing.add(spec.name);
+                                numExisting.incrementAndGet();
+                            } else {
+                                created.add(spec.name);
+                                numCreated.incrementAndGet();
+                            }
+                            if (progressListener != null) {
+                                progressListener.onProgress(getProgress());
+                            }
+                        }
+                    }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle(
+                new BiFunction<Void, Throwable, Report>() {
+                    @Override
+                    public Report apply(Void result, Throwable error) {
+                        return new Report(uploads, created, existing, failed,
+                                System.currentTimeMillis() - startTime);
+                    }
+                });
+    }
+
+    /** Returns the progress of all collections submitted to this provisioner so far. */
+    public Progress getProgress() {
+        return new Progress(numTotal.get(), numCreated.get(), numExisting.get(), numFailed.get(),
+                collectionAdminHelper.getNumInFlight(), collectionAdminHelper.getNumPending());
+    }
+
+    /** The specification of a collection to create. */
+    public static final class CollectionSpec {
+
+        private final String name;
+        private final String configName;
+        private final int numShards;
+        private final int numReplicas;
+
+        public CollectionSpec(String name, String configName, int numShards, int numReplicas) {
+            this.name = name;
+            this.configName = configName;
+            this.numShards = numShards;
+            this.numReplicas = numReplicas;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getConfigName() {
+            return configName;
+        }
+
+        public int getNumShards() {
+            return numShards;
+        }
+
+        public int getNumReplicas() {
+            return numReplicas;
+        }
+    }
+
+    /** A snapshot of a provisioning's progress. */
+    public static final class Progress {
+
+        private final int numTotal;
+        private final int numCreated;
+        private final int numExisting;
+        private final int numFailed;
+        private final int numInFlight;
+        private final int numPending;
+
+        Progress(int numTotal, int numCreated, int numExisting, int numFailed, int numInFlight, int numPending) {
+            this.numTotal = numTotal;
+            this.numCreated = numCreated;
+            this.numExisting = numExisting;
+            this.numFailed = numFailed;
+            this.numInFlight = numInFlight;
+            this.numPending = numPending;
+        }
+
+        public int getNumTotal() {
+            return numTotal;
+        }
+
+        public int getNumCreated() {
+            return numCreated;
+        }
+
+        /** Returns the number of collections which were skipped since they already exist. */
+        public int getNumExisting() {
+            return numExisting;
+        }
+
+        public int getNumFailed() {
+            return numFailed;
+        }
+
+        /** Returns the number of create requests which were submitted and haven't completed yet. */
+        public int getNumInFlight() {
+            return numInFlight;
+        }
+
+        /** Returns the number of create requests which wait to be submitted. */
+        public int getNumPending() {
+            return numPending;
+        }
+
+        public int getNumDone() {
+            return numCreated + numExisting + numFailed;
+        }
+
+        @Override
+        public String toString() {
+            return getNumDone() + "/" + numTotal + " done [created=" + numCreated + ", existing=" + numExisting
+                    + ", failed=" + numFailed + ", inFlight=" + numInFlight + ", pending=" + numPending + "]";
+        }
+    }
+
+    /** The result of a provisioning. */
+    public static final class Report {
+
+        private final Map<String, ConfigSetUploader.Result> configUploads;
+        private final List<String> createdCollections;
+        private final List<String> existingCollections;
+        private final Map<String, Throwable> failedCollections;
+        private final long elapsedMillis;
+
+        Report(Map<String, ConfigSetUploader.Result> configUploads, List<String> createdCollections,
+                List<String> existingCollections, Map<String, Throwable> failedCollections, long elapsedMillis) {
+            this.configUploads = ImmutableMap.copyOf(configUploads);
+            synchronized (createdCollections) {
+                this.createdCollections = ImmutableList.copyOf(createdCollections);
+            }
+            synchronized (existingCollections) {
+                this.existingCollections = ImmutableList.copyOf(existingCollections);
+            }
+            synchronized (failedCollections) {
+                this.failedCollections = ImmutableMap.copyOf(failedCollections);
+            }
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** Returns the result of uploading every config set, keyed by config name. */
+        public Map<String, ConfigSetUploader.Result> getConfigUploads() {
+            return configUploads;
+        }
+
+        public List<String> getCreatedCollections() {
+            return createdCollections;
+        }
+
+        public List<String> getExistingCollections() {
+            return existingCollections;
+        }
+
+        public Map<String, Throwable> getFailedCollections() {
+            return failedCollections;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public boolean isSuccessful() {
+            return failedCollections.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Report [configs=" + configUploads + ", created=" + createdCollections.size() + ", existing="
+                    + existingCollections.size() + ", failed=" + failedCollections.keySet() + ", elapsedMillis="
+                    + elapsedMillis + "]";
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Objects;
+
+/**
+ * A structural change between two cluster states, as computed by {@link ClusterStateDiffer}. Which of the event's
+ * properties are set depends on its {@link Type}: e.g. a {@link Type#REPLICA_STATE_CHANGED} event has a collection,
+ * shard, replica and node, as well as the old and new states, while a {@link Type#LIVE_NODE_ADDED} event has only a
+ * node.
+ */
+public final class ClusterChangeEvent {
+
+    /** The types of cluster changes. */
+    public enum Type {
+        LIVE_NODE_ADDED,
+        LIVE_NODE_REMOVED,
+        COLLECTION_ADDED,
+        COLLECTION_REMOVED,
+        SHARD_ADDED,
+        SHARD_REMOVED,
+        /** A shard's state changed, e.g. from CONSTRUCTION to ACTIVE after a split. */
+        SHARD_STATE_CHANGED,
+        /** A shard's leader changed. The old and new values are replica names, either of which may be {@code null}. */
+        LEADER_CHANGED,
+        REPLICA_ADDED,
+        REPLICA_REMOVED,
+        REPLICA_STATE_CHANGED,
+    }
+
+    private final Type type;
+    private final String collection;
+    private final String shard;
+    private final String replica;
+    private final String node;
+    private final String oldValue;
+    private final String newValue;
+
+    private ClusterChangeEvent(Type type, String collection, String shard, String replica, String node,
+            String oldValue, String newValue) {
+        this.type = type;
+        this.collection = collection;
+        this.shard = shard;
+        this.replica = replica;
+        this.node = node;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    static ClusterChangeEvent liveNode(Type type, String node) {
+        return new ClusterChangeEvent(type, null, null, null, node, null, null);
+    }
+
+    static ClusterChangeEvent collection(Type type, String collection) {
+        return new ClusterChangeEvent(type, collection, null, null, null, null, null);
+    }
+
+    static ClusterChangeEvent shard(Type type, String collection, String shard, String oldValue, String newValue) {
+        return new ClusterChangeEvent(type, collection, shard, null, null, oldValue, newValue);
+    }
+
+    static ClusterChangeEvent replica(Type type, String collection, String shard, String replica, String node,
+            String oldValue, String newValue) {
+        return new ClusterChangeEvent(type, collection, shard, replica, node, oldValue, newValue);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    /** Returns the replica's name, for replica events. */
+    public String getReplica() {
+        return replica;
+    }
+
+    /** Returns the node's name, for live node and replica events. */
+    public String getNode() {
+        return node;
+    }
+
+    /** Returns the value before the change (e.g. a state or a leader), for events which describe a transition. */
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    /** Returns the value after the change (e.g. a state or a leader), for events which describe a transition. */
+    public String getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ClusterChangeEvent)) {
+            return false;
+        }
+        final ClusterChangeEvent other = (ClusterChangeEvent) obj;
+        return type == other.type && Objects.equals(collection, other.collection)
+                && Objects.equals(shard, other.shard) && Objects.equals(replica, other.replica)
+                && Objects.equals(node, other.node) && Objects.equals(oldValue, other.oldValue)
+                && Objects.equals(newValue, other.newValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, collection, shard, replica, node, oldValue, newValue);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(type.name()).append(" [");
+        appendIfSet(sb, "collection", collection);
+        appendIfSet(sb, "shard", shard);
+        appendIfSet(sb, "replica", replica);
+        appendIfSet(sb, "node", node);
+        if (oldValue != null || newValue != null) {
+            sb.append(oldValue).append(" -> ").append(newValue);
+        } else if (sb.charAt(sb.length() - 1) == ' ') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static void appendIfSet(StringBuilder sb, String name, String value) {
+        if (value != null) {
+            sb.append(name).append('=').append(value).append(' ');
+        }
+    }
+
+}
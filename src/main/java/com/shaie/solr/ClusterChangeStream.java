@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.cloud.DocCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Publishes the {@link ClusterChangeEvent}s of a {@link ClusterTopologyIndex}. Since the index is notified of every
+ * collection and live nodes change separately, only the changed collection (or the live nodes) is diffed, so the work
+ * per notification is proportional to the size of the change and not of the cluster.
+ *
+ * <p>
+ * Events are diffed and delivered to the {@link Listener}s in order, on a dedicated thread, so slow listeners do not
+ * block the index's updates.
+ * </p>
+ */
+public class ClusterChangeStream implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterChangeStream.class);
+
+    /** Receives {@link ClusterChangeEvent}s. */
+    public static interface Listener {
+        void onChange(ClusterChangeEvent event);
+    }
+
+    private final ClusterTopologyIndex topologyIndex;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("cluster-change-stream").setDaemon(true).build());
+    private final ClusterTopologyIndex.Listener indexListener = new ClusterTopologyIndex.Listener() {
+        @Override
+        public void onLiveNodesChanged(final Set<String> oldLiveNodes, final Set<String> newLiveNodes) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    publish(ClusterStateDiffer.diffLiveNodes(oldLiveNodes, newLiveNodes));
+                }
+            });
+        }
+
+        @Override
+        public void onCollectionChanged(final String collection, final DocCollection oldState,
+                final DocCollection newState) {
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    publish(ClusterStateDiffer.diffCollection(collection, oldState, newState));
+                }
+            });
+        }
+    };
+
+    public ClusterChangeStream(ClusterTopologyIndex topologyIndex) {
+        this.topologyIndex = topologyIndex;
+        topologyIndex.addListener(indexListener);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        topologyIndex.removeListener(indexListener);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (final RejectedExecutionException e) {
+            // the stream was closed
+        }
+    }
+
+    private void publish(List<ClusterChangeEvent> events) {
+        for (final ClusterChangeEvent event : events) {
+            for (final Listener listener : listeners) {
+                try {
+                    listener.onChange(event);
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("Listener failed to handle event [{}]", event, e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+
+import com.google.common.collect.Lists;
+import com.shaie.solr.ClusterChangeEvent.Type;
+
+/**
+ * Computes the {@link ClusterChangeEvent}s between two cluster states. Cluster state objects are immutable, and
+ * {@link ClusterState} reuses the {@link DocCollection} objects of unmodified collections, therefore identical objects
+ * (at the collection, slice and replica levels) are skipped without being compared, as are collections with the same
+ * ZooKeeper version.
+ */
+public abstract class ClusterStateDiffer {
+
+    private ClusterStateDiffer() {
+        // should not be instantiated
+    }
+
+    /** Returns the changes between two cluster states. Either state may be {@code null}, denoting an empty cluster. */
+    public static List<ClusterChangeEvent> diff(ClusterState oldState, ClusterState newState) {
+        final List<ClusterChangeEvent> events = Lists.newArrayList();
+        if (oldState == newState) {
+            return events;
+        }
+        events.addAll(diffLiveNodes(liveNodes(oldState), liveNodes(newState)));
+        final Map<String, DocCollection> oldCollections = collections(oldState);
+        final Map<String, DocCollection> newCollections = collections(newState);
+        for (final Map.Entry<String, DocCollection> entry : oldCollections.entrySet()) {
+            events.addAll(diffCollection(entry.getKey(), entry.getValue(), newCollections.get(entry.getKey())));
+        }
+        for (final Map.Entry<String, DocCollection> entry : newCollections.entrySet()) {
+            if (!oldCollections.containsKey(entry.getKey())) {
+                events.addAll(diffCollection(entry.getKey(), null, entry.getValue()));
+            }
+        }
+        return events;
+    }
+
+    /** Returns the nodes which were added to and removed from the live nodes. */
+    public static List<ClusterChangeEvent> diffLiveNodes(Set<String> oldLiveNodes, Set<String> newLiveNodes) {
+        final List<ClusterChangeEvent> events = Lists.newArrayList();
+        if (oldLiveNodes == newLiveNodes) {
+            return events;
+        }
+        for (final String node : oldLiveNodes) {
+            if (!newLiveNodes.contains(node)) {
+                events.add(ClusterChangeEvent.liveNode(Type.LIVE_NODE_REMOVED, node));
+            }
+        }
+        for (final String node : newLiveNodes) {
+            if (!oldLiveNodes.contains(node)) {
+                events.add(ClusterChangeEvent.liveNode(Type.LIVE_NODE_ADDED, node));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Returns the changes between two states of a collection. A {@code null} state denotes that the collection does not
+     * exist, in which case a single {@link Type#COLLECTION_ADDED} or {@link Type#COLLECTION_REMOVED} event is returned.
+     */
+    public static List<ClusterChangeEvent> diffCollection(String collection, DocCollection oldState,
+            DocCollection newState) {
+        final List<ClusterChangeEvent> events = Lists.newArrayList();
+        if (oldState == newState) {
+            return events;
+        }
+        if (oldState == null) {
+            events.add(ClusterChangeEvent.collection(Type.COLLECTION_ADDED, collection));
+            return events;
+        }
+        if (newState == null) {
+            events.add(ClusterChangeEvent.collection(Type.COLLECTION_REMOVED, collection));
+            return events;
+        }
+        if (isVersioned(oldState) && oldState.getZNodeVersion() == newState.getZNodeVersion()) {
+            return events;
+        }
+
+        final Map<String, Slice> oldSlices = oldState.getSlicesMap();
+        final Map<String, Slice> newSlices = newState.getSlicesMap();
+        for (final Slice oldSlice : oldSlices.values()) {
+            final Slice newSlice = newSlices.get(oldSlice.getName());
+            if (newSlice == null) {
+                events.add(ClusterChangeEvent.shard(Type.SHARD_REMOVED, collection, oldSlice.getName(), null, null));
+            } else {
+                diffSlice(collection, oldSlice, newSlice, events);
+            }
+        }
+        for (final Slice newSlice : newSlices.values()) {
+            if (!oldSlices.containsKey(newSlice.getName())) {
+                events.add(ClusterChangeEvent.shard(Type.SHARD_ADDED, collection, newSlice.getName(), null, null));
+                diffSlice(collection, null, newSlice, events);
+            }
+        }
+        return events;
+    }
+
+    private static void diffSlice(String collection, Slice oldSlice, Slice newSlice, List<ClusterChangeEvent> events) {
+        if (oldSlice == newSlice) {
+            return;
+        }
+        final String shard = newSlice.getName();
+        if (oldSlice != null && oldSlice.getState() != newSlice.getState()) {
+            events.add(ClusterChangeEvent.shard(Type.SHARD_STATE_CHANGED, collection, shard,
+                    oldSlice.getState().toString(), newSlice.getState().toString()));
+        }
+
+        final Map<String, Replica> oldReplicas = oldSlice == null ? Collections.<String, Replica> emptyMap()
+                : oldSlice.getReplicasMap();
+        final Map<String, Replica> newReplicas = newSlice.getReplicasMap();
+        for (final Replica oldReplica : oldReplicas.values()) {
+            final Replica newReplica = newReplicas.get(oldReplica.getName());
+            if (newReplica == null) {
+                events.add(ClusterChangeEvent.replica(Type.REPLICA_REMOVED, collection, shard, oldReplica.getName(),
+                        oldReplica.getNodeName(), null, null));
+            } else if (newReplica != oldReplica && newReplica.getState() != oldReplica.getState()) {
+                events.add(ClusterChangeEvent.replica(Type.REPLICA_STATE_CHANGED, collection, shard,
+                        newReplica.getName(), newReplica.getNodeName(), oldReplica.getState().toString(),
+                        newReplica.getState().toString()));
+            }
+        }
+        for (final Replica newReplica : newReplicas.values()) {
+            if (!oldReplicas.containsKey(newReplica.getName())) {
+                events.add(ClusterChangeEvent.replica(Type.REPLICA_ADDED, collection, shard, newReplica.getName(),
+                        newReplica.getNodeName(), null, newReplica.getState().toString()));
+            }
+        }
+
+        final String oldLeader = leaderName(oldSlice);
+        final String newLeader = leaderName(newSlice);
+        if (!Objects.equals(oldLeader, newLeader)) {
+            events.add(ClusterChangeEvent.shard(Type.LEADER_CHANGED, collection, shard, oldLeader, newLeader));
+        }
+    }
+
+    /** Returns whether the collection state was read from ZooKeeper, rather than created without a version. */
+    private static boolean isVersioned(DocCollection collection) {
+        return collection.getZNodeVersion() >= 0 && collection.getZNodeVersion() != Integer.MAX_VALUE;
+    }
+
+    private static String leaderName(Slice slice) {
+        if (slice == null) {
+            return null;
+        }
+        final Replica leader = slice.getLeader();
+        return leader == null ? null : leader.getName();
+    }
+
+    private static Set<String> liveNodes(ClusterState state) {
+        return state == null ? Collections.<String> emptySet() : state.getLiveNodes();
+    }
+
+    private static Map<String, DocCollection> collections(ClusterState state) {
+        return state == null ? Collections.<String, DocCollection> emptyMap() : state.getCollectionsMap();
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.apache.solr.common.cloud.CollectionStatePredicate;
+import org.apache.solr.common.cloud.CollectionStateWatcher;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.LiveNodesListener;
+import org.apache.solr.common.cloud.ZkStateReader;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Waits for cluster state conditions to become true. Unlike {@link com.shaie.utils.Waiter}, conditions are not polled
+ * but rather evaluated by {@link ZkStateReader} collection state watchers and live nodes listeners, so a wait completes
+ * as soon as the state changes, and no thread is blocked per wait.
+ *
+ * <p>
+ * Conditions are evaluated on {@link ZkStateReader}'s notification threads, therefore they should be cheap. Timeouts
+ * are handled by a single, shared, scheduler thread.
+ * </p>
+ */
+public class ClusterStateWaiter {
+
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("cluster-state-waiter-timeouts").setDaemon(true).build());
+
+    private final ZkStateReader zkStateReader;
+
+    public ClusterStateWaiter(ZkStateReader zkStateReader) {
+        this.zkStateReader = zkStateReader;
+    }
+
+    /**
+     * Returns a future which completes with the collection's state when the predicate matches it. The predicate is
+     * evaluated whenever the collection's state or the live nodes change. The future completes with a
+     * {@link TimeoutException} if the predicate does not match before the timeout expires. Cancelling the future stops
+     * watching the collection.
+     */
+    public CompletableFuture<DocCollection> waitForCollectionState(final String collection,
+            final CollectionStatePredicate predicate, long time, TimeUnit unit) {
+        final CompletableFuture<DocCollection> future = new CompletableFuture<>();
+        final CollectionStateWatcher watcher = new CollectionStateWatcher() {
+            @Override
+            public boolean onStateChanged(Set<String> liveNodes, DocCollection collectionState) {
+                if (future.isDone()) {
+                    return true;
+                }
+                try {
+                    if (predicate.matches(liveNodes, collectionState)) {
+                        future.complete(collectionState);
+                        return true;
+                    }
+                } catch (final RuntimeException e) {
+                    future.completeExceptionally(e);
+                    return true;
+                }
+                return false;
+            }
+        };
+        // ZkStateReader only notifies collection state watchers when the collection's state changes, but predicates
+        // often depend on the live nodes too (e.g. a killed node's replicas remain ACTIVE in the state)
+        final LiveNodesListener liveNodesListener = new LiveNodesListener() {
+            @Override
+            public void onChange(SortedSet<String> oldLiveNodes, SortedSet<String> newLiveNodes) {
+                watcher.onStateChanged(newLiveNodes, zkStateReader.getClusterState().getCollectionOrNull(collection));
+            }
+        };
+        future.whenComplete(new BiConsumer<DocCollection, Throwable>() {
+            @Override
+            public void accept(DocCollection result, Throwable error) {
+                zkStateReader.removeLiveNodesListener(liveNodesListener);
+                zkStateReader.removeCollectionStateWatcher(collection, watcher);
+            }
+        });
+        scheduleTimeout(future, "collection [" + collection + "]", time, unit);
+        zkStateReader.registerLiveNodesListener(liveNodesListener);
+        // The watcher is called immediately with the current state, and then on every state change
+        zkStateReader.registerCollectionStateWatcher(collection, watcher);
+        return future;
+    }
+
+    /**
+     * Returns a future which completes with the cluster's live nodes when the predicate matches them. The future
+     * completes with a {@link TimeoutException} if the predicate does not match before the timeout expires.
+     */
+    public CompletableFuture<Set<String>> waitForLiveNodes(final LiveNodesPredicate predicate, long time,
+            TimeUnit unit) {
+        final CompletableFuture<Set<String>> future = new CompletableFuture<>();
+        final LiveNodesListener listener = new LiveNodesListener() {
+            @Override
+            public void onChange(SortedSet<String> oldLiveNodes, SortedSet<String> newLiveNodes) {
+                evaluate(future, predicate, newLiveNodes);
+            }
+        };
+        future.whenComplete(new BiConsumer<Set<String>, Throwable>() {
+            @Override
+            public void accept(Set<String> result, Throwable error) {
+                zkStateReader.removeLiveNodesListener(listener);
+            }
+        });
+        scheduleTimeout(future, "live nodes", time, unit);
+        zkStateReader.registerLiveNodesListener(listener);
+        // Listeners are only notified on changes, so evaluate the current live nodes too
+        evaluate(future, predicate, zkStateReader.getClusterState().getLiveNodes());
+        return future;
+    }
+
+    /** Waits until all replicas of all slices of the collection are active. */
+    public CompletableFuture<DocCollection> waitForAllActive(String collection, long time, TimeUnit unit) {
+        return waitForCollectionState(collection, new CollectionStatePredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes, DocCollection collectionState) {
+                return CollectionsStateHelper.isCollectionFullyActive(collectionState, liveNodes);
+            }
+        }, time, unit);
+    }
+
+    /** Waits for the given node to appear in the cluster's live nodes. */
+    public CompletableFuture<Set<String>> waitForNodeToAppearInLiveNodes(final String nodeName, long time,
+            TimeUnit unit) {
+        return waitForLiveNodes(new LiveNodesPredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes) {
+                return liveNodes.contains(nodeName);
+            }
+        }, time, unit);
+    }
+
+    /** Waits for the given node to disappear from the cluster's live nodes. */
+    public CompletableFuture<Set<String>> waitForNodeToDisappearFromLiveNodes(final String nodeName, long time,
+            TimeUnit unit) {
+        return waitForLiveNodes(new LiveNodesPredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes) {
+                return !liveNodes.contains(nodeName);
+            }
+        }, time, unit);
+    }
+
+    private static void evaluate(CompletableFuture<Set<String>> future, LiveNodesPredicate predicate,
+            Set<String> liveNodes) {
+        if (future.isDone()) {
+            return;
+        }
+        try {
+            if (predicate.matches(liveNodes)) {
+                future.complete(liveNodes);
+            }
+        } catch (final RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static void scheduleTimeout(final CompletableFuture<?> future, final String description, long time,
+            TimeUnit unit) {
+        final ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.completeExceptionally(new TimeoutException("Timed out waiting for " + description));
+            }
+        }, time, unit);
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object result, Throwable error) {
+                timeout.cancel(false);
+            }
+        });
+    }
+
+    /** A predicate on the cluster's live nodes. */
+    public interface LiveNodesPredicate {
+        /** Returns true/false indicating whether or not the live nodes match the predicate. */
+        boolean matches(Set<String> liveNodes);
+    }
+
+}
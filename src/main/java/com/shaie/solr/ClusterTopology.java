@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.shaie.utils.PersistentHashMap;
+
+/**
+ * An immutable snapshot of the cluster's topology, indexing replicas by node and by collection and shard, and counting
+ * replicas by state. Snapshots are derived from one another by replacing a single collection or the live nodes. The
+ * indexes are {@link PersistentHashMap persistent maps} which share all unchanged entries with the previous snapshot, so
+ * updating a snapshot costs in proportion to the changed collection rather than to the whole cluster.
+ *
+ * @see ClusterTopologyIndex
+ */
+public final class ClusterTopology {
+
+    /** An empty topology. */
+    public static final ClusterTopology EMPTY = new ClusterTopology(ImmutableSet.<String> of(),
+            PersistentHashMap.<String, CollectionTopology> empty(),
+            PersistentHashMap.<String, PersistentHashMap<String, ImmutableList<ReplicaInfo>>> empty(),
+            PersistentHashMap.<String, Integer> empty(), emptyStateCounts());
+
+    private final ImmutableSet<String> liveNodes;
+    private final PersistentHashMap<String, CollectionTopology> collections;
+    private final PersistentHashMap<String, PersistentHashMap<String, ImmutableList<ReplicaInfo>>> nodeReplicas;
+    private final PersistentHashMap<String, Integer> nodeDownStateCounts;
+    private final EnumMap<Replica.State, Integer> stateCounts;
+
+    private ClusterTopology(ImmutableSet<String> liveNodes, PersistentHashMap<String, CollectionTopology> collections,
+            PersistentHashMap<String, PersistentHashMap<String, ImmutableList<ReplicaInfo>>> nodeReplicas,
+            PersistentHashMap<String, Integer> nodeDownStateCounts, EnumMap<Replica.State, Integer> stateCounts) {
+        this.liveNodes = liveNodes;
+        this.collections = collections;
+        this.nodeReplicas = nodeReplicas;
+        this.nodeDownStateCounts = nodeDownStateCounts;
+        this.stateCounts = stateCounts;
+    }
+
+    /** Creates a topology from a full {@link ClusterState}. */
+    public static ClusterTopology from(ClusterState clusterState) {
+        ClusterTopology topology = EMPTY.withLiveNodes(clusterState.getLiveNodes());
+        for (final DocCollection collection : clusterState.getCollectionsMap().values()) {
+            topology = topology.withCollection(collection);
+        }
+        return topology;
+    }
+
+    /** Returns the cluster's live nodes. */
+    public Set<String> getLiveNodes() {
+        return liveNodes;
+    }
+
+    /** Returns the names of the collections in the cluster. */
+    public Set<String> getCollectionNames() {
+        return collections.keySet();
+    }
+
+    /** Returns the {@link DocCollection} this topology was built from, or {@code null} if it does not exist. */
+    public DocCollection getCollection(String collection) {
+        final CollectionTopology collectionTopology = collections.get(collection);
+        return collectionTopology == null ? null : collectionTopology.collection;
+    }
+
+    /** Returns the replicas of the collection per shard, or an empty map if the collection does not exist. */
+    public Map<String, List<ReplicaInfo>> getShardReplicas(String collection) {
+        final CollectionTopology collectionTopology = collections.get(collection);
+        if (collectionTopology == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.<String, List<ReplicaInfo>> unmodifiableMap(collectionTopology.shardReplicas);
+    }
+
+    /** Returns all the replicas (of all shards and collections) that exist on the given node. */
+    public List<ReplicaInfo> getNodeReplicas(String nodeName) {
+        final Map<String, ImmutableList<ReplicaInfo>> collectionReplicas = nodeReplicas.get(nodeName);
+        if (collectionReplicas == null) {
+            return Collections.emptyList();
+        }
+        final List<ReplicaInfo> replicas = Lists.newArrayList();
+        for (final ImmutableList<ReplicaInfo> replicaInfos : collectionReplicas.values()) {
+            replicas.addAll(replicaInfos);
+        }
+        return replicas;
+    }
+
+    /** Returns the nodes which host replicas, whether they are live or not. */
+    public Set<String> getReplicaNodes() {
+        return nodeReplicas.keySet();
+    }
+
+    /** Returns the number of replicas that exist on the given node. */
+    public int getNumNodeReplicas(String nodeName) {
+        final Map<String, ImmutableList<ReplicaInfo>> collectionReplicas = nodeReplicas.get(nodeName);
+        if (collectionReplicas == null) {
+            return 0;
+        }
+        int numReplicas = 0;
+        for (final ImmutableList<ReplicaInfo> replicaInfos : collectionReplicas.values()) {
+            numReplicas += replicaInfos.size();
+        }
+        return numReplicas;
+    }
+
+    /**
+     * Returns all the nodes with down replicas, along with all their replicas. A node's replicas are down if the node
+     * is not live, or if at least one of them is marked DOWN.
+     */
+    public Map<String, List<ReplicaInfo>> getDownReplicas() {
+        final Map<String, List<ReplicaInfo>> result = Maps.newHashMap();
+        for (final String nodeName : nodeReplicas.keySet()) {
+            if (!liveNodes.contains(nodeName) || nodeDownStateCounts.containsKey(nodeName)) {
+                result.put(nodeName, getNodeReplicas(nodeName));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of replicas in the cluster per their recorded state. */
+    public Map<Replica.State, Integer> getStateCounts() {
+        return Collections.unmodifiableMap(stateCounts);
+    }
+
+    /** Returns a topology with the given live nodes. */
+    public ClusterTopology withLiveNodes(Set<String> newLiveNodes) {
+        return new ClusterTopology(ImmutableSet.copyOf(newLiveNodes), collections, nodeReplicas, nodeDownStateCounts,
+                stateCounts);
+    }
+
+    /** Returns a topology in which the given collection replaces the existing one of the same name. */
+    public ClusterTopology withCollection(DocCollection collection) {
+        return replace(collection.getName(), new CollectionTopology(collection));
+    }
+
+    /** Returns a topology without the given collection. */
+    public ClusterTopology withoutCollection(String collection) {
+        if (!collections.containsKey(collection)) {
+            return this;
+        }
+        return replace(collection, null);
+    }
+
+    private ClusterTopology replace(String name, CollectionTopology newCollection) {
+        final CollectionTopology oldCollection = collections.get(name);
+        final PersistentHashMap<String, CollectionTopology> newCollections = newCollection == null
+                ? collections.minus(name) : collections.plus(name, newCollection);
+
+        // Only the nodes which host replicas of the old or new collection are affected
+        PersistentHashMap<String, PersistentHashMap<String, ImmutableList<ReplicaInfo>>> newNodeReplicas =
+                nodeReplicas;
+        if (oldCollection != null) {
+            for (final String nodeName : oldCollection.nodeReplicas.keySet()) {
+                if (newCollection == null || !newCollection.nodeReplicas.containsKey(nodeName)) {
+                    final PersistentHashMap<String, ImmutableList<ReplicaInfo>> collectionReplicas =
+                            newNodeReplicas.get(nodeName).minus(name);
+                    newNodeReplicas = collectionReplicas.isEmpty() ? newNodeReplicas.minus(nodeName)
+                            : newNodeReplicas.plus(nodeName, collectionReplicas);
+                }
+            }
+        }
+        if (newCollection != null) {
+            for (final Entry<String, ImmutableList<ReplicaInfo>> entry : newCollection.nodeReplicas.entrySet()) {
+                PersistentHashMap<String, ImmutableList<ReplicaInfo>> collectionReplicas =
+                        newNodeReplicas.get(entry.getKey());
+                if (collectionReplicas == null) {
+                    collectionReplicas = PersistentHashMap.empty();
+                }
+                newNodeReplicas = newNodeReplicas.plus(entry.getKey(), collectionReplicas.plus(name,
+                        entry.getValue()));
+            }
+        }
+
+        PersistentHashMap<String, Integer> newNodeDownStateCounts = nodeDownStateCounts;
+        final EnumMap<Replica.State, Integer> newStateCounts = new EnumMap<>(stateCounts);
+        if (oldCollection != null) {
+            newNodeDownStateCounts = addCounts(newNodeDownStateCounts, oldCollection.nodeDownStateCounts, -1);
+            addCounts(newStateCounts, oldCollection.stateCounts, -1);
+        }
+        if (newCollection != null) {
+            newNodeDownStateCounts = addCounts(newNodeDownStateCounts, newCollection.nodeDownStateCounts, 1);
+            addCounts(newStateCounts, newCollection.stateCounts, 1);
+        }
+
+        return new ClusterTopology(liveNodes, newCollections, newNodeReplicas, newNodeDownStateCounts,
+                newStateCounts);
+    }
+
+    /** Adds {@code sign * delta} to the counts, removing keys whose count drops to zero. */
+    private static <K> void addCounts(Map<K, Integer> counts, Map<K, Integer> delta, int sign) {
+        for (final Entry<K, Integer> entry : delta.entrySet()) {
+            final Integer count = counts.get(entry.getKey());
+            final int newCount = (count == null ? 0 : count) + sign * entry.getValue();
+            if (newCount == 0) {
+                counts.remove(entry.getKey());
+            } else {
+                counts.put(entry.getKey(), newCount);
+            }
+        }
+    }
+
+    /** Returns the counts with {@code sign * delta} added, without the keys whose count dropped to zero. */
+    private static <K> PersistentHashMap<K, Integer> addCounts(PersistentHashMap<K, Integer> counts,
+            Map<K, Integer> delta, int sign) {
+        PersistentHashMap<K, Integer> newCounts = counts;
+        for (final Entry<K, Integer> entry : delta.entrySet()) {
+            final Integer count = newCounts.get(entry.getKey());
+            final int newCount = (count == null ? 0 : count) + sign * entry.getValue();
+            newCounts = newCount == 0 ? newCounts.minus(entry.getKey()) : newCounts.plus(entry.getKey(), newCount);
+        }
+        return newCounts;
+    }
+
+    private static EnumMap<Replica.State, Integer> emptyStateCounts() {
+        return new EnumMap<>(Replica.State.class);
+    }
+
+    /** The topology of a single collection. */
+    private static final class CollectionTopology {
+
+        private final DocCollection collection;
+        private final ImmutableMap<String, ImmutableList<ReplicaInfo>> shardReplicas;
+        private final ImmutableMap<String, ImmutableList<ReplicaInfo>> nodeReplicas;
+        private final Map<String, Integer> nodeDownStateCounts = Maps.newHashMap();
+        private final EnumMap<Replica.State, Integer> stateCounts = emptyStateCounts();
+
+        CollectionTopology(DocCollection collection) {
+            this.collection = collection;
+            final ImmutableMap.Builder<String, ImmutableList<ReplicaInfo>> shardReplicasBuilder =
+                    ImmutableMap.builder();
+            final Map<String, ImmutableList.Builder<ReplicaInfo>> nodeReplicasBuilders = Maps.newHashMap();
+            for (final Slice slice : collection.getSlices()) {
+                final ImmutableList.Builder<ReplicaInfo> sliceReplicas = ImmutableList.builder();
+                for (final Replica replica : slice.getReplicas()) {
+                    final ReplicaInfo replicaInfo = new ReplicaInfo(replica, collection.getName(), slice.getName());
+                    sliceReplicas.add(replicaInfo);
+                    ImmutableList.Builder<ReplicaInfo> nodeReplicasBuilder =
+                            nodeReplicasBuilders.get(replica.getNodeName());
+                    if (nodeReplicasBuilder == null) {
+                        nodeReplicasBuilder = ImmutableList.builder();
+                        nodeReplicasBuilders.put(replica.getNodeName(), nodeReplicasBuilder);
+                    }
+                    nodeReplicasBuilder.add(replicaInfo);
+                    addCounts(stateCounts, Collections.singletonMap(replica.getState(), 1), 1);
+                    if (replica.getState() == Replica.State.DOWN) {
+                        addCounts(nodeDownStateCounts, Collections.singletonMap(replica.getNodeName(), 1), 1);
+                    }
+                }
+                shardReplicasBuilder.put(slice.getName(), sliceReplicas.build());
+            }
+            this.shardReplicas = shardReplicasBuilder.build();
+
+            final ImmutableMap.Builder<String, ImmutableList<ReplicaInfo>> nodeReplicasBuilder = ImmutableMap.builder();
+            for (final Entry<String, ImmutableList.Builder<ReplicaInfo>> entry : nodeReplicasBuilders.entrySet()) {
+                nodeReplicasBuilder.put(entry.getKey(), entry.getValue().build());
+            }
+            this.nodeReplicas = nodeReplicasBuilder.build();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.solr.common.cloud.CollectionStateWatcher;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.LiveNodesListener;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains an up-to-date {@link ClusterTopology}. The topology is built once from the {@link ZkStateReader}'s cluster
+ * state, and then updated incrementally from collection state watchers, live nodes listeners and a watch on the list
+ * of collections, such that every notification only re-indexes the collection that changed.
+ *
+ * <p>
+ * Updates are serialized, while {@link #getTopology()} returns the current immutable snapshot without locking.
+ * {@link Listener}s are notified of every update, in order, on the thread which applies it.
+ * </p>
+ */
+public class ClusterTopologyIndex implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterTopologyIndex.class);
+
+    /**
+     * Notified when the topology changes. Notifications are delivered while holding the index's lock, so listeners
+     * should return quickly, e.g. by handing off the work to another thread.
+     */
+    public static interface Listener {
+        /** Called when the set of live nodes changes. */
+        void onLiveNodesChanged(Set<String> oldLiveNodes, Set<String> newLiveNodes);
+
+        /**
+         * Called when a collection's state changes. The old state is {@code null} for a new collection, and the new
+         * state is {@code null} for a deleted collection.
+         */
+        void onCollectionChanged(String collection, DocCollection oldState, DocCollection newState);
+    }
+
+    private final ZkStateReader zkStateReader;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<String> watchedCollections = ConcurrentHashMap.newKeySet();
+    private final LiveNodesListener liveNodesListener = new LiveNodesListener() {
+        @Override
+        public void onChange(SortedSet<String> oldLiveNodes, SortedSet<String> newLiveNodes) {
+            updateLiveNodes(newLiveNodes);
+        }
+    };
+    private final Watcher collectionsWatcher = new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+            if (event.getType() == EventType.NodeChildrenChanged && !closed) {
+                watchCollections();
+            }
+        }
+    };
+    private volatile ClusterTopology topology = ClusterTopology.EMPTY;
+    private volatile boolean closed = false;
+
+    public ClusterTopologyIndex(ZkStateReader zkStateReader) {
+        this.zkStateReader = zkStateReader;
+    }
+
+    /** Builds the initial topology and starts following cluster state changes. */
+    public void start() {
+        synchronized (this) {
+            topology = ClusterTopology.from(zkStateReader.getClusterState());
+        }
+        zkStateReader.registerLiveNodesListener(liveNodesListener);
+        watchCollections();
+    }
+
+    /** Returns the current topology snapshot. */
+    public ClusterTopology getTopology() {
+        return topology;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        zkStateReader.removeLiveNodesListener(liveNodesListener);
+        // Collection state watchers unregister themselves on their next notification
+        watchedCollections.clear();
+    }
+
+    /** Lists the collections (setting a watch on the list) and starts watching any new ones. */
+    private void watchCollections() {
+        try {
+            final List<String> collections = zkStateReader.getZkClient().getChildren(
+                    ZkStateReader.COLLECTIONS_ZKNODE, collectionsWatcher, true);
+            for (final String collection : collections) {
+                if (watchedCollections.add(collection)) {
+                    watchCollection(collection);
+                }
+            }
+        } catch (final KeeperException e) {
+            LOGGER.warn("Failed to list collections, topology may be stale", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watchCollection(final String collection) {
+        zkStateReader.registerCollectionStateWatcher(collection, new CollectionStateWatcher() {
+            @Override
+            public boolean onStateChanged(Set<String> liveNodes, DocCollection collectionState) {
+                if (closed) {
+                    return true;
+                }
+                if (collectionState == null) {
+                    removeCollection(collection);
+                    // A collection which is being created may not have a state yet, so keep watching it
+                    if (!collectionExists(collection)) {
+                        watchedCollections.remove(collection);
+                        return true;
+                    }
+                    return false;
+                }
+                updateCollection(collectionState);
+                return false;
+            }
+        });
+    }
+
+    private boolean collectionExists(String collection) {
+        try {
+            return zkStateReader.getZkClient().exists(ZkStateReader.COLLECTIONS_ZKNODE + "/" + collection, true);
+        } catch (final KeeperException e) {
+            LOGGER.warn("Failed to check if collection [{}] exists", collection, e);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private synchronized void updateLiveNodes(Set<String> liveNodes) {
+        final Set<String> oldLiveNodes = topology.getLiveNodes();
+        topology = topology.withLiveNodes(liveNodes);
+        for (final Listener listener : listeners) {
+            listener.onLiveNodesChanged(oldLiveNodes, topology.getLiveNodes());
+        }
+    }
+
+    private synchronized void updateCollection(DocCollection collectionState) {
+        // Collection state watchers are notified on live nodes changes too, so skip unmodified collections
+        final DocCollection current = topology.getCollection(collectionState.getName());
+        if (current != null && (current == collectionState
+                || current.getZNodeVersion() == collectionState.getZNodeVersion())) {
+            return;
+        }
+        topology = topology.withCollection(collectionState);
+        for (final Listener listener : listeners) {
+            listener.onCollectionChanged(collectionState.getName(), current, collectionState);
+        }
+    }
+
+    private synchronized void removeCollection(String collection) {
+        final DocCollection current = topology.getCollection(collection);
+        if (current == null) {
+            return;
+        }
+        topology = topology.withoutCollection(collection);
+        for (final Listener listener : listeners) {
+            listener.onCollectionChanged(collection, current, null);
+        }
+    }
+
+}
@@ -19,24 +19,33 @@ package com.shaie.solr;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.solr.common.cloud.ClusterState;
 import org.apache.solr.common.cloud.DocCollection;
 import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.cloud.ZkStateReader;
-import org.testng.collections.Maps;
 
 import com.google.common.collect.Lists;
 
-/** A helper for querying the state of Solr collections. */
+/**
+ * A helper for querying the state of Solr collections. If given a {@link ClusterTopologyIndex}, cluster-wide queries
+ * (e.g. {@link #getAllNodeReplicas(String)} and {@link #getDownReplicas()}) are answered from its snapshot instead of
+ * scanning all collections.
+ */
 public class CollectionsStateHelper {
 
     private final ZkStateReader zkStateReader;
+    private final ClusterTopologyIndex topologyIndex;
 
     public CollectionsStateHelper(ZkStateReader zkStateReader) {
+        this(zkStateReader, null);
+    }
+
+    public CollectionsStateHelper(ZkStateReader zkStateReader, ClusterTopologyIndex topologyIndex) {
         this.zkStateReader = zkStateReader;
+        this.topologyIndex = topologyIndex;
     }
 
     /** Returns the slices (shards) of a collection. */
@@ -46,13 +55,15 @@ public class CollectionsStateHelper {
 
     /** Returns the active replicas of a collection. */
     public Collection<Replica> getActiveReplicas(String collection) {
+        final ClusterState clusterState = getClusterState();
+        final Set<String> liveNodes = clusterState.getLiveNodes();
         final List<Replica> activeReplicas = Lists.newArrayList();
-        for (final Slice slice : getSlices(collection)) {
+        for (final Slice slice : clusterState.getCollection(collection).getSlices()) {
             if (!isSliceActive(slice)) {
                 continue;
             }
             for (final Replica replica : slice.getReplicas()) {
-                if (isReplicaActive(replica)) {
+                if (isReplicaActive(replica, liveNodes)) {
                     activeReplicas.add(replica);
                 }
             }
@@ -62,13 +73,15 @@ public class CollectionsStateHelper {
 
     /** Returns the inactive replicas of a collection. */
     public Collection<Replica> getInactiveReplicas(String collection) {
+        final ClusterState clusterState = getClusterState();
+        final Set<String> liveNodes = clusterState.getLiveNodes();
         final List<Replica> inactiveReplicas = Lists.newArrayList();
-        for (final Slice slice : getSlices(collection)) {
+        for (final Slice slice : clusterState.getCollection(collection).getSlices()) {
             if (!isSliceActive(slice)) {
                 inactiveReplicas.addAll(slice.getReplicas());
             } else {
                 for (final Replica replica : slice.getReplicas()) {
-                    if (!isReplicaActive(replica)) {
+                    if (!isReplicaActive(replica, liveNodes)) {
                         inactiveReplicas.add(replica);
                     }
                 }
@@ -79,10 +92,28 @@ public class CollectionsStateHelper {
 
     /** Returns true if all the slices and replicas of a collection are active. */
     public boolean isCollectionFullyActive(String collection) {
-        for (final Slice slice : getSlices(collection)) {
-            if (!isSliceAndAllReplicasActive(slice)) {
+        final ClusterState clusterState = getClusterState();
+        return isCollectionFullyActive(clusterState.getCollection(collection), clusterState.getLiveNodes());
+    }
+
+    /**
+     * Returns true if the collection exists and all its slices and replicas are active, given the cluster's live nodes.
+     * Unlike {@link #isCollectionFullyActive(String)}, this method does not read the cluster state, and therefore can
+     * be used by {@link org.apache.solr.common.cloud.CollectionStateWatcher}s.
+     */
+    public static boolean isCollectionFullyActive(DocCollection collectionState, Set<String> liveNodes) {
+        if (collectionState == null) {
+            return false;
+        }
+        for (final Slice slice : collectionState.getSlices()) {
+            if (slice.getState() != Slice.State.ACTIVE) {
                 return false;
             }
+            for (final Replica replica : slice.getReplicas()) {
+                if (!isReplicaActive(replica, liveNodes)) {
+                    return false;
+                }
+            }
         }
         return true;
     }
@@ -92,8 +123,9 @@ public class CollectionsStateHelper {
         if (!isSliceActive(slice)) {
             return false;
         }
+        final Set<String> liveNodes = getClusterState().getLiveNodes();
         for (final Replica replica : slice.getReplicas()) {
-            if (!isReplicaActive(replica)) {
+            if (!isReplicaActive(replica, liveNodes)) {
                 return false;
             }
         }
@@ -112,8 +144,7 @@ public class CollectionsStateHelper {
 
     /** Returns true if the replica is on a live node and active. */
     public boolean isReplicaActive(Replica replica) {
-        return getClusterState().liveNodesContain(replica.getNodeName())
-                && replica.getState() == Replica.State.ACTIVE;
+        return isReplicaActive(replica, getClusterState().getLiveNodes());
     }
 
     /** Returns true if the replica is in a DOWN state. */
@@ -125,6 +156,13 @@ public class CollectionsStateHelper {
     /** Returns all the replicas (of all shards and collections) that exist on the given node. */
     public List<Replica> getAllNodeReplicas(String nodeName) {
         final List<Replica> replicas = Lists.newArrayList();
+        if (topologyIndex != null) {
+            for (final ReplicaInfo replicaInfo : topologyIndex.getTopology().getNodeReplicas(nodeName)) {
+                replicas.add(replicaInfo.getReplica());
+            }
+            return replicas;
+        }
+
         final ClusterState clusterState = getClusterState();
         for (final DocCollection collection : clusterState.getCollectionsMap().values()) {
             for (final Slice slice : collection.getSlices()) {
@@ -163,16 +201,7 @@ public class CollectionsStateHelper {
      * node returned there is at least one replica that was marked DOWN.
      */
     public Map<String, List<ReplicaInfo>> getDownReplicas() {
-        final Map<String, List<ReplicaInfo>> nodeReplicas = getNodeReplicas();
-        final Map<String, List<ReplicaInfo>> result = Maps.newHashMap();
-        for (final Entry<String, List<ReplicaInfo>> entry : nodeReplicas.entrySet()) {
-            for (final ReplicaInfo replicaInfo : entry.getValue()) {
-                if (isReplicaDown(replicaInfo.getReplica())) {
-                    result.put(entry.getKey(), entry.getValue());
-                }
-            }
-        }
-        return result;
+        return getTopology().getDownReplicas();
     }
 
     /**
@@ -183,23 +212,16 @@ public class CollectionsStateHelper {
         return zkStateReader.getClusterState();
     }
 
-    /** Returns all replicas per node. */
-    private Map<String, List<ReplicaInfo>> getNodeReplicas() {
-        final ClusterState clusterState = getClusterState();
-        final Map<String, List<ReplicaInfo>> result = Maps.newHashMap();
-        for (final DocCollection collection : clusterState.getCollectionsMap().values()) {
-            for (final Slice slice : collection.getSlices()) {
-                for (final Replica replica : slice.getReplicas()) {
-                    List<ReplicaInfo> nodeReplicas = result.get(replica.getNodeName());
-                    if (nodeReplicas == null) {
-                        nodeReplicas = Lists.newArrayList();
-                        result.put(replica.getNodeName(), nodeReplicas);
-                    }
-                    nodeReplicas.add(new ReplicaInfo(replica, collection.getName(), slice.getName()));
-                }
-            }
+    /** Returns the {@link ClusterTopology} from the index, or computes it from the current cluster state. */
+    public ClusterTopology getTopology() {
+        if (topologyIndex != null) {
+            return topologyIndex.getTopology();
         }
-        return result;
+        return ClusterTopology.from(getClusterState());
+    }
+
+    private static boolean isReplicaActive(Replica replica, Set<String> liveNodes) {
+        return liveNodes.contains(replica.getNodeName()) && replica.getState() == Replica.State.ACTIVE;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.ZkNodeProps;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.zookeeper.AsyncCallback.ChildrenCallback;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Maintains the collections of every config set. The index is built by reading all collections' znodes with pipelined
+ * asynchronous requests, and is then kept up-to-date by watches on the list of collections and on every collection's
+ * znode, which holds its config name. Therefore {@link #getCollections(String)} does not access ZooKeeper, unlike
+ * {@link SolrCloudUtils#getCollectionsCreatedWithConfig}.
+ *
+ * <p>
+ * All ZooKeeper requests are asynchronous, so watch notifications never block ZooKeeper's event thread. Failed requests
+ * (e.g. due to a connection loss) are retried after a delay, until they succeed or the index is closed, since their
+ * watch is not set until they do. Watches do not survive a session expiration, in which case the index should be
+ * closed and rebuilt.
+ * </p>
+ */
+public class ConfigCollectionsIndex implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigCollectionsIndex.class);
+
+    private static final long RETRY_DELAY_MS = 500;
+
+    private final SolrZkClient zkClient;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("config-collections-retry-%d").setDaemon(true).build());
+    private final Map<String, String> collectionConfigs = Maps.newHashMap();
+    private final Map<String, Set<String>> configCollections = Maps.newHashMap();
+    /** The collections whose znode is watched, so that a new collection gets a single data watch. */
+    private final Set<String> watchedCollections = ConcurrentHashMap.newKeySet();
+    private final Watcher collectionsWatcher = new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+            if (!closed && (event.getType() == EventType.NodeChildrenChanged
+                    || event.getType() == EventType.NodeCreated)) {
+                listCollections(null);
+            }
+        }
+    };
+    private final Watcher collectionWatcher = new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+            if (closed || event.getPath() == null) {
+                return;
+            }
+            final String collection = event.getPath().substring(ZkStateReader.COLLECTIONS_ZKNODE.length() + 1);
+            if (event.getType() == EventType.NodeDeleted) {
+                watchedCollections.remove(collection);
+                remove(collection);
+            } else if (event.getType() == EventType.NodeDataChanged) {
+                readCollection(collection, null);
+            }
+        }
+    };
+    private volatile boolean closed = false;
+
+    public ConfigCollectionsIndex(SolrZkClient zkClient) {
+        this.zkClient = zkClient;
+    }
+
+    /**
+     * Builds the index and starts following changes. Returns false if the index wasn't built within the timeout, e.g.
+     * because reading from ZooKeeper kept failing. In that case the failed requests are still retried, and the index
+     * is completed once they succeed.
+     */
+    public boolean start(long timeout, TimeUnit unit) {
+        final CountDownLatch built = new CountDownLatch(1);
+        listCollections(built);
+        try {
+            return built.await(timeout, unit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Returns the collections which use the given config set. */
+    public synchronized Set<String> getCollections(String configName) {
+        final Set<String> collections = configCollections.get(configName);
+        return collections == null ? ImmutableSet.<String> of() : ImmutableSet.copyOf(collections);
+    }
+
+    /** Returns the collection's config name, or {@code null} if the collection doesn't exist. */
+    public synchronized String getConfigName(String collection) {
+        return collectionConfigs.get(collection);
+    }
+
+    /** Returns the config sets which are in use by at least one collection. */
+    public synchronized Set<String> getConfigNames() {
+        return ImmutableSet.copyOf(configCollections.keySet());
+    }
+
+    @Override
+    public void close() {
+        // ZooKeeper 3.4 watches cannot be removed, so they are ignored from now on
+        closed = true;
+        retryExecutor.shutdownNow();
+    }
+
+    /**
+     * Lists the collections, watching the list, and reads the new ones. If {@code built} is not {@code null}, it is
+     * counted down once all new collections were read.
+     */
+    private void listCollections(final CountDownLatch built) {
+        zkClient.getSolrZooKeeper().getChildren(ZkStateReader.COLLECTIONS_ZKNODE, collectionsWatcher,
+                new ChildrenCallback() {
+                    @Override
+                    public void processResult(int rc, String path, Object ctx, List<String> children) {
+                        if (rc == KeeperException.Code.NONODE.intValue()) {
+                            // no collections were created yet, so wait for the collections znode to be created
+                            zkClient.getSolrZooKeeper().exists(ZkStateReader.COLLECTIONS_ZKNODE, collectionsWatcher,
+                                    null, null);
+                            countDown(built);
+                            return;
+                        }
+                        if (rc != KeeperException.Code.OK.intValue()) {
+                            LOGGER.warn("Failed to list collections, retrying: {}", KeeperException.Code.get(rc));
+                            retry(new Runnable() {
+                                @Override
+                                public void run() {
+                                    listCollections(built);
+                                }
+                            });
+                            return;
+                        }
+                        final Set<String> newCollections = Sets.newHashSet();
+                        for (final String collection : children) {
+                            if (watchedCollections.add(collection)) {
+                                newCollections.add(collection);
+                            }
+                        }
+                        if (newCollections.isEmpty()) {
+                            countDown(built);
+                            return;
+                        }
+                        final AtomicInteger remaining = new AtomicInteger(newCollections.size());
+                        for (final String collection : newCollections) {
+                            readCollection(collection, new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (remaining.decrementAndGet() == 0) {
+                                        countDown(built);
+                                    }
+                                }
+                            });
+                        }
+                    }
+                }, null);
+    }
+
+    /**
+     * Reads a collection's config name, watching its znode. Runs {@code onRead} when done, if not null. A failed read
+     * is retried, and {@code onRead} runs only once it succeeds.
+     */
+    private void readCollection(final String collection, final Runnable onRead) {
+        zkClient.getSolrZooKeeper().getData(ZkStateReader.COLLECTIONS_ZKNODE + "/" + collection, collectionWatcher,
+                new DataCallback() {
+                    @Override
+                    public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
+                        if (rc != KeeperException.Code.OK.intValue() && rc != KeeperException.Code.NONODE.intValue()) {
+                            LOGGER.warn("Failed to read collection [{}], retrying: {}", collection,
+                                    KeeperException.Code.get(rc));
+                            retry(new Runnable() {
+                                @Override
+                                public void run() {
+                                    readCollection(collection, onRead);
+                                }
+                            });
+                            return;
+                        }
+                        try {
+                            if (rc == KeeperException.Code.OK.intValue()) {
+                                final String configName = data == null || data.length == 0 ? null
+                                        : ZkNodeProps.load(data).getStr(ZkStateReader.CONFIGNAME_PROP);
+                                update(collection, configName);
+                            } else {
+                                watchedCollections.remove(collection);
+                                remove(collection);
+                            }
+                        } finally {
+                            if (onRead != null) {
+                                onRead.run();
+                            }
+                        }
+                    }
+                }, null);
+    }
+
+    /** Runs the request again after a delay, unless the index is closed. */
+    private void retry(Runnable request) {
+        if (closed) {
+            return;
+        }
+        try {
+            retryExecutor.schedule(request, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            // the index was closed concurrently
+        }
+    }
+
+    private static void countDown(CountDownLatch latch) {
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    private synchronized void update(String collection, String configName) {
+        remove(collection);
+        if (configName == null) {
+            return;
+        }
+        collectionConfigs.put(collection, configName);
+        Set<String> collections = configCollections.get(configName);
+        if (collections == null) {
+            collections = Sets.newHashSet();
+            configCollections.put(configName, collections);
+        }
+        collections.add(collection);
+    }
+
+    private synchronized void remove(String collection) {
+        final String configName = collectionConfigs.remove(collection);
+        if (configName == null) {
+            return;
+        }
+        final Set<String> collections = configCollections.get(configName);
+        collections.remove(collection);
+        if (collections.isEmpty()) {
+            configCollections.remove(configName);
+        }
+    }
+
+}
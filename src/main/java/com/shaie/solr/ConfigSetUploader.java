@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.ZkConfigManager;
+import org.apache.zookeeper.AsyncCallback.DataCallback;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Uploads config sets to ZooKeeper, writing only the files which changed. The existing files are read with pipelined
+ * asynchronous requests and compared to the local files by checksum, and the new and modified files are then written
+ * with {@code multi} requests, each holding as many files as fit in {@link #MAX_BATCH_BYTES}. Uploading a config set
+ * of N files therefore takes a few round trips to ZooKeeper instead of N, and re-uploading an unmodified config set
+ * only reads it.
+ *
+ * <p>
+ * Files which exist in ZooKeeper but not locally are not deleted, like {@link SolrCloudUtils#uploadConfigToZk}.
+ * </p>
+ */
+public class ConfigSetUploader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigSetUploader.class);
+
+    /** The maximum size of a multi request, well below ZooKeeper's default 1MB {@code jute.maxbuffer}. */
+    static final int MAX_BATCH_BYTES = 512 * 1024;
+
+    private static final HashFunction CHECKSUM = Hashing.sha256();
+
+    private final SolrZkClient zkClient;
+
+    public ConfigSetUploader(SolrZkClient zkClient) {
+        this.zkClient = zkClient;
+    }
+
+    /** Uploads the config set in {@code confDir} under the given name, and returns what was written. */
+    public Result upload(String configName, Path confDir) {
+        final String configPath = ZkConfigManager.CONFIGS_ZKNODE + "/" + configName;
+        final Map<String, byte[]> localFiles = readLocalFiles(configPath, confDir);
+        final Map<String, RemoteFile> remoteFiles = readRemoteFiles(localFiles.keySet());
+
+        final Set<String> existingDirs = Sets.newHashSet();
+        final Set<String> newDirs = Sets.newTreeSet();
+        final List<Op> ops = Lists.newArrayList();
+        final List<Integer> opSizes = Lists.newArrayList();
+        int numCreated = 0;
+        int numUpdated = 0;
+        int numUnchanged = 0;
+        for (final Map.Entry<String, byte[]> entry : localFiles.entrySet()) {
+            final String path = entry.getKey();
+            final byte[] data = entry.getValue();
+            final RemoteFile remoteFile = remoteFiles.get(path);
+            if (remoteFile == null) {
+                addMissingParents(path, existingDirs, newDirs);
+                ops.add(Op.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+                ++numCreated;
+            } else if (!remoteFile.checksum.equals(CHECKSUM.hashBytes(data))) {
+                ops.add(Op.setData(path, data, remoteFile.version));
+                ++numUpdated;
+            } else {
+                ++numUnchanged;
+                continue;
+            }
+            opSizes.add(data.length + path.length());
+        }
+
+        final List<Op> dirOps = Lists.newArrayList();
+        for (final String dir : newDirs) {
+            // TreeSet order guarantees that parents are created before their children
+            dirOps.add(Op.create(dir, null, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+        }
+        final int numRequests = execute(dirOps, ops, opSizes);
+        final Result result = new Result(numCreated, numUpdated, numUnchanged, numRequests);
+        LOGGER.info("Uploaded config [{}]: {}", configName, result);
+        return result;
+    }
+
+    /** Reads the local files, keyed by their ZooKeeper path. */
+    private static Map<String, byte[]> readLocalFiles(final String configPath, final Path confDir) {
+        final Map<String, byte[]> files = Maps.newTreeMap();
+        try {
+            Files.walkFileTree(confDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    final String relativePath = confDir.relativize(file).toString().replace('\\', '/');
+                    files.put(configPath + "/" + relativePath, Files.readAllBytes(file));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return files;
+    }
+
+    /**
+     * Reads the checksums and versions of the given paths, by sending all requests before waiting for any response.
+     * Paths which do not exist are missing from the result.
+     */
+    private Map<String, RemoteFile> readRemoteFiles(Set<String> paths) {
+        final Map<String, RemoteFile> result = new ConcurrentHashMap<>();
+        final Map<String, Integer> errors = new ConcurrentHashMap<>();
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        final DataCallback callback = new DataCallback() {
+            @Override
+            public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
+                try {
+                    if (rc == KeeperException.Code.OK.intValue()) {
+                        result.put(path, new RemoteFile(CHECKSUM.hashBytes(data == null ? new byte[0] : data),
+                                stat.getVersion()));
+                    } else if (rc != KeeperException.Code.NONODE.intValue()) {
+                        errors.put(path, rc);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (final String path : paths) {
+            zkClient.getSolrZooKeeper().getData(path, false, callback, null);
+        }
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (!errors.isEmpty()) {
+            final Map.Entry<String, Integer> error = errors.entrySet().iterator().next();
+            throw new RuntimeException(KeeperException.create(KeeperException.Code.get(error.getValue()),
+                    error.getKey()));
+        }
+        return result;
+    }
+
+    /** Adds the path's parent directories which do not exist in ZooKeeper to {@code newDirs}. */
+    private void addMissingParents(String path, Set<String> existingDirs, Set<String> newDirs) {
+        final List<String> missing = Lists.newArrayList();
+        String dir = path.substring(0, path.lastIndexOf('/'));
+        while (!dir.isEmpty() && !existingDirs.contains(dir) && !newDirs.contains(dir)) {
+            if (exists(dir)) {
+                existingDirs.add(dir);
+                break;
+            }
+            missing.add(dir);
+            dir = dir.substring(0, dir.lastIndexOf('/'));
+        }
+        newDirs.addAll(missing);
+    }
+
+    private boolean exists(String path) {
+        try {
+            return zkClient.exists(path, true);
+        } catch (final KeeperException e) {
+            throw new RuntimeException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Executes the directory ops and then the file ops in size-bounded batches. Returns the number of requests. */
+    private int execute(List<Op> dirOps, List<Op> fileOps, List<Integer> fileOpSizes) {
+        int numRequests = 0;
+        try {
+            if (!dirOps.isEmpty()) {
+                zkClient.multi(dirOps, true);
+                ++numRequests;
+            }
+            List<Op> batch = Lists.newArrayList();
+            int batchBytes = 0;
+            for (int i = 0; i < fileOps.size(); i++) {
+                final int size = fileOpSizes.get(i);
+                if (!batch.isEmpty() && batchBytes + size > MAX_BATCH_BYTES) {
+                    zkClient.multi(batch, true);
+                    ++numRequests;
+                    batch = Lists.newArrayList();
+                    batchBytes = 0;
+                }
+                batch.add(fileOps.get(i));
+                batchBytes += size;
+            }
+            if (!batch.isEmpty()) {
+                zkClient.multi(batch, true);
+                ++numRequests;
+            }
+        } catch (final KeeperException e) {
+            throw new RuntimeException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return numRequests;
+    }
+
+    private static final class RemoteFile {
+
+        private final HashCode checksum;
+        private final int version;
+
+        RemoteFile(HashCode checksum, int version) {
+            this.checksum = checksum;
+            this.version = version;
+        }
+    }
+
+    /** Summarizes a config set upload. */
+    public static final class Result {
+
+        private final int numCreated;
+        private final int numUpdated;
+        private final int numUnchanged;
+        private final int numWriteRequests;
+
+        Result(int numCreated, int numUpdated, int numUnchanged, int numWriteRequests) {
+            this.numCreated = numCreated;
+            this.numUpdated = numUpdated;
+            this.numUnchanged = numUnchanged;
+            this.numWriteRequests = numWriteRequests;
+        }
+
+        public int getNumCreated() {
+            return numCreated;
+        }
+
+        public int getNumUpdated() {
+            return numUpdated;
+        }
+
+        public int getNumUnchanged() {
+            return numUnchanged;
+        }
+
+        /** Returns the number of {@code multi} requests that were sent to ZooKeeper. */
+        public int getNumWriteRequests() {
+            return numWriteRequests;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [created=" + numCreated + ", updated=" + numUpdated + ", unchanged=" + numUnchanged
+                    + ", writeRequests=" + numWriteRequests + "]";
+        }
+    }
+
+}
@@ -18,33 +18,56 @@ package com.shaie.solr;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.solr.client.solrj.embedded.JettySolrRunner;
 import org.apache.solr.cloud.ZkController;
 import org.apache.solr.common.cloud.SolrZkClient;
 import org.apache.solr.common.cloud.SolrZooKeeper;
+import org.apache.solr.common.cloud.ZkStateReader;
 import org.apache.solr.servlet.SolrDispatchFilter;
 
 import com.carrotsearch.ant.tasks.junit4.dependencies.com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.utils.Waiter;
 
-/** Simulates a SolrCloud cluster by creating allowing to start/stop nodes. */
+/**
+ * Simulates a SolrCloud cluster by creating allowing to start/stop nodes. Multiple nodes are started and stopped in
+ * parallel, and a start completes only after all nodes registered themselves in ZooKeeper's live nodes.
+ */
 public class MiniSolrCloudCluster implements AutoCloseable {
 
     public static final String SOLRXML_LOCATION_PROP_NAME = "solr.solrxml.location";
     public static final String SOLRXML_LOCATION_PROP_VALUE = "zookeeper";
 
     private static final String SOLR_CONTEXT = "/solr";
+    private static final int ZK_TIMEOUT_MS = 120000;
+    private static final long LIVE_NODES_TIMEOUT_SECONDS = 60;
 
     private final File workDir;
-    private final Map<String, JettySolrRunner> solrRunners = new HashMap<>();
+    private final String connectString;
+    private final ConcurrentMap<String, JettySolrRunner> solrRunners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> nodePorts = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("mini-solr-cloud-%d").setDaemon(true).build());
+    private ZkStateReader zkStateReader = null;
 
     public MiniSolrCloudCluster(File workDir, File solrXml, String connectString) {
         this.workDir = workDir;
-        try (final SolrZkClient zkClient = new SolrZkClient(connectString, 120000)) {
+        this.connectString = connectString;
+        try (final SolrZkClient zkClient = new SolrZkClient(connectString, ZK_TIMEOUT_MS)) {
             ZkController.createClusterZkNodes(zkClient);
             zkClient.makePath("/solr.xml", solrXml, false, true);
             System.setProperty(SOLRXML_LOCATION_PROP_NAME, SOLRXML_LOCATION_PROP_VALUE);
@@ -53,11 +76,38 @@ public class MiniSolrCloudCluster implements AutoCloseable {
         }
     }
 
-    /** Starts multiple Solr nodes. */
+    /**
+     * Starts multiple Solr nodes in parallel, and waits for all of them to appear in the cluster's live nodes. If any
+     * node fails to start, the nodes that did start are left running. A node which was stopped is restarted on the
+     * same port, and therefore keeps its node name.
+     */
     public void startSolrNodes(String... nodeIDs) {
+        final List<Callable<String>> tasks = Lists.newArrayList();
+        for (final String nodeId : nodeIDs) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return startSolrNode(nodeId);
+                }
+            });
+        }
+        final List<String> nodeNames = invokeAll(tasks);
+        waitForLiveNodes(nodeNames);
+    }
+
+    /** Stops multiple Solr nodes in parallel. */
+    public void stopSolrNodes(String... nodeIDs) {
+        final List<Callable<Void>> tasks = Lists.newArrayList();
         for (final String nodeId : nodeIDs) {
-            startSolrNode(nodeId);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    stopSolr(nodeId);
+                    return null;
+                }
+            });
         }
+        invokeAll(tasks);
     }
 
     /** Stops the Solr identified by the given {@code nodeId}. */
@@ -65,7 +115,7 @@ public class MiniSolrCloudCluster implements AutoCloseable {
         final JettySolrRunner solrRunner = getJettySolrRunner(nodeId);
         try {
             solrRunner.stop();
-            solrRunners.remove(nodeId);
+            solrRunners.remove(nodeId, solrRunner);
         } catch (final Exception e) {
             throw Throwables.propagate(e);
         }
@@ -94,6 +144,7 @@ public class MiniSolrCloudCluster implements AutoCloseable {
      */
     public void destroySolr(String nodeId) {
         stopSolr(nodeId);
+        nodePorts.remove(nodeId);
         try {
             FileUtils.deleteDirectory(new File(workDir, nodeId));
         } catch (final IOException e) {
@@ -117,26 +168,122 @@ public class MiniSolrCloudCluster implements AutoCloseable {
         return "http://127.0.0.1:" + solrRunner.getLocalPort() + SOLR_CONTEXT;
     }
 
+    /** Returns the IDs of the running Solr nodes. */
+    public Set<String> getNodeIds() {
+        return Sets.newHashSet(solrRunners.keySet());
+    }
+
+    /**
+     * Closes the cluster's cached {@link ZkStateReader}, so that a new one is created when next needed. Must be called
+     * before ZooKeeper's data is replaced (e.g. restored from a snapshot), since ZooKeeper refuses clients which have
+     * seen a newer transaction than its own.
+     */
+    public synchronized void resetZkStateReader() {
+        if (zkStateReader != null) {
+            zkStateReader.close();
+            zkStateReader = null;
+        }
+    }
+
     @Override
     public void close() {
-        // clone the keys so we don't hit ConcurrentModificationException
-        for (final String nodeId : Sets.newHashSet(solrRunners.keySet())) {
-            destroySolr(nodeId);
+        try {
+            final List<Callable<Void>> tasks = Lists.newArrayList();
+            for (final String nodeId : getNodeIds()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        destroySolr(nodeId);
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
+        } finally {
+            resetZkStateReader();
+            executor.shutdownNow();
         }
     }
 
-    private void startSolrNode(String nodeId) {
+    /** Starts a Solr node and returns its live node name. */
+    private String startSolrNode(String nodeId) {
         final File solrHome = new File(workDir, nodeId);
         if (!solrHome.exists() && !solrHome.mkdirs()) {
             throw new RuntimeException("[" + solrHome + "] does not exist and fails to create");
         }
+        final Integer port = nodePorts.get(nodeId);
+        final JettySolrRunner solrRunner = new JettySolrRunner(solrHome.getAbsolutePath(), SOLR_CONTEXT,
+                port == null ? 0 : port);
+        if (solrRunners.putIfAbsent(nodeId, solrRunner) != null) {
+            throw new IllegalArgumentException("Solr with ID [" + nodeId + "] was already started!");
+        }
         try {
-            final JettySolrRunner solrRunner = new JettySolrRunner(solrHome.getAbsolutePath(), SOLR_CONTEXT, 0);
             solrRunner.start();
-            solrRunners.put(nodeId, solrRunner);
+            nodePorts.put(nodeId, solrRunner.getLocalPort());
+            return solrRunner.getNodeName();
         } catch (final Exception e) {
+            solrRunners.remove(nodeId, solrRunner);
             throw Throwables.propagate(e);
         }
     }
 
+    /** Waits for the given nodes to register in the cluster's live nodes. */
+    private void waitForLiveNodes(final List<String> nodeNames) {
+        final Future<Set<String>> future = new ClusterStateWaiter(getZkStateReader()).waitForLiveNodes(
+                new ClusterStateWaiter.LiveNodesPredicate() {
+                    @Override
+                    public boolean matches(Set<String> liveNodes) {
+                        return liveNodes.containsAll(nodeNames);
+                    }
+                }, LIVE_NODES_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!Waiter.waitFor(future)) {
+            throw new RuntimeException("Timed out waiting for nodes " + nodeNames + " to appear in live nodes");
+        }
+    }
+
+    private synchronized ZkStateReader getZkStateReader() {
+        if (zkStateReader == null) {
+            final ZkStateReader reader = new ZkStateReader(connectString, ZK_TIMEOUT_MS, ZK_TIMEOUT_MS);
+            try {
+                reader.createClusterStateWatchersAndUpdate();
+            } catch (final Exception e) {
+                reader.close();
+                throw Throwables.propagate(e);
+            }
+            zkStateReader = reader;
+        }
+        return zkStateReader;
+    }
+
+    /**
+     * Executes the tasks in parallel and returns their results. All tasks are waited for, even if some fail, after
+     * which the first failure is propagated.
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        final List<Future<T>> futures = Lists.newArrayList();
+        for (final Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        final List<T> results = Lists.newArrayList();
+        Throwable failure = null;
+        for (final Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (final ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        if (failure != null) {
+            throw Throwables.propagate(failure);
+        }
+        return results;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+
+/**
+ * A {@link RecoveryPlanner} which places every down replica on the live node with the lowest placement score. A node's
+ * score is its load once the replica is placed on it, plus penalties for placing the replica near its siblings:
+ * <ul>
+ * <li><b>Load</b>: the node's number of replicas and disk usage, each relative to the mean over all candidate nodes and
+ * weighted by {@link Config#setReplicaWeight(double)} and {@link Config#setDiskWeight(double)}. Disk usage is the sum
+ * of the node's replicas' shard sizes, as given by {@link Config#setShardStats(List)}.</li>
+ * <li><b>Co-location</b>: the number of replicas of the same collection on the node, weighted by
+ * {@link Config#setColocationWeight(double)}.</li>
+ * <li><b>Rack</b>: the number of replicas of the same shard in the node's rack, weighted by
+ * {@link Config#setRackWeight(double)}. Racks are given by {@link Config#setNodeRacks(Map)}, and nodes without a rack
+ * incur no penalty.</li>
+ * </ul>
+ * Since the lowest scoring node is usually the least loaded one, and larger replicas are placed first, this greedily
+ * minimizes the load of the hottest node. All scores are computed from the {@link ClusterTopology} snapshot and are
+ * updated incrementally as replicas are placed, so planning takes {@code O(replicas * nodes)} and does not access
+ * ZooKeeper or the nodes.
+ */
+public class PlacementEngine extends RecoveryPlanner {
+
+    private final Config config;
+
+    public PlacementEngine(Config config) {
+        this.config = config;
+    }
+
+    /** Returns a placement which scores the candidate nodes, and places larger replicas first. */
+    @Override
+    protected RecoveryPlanner.Placement newPlacement(ClusterTopology topology, Set<String> candidateNodes) {
+        return new Placement(topology, candidateNodes);
+    }
+
+    /**
+     * Returns the load of every live node without down replicas, as defined by this engine's weights. A balanced
+     * cluster has all loads close to {@code replicaWeight + diskWeight}.
+     */
+    public Map<String, Double> getNodeLoads(ClusterTopology topology) {
+        final Placement placement = new Placement(topology, getCandidateNodes(topology));
+        final Map<String, Double> loads = Maps.newTreeMap();
+        for (final String nodeName : placement.nodes) {
+            loads.put(nodeName, placement.getLoad(nodeName, 0, 0));
+        }
+        return loads;
+    }
+
+    /** Returns the live nodes without down replicas, sorted by name so that ties are broken consistently. */
+    private static Set<String> getCandidateNodes(ClusterTopology topology) {
+        final Map<String, List<ReplicaInfo>> downNodes = topology.getDownReplicas();
+        final Set<String> nodes = new TreeSet<>();
+        for (final String nodeName : topology.getLiveNodes()) {
+            if (!downNodes.containsKey(nodeName)) {
+                nodes.add(nodeName);
+            }
+        }
+        return nodes;
+    }
+
+    private static String shardKey(ReplicaInfo replicaInfo) {
+        return replicaInfo.getCollectionName() + "/" + replicaInfo.getShardName();
+    }
+
+    private long getShardSize(ReplicaInfo replicaInfo) {
+        final Long size = config.shardSizes.get(shardKey(replicaInfo));
+        return size == null ? 0 : size.longValue();
+    }
+
+    private String getRack(String nodeName) {
+        return config.nodeRacks.get(nodeName);
+    }
+
+    /** The placement state of the candidate nodes, which is updated as replicas are placed. */
+    private final class Placement extends RecoveryPlanner.Placement {
+
+        private final Set<String> nodes;
+        private final Map<String, Integer> nodeReplicas = Maps.newHashMap();
+        private final Map<String, Long> nodeDiskUsage = Maps.newHashMap();
+        /** Counts the replicas per node and collection, keyed by {@code node/collection}. */
+        private final Multiset<String> nodeCollections = HashMultiset.create();
+        /** Counts the replicas per rack and shard, keyed by {@code rack/collection/shard}. */
+        private final Multiset<String> rackShards = HashMultiset.create();
+        private final double meanReplicas;
+        private final double meanDiskUsage;
+
+        Placement(ClusterTopology topology, Set<String> nodes) {
+            this.nodes = nodes;
+            long totalReplicas = 0;
+            long totalDiskUsage = 0;
+            for (final String nodeName : nodes) {
+                final List<ReplicaInfo> replicas = topology.getNodeReplicas(nodeName);
+                long diskUsage = 0;
+                for (final ReplicaInfo replicaInfo : replicas) {
+                    diskUsage += getShardSize(replicaInfo);
+                    nodeCollections.add(nodeCollectionKey(nodeName, replicaInfo));
+                    final String rack = getRack(nodeName);
+                    if (rack != null) {
+                        rackShards.add(rackShardKey(rack, replicaInfo));
+                    }
+                }
+                nodeReplicas.put(nodeName, replicas.size());
+                nodeDiskUsage.put(nodeName, diskUsage);
+                totalReplicas += replicas.size();
+                totalDiskUsage += diskUsage;
+            }
+            this.meanReplicas = nodes.isEmpty() ? 0 : (double) totalReplicas / nodes.size();
+            this.meanDiskUsage = nodes.isEmpty() ? 0 : (double) totalDiskUsage / nodes.size();
+        }
+
+        /** Returns the lowest scoring node which is not excluded, or {@code null} if none. */
+        @Override
+        protected String selectNode(ReplicaInfo replicaInfo, Set<String> excludedNodes) {
+            final long shardSize = getShardSize(replicaInfo);
+            String selected = null;
+            double minScore = Double.MAX_VALUE;
+            for (final String nodeName : nodes) {
+                if (excludedNodes.contains(nodeName)) {
+                    continue;
+                }
+                final double score = getScore(nodeName, replicaInfo, shardSize);
+                if (score < minScore) {
+                    selected = nodeName;
+                    minScore = score;
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        protected void place(ReplicaInfo replicaInfo, String nodeName) {
+            nodeReplicas.put(nodeName, nodeReplicas.get(nodeName) + 1);
+            nodeDiskUsage.put(nodeName, nodeDiskUsage.get(nodeName) + getShardSize(replicaInfo));
+            nodeCollections.add(nodeCollectionKey(nodeName, replicaInfo));
+            final String rack = getRack(nodeName);
+            if (rack != null) {
+                rackShards.add(rackShardKey(rack, replicaInfo));
+            }
+        }
+
+        /** Places the replicas of larger shards first. */
+        @Override
+        protected int compare(ReplicaInfo r1, ReplicaInfo r2) {
+            return Long.compare(getShardSize(r2), getShardSize(r1));
+        }
+
+        private double getScore(String nodeName, ReplicaInfo replicaInfo, long shardSize) {
+            double score = getLoad(nodeName, 1, shardSize);
+            score += config.colocationWeight * nodeCollections.count(nodeCollectionKey(nodeName, replicaInfo));
+            final String rack = getRack(nodeName);
+            if (rack != null) {
+                score += config.rackWeight * rackShards.count(rackShardKey(rack, replicaInfo));
+            }
+            return score;
+        }
+
+        /** Returns the node's load, after adding the given number of replicas and bytes to it. */
+        double getLoad(String nodeName, int addedReplicas, long addedBytes) {
+            double load = 0;
+            if (meanReplicas > 0) {
+                load += config.replicaWeight * (nodeReplicas.get(nodeName) + addedReplicas) / meanReplicas;
+            } else {
+                load += config.replicaWeight * (nodeReplicas.get(nodeName) + addedReplicas);
+            }
+            if (meanDiskUsage > 0) {
+                load += config.diskWeight * (nodeDiskUsage.get(nodeName) + addedBytes) / meanDiskUsage;
+            }
+            return load;
+        }
+
+        private String nodeCollectionKey(String nodeName, ReplicaInfo replicaInfo) {
+            return nodeName + "/" + replicaInfo.getCollectionName();
+        }
+
+        private String rackShardKey(String rack, ReplicaInfo replicaInfo) {
+            return rack + "/" + shardKey(replicaInfo);
+        }
+    }
+
+    /** The placement weights, and the inputs which are not part of the cluster state. */
+    public static final class Config {
+
+        private double replicaWeight = 1;
+        private double diskWeight = 1;
+        private double colocationWeight = 0.5;
+        private double rackWeight = 2;
+        private final Map<String, Long> shardSizes = Maps.newHashMap();
+        private final Map<String, String> nodeRacks = Maps.newHashMap();
+
+        public Config setReplicaWeight(double replicaWeight) {
+            this.replicaWeight = replicaWeight;
+            return this;
+        }
+
+        public Config setDiskWeight(double diskWeight) {
+            this.diskWeight = diskWeight;
+            return this;
+        }
+
+        /** Sets the penalty per replica of the same collection on a candidate node. */
+        public Config setColocationWeight(double colocationWeight) {
+            this.colocationWeight = colocationWeight;
+            return this;
+        }
+
+        /** Sets the penalty per replica of the same shard in a candidate node's rack. */
+        public Config setRackWeight(double rackWeight) {
+            this.rackWeight = rackWeight;
+            return this;
+        }
+
+        /** Sets the shards' index sizes, e.g. as collected by {@link ShardStatsCollector}. */
+        public Config setShardStats(List<ShardStats> shardStats) {
+            shardSizes.clear();
+            for (final ShardStats stats : shardStats) {
+                shardSizes.put(stats.getCollectionName() + "/" + stats.getShardName(), stats.getIndexSizeInBytes());
+            }
+            return this;
+        }
+
+        /** Sets the rack of every node, keyed by node name. */
+        public Config setNodeRacks(Map<String, String> nodeRacks) {
+            this.nodeRacks.clear();
+            this.nodeRacks.putAll(nodeRacks);
+            return this;
+        }
+    }
+
+}
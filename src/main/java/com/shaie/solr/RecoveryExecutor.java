@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.client.solrj.response.CoreAdminResponse;
+import org.apache.solr.common.cloud.CollectionStatePredicate;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.solr.solrj.AddReplicaResponse;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
+
+/**
+ * Executes a {@link RecoveryPlan}. Moves start in plan order and are executed in parallel, bounded by:
+ * <ul>
+ * <li>{@code maxConcurrentMoves}: the maximum number of moves in progress.</li>
+ * <li>{@code maxBytesInFlight}: the maximum total index size of the replicas being recovered, as reported by the
+ * shards' active replicas. This bounds the amount of data that is replicated concurrently over the network. A replica
+ * larger than the budget is recovered alone. A value {@code <= 0} means no budget.</li>
+ * </ul>
+ * For every move, a replica is added on the target node, and the down replica is deleted only after the new replica
+ * becomes ACTIVE.
+ */
+public class RecoveryExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecoveryExecutor.class);
+
+    private static final int DEFAULT_NUM_THREADS = 4;
+
+    private final AsyncCollectionAdminHelper collectionAdminHelper;
+    private final ClusterStateWaiter clusterStateWaiter;
+    private final CloudSolrClient solrClient;
+    private final int maxConcurrentMoves;
+    private final long maxBytesInFlight;
+    private final long activeTimeoutSeconds;
+    private final ExecutorService executor;
+
+    private final Queue<PendingMove> pendingMoves = new ArrayDeque<>();
+    private int numMovesInFlight = 0;
+    private long bytesInFlight = 0;
+
+    public RecoveryExecutor(CloudSolrClient solrClient, AsyncCollectionAdminHelper collectionAdminHelper,
+            int maxConcurrentMoves, long maxBytesInFlight, long activeTimeoutSeconds) {
+        this.solrClient = solrClient;
+        this.collectionAdminHelper = collectionAdminHelper;
+        this.clusterStateWaiter = new ClusterStateWaiter(solrClient.getZkStateReader());
+        this.maxConcurrentMoves = maxConcurrentMoves;
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.activeTimeoutSeconds = activeTimeoutSeconds;
+        this.executor = Executors.newFixedThreadPool(DEFAULT_NUM_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("recovery-executor-%d").setDaemon(true).build());
+    }
+
+    /** Executes all the moves of the plan. The returned future completes when all moves completed or failed. */
+    public CompletableFuture<Result> execute(final RecoveryPlan plan) {
+        final List<CompletableFuture<Void>> moveFutures = Lists.newArrayList();
+        final Map<RecoveryPlan.Move, Throwable> failures = Collections.synchronizedMap(
+                Maps.<RecoveryPlan.Move, Throwable> newLinkedHashMap());
+        final List<RecoveryPlan.Move> completed = Collections.synchronizedList(
+                Lists.<RecoveryPlan.Move> newArrayList());
+        // Moves are queued in plan order, and the index size of every shard is fetched once
+        final Map<String, CompletableFuture<Long>> shardSizes = Maps.newHashMap();
+        final List<PendingMove> movesToSchedule = Lists.newArrayList();
+        for (final RecoveryPlan.Move move : plan.getMoves()) {
+            final String shardKey = move.getCollectionName() + "/" + move.getShardName();
+            CompletableFuture<Long> shardSize = shardSizes.get(shardKey);
+            if (shardSize == null) {
+                shardSize = getIndexSizeInBytesAsync(move);
+                shardSizes.put(shardKey, shardSize);
+            }
+            final PendingMove pendingMove = new PendingMove(move, shardSize);
+            movesToSchedule.add(pendingMove);
+            moveFutures.add(pendingMove.future.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable error) {
+                    if (error != null) {
+                        LOGGER.warn("Failed to recover {}", move, error);
+                        failures.put(move, error);
+                    } else {
+                        LOGGER.info("Recovered {}", move);
+                        completed.add(move);
+                    }
+                }
+            }));
+        }
+        synchronized (this) {
+            pendingMoves.addAll(movesToSchedule);
+        }
+        for (final CompletableFuture<Long> shardSize : shardSizes.values()) {
+            shardSize.whenComplete(new BiConsumer<Long, Throwable>() {
+                @Override
+                public void accept(Long sizeInBytes, Throwable error) {
+                    dispatch();
+                }
+            });
+        }
+        dispatch();
+        return CompletableFuture.allOf(moveFutures.toArray(new CompletableFuture<?>[0])).handle(
+                new BiFunction<Void, Throwable, Result>() {
+                    @Override
+                    public Result apply(Void result, Throwable error) {
+                        return new Result(completed, failures, plan.getUnplacedReplicas());
+                    }
+                });
+    }
+
+    /** Returns the number of moves in progress. */
+    public synchronized int getNumMovesInFlight() {
+        return numMovesInFlight;
+    }
+
+    /** Returns the total index size of the replicas being recovered. */
+    public synchronized long getBytesInFlight() {
+        return bytesInFlight;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /** Starts pending moves as long as the concurrency and bandwidth budgets allow. */
+    private void dispatch() {
+        while (true) {
+            final PendingMove pendingMove;
+            synchronized (this) {
+                pendingMove = pendingMoves.peek();
+                // The head of the queue waits for its shard's size, so that moves start in plan order
+                if (pendingMove == null || numMovesInFlight >= maxConcurrentMoves || !pendingMove.shardSize.isDone()) {
+                    return;
+                }
+                pendingMove.bytes = Math.min(pendingMove.getShardSize(), Math.max(maxBytesInFlight, 0));
+                if (bytesInFlight > 0 && bytesInFlight + pendingMove.bytes > maxBytesInFlight) {
+                    return;
+                }
+                pendingMoves.poll();
+                ++numMovesInFlight;
+                bytesInFlight += pendingMove.bytes;
+            }
+            start(pendingMove);
+        }
+    }
+
+    private void start(final PendingMove pendingMove) {
+        final RecoveryPlan.Move move = pendingMove.move;
+        LOGGER.info("Recovering {} ({} bytes)", move, pendingMove.bytes);
+        collectionAdminHelper.addReplica(move.getCollectionName(), move.getShardName(), move.getTargetNode())
+                .thenCompose(new Function<AddReplicaResponse, CompletableFuture<DocCollection>>() {
+                    @Override
+                    public CompletableFuture<DocCollection> apply(AddReplicaResponse response) {
+                        return waitForActiveReplica(move);
+                    }
+                }).thenCompose(new Function<DocCollection, CompletableFuture<Void>>() {
+                    @Override
+                    public CompletableFuture<Void> apply(DocCollection collectionState) {
+                        // The new replica finished recovering, so let other moves use the bandwidth budget
+                        releaseBytes(pendingMove);
+                        final ReplicaInfo replicaInfo = move.getReplica();
+                        return collectionAdminHelper.deleteReplica(replicaInfo.getCollectionName(),
+                                replicaInfo.getShardName(), replicaInfo.getReplica().getName());
+                    }
+                }).whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(Void result, Throwable error) {
+                        onMoveDone(pendingMove);
+                        if (error != null) {
+                            pendingMove.future.completeExceptionally(error);
+                        } else {
+                            pendingMove.future.complete(null);
+                        }
+                    }
+                });
+    }
+
+    /** Waits for an active replica of the move's shard on the target node. */
+    private CompletableFuture<DocCollection> waitForActiveReplica(final RecoveryPlan.Move move) {
+        return clusterStateWaiter.waitForCollectionState(move.getCollectionName(), new CollectionStatePredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes, DocCollection collectionState) {
+                if (collectionState == null || !liveNodes.contains(move.getTargetNode())) {
+                    return false;
+                }
+                final Slice slice = collectionState.getSlice(move.getShardName());
+                if (slice == null) {
+                    return false;
+                }
+                for (final Replica replica : slice.getReplicas()) {
+                    if (replica.getNodeName().equals(move.getTargetNode())
+                            && replica.getState() == Replica.State.ACTIVE) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, activeTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void releaseBytes(PendingMove pendingMove) {
+        synchronized (this) {
+            if (pendingMove.bytesReleased) {
+                return;
+            }
+            pendingMove.bytesReleased = true;
+            bytesInFlight -= pendingMove.bytes;
+        }
+        dispatch();
+    }
+
+    private void onMoveDone(PendingMove pendingMove) {
+        synchronized (this) {
+            --numMovesInFlight;
+            if (!pendingMove.bytesReleased) {
+                pendingMove.bytesReleased = true;
+                bytesInFlight -= pendingMove.bytes;
+            }
+        }
+        dispatch();
+    }
+
+    /** Fetches the index size of the move's shard, unless there is no bandwidth budget. */
+    private CompletableFuture<Long> getIndexSizeInBytesAsync(final RecoveryPlan.Move move) {
+        if (maxBytesInFlight <= 0) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        return CompletableFuture.supplyAsync(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return getIndexSizeInBytes(move);
+            }
+        }, executor);
+    }
+
+    /**
+     * Returns the index size of the move's shard, as reported by its leader, or any other active replica. Returns 0 if
+     * the size could not be determined.
+     */
+    private long getIndexSizeInBytes(RecoveryPlan.Move move) {
+        final DocCollection collection = solrClient.getZkStateReader().getClusterState()
+                .getCollectionOrNull(move.getCollectionName());
+        if (collection == null || collection.getSlice(move.getShardName()) == null) {
+            return 0;
+        }
+        final Slice slice = collection.getSlice(move.getShardName());
+        final Set<String> liveNodes = solrClient.getZkStateReader().getClusterState().getLiveNodes();
+        final List<Replica> candidates = Lists.newArrayList();
+        if (slice.getLeader() != null) {
+            candidates.add(slice.getLeader());
+        }
+        candidates.addAll(slice.getReplicas());
+        for (final Replica replica : candidates) {
+            if (!liveNodes.contains(replica.getNodeName()) || replica.getState() != Replica.State.ACTIVE) {
+                continue;
+            }
+            try (HttpSolrClient client = new HttpSolrClient.Builder(replica.getBaseUrl()).build()) {
+                final CoreAdminResponse response = CoreAdminRequest.getStatus(replica.getCoreName(), client);
+                final NamedList<Object> coreStatus = response.getCoreStatus(replica.getCoreName());
+                final Object sizeInBytes = coreStatus == null ? null : coreStatus.findRecursive("index",
+                        "sizeInBytes");
+                if (sizeInBytes instanceof Number) {
+                    return ((Number) sizeInBytes).longValue();
+                }
+            } catch (IOException | SolrServerException | RuntimeException e) {
+                LOGGER.warn("Failed to obtain index size from replica [{}]", replica.getName(), e);
+            }
+        }
+        return 0;
+    }
+
+    /** A move which waits for its turn to start. */
+    private static final class PendingMove {
+
+        private final RecoveryPlan.Move move;
+        private final CompletableFuture<Long> shardSize;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private long bytes = 0;
+        private boolean bytesReleased = false;
+
+        PendingMove(RecoveryPlan.Move move, CompletableFuture<Long> shardSize) {
+            this.move = move;
+            this.shardSize = shardSize;
+        }
+
+        /** Returns the fetched index size of the shard, or 0 if it could not be fetched. */
+        long getShardSize() {
+            return shardSize.isCompletedExceptionally() ? 0 : shardSize.join();
+        }
+    }
+
+    /** The result of executing a {@link RecoveryPlan}. */
+    public static final class Result {
+
+        private final List<RecoveryPlan.Move> completedMoves;
+        private final Map<RecoveryPlan.Move, Throwable> failedMoves;
+        private final List<ReplicaInfo> unplacedReplicas;
+
+        Result(List<RecoveryPlan.Move> completedMoves, Map<RecoveryPlan.Move, Throwable> failedMoves,
+                List<ReplicaInfo> unplacedReplicas) {
+            synchronized (completedMoves) {
+                this.completedMoves = ImmutableList.copyOf(completedMoves);
+            }
+            synchronized (failedMoves) {
+                this.failedMoves = ImmutableMap.copyOf(failedMoves);
+            }
+            this.unplacedReplicas = unplacedReplicas;
+        }
+
+        /** Returns the moves whose new replica became active and whose down replica was deleted. */
+        public List<RecoveryPlan.Move> getCompletedMoves() {
+            return completedMoves;
+        }
+
+        /** Returns the moves which failed, along with their failure. */
+        public Map<RecoveryPlan.Move, Throwable> getFailedMoves() {
+            return failedMoves;
+        }
+
+        /** Returns the down replicas which the plan could not place on any node. */
+        public List<ReplicaInfo> getUnplacedReplicas() {
+            return unplacedReplicas;
+        }
+
+        /** Returns true if all down replicas were recovered. */
+        public boolean isSuccessful() {
+            return failedMoves.isEmpty() && unplacedReplicas.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Result [completed=" + completedMoves.size() + ", failed=" + failedMoves.size() + ", unplaced="
+                    + unplacedReplicas.size() + "]";
+        }
+    }
+
+}
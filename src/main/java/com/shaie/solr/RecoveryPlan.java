@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A plan for recovering down replicas. Each {@link Move} replaces a down replica by a new replica on a live node. Down
+ * replicas for which no suitable node was found are listed as {@link #getUnplacedReplicas() unplaced}.
+ */
+public final class RecoveryPlan {
+
+    private final List<Move> moves;
+    private final List<ReplicaInfo> unplacedReplicas;
+
+    public RecoveryPlan(List<Move> moves, List<ReplicaInfo> unplacedReplicas) {
+        this.moves = ImmutableList.copyOf(moves);
+        this.unplacedReplicas = ImmutableList.copyOf(unplacedReplicas);
+    }
+
+    /** Returns the moves of this plan, most urgent first. */
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    /** Returns the down replicas which could not be placed on any live node. */
+    public List<ReplicaInfo> getUnplacedReplicas() {
+        return unplacedReplicas;
+    }
+
+    /** Returns true if there is nothing to recover. */
+    public boolean isEmpty() {
+        return moves.isEmpty() && unplacedReplicas.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "RecoveryPlan [moves=" + moves + ", unplacedReplicas=" + unplacedReplicas.size() + "]";
+    }
+
+    /** Replaces a down replica by a new replica of the same shard on the target node. */
+    public static final class Move {
+
+        private final ReplicaInfo replica;
+        private final String targetNode;
+
+        public Move(ReplicaInfo replica, String targetNode) {
+            this.replica = replica;
+            this.targetNode = targetNode;
+        }
+
+        /** Returns the down replica which is replaced. */
+        public ReplicaInfo getReplica() {
+            return replica;
+        }
+
+        /** Returns the node on which the new replica is added. */
+        public String getTargetNode() {
+            return targetNode;
+        }
+
+        public String getCollectionName() {
+            return replica.getCollectionName();
+        }
+
+        public String getShardName() {
+            return replica.getShardName();
+        }
+
+        @Override
+        public String toString() {
+            return replica.getCollectionName() + "/" + replica.getShardName() + "/" + replica.getReplica().getName()
+                    + " -> " + targetNode;
+        }
+    }
+
+}
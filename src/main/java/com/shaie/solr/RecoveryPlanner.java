@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.solr.common.cloud.Replica;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Computes a {@link RecoveryPlan} for all down replicas in a {@link ClusterTopology}. Each down replica is assigned to
+ * the least loaded live node which does not already hold a replica of the same shard, where a node's load is its number
+ * of replicas plus the replicas already assigned to it by the plan. Nodes with down replicas are never chosen as
+ * targets.
+ *
+ * <p>
+ * Moves are ordered such that shards with the fewest active replicas are recovered first. Subclasses can choose the
+ * target nodes differently by overriding {@link #newPlacement(ClusterTopology, Set)}.
+ * </p>
+ *
+ * @see PlacementEngine
+ */
+public class RecoveryPlanner {
+
+    /**
+     * Chooses the target nodes of a single plan's down replicas. A placement is created per plan, and is notified of
+     * every replica placed, so that it can account for the replicas already assigned to each node.
+     */
+    protected abstract static class Placement {
+
+        /**
+         * Returns the node to place the replica on, or {@code null} if there is none. The excluded nodes hold, or are
+         * planned to hold, a replica of the same shard, and must not be chosen.
+         */
+        protected abstract String selectNode(ReplicaInfo replicaInfo, Set<String> excludedNodes);
+
+        /** Records that the replica was placed on the given node. */
+        protected abstract void place(ReplicaInfo replicaInfo, String nodeName);
+
+        /**
+         * Orders the replicas of shards which have the same number of active replicas, before they are ordered by
+         * their shard names. By default, such replicas are ordered by their shard names only.
+         */
+        protected int compare(ReplicaInfo r1, ReplicaInfo r2) {
+            return 0;
+        }
+    }
+
+    /** Computes a recovery plan for the given topology. */
+    public RecoveryPlan plan(ClusterTopology topology) {
+        final Map<String, List<ReplicaInfo>> downNodes = topology.getDownReplicas();
+        final Set<String> liveNodes = topology.getLiveNodes();
+
+        final Set<String> candidateNodes = new TreeSet<>();
+        for (final String nodeName : liveNodes) {
+            if (!downNodes.containsKey(nodeName)) {
+                candidateNodes.add(nodeName);
+            }
+        }
+        final Placement placement = newPlacement(topology, candidateNodes);
+
+        final List<ReplicaInfo> downReplicas = Lists.newArrayList();
+        for (final List<ReplicaInfo> nodeReplicas : downNodes.values()) {
+            for (final ReplicaInfo replicaInfo : nodeReplicas) {
+                if (isReplicaDown(replicaInfo.getReplica(), liveNodes)) {
+                    downReplicas.add(replicaInfo);
+                }
+            }
+        }
+        final Map<String, Integer> shardActiveCounts = getShardActiveCounts(topology, downReplicas);
+        Collections.sort(downReplicas, new Comparator<ReplicaInfo>() {
+            @Override
+            public int compare(ReplicaInfo r1, ReplicaInfo r2) {
+                int cmp = Integer.compare(shardActiveCounts.get(shardKey(r1)), shardActiveCounts.get(shardKey(r2)));
+                if (cmp != 0) {
+                    return cmp;
+                }
+                cmp = placement.compare(r1, r2);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                return shardKey(r1).compareTo(shardKey(r2));
+            }
+        });
+
+        final Map<String, Set<String>> shardNodes = Maps.newHashMap();
+        final List<RecoveryPlan.Move> moves = Lists.newArrayList();
+        final List<ReplicaInfo> unplaced = Lists.newArrayList();
+        for (final ReplicaInfo replicaInfo : downReplicas) {
+            final Set<String> excludedNodes = getShardNodes(topology, replicaInfo, shardNodes);
+            final String targetNode = placement.selectNode(replicaInfo, Collections.unmodifiableSet(excludedNodes));
+            if (targetNode == null) {
+                unplaced.add(replicaInfo);
+                continue;
+            }
+            moves.add(new RecoveryPlan.Move(replicaInfo, targetNode));
+            excludedNodes.add(targetNode);
+            placement.place(replicaInfo, targetNode);
+        }
+        return new RecoveryPlan(moves, unplaced);
+    }
+
+    /**
+     * Creates the placement of a single plan, which chooses among the given candidate nodes: the live nodes without down
+     * replicas, sorted by name. By default, every replica is placed on the least loaded node, where a node's load is its
+     * number of replicas.
+     */
+    protected Placement newPlacement(ClusterTopology topology, Set<String> candidateNodes) {
+        final Map<String, Integer> nodeLoads = Maps.newTreeMap();
+        for (final String nodeName : candidateNodes) {
+            nodeLoads.put(nodeName, topology.getNumNodeReplicas(nodeName));
+        }
+        return new Placement() {
+            @Override
+            protected String selectNode(ReplicaInfo replicaInfo, Set<String> excludedNodes) {
+                String selected = null;
+                int minLoad = Integer.MAX_VALUE;
+                for (final Map.Entry<String, Integer> entry : nodeLoads.entrySet()) {
+                    if (entry.getValue() < minLoad && !excludedNodes.contains(entry.getKey())) {
+                        selected = entry.getKey();
+                        minLoad = entry.getValue();
+                    }
+                }
+                return selected;
+            }
+
+            @Override
+            protected void place(ReplicaInfo replicaInfo, String nodeName) {
+                nodeLoads.put(nodeName, nodeLoads.get(nodeName) + 1);
+            }
+        };
+    }
+
+    /** Returns the (mutable) set of nodes which hold, or are planned to hold, a replica of the replica's shard. */
+    private static Set<String> getShardNodes(ClusterTopology topology, ReplicaInfo replicaInfo,
+            Map<String, Set<String>> shardNodes) {
+        final String key = shardKey(replicaInfo);
+        Set<String> nodes = shardNodes.get(key);
+        if (nodes == null) {
+            nodes = Sets.newHashSet();
+            for (final ReplicaInfo shardReplica : getShardReplicas(topology, replicaInfo)) {
+                nodes.add(shardReplica.getReplica().getNodeName());
+            }
+            shardNodes.put(key, nodes);
+        }
+        return nodes;
+    }
+
+    private static Map<String, Integer> getShardActiveCounts(ClusterTopology topology,
+            List<ReplicaInfo> downReplicas) {
+        final Set<String> liveNodes = topology.getLiveNodes();
+        final Map<String, Integer> counts = Maps.newHashMap();
+        for (final ReplicaInfo replicaInfo : downReplicas) {
+            final String key = shardKey(replicaInfo);
+            if (counts.containsKey(key)) {
+                continue;
+            }
+            int numActive = 0;
+            for (final ReplicaInfo shardReplica : getShardReplicas(topology, replicaInfo)) {
+                final Replica replica = shardReplica.getReplica();
+                if (liveNodes.contains(replica.getNodeName()) && replica.getState() == Replica.State.ACTIVE) {
+                    ++numActive;
+                }
+            }
+            counts.put(key, numActive);
+        }
+        return counts;
+    }
+
+    private static List<ReplicaInfo> getShardReplicas(ClusterTopology topology, ReplicaInfo replicaInfo) {
+        final List<ReplicaInfo> shardReplicas = topology.getShardReplicas(replicaInfo.getCollectionName())
+                .get(replicaInfo.getShardName());
+        return shardReplicas == null ? Collections.<ReplicaInfo> emptyList() : shardReplicas;
+    }
+
+    private static boolean isReplicaDown(Replica replica, Set<String> liveNodes) {
+        return !liveNodes.contains(replica.getNodeName()) || replica.getState() == Replica.State.DOWN;
+    }
+
+    private static String shardKey(ReplicaInfo replicaInfo) {
+        return replicaInfo.getCollectionName() + "/" + replicaInfo.getShardName();
+    }
+
+}
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.GenericSolrRequest;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Verifies that the replicas of a collection hold the same content. Unlike {@link ReplicasSyncVerifier}, which only
+ * checks that the replicas are active, this verifier queries every replica's core directly (with
+ * {@code distrib=false}) for its number of documents, index version and commit generation, and optionally its index
+ * fingerprint, and compares every replica to its shard's leader.
+ *
+ * <p>
+ * All replicas are queried in parallel, and the verification is bounded by a time budget: replicas which do not
+ * respond in time are reported as failed, rather than delaying the whole verification. The statistics are read from the
+ * replica's current searcher, so this is much cheaper than counting the documents with a query.
+ * </p>
+ */
+public class ReplicaConsistencyVerifier implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaConsistencyVerifier.class);
+
+    private static final String SEGMENTS_FILE_PREFIX = "segments_";
+
+    private final CloudSolrClient solrClient;
+    private final boolean fingerprints;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a verifier which queries up to {@code numThreads} replicas concurrently. If {@code fingerprints} is true,
+     * the replicas' index fingerprints (a hash of all document versions) are compared too, which is more accurate than
+     * comparing the number of documents, but requires reading the {@code _version_} field of all documents.
+     */
+    public ReplicaConsistencyVerifier(CloudSolrClient solrClient, int numThreads, boolean fingerprints) {
+        this.solrClient = solrClient;
+        this.fingerprints = fingerprints;
+        this.executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat("replica-verifier-%d").setDaemon(true).build());
+    }
+
+    /** Verifies the replicas of the collection, waiting for their statuses for at most the given time budget. */
+    public Report verify(String collection, long timeout, TimeUnit unit) {
+        final DocCollection collectionState = solrClient.getZkStateReader().getClusterState()
+                .getCollectionOrNull(collection);
+        if (collectionState == null) {
+            throw new IllegalArgumentException("Collection [" + collection + "] does not exist");
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final int timeoutMillis = (int) Math.max(1, unit.toMillis(timeout));
+        final Map<String, HttpSolrClient> clients = Maps.newHashMap();
+        final Map<Replica, Future<ReplicaStatus>> futures = Maps.newLinkedHashMap();
+        final Map<Replica, Slice> replicaSlices = Maps.newHashMap();
+        try {
+            for (final Slice slice : collectionState.getActiveSlices()) {
+                for (final Replica replica : slice.getReplicas()) {
+                    HttpSolrClient client = clients.get(replica.getBaseUrl());
+                    if (client == null) {
+                        client = new HttpSolrClient.Builder(replica.getBaseUrl())
+                                .withConnectionTimeout(timeoutMillis)
+                                .withSocketTimeout(timeoutMillis)
+                                .build();
+                        clients.put(replica.getBaseUrl(), client);
+                    }
+                    futures.put(replica, executor.submit(newStatusTask(client, collection, slice, replica)));
+                    replicaSlices.put(replica, slice);
+                }
+            }
+
+            final List<ReplicaStatus> statuses = Lists.newArrayList();
+            for (final Map.Entry<Replica, Future<ReplicaStatus>> entry : futures.entrySet()) {
+                final Replica replica = entry.getKey();
+                final Slice slice = replicaSlices.get(replica);
+                final boolean leader = isLeader(slice, replica);
+                try {
+                    statuses.add(entry.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS));
+                } catch (final TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    statuses.add(ReplicaStatus.failed(collection, slice.getName(), replica, leader,
+                            "no response within " + timeout + " " + unit));
+                } catch (final ExecutionException e) {
+                    LOGGER.warn("Failed to obtain the status of replica [{}]", replica.getName(), e.getCause());
+                    statuses.add(ReplicaStatus.failed(collection, slice.getName(), replica, leader,
+                            String.valueOf(e.getCause())));
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            return new Report(collection, statuses);
+        } finally {
+            for (final HttpSolrClient client : clients.values()) {
+                try {
+                    client.close();
+                } catch (final IOException e) {
+                    LOGGER.warn("Failed to close client of [{}]", client.getBaseURL(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private Callable<ReplicaStatus> newStatusTask(final HttpSolrClient client, final String collection,
+            final Slice slice, final Replica replica) {
+        return new Callable<ReplicaStatus>() {
+            @Override
+            public ReplicaStatus call() throws IOException, SolrServerException {
+                final NamedList<Object> index = getIndexInfo(client, replica.getCoreName());
+                final Map<String, Object> fingerprint = fingerprints
+                        ? getFingerprint(client, replica.getCoreName()) : null;
+                return new ReplicaStatus(collection, slice.getName(), replica.getName(), replica.getNodeName(),
+                        replica.getType(), isLeader(slice, replica), toLong(index.get("numDocs")),
+                        toLong(index.get("maxDoc")), toLong(index.get("version")),
+                        parseGeneration((String) index.get("segmentsFile")), fingerprint, null);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NamedList<Object> getIndexInfo(HttpSolrClient client, String coreName)
+            throws IOException, SolrServerException {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("show", "index");
+        params.set("numTerms", 0);
+        params.set(CommonParams.DISTRIB, false);
+        final NamedList<Object> response = client.request(
+                new GenericSolrRequest(SolrRequest.METHOD.GET, "/admin/luke", params), coreName);
+        return (NamedList<Object>) response.get("index");
+    }
+
+    private static Map<String, Object> getFingerprint(HttpSolrClient client, String coreName)
+            throws IOException, SolrServerException {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("getFingerprint", String.valueOf(Long.MAX_VALUE));
+        params.set(CommonParams.DISTRIB, false);
+        final NamedList<Object> response = client.request(
+                new GenericSolrRequest(SolrRequest.METHOD.GET, "/get", params), coreName);
+        return toMap(response.get("fingerprint"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(Object value) {
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        if (value instanceof NamedList) {
+            return ((NamedList<Object>) value).asShallowMap();
+        }
+        return null;
+    }
+
+    private static boolean isLeader(Slice slice, Replica replica) {
+        final Replica leader = slice.getLeader();
+        return leader != null && leader.getName().equals(replica.getName());
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+
+    /** Parses the generation of a commit from its segments file name, e.g. {@code segments_a}. */
+    static long parseGeneration(String segmentsFile) {
+        if (segmentsFile == null || !segmentsFile.startsWith(SEGMENTS_FILE_PREFIX)) {
+            return -1;
+        }
+        return Long.parseLong(segmentsFile.substring(SEGMENTS_FILE_PREFIX.length()), Character.MAX_RADIX);
+    }
+
+    /** The status of a single replica, as reported by its core. */
+    public static final class ReplicaStatus {
+
+        private final String collection;
+        private final String shard;
+        private final String replica;
+        private final String node;
+        private final Replica.Type type;
+        private final boolean leader;
+        private final long numDocs;
+        private final long maxDoc;
+        private final long indexVersion;
+        private final long generation;
+        private final Map<String, Object> fingerprint;
+        private final String error;
+
+        ReplicaStatus(String collection, String shard, String replica, String node, Replica.Type type,
+                boolean leader, long numDocs, long maxDoc, long indexVersion, long generation,
+                Map<String, Object> fingerprint, String error) {
+            this.collection = collection;
+            this.shard = shard;
+            this.replica = replica;
+            this.node = node;
+            this.type = type;
+            this.leader = leader;
+            this.numDocs = numDocs;
+            this.maxDoc = maxDoc;
+            this.indexVersion = indexVersion;
+            this.generation = generation;
+            this.fingerprint = fingerprint;
+            this.error = error;
+        }
+
+        static ReplicaStatus failed(String collection, String shard, Replica replica, boolean leader, String error) {
+            return new ReplicaStatus(collection, shard, replica.getName(), replica.getNodeName(), replica.getType(),
+                    leader, -1, -1, -1, -1, null, error);
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public String getShard() {
+            return shard;
+        }
+
+        public String getReplica() {
+            return replica;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public Replica.Type getType() {
+            return type;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public long getNumDocs() {
+            return numDocs;
+        }
+
+        public long getMaxDoc() {
+            return maxDoc;
+        }
+
+        public long getIndexVersion() {
+            return indexVersion;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        /** Returns the replica's index fingerprint, or {@code null} if fingerprints were not requested. */
+        public Map<String, Object> getFingerprint() {
+            return fingerprint;
+        }
+
+        /** Returns the reason the status could not be obtained, or {@code null} if it was. */
+        public String getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         * Returns whether this replica's content differs from the leader's. The number of documents and the
+         * fingerprints are compared for all replicas. Replicas which copy the leader's index files (TLOG and PULL) must
+         * also have the leader's index version and generation, while NRT replicas index the documents independently,
+         * and so their commits are not expected to match the leader's.
+         */
+        public boolean divergesFrom(ReplicaStatus leaderStatus) {
+            if (numDocs != leaderStatus.numDocs) {
+                return true;
+            }
+            if (fingerprint != null && leaderStatus.fingerprint != null && !sameFingerprint(leaderStatus)) {
+                return true;
+            }
+            if (type != Replica.Type.NRT) {
+                return indexVersion != leaderStatus.indexVersion || generation != leaderStatus.generation;
+            }
+            return false;
+        }
+
+        private boolean sameFingerprint(ReplicaStatus other) {
+            return Objects.equals(fingerprint.get("maxVersionEncountered"),
+                    other.fingerprint.get("maxVersionEncountered"))
+                    && Objects.equals(fingerprint.get("versionsHash"), other.fingerprint.get("versionsHash"))
+                    && Objects.equals(fingerprint.get("numVersions"), other.fingerprint.get("numVersions"));
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(collection).append('/').append(shard).append('/').append(replica).append(" [node=").append(node)
+                    .append(", type=").append(type).append(leader ? ", leader" : "");
+            if (error != null) {
+                sb.append(", error=").append(error);
+            } else {
+                sb.append(", numDocs=").append(numDocs).append(", maxDoc=").append(maxDoc).append(", version=")
+                        .append(indexVersion).append(", generation=").append(generation);
+                if (fingerprint != null) {
+                    sb.append(", versionsHash=").append(fingerprint.get("versionsHash"));
+                }
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    /** The result of verifying a collection's replicas. */
+    public static final class Report {
+
+        private final String collection;
+        private final List<ReplicaStatus> replicas;
+        private final List<ReplicaStatus> divergentReplicas;
+        private final List<ReplicaStatus> failedReplicas;
+
+        Report(String collection, List<ReplicaStatus> replicas) {
+            this.collection = collection;
+            this.replicas = ImmutableList.copyOf(replicas);
+
+            final Map<String, ReplicaStatus> leaders = Maps.newHashMap();
+            for (final ReplicaStatus status : replicas) {
+                if (status.isLeader()) {
+                    leaders.put(status.getShard(), status);
+                }
+            }
+            final List<ReplicaStatus> divergent = Lists.newArrayList();
+            final List<ReplicaStatus> failed = Lists.newArrayList();
+            for (final ReplicaStatus status : replicas) {
+                if (status.isFailed()) {
+                    failed.add(status);
+                    continue;
+                }
+                final ReplicaStatus leader = leaders.get(status.getShard());
+                if (leader != null && leader != status && !leader.isFailed() && status.divergesFrom(leader)) {
+                    divergent.add(status);
+                }
+            }
+            this.divergentReplicas = Collections.unmodifiableList(divergent);
+            this.failedReplicas = Collections.unmodifiableList(failed);
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public List<ReplicaStatus> getReplicas() {
+            return replicas;
+        }
+
+        /** Returns the replicas whose content differs from their shard leader's. */
+        public List<ReplicaStatus> getDivergentReplicas() {
+            return divergentReplicas;
+        }
+
+        /** Returns the replicas whose status could not be obtained within the time budget. */
+        public List<ReplicaStatus> getFailedReplicas() {
+            return failedReplicas;
+        }
+
+        /** Returns true if all replicas responded and none differs from its leader. */
+        public boolean isConsistent() {
+            return divergentReplicas.isEmpty() && failedReplicas.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Report [collection=" + collection + ", replicas=" + replicas.size() + ", divergent="
+                    + divergentReplicas + ", failed=" + failedReplicas + "]";
+        }
+    }
+
+}
@@ -18,7 +18,10 @@ package com.shaie.solr;
 
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 
-/** Verifies that all of a collection's replicas are in sync. */
+/**
+ * Verifies that all of a collection's replicas are in sync. To verify that the replicas' contents match, use
+ * {@link ReplicaConsistencyVerifier}.
+ */
 public class ReplicasSyncVerifier {
 
     private final CloudSolrClient solrClient;
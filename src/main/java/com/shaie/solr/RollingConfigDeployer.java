@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkConfigManager;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.utils.Waiter;
+
+/**
+ * Deploys a new version of a config set, and reloads the collections which use it replica by replica instead of all at
+ * once, so that only a few cores serve queries with cold caches at any time. The replicas of a collection are reloaded
+ * in waves of {@link Config#setMaxParallelReloads(int) maxParallelReloads} replicas, taken round-robin across shards
+ * (with every shard's leader last), so that a wave reloads as few replicas of the same shard as possible. Before every
+ * wave, the deployer waits for all replicas of the collection to be active, as reported by
+ * {@link CollectionsStateHelper}.
+ *
+ * <p>
+ * Every reloaded replica is probed with a few queries sent directly to its core. If a replica fails to reload, the
+ * collection doesn't become healthy, or the probes' error rate or mean latency exceed the configured thresholds, the
+ * previous version of the config set is uploaded again and all replicas that were already reloaded are reloaded with
+ * it. Note that files which were added by the new version are not deleted on rollback, like
+ * {@link ConfigSetUploader}.
+ * </p>
+ */
+public class RollingConfigDeployer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollingConfigDeployer.class);
+
+    /** The outcome of a deployment. */
+    public static enum Status {
+        DEPLOYED, ROLLED_BACK
+    }
+
+    private final CloudSolrClient solrClient;
+    private final ConfigCollectionsIndex configCollectionsIndex;
+    private final CollectionsStateHelper collectionsStateHelper;
+    private final Config config;
+    private final ExecutorService executor;
+
+    public RollingConfigDeployer(CloudSolrClient solrClient, Config config) {
+        this(solrClient, null, config);
+    }
+
+    /** Creates a deployer which finds the collections of a config set with the given index, if not {@code null}. */
+    public RollingConfigDeployer(CloudSolrClient solrClient, ConfigCollectionsIndex configCollectionsIndex,
+            Config config) {
+        this.solrClient = solrClient;
+        this.configCollectionsIndex = configCollectionsIndex;
+        this.collectionsStateHelper = new CollectionsStateHelper(solrClient.getZkStateReader());
+        this.config = config;
+        this.executor = Executors.newFixedThreadPool(config.maxParallelReloads,
+                new ThreadFactoryBuilder().setNameFormat("config-deployer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Uploads the config set in {@code confDir} under the given name, and reloads all replicas of the collections which
+     * use it. Returns after all replicas were reloaded, or after the deployment was rolled back.
+     */
+    public Report deploy(String configName, Path confDir) {
+        final List<String> collections = getCollections(configName);
+        final ConfigSetUploader uploader = new ConfigSetUploader(solrClient.getZkStateReader().getZkClient());
+        final Path backupDir = backupConfig(configName);
+        try {
+            final ConfigSetUploader.Result upload = uploader.upload(configName, confDir);
+            final List<Replica> reloaded = Lists.newArrayList();
+            for (final String collection : collections) {
+                final String failure = reloadCollection(collection, reloaded);
+                if (failure != null) {
+                    LOGGER.warn("Rolling back config [{}]: {}", configName, failure);
+                    rollback(uploader, configName, backupDir, reloaded);
+                    return new Report(Status.ROLLED_BACK, upload, reloaded, failure);
+                }
+            }
+            LOGGER.info("Deployed config [{}] to collections {}", configName, collections);
+            return new Report(Status.DEPLOYED, upload, reloaded, null);
+        } finally {
+            if (backupDir != null) {
+                try {
+                    IOUtils.rm(backupDir);
+                } catch (final IOException e) {
+                    LOGGER.warn("Failed to delete config backup [{}]", backupDir, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private List<String> getCollections(String configName) {
+        if (configCollectionsIndex != null) {
+            final List<String> collections = Lists.newArrayList(configCollectionsIndex.getCollections(configName));
+            Collections.sort(collections);
+            return collections;
+        }
+        return SolrCloudUtils.getCollectionsCreatedWithConfig(solrClient, configName);
+    }
+
+    /** Downloads the current version of the config set, or returns {@code null} if it doesn't exist. */
+    private Path backupConfig(String configName) {
+        final ZkConfigManager configManager = new ZkConfigManager(solrClient.getZkStateReader().getZkClient());
+        try {
+            if (!configManager.configExists(configName)) {
+                return null;
+            }
+            final Path backupDir = Files.createTempDirectory("config-" + configName + "-");
+            configManager.downloadConfigDir(configName, backupDir);
+            return backupDir;
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reloads the collection's replicas in waves, adding them to {@code reloaded}. Returns the reason the collection
+     * failed to reload, or {@code null} if it was reloaded successfully.
+     */
+    private String reloadCollection(String collection, List<Replica> reloaded) {
+        final DocCollection collectionState = collectionsStateHelper.getClusterState().getCollectionOrNull(collection);
+        if (collectionState == null) {
+            LOGGER.info("Skipping collection [{}] which no longer exists", collection);
+            return null;
+        }
+        for (final List<Replica> wave : Lists.partition(getReloadOrder(collectionState), config.maxParallelReloads)) {
+            if (!waitForHealthy(collection)) {
+                return "collection [" + collection + "] is not fully active";
+            }
+            final String failure = reloadWave(wave, reloaded);
+            if (failure != null) {
+                return failure;
+            }
+        }
+        if (!waitForHealthy(collection)) {
+            return "collection [" + collection + "] is not fully active";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the replicas in the order they should be reloaded: round-robin across shards, so that consecutive
+     * replicas belong to different shards, with every shard's leader last.
+     */
+    static List<Replica> getReloadOrder(DocCollection collectionState) {
+        final List<List<Replica>> sliceReplicas = Lists.newArrayList();
+        int maxReplicas = 0;
+        final List<Slice> slices = Lists.newArrayList(collectionState.getActiveSlices());
+        Collections.sort(slices, new Comparator<Slice>() {
+            @Override
+            public int compare(Slice s1, Slice s2) {
+                return s1.getName().compareTo(s2.getName());
+            }
+        });
+        for (final Slice slice : slices) {
+            final Replica leader = slice.getLeader();
+            final List<Replica> replicas = Lists.newArrayList(slice.getReplicas());
+            Collections.sort(replicas, new Comparator<Replica>() {
+                @Override
+                public int compare(Replica r1, Replica r2) {
+                    final int cmp = Boolean.compare(r1.equals(leader), r2.equals(leader));
+                    return cmp != 0 ? cmp : r1.getName().compareTo(r2.getName());
+                }
+            });
+            sliceReplicas.add(replicas);
+            maxReplicas = Math.max(maxReplicas, replicas.size());
+        }
+        final List<Replica> result = Lists.newArrayList();
+        for (int i = 0; i < maxReplicas; i++) {
+            for (final List<Replica> replicas : sliceReplicas) {
+                if (i < replicas.size()) {
+                    result.add(replicas.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Reloads and probes the replicas in parallel. Returns the reason of the first failure, or {@code null}. */
+    private String reloadWave(List<Replica> wave, List<Replica> reloaded) {
+        final List<Future<ProbeResult>> futures = Lists.newArrayList();
+        for (final Replica replica : wave) {
+            futures.add(executor.submit(newReloadTask(replica, true)));
+        }
+        String failure = null;
+        for (int i = 0; i < wave.size(); i++) {
+            final Replica replica = wave.get(i);
+            try {
+                final ProbeResult probe = futures.get(i).get();
+                reloaded.add(replica);
+                LOGGER.info("Reloaded replica [{}]: {}", replica.getCoreName(), probe);
+                if (failure == null) {
+                    failure = checkProbe(replica, probe);
+                }
+            } catch (final ExecutionException e) {
+                LOGGER.warn("Failed to reload replica [{}]", replica.getCoreName(), e.getCause());
+                // the reload may have been applied even though the request failed
+                reloaded.add(replica);
+                if (failure == null) {
+                    failure = "failed to reload replica [" + replica.getCoreName() + "]: " + e.getCause();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        return failure;
+    }
+
+    private String checkProbe(Replica replica, ProbeResult probe) {
+        if (probe.getErrorRate() > config.maxProbeErrorRate) {
+            return "replica [" + replica.getCoreName() + "] error rate " + probe.getErrorRate() + " exceeds "
+                    + config.maxProbeErrorRate;
+        }
+        if (probe.getMeanLatencyMillis() > config.maxProbeLatencyMillis) {
+            return "replica [" + replica.getCoreName() + "] mean latency " + probe.getMeanLatencyMillis()
+                    + "ms exceeds " + config.maxProbeLatencyMillis + "ms";
+        }
+        return null;
+    }
+
+    /** Uploads the previous config set version, if there was one, and reloads the given replicas with it. */
+    private void rollback(ConfigSetUploader uploader, String configName, Path backupDir, List<Replica> reloaded) {
+        if (backupDir == null) {
+            LOGGER.warn("Config [{}] did not exist before the deployment, and cannot be rolled back", configName);
+            return;
+        }
+        uploader.upload(configName, backupDir);
+        final List<Future<ProbeResult>> futures = Lists.newArrayList();
+        for (final Replica replica : reloaded) {
+            futures.add(executor.submit(newReloadTask(replica, false)));
+        }
+        for (int i = 0; i < reloaded.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (final ExecutionException e) {
+                LOGGER.error("Failed to reload replica [{}] during rollback", reloaded.get(i).getCoreName(),
+                        e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private boolean waitForHealthy(final String collection) {
+        return Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return collectionsStateHelper.isCollectionFullyActive(collection);
+            }
+        }, config.healthTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Returns a task which reloads the replica's core, and then probes it if {@code probe} is true. */
+    private Callable<ProbeResult> newReloadTask(final Replica replica, final boolean probe) {
+        return new Callable<ProbeResult>() {
+            @Override
+            public ProbeResult call() throws Exception {
+                try (HttpSolrClient client = new HttpSolrClient.Builder(replica.getBaseUrl()).build()) {
+                    CoreAdminRequest.reloadCore(replica.getCoreName(), client);
+                    return probe ? probe(client, replica.getCoreName()) : null;
+                }
+            }
+        };
+    }
+
+    private ProbeResult probe(HttpSolrClient client, String coreName) {
+        final ModifiableSolrParams params = new ModifiableSolrParams(config.probeQuery);
+        params.set(CommonParams.DISTRIB, false);
+        int numErrors = 0;
+        long totalLatencyNanos = 0;
+        for (int i = 0; i < config.numProbeQueries; i++) {
+            final long start = System.nanoTime();
+            try {
+                client.query(coreName, params);
+            } catch (final Exception e) {
+                LOGGER.debug("Probe query to [{}] failed", coreName, e);
+                ++numErrors;
+            }
+            totalLatencyNanos += System.nanoTime() - start;
+        }
+        return new ProbeResult(config.numProbeQueries, numErrors, TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos));
+    }
+
+    /** The results of the probe queries sent to a reloaded replica. */
+    private static final class ProbeResult {
+
+        private final int numQueries;
+        private final int numErrors;
+        private final long totalLatencyMillis;
+
+        ProbeResult(int numQueries, int numErrors, long totalLatencyMillis) {
+            this.numQueries = numQueries;
+            this.numErrors = numErrors;
+            this.totalLatencyMillis = totalLatencyMillis;
+        }
+
+        double getErrorRate() {
+            return numQueries == 0 ? 0 : (double) numErrors / numQueries;
+        }
+
+        long getMeanLatencyMillis() {
+            return numQueries == 0 ? 0 : totalLatencyMillis / numQueries;
+        }
+
+        @Override
+        public String toString() {
+            return "ProbeResult [queries=" + numQueries + ", errors=" + numErrors + ", meanLatencyMillis="
+                    + getMeanLatencyMillis() + "]";
+        }
+    }
+
+    /** The deployment settings. */
+    public static final class Config {
+
+        private int maxParallelReloads = 1;
+        private long healthTimeoutSeconds = 60;
+        private int numProbeQueries = 10;
+        private SolrParams probeQuery = new ModifiableSolrParams().set(CommonParams.Q, "*:*").set(CommonParams.ROWS,
+                0);
+        private long maxProbeLatencyMillis = 1000;
+        private double maxProbeErrorRate = 0;
+
+        /** Sets the maximum number of replicas of a collection which are reloaded concurrently. */
+        public Config setMaxParallelReloads(int maxParallelReloads) {
+            this.maxParallelReloads = maxParallelReloads;
+            return this;
+        }
+
+        /** Sets how long to wait for a collection to become fully active before every wave of reloads. */
+        public Config setHealthTimeoutSeconds(long healthTimeoutSeconds) {
+            this.healthTimeoutSeconds = healthTimeoutSeconds;
+            return this;
+        }
+
+        public Config setNumProbeQueries(int numProbeQueries) {
+            this.numProbeQueries = numProbeQueries;
+            return this;
+        }
+
+        /** Sets the query which is sent to every reloaded replica. */
+        public Config setProbeQuery(SolrParams probeQuery) {
+            this.probeQuery = probeQuery;
+            return this;
+        }
+
+        /** Sets the maximum mean latency of the probe queries, above which the deployment is rolled back. */
+        public Config setMaxProbeLatencyMillis(long maxProbeLatencyMillis) {
+            this.maxProbeLatencyMillis = maxProbeLatencyMillis;
+            return this;
+        }
+
+        /** Sets the maximum fraction of failed probe queries, above which the deployment is rolled back. */
+        public Config setMaxProbeErrorRate(double maxProbeErrorRate) {
+            this.maxProbeErrorRate = maxProbeErrorRate;
+            return this;
+        }
+    }
+
+    /** The result of a deployment. */
+    public static final class Report {
+
+        private final Status status;
+        private final ConfigSetUploader.Result upload;
+        private final List<Replica> reloadedReplicas;
+        private final String failure;
+
+        Report(Status status, ConfigSetUploader.Result upload, List<Replica> reloadedReplicas, String failure) {
+            this.status = status;
+            this.upload = upload;
+            this.reloadedReplicas = ImmutableList.copyOf(reloadedReplicas);
+            this.failure = failure;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /** Returns the result of uploading the new config set version. */
+        public ConfigSetUploader.Result getUpload() {
+            return upload;
+        }
+
+        /** Returns the replicas which were reloaded with the new config set version. */
+        public List<Replica> getReloadedReplicas() {
+            return reloadedReplicas;
+        }
+
+        /** Returns the reason the deployment was rolled back, or {@code null} if it was deployed. */
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return "Report [status=" + status + ", upload=" + upload + ", reloaded=" + reloadedReplicas.size()
+                    + (failure == null ? "" : ", failure=" + failure) + "]";
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.solr.common.cloud.CollectionStatePredicate;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Slice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
+
+/**
+ * Splits the shards chosen by a {@link ShardSplitPlanner}. At most {@code maxConcurrentSplits} splits are in progress
+ * at any time. Every split is submitted asynchronously and tracked with {@code REQUESTSTATUS} requests (by
+ * {@link AsyncCollectionAdminHelper}). Once the sub-shards are active and the parent shard became inactive, the parent
+ * shard is deleted.
+ */
+public class ShardSplitExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardSplitExecutor.class);
+
+    private final AsyncCollectionAdminHelper collectionAdminHelper;
+    private final ClusterStateWaiter clusterStateWaiter;
+    private final int maxConcurrentSplits;
+    private final long activeTimeoutSeconds;
+
+    private final Queue<PendingSplit> pendingSplits = new ArrayDeque<>();
+    private int numSplitsInFlight = 0;
+
+    public ShardSplitExecutor(AsyncCollectionAdminHelper collectionAdminHelper, ClusterStateWaiter clusterStateWaiter,
+            int maxConcurrentSplits, long activeTimeoutSeconds) {
+        this.collectionAdminHelper = collectionAdminHelper;
+        this.clusterStateWaiter = clusterStateWaiter;
+        this.maxConcurrentSplits = maxConcurrentSplits;
+        this.activeTimeoutSeconds = activeTimeoutSeconds;
+    }
+
+    /** Splits all the given shards. The returned future completes when all splits completed or failed. */
+    public CompletableFuture<Result> execute(List<ShardStats> shards) {
+        final List<CompletableFuture<Void>> splitFutures = Lists.newArrayList();
+        final Map<ShardStats, Throwable> failures = Collections.synchronizedMap(
+                Maps.<ShardStats, Throwable> newLinkedHashMap());
+        final List<ShardStats> completed = Collections.synchronizedList(Lists.<ShardStats> newArrayList());
+        for (final ShardStats shard : shards) {
+            final PendingSplit pendingSplit = new PendingSplit(shard);
+            synchronized (this) {
+                pendingSplits.add(pendingSplit);
+            }
+            splitFutures.add(pendingSplit.future.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable error) {
+                    if (error != null) {
+                        LOGGER.warn("Failed to split {}", shard, error);
+                        failures.put(shard, error);
+                    } else {
+                        LOGGER.info("Split {}", shard);
+                        completed.add(shard);
+                    }
+                }
+            }));
+        }
+        dispatch();
+        return CompletableFuture.allOf(splitFutures.toArray(new CompletableFuture<?>[0])).handle(
+                new BiFunction<Void, Throwable, Result>() {
+                    @Override
+                    public Result apply(Void result, Throwable error) {
+                        return new Result(completed, failures);
+                    }
+                });
+    }
+
+    /** Returns the number of splits in progress. */
+    public synchronized int getNumSplitsInFlight() {
+        return numSplitsInFlight;
+    }
+
+    /** Starts pending splits as long as there are less than {@link #maxConcurrentSplits} in progress. */
+    private void dispatch() {
+        while (true) {
+            final PendingSplit pendingSplit;
+            synchronized (this) {
+                if (numSplitsInFlight >= maxConcurrentSplits || pendingSplits.isEmpty()) {
+                    return;
+                }
+                pendingSplit = pendingSplits.poll();
+                ++numSplitsInFlight;
+            }
+            start(pendingSplit);
+        }
+    }
+
+    private void start(final PendingSplit pendingSplit) {
+        final String collection = pendingSplit.shard.getCollectionName();
+        final String shard = pendingSplit.shard.getShardName();
+        LOGGER.info("Splitting {}", pendingSplit.shard);
+        collectionAdminHelper.splitShard(collection, shard)
+                .thenCompose(new Function<Void, CompletableFuture<DocCollection>>() {
+                    @Override
+                    public CompletableFuture<DocCollection> apply(Void result) {
+                        return waitForSubShards(collection, shard);
+                    }
+                }).thenCompose(new Function<DocCollection, CompletableFuture<Void>>() {
+                    @Override
+                    public CompletableFuture<Void> apply(DocCollection collectionState) {
+                        LOGGER.info("Deleting parent shard {}/{}", collection, shard);
+                        return collectionAdminHelper.deleteShard(collection, shard);
+                    }
+                }).whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(Void result, Throwable error) {
+                        synchronized (ShardSplitExecutor.this) {
+                            --numSplitsInFlight;
+                        }
+                        dispatch();
+                        if (error != null) {
+                            pendingSplit.future.completeExceptionally(error);
+                        } else {
+                            pendingSplit.future.complete(null);
+                        }
+                    }
+                });
+    }
+
+    /** Waits for the parent shard to become inactive, and all its sub-shards to become active. */
+    private CompletableFuture<DocCollection> waitForSubShards(String collection, final String parentShard) {
+        return clusterStateWaiter.waitForCollectionState(collection, new CollectionStatePredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes, DocCollection collectionState) {
+                if (collectionState == null) {
+                    return false;
+                }
+                final Slice parent = collectionState.getSlice(parentShard);
+                if (parent == null || parent.getState() != Slice.State.INACTIVE) {
+                    return false;
+                }
+                int numSubShards = 0;
+                for (final Slice slice : collectionState.getSlices()) {
+                    if (isSubShard(slice, parentShard)) {
+                        if (slice.getState() != Slice.State.ACTIVE) {
+                            return false;
+                        }
+                        ++numSubShards;
+                    }
+                }
+                return numSubShards > 0;
+            }
+        }, activeTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns whether the slice is a sub-shard of the given parent shard. Once the split completes, the Overseer removes
+     * the {@code parent} property of the sub-shards, so they are also identified by their name, which is the parent
+     * shard name followed by {@code _<n>}.
+     */
+    private static boolean isSubShard(Slice slice, String parentShard) {
+        if (parentShard.equals(slice.getParent())) {
+            return true;
+        }
+        final String name = slice.getName();
+        final String prefix = parentShard + "_";
+        return name.length() > prefix.length() && name.startsWith(prefix)
+                && CharMatcher.digit().matchesAllOf(name.substring(prefix.length()));
+    }
+
+    /** A split which waits for its turn to start. */
+    private static final class PendingSplit {
+
+        private final ShardStats shard;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingSplit(ShardStats shard) {
+            this.shard = shard;
+        }
+    }
+
+    /** The result of splitting shards. */
+    public static final class Result {
+
+        private final List<ShardStats> completedSplits;
+        private final Map<ShardStats, Throwable> failedSplits;
+
+        Result(List<ShardStats> completedSplits, Map<ShardStats, Throwable> failedSplits) {
+            synchronized (completedSplits) {
+                this.completedSplits = ImmutableList.copyOf(completedSplits);
+            }
+            synchronized (failedSplits) {
+                this.failedSplits = ImmutableMap.copyOf(failedSplits);
+            }
+        }
+
+        /** Returns the shards which were split, and whose parent shard was deleted. */
+        public List<ShardStats> getCompletedSplits() {
+            return completedSplits;
+        }
+
+        /** Returns the shards whose split failed, along with their failure. */
+        public Map<ShardStats, Throwable> getFailedSplits() {
+            return failedSplits;
+        }
+
+        public boolean isSuccessful() {
+            return failedSplits.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Result [completed=" + completedSplits.size() + ", failed=" + failedSplits.size() + "]";
+        }
+    }
+
+}
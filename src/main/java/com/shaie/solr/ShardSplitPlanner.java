@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Chooses the shards to split, given their {@link ShardStats}. A shard is split if it exceeds any of the configured
+ * thresholds, and shards which exceed their thresholds the most are split first.
+ */
+public class ShardSplitPlanner {
+
+    private final Config config;
+
+    public ShardSplitPlanner(Config config) {
+        this.config = config;
+    }
+
+    /** Returns the shards to split, ordered by priority, and no more than the configured maximum. */
+    public List<ShardStats> plan(List<ShardStats> shards) {
+        final List<ShardStats> candidates = Lists.newArrayList();
+        for (final ShardStats shard : shards) {
+            if (getLoadFactor(shard) > 1) {
+                candidates.add(shard);
+            }
+        }
+        Collections.sort(candidates, new Comparator<ShardStats>() {
+            @Override
+            public int compare(ShardStats s1, ShardStats s2) {
+                return Double.compare(getLoadFactor(s2), getLoadFactor(s1));
+            }
+        });
+        if (config.maxSplits > 0 && candidates.size() > config.maxSplits) {
+            return Lists.newArrayList(candidates.subList(0, config.maxSplits));
+        }
+        return candidates;
+    }
+
+    /** Returns the largest ratio between any of the shard's statistics and its threshold. */
+    double getLoadFactor(ShardStats shard) {
+        double loadFactor = 0;
+        if (config.maxIndexSizeInBytes > 0) {
+            loadFactor = Math.max(loadFactor, (double) shard.getIndexSizeInBytes() / config.maxIndexSizeInBytes);
+        }
+        if (config.maxNumDocs > 0) {
+            loadFactor = Math.max(loadFactor, (double) shard.getNumDocs() / config.maxNumDocs);
+        }
+        if (config.maxQueriesPerSecond > 0) {
+            loadFactor = Math.max(loadFactor, shard.getQueriesPerSecond() / config.maxQueriesPerSecond);
+        }
+        return loadFactor;
+    }
+
+    /** The split thresholds. A threshold {@code <= 0} is disabled. */
+    public static final class Config {
+
+        private long maxIndexSizeInBytes = 0;
+        private long maxNumDocs = 0;
+        private double maxQueriesPerSecond = 0;
+        private int maxSplits = 0;
+
+        public Config setMaxIndexSizeInBytes(long maxIndexSizeInBytes) {
+            this.maxIndexSizeInBytes = maxIndexSizeInBytes;
+            return this;
+        }
+
+        public Config setMaxNumDocs(long maxNumDocs) {
+            this.maxNumDocs = maxNumDocs;
+            return this;
+        }
+
+        public Config setMaxQueriesPerSecond(double maxQueriesPerSecond) {
+            this.maxQueriesPerSecond = maxQueriesPerSecond;
+            return this;
+        }
+
+        /** Sets the maximum number of shards to split in one plan, or 0 for no limit. */
+        public Config setMaxSplits(int maxSplits) {
+            this.maxSplits = maxSplits;
+            return this;
+        }
+    }
+
+}
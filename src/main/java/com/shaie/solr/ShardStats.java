@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import com.shaie.utils.Utils;
+
+/** Size and load statistics of a shard, as collected by {@link ShardStatsCollector}. */
+public final class ShardStats {
+
+    private final String collectionName;
+    private final String shardName;
+    private final long indexSizeInBytes;
+    private final long numDocs;
+    private final double queriesPerSecond;
+
+    public ShardStats(String collectionName, String shardName, long indexSizeInBytes, long numDocs,
+            double queriesPerSecond) {
+        this.collectionName = collectionName;
+        this.shardName = shardName;
+        this.indexSizeInBytes = indexSizeInBytes;
+        this.numDocs = numDocs;
+        this.queriesPerSecond = queriesPerSecond;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public String getShardName() {
+        return shardName;
+    }
+
+    /** Returns the size of the shard's largest replica index. */
+    public long getIndexSizeInBytes() {
+        return indexSizeInBytes;
+    }
+
+    /** Returns the number of documents of the shard's largest replica. */
+    public long getNumDocs() {
+        return numDocs;
+    }
+
+    /** Returns the shard's query rate, summed over all its replicas. */
+    public double getQueriesPerSecond() {
+        return queriesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return collectionName + "/" + shardName + " [sizeInBytes=" + indexSizeInBytes + ", numDocs=" + numDocs
+                + ", qps=" + Utils.format("%.2f", queriesPerSecond) + "]";
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.GenericSolrRequest;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Collects {@link ShardStats} from the cluster's nodes. Every node is sent a single metrics request for the index size,
+ * number of documents and query rate of all its cores, and the nodes are queried in parallel. The metrics of a shard's
+ * replicas are then aggregated: sizes are taken from the largest replica, while query rates are summed.
+ */
+public class ShardStatsCollector implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardStatsCollector.class);
+
+    private static final String CORE_REGISTRY_PREFIX = "solr.core.";
+    private static final String INDEX_SIZE_METRIC = "INDEX.sizeInBytes";
+    private static final String NUM_DOCS_METRIC = "SEARCHER.searcher.numDocs";
+    private static final String REQUEST_TIMES_METRIC = "QUERY./select.requestTimes";
+    private static final String RATE_KEY = "1minRate";
+
+    private final CloudSolrClient solrClient;
+    private final ExecutorService executor;
+
+    public ShardStatsCollector(CloudSolrClient solrClient, int numThreads) {
+        this.solrClient = solrClient;
+        this.executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat("shard-stats-collector-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Returns the statistics of the active shards of the given collections. Nodes which do not respond within the
+     * timeout are skipped, so the statistics of their replicas are missing.
+     */
+    public List<ShardStats> collect(Collection<String> collections, long timeout, TimeUnit unit) {
+        final ClusterState clusterState = solrClient.getZkStateReader().getClusterState();
+        final Map<String, Accumulator> accumulators = Maps.newLinkedHashMap();
+        final Map<String, String> nodeBaseUrls = Maps.newHashMap();
+        for (final String collection : collections) {
+            final DocCollection collectionState = clusterState.getCollectionOrNull(collection);
+            if (collectionState == null) {
+                continue;
+            }
+            for (final Slice slice : collectionState.getActiveSlices()) {
+                accumulators.put(key(collection, slice.getName()), new Accumulator(collection, slice.getName()));
+                for (final Replica replica : slice.getReplicas()) {
+                    if (clusterState.getLiveNodes().contains(replica.getNodeName())) {
+                        nodeBaseUrls.put(replica.getNodeName(), replica.getBaseUrl());
+                    }
+                }
+            }
+        }
+
+        final List<Callable<NamedList<Object>>> tasks = Lists.newArrayList();
+        for (final String baseUrl : nodeBaseUrls.values()) {
+            tasks.add(new Callable<NamedList<Object>>() {
+                @Override
+                public NamedList<Object> call() throws IOException, SolrServerException {
+                    return getCoreMetrics(baseUrl);
+                }
+            });
+        }
+        final List<Future<NamedList<Object>>> futures;
+        try {
+            futures = executor.invokeAll(tasks, timeout, unit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        for (final Future<NamedList<Object>> future : futures) {
+            try {
+                addMetrics(future.get(), accumulators);
+            } catch (final CancellationException e) {
+                LOGGER.warn("Node did not return its metrics within {} {}", timeout, unit);
+            } catch (final ExecutionException e) {
+                LOGGER.warn("Failed to obtain node metrics", e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        final List<ShardStats> result = Lists.newArrayListWithCapacity(accumulators.size());
+        for (final Accumulator accumulator : accumulators.values()) {
+            result.add(accumulator.toShardStats());
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NamedList<Object> getCoreMetrics(String baseUrl) throws IOException, SolrServerException {
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("group", "core");
+        params.add("prefix", INDEX_SIZE_METRIC, NUM_DOCS_METRIC, REQUEST_TIMES_METRIC);
+        try (HttpSolrClient client = new HttpSolrClient.Builder(baseUrl).build()) {
+            final NamedList<Object> response = client.request(
+                    new GenericSolrRequest(SolrRequest.METHOD.GET, "/admin/metrics", params));
+            return (NamedList<Object>) response.get("metrics");
+        }
+    }
+
+    /**
+     * Adds the metrics of a node's cores to their shards' accumulators. Core registries are named
+     * {@code solr.core.<collection>.<shard>.<replica>}, and since collection names may contain dots, the registry name
+     * is parsed from its end.
+     */
+    @SuppressWarnings("unchecked")
+    private static void addMetrics(NamedList<Object> metrics, Map<String, Accumulator> accumulators) {
+        if (metrics == null) {
+            return;
+        }
+        for (final Map.Entry<String, Object> registry : metrics) {
+            final String name = registry.getKey();
+            if (!name.startsWith(CORE_REGISTRY_PREFIX)) {
+                continue;
+            }
+            final int replicaDot = name.lastIndexOf('.');
+            final int shardDot = name.lastIndexOf('.', replicaDot - 1);
+            if (shardDot < CORE_REGISTRY_PREFIX.length()) {
+                continue;
+            }
+            final Accumulator accumulator = accumulators.get(key(
+                    name.substring(CORE_REGISTRY_PREFIX.length(), shardDot), name.substring(shardDot + 1, replicaDot)));
+            if (accumulator == null) {
+                continue;
+            }
+            final NamedList<Object> coreMetrics = (NamedList<Object>) registry.getValue();
+            accumulator.add(toNumber(coreMetrics.get(INDEX_SIZE_METRIC)).longValue(),
+                    toNumber(coreMetrics.get(NUM_DOCS_METRIC)).longValue(),
+                    toNumber(getProperty(coreMetrics.get(REQUEST_TIMES_METRIC), RATE_KEY)).doubleValue());
+        }
+    }
+
+    private static String key(String collection, String shard) {
+        return collection + '/' + shard;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getProperty(Object metric, String name) {
+        if (metric instanceof Map) {
+            return ((Map<String, Object>) metric).get(name);
+        }
+        if (metric instanceof NamedList) {
+            return ((NamedList<Object>) metric).get(name);
+        }
+        return null;
+    }
+
+    /** Converts a metric value, which is either a number or, for non-compact gauges, a map with a "value". */
+    private static Number toNumber(Object metric) {
+        if (metric instanceof Number) {
+            return (Number) metric;
+        }
+        final Object value = getProperty(metric, "value");
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    /** Aggregates the metrics of a shard's replicas. */
+    private static final class Accumulator {
+
+        private final String collection;
+        private final String shard;
+        private long indexSizeInBytes = 0;
+        private long numDocs = 0;
+        private double queriesPerSecond = 0;
+
+        Accumulator(String collection, String shard) {
+            this.collection = collection;
+            this.shard = shard;
+        }
+
+        void add(long replicaIndexSize, long replicaNumDocs, double replicaQueriesPerSecond) {
+            indexSizeInBytes = Math.max(indexSizeInBytes, replicaIndexSize);
+            numDocs = Math.max(numDocs, replicaNumDocs);
+            queriesPerSecond += replicaQueriesPerSecond;
+        }
+
+        ShardStats toShardStats() {
+            return new ShardStats(collection, shard, indexSizeInBytes, numDocs, queriesPerSecond);
+        }
+    }
+
+}
@@ -37,8 +37,6 @@ public class SolrCloudUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SolrCloudUtils.class);
 
-    private static final long DEFAULT_POLL_INTERVAL_MS = 500;
-
     public static final String ZK_HOST_PROP_NAME = "zkHost";
 
     private SolrCloudUtils() {
@@ -55,7 +53,10 @@ public class SolrCloudUtils {
         }
     }
 
-    /** Returns the collection names that were created with the given configuration name. */
+    /**
+     * Returns the collection names that were created with the given configuration name. This reads every collection's
+     * config name from ZooKeeper, so frequent lookups should use a {@link ConfigCollectionsIndex} instead.
+     */
     @SuppressWarnings("resource")
     public static List<String> getCollectionsCreatedWithConfig(CloudSolrClient solrClient, String configName) {
         final List<String> result = Lists.newArrayList();
@@ -82,46 +83,35 @@ public class SolrCloudUtils {
     }
 
     /** Waits until all replicas of all slices of the collection are active, or the timeout has expired. */
-    public static boolean waitForAllActive(final String collection, ZkStateReader zkStateReader, long timeoutSeconds) {
-        final CollectionsStateHelper collectionsStateHelper = new CollectionsStateHelper(zkStateReader);
-        return Waiter.waitFor(new Waiter.Condition() {
-            @SuppressWarnings("synthetic-access")
-            @Override
-            public boolean isSatisfied() {
-                final boolean result = collectionsStateHelper.isCollectionFullyActive(collection);
-                if (!result) {
-                    LOGGER.info("Not all replicas of collection [{}] are active:\n"
-                            + "active_replicas=[{}],\n"
-                            + "inactive_replicas=[{}]",
-                            collection, collectionsStateHelper.getActiveReplicas(collection),
-                            collectionsStateHelper.getInactiveReplicas(collection));
-                }
-                return result;
-            }
-        }, timeoutSeconds, TimeUnit.SECONDS, 500, TimeUnit.MILLISECONDS);
+    public static boolean waitForAllActive(String collection, ZkStateReader zkStateReader, long timeoutSeconds) {
+        final ClusterStateWaiter waiter = new ClusterStateWaiter(zkStateReader);
+        final boolean result = Waiter.waitFor(waiter.waitForAllActive(collection, timeoutSeconds, TimeUnit.SECONDS));
+        if (!result) {
+            final CollectionsStateHelper collectionsStateHelper = new CollectionsStateHelper(zkStateReader);
+            LOGGER.info("Not all replicas of collection [{}] became active within {} seconds:\n"
+                    + "active_replicas=[{}],\n"
+                    + "inactive_replicas=[{}]",
+                    collection, timeoutSeconds, collectionsStateHelper.getActiveReplicas(collection),
+                    collectionsStateHelper.getInactiveReplicas(collection));
+        }
+        return result;
     }
 
-    /** Waits until all replicas of the collection are in sync. */
-    public static boolean waitForReplicasToSync(final String collection, CloudSolrClient solrClient,
-            long timeoutSeconds) {
-        final ReplicasSyncVerifier verifier = new ReplicasSyncVerifier(solrClient);
-        return Waiter.waitFor(new Waiter.Condition() {
-            @Override
-            public boolean isSatisfied() {
-                return verifier.verify(collection);
-            }
-        }, timeoutSeconds, TimeUnit.SECONDS, DEFAULT_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    /**
+     * Waits until all replicas of the collection are in sync. Replicas are considered in sync when they are all
+     * active, as defined by {@link ReplicasSyncVerifier}.
+     */
+    public static boolean waitForReplicasToSync(String collection, CloudSolrClient solrClient, long timeoutSeconds) {
+        final ClusterStateWaiter waiter = new ClusterStateWaiter(solrClient.getZkStateReader());
+        return Waiter.waitFor(waiter.waitForAllActive(collection, timeoutSeconds, TimeUnit.SECONDS));
     }
 
     /** Waits for the given node to disappear from the cluster's live nodes. */
-    public static boolean waitForNodeToDisappearFromLiveNodes(final CloudSolrClient solrClient, final String nodeName,
+    public static boolean waitForNodeToDisappearFromLiveNodes(CloudSolrClient solrClient, String nodeName,
             long timeoutSeconds) {
-        return Waiter.waitFor(new Waiter.Condition() {
-            @Override
-            public boolean isSatisfied() {
-                return !solrClient.getZkStateReader().getClusterState().liveNodesContain(nodeName);
-            }
-        }, timeoutSeconds, TimeUnit.SECONDS, DEFAULT_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        final ClusterStateWaiter waiter = new ClusterStateWaiter(solrClient.getZkStateReader());
+        return Waiter.waitFor(
+                waiter.waitForNodeToDisappearFromLiveNodes(nodeName, timeoutSeconds, TimeUnit.SECONDS));
     }
 
     /** Returns a Solr node's base URL to a node name as appears */
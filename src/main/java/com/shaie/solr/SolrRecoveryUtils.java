@@ -19,6 +19,7 @@ package com.shaie.solr;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 
 import com.shaie.solr.solrj.CollectionAdminHelper;
 
@@ -34,6 +35,27 @@ public class SolrRecoveryUtils {
         this.collectionAdminHelper = collectionAdminHelper;
     }
 
+    /**
+     * Plans the recovery of the replicas of all down nodes, spreading them across the live nodes by load, and executes
+     * the plan with the given executor.
+     *
+     * @see RecoveryPlanner
+     * @see RecoveryExecutor
+     */
+    public CompletableFuture<RecoveryExecutor.Result> recoverDownNodes(RecoveryExecutor recoveryExecutor) {
+        return recoverDownNodes(recoveryExecutor, new RecoveryPlanner());
+    }
+
+    /**
+     * Plans the recovery of the replicas of all down nodes with the given planner (e.g. a {@link PlacementEngine}),
+     * and executes the plan with the given executor.
+     */
+    public CompletableFuture<RecoveryExecutor.Result> recoverDownNodes(RecoveryExecutor recoveryExecutor,
+            RecoveryPlanner planner) {
+        final RecoveryPlan plan = planner.plan(collectionsStateHelper.getTopology());
+        return recoveryExecutor.execute(plan);
+    }
+
     /** Finds a DOWN replica and takes over it by adding itself as a replica and deleting the DOWN one. */
     public void takeOverDownNode(String nodeName) {
         final Map<String, List<ReplicaInfo>> downNodes = collectionsStateHelper.getDownReplicas();
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.shaie.utils.Utils;
+
+/** Summarizes the faults injected by a {@link ChaosScheduler} and the cluster's recovery times. */
+public class ChaosReport {
+
+    private final List<FaultEvent> events;
+
+    public ChaosReport(List<FaultEvent> events) {
+        this.events = ImmutableList.copyOf(events);
+    }
+
+    public List<FaultEvent> getEvents() {
+        return events;
+    }
+
+    /** Returns the events of the given fault type. */
+    public List<FaultEvent> getEvents(FaultType type) {
+        final List<FaultEvent> result = Lists.newArrayList();
+        for (final FaultEvent event : events) {
+            if (event.getType() == type) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /** Prints every event, followed by recovery time statistics per fault type. */
+    public void print(PrintStream out) {
+        for (final FaultEvent event : events) {
+            out.println(event);
+        }
+        out.println(Utils.format("%-8s %7s %7s %9s %10s %10s %10s %10s", "fault", "events", "skipped", "recovered",
+                "min(ms)", "p50(ms)", "max(ms)", "ms/replica"));
+        for (final FaultType type : FaultType.values()) {
+            final List<FaultEvent> typeEvents = getEvents(type);
+            if (typeEvents.isEmpty()) {
+                continue;
+            }
+            final List<Long> recoveryTimes = Lists.newArrayList();
+            long totalRecoveryTime = 0;
+            long totalReplicas = 0;
+            int numSkipped = 0;
+            for (final FaultEvent event : typeEvents) {
+                if (event.isSkipped()) {
+                    ++numSkipped;
+                } else if (event.isRecovered()) {
+                    recoveryTimes.add(event.getRecoveredAfterMillis());
+                    totalRecoveryTime += event.getRecoveredAfterMillis();
+                    totalReplicas += event.getNumReplicas();
+                }
+            }
+            Collections.sort(recoveryTimes);
+            out.println(Utils.format("%-8s %7d %7d %9d %10s %10s %10s %10s", type, typeEvents.size(), numSkipped,
+                    recoveryTimes.size(), format(recoveryTimes.isEmpty() ? null : recoveryTimes.get(0)),
+                    format(recoveryTimes.isEmpty() ? null : recoveryTimes.get(recoveryTimes.size() / 2)),
+                    format(recoveryTimes.isEmpty() ? null : recoveryTimes.get(recoveryTimes.size() - 1)),
+                    totalReplicas == 0 ? "n/a" : Utils.format("%.1f", (double) totalRecoveryTime / totalReplicas)));
+        }
+    }
+
+    private static String format(Long millis) {
+        return millis == null ? "n/a" : millis.toString();
+    }
+
+}
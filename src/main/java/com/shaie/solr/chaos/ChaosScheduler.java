@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.solr.client.solrj.embedded.JettySolrRunner;
+import org.apache.solr.common.cloud.CollectionStatePredicate;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.solr.ClusterStateWaiter;
+import com.shaie.solr.CollectionsStateHelper;
+import com.shaie.solr.MiniSolrCloudCluster;
+import com.shaie.utils.Waiter;
+
+/**
+ * Injects faults into a {@link MiniSolrCloudCluster}, either randomly or following a script, typically while a
+ * {@link com.shaie.solr.load.LoadGenerator} runs, and measures how long the cluster takes to recover from each fault.
+ *
+ * <p>
+ * Faults are injected one at a time. For every fault, the faulted node is brought back after a configured downtime,
+ * and the recovery time is measured from injecting the fault until all replicas of the watched collections are active
+ * again, as determined by {@link CollectionsStateHelper#isCollectionFullyActive(DocCollection, Set)}. A fault is
+ * only injected once the watched collections are fully active, and is recorded as skipped if they do not become so. A
+ * {@link FaultType#DESTROY destroyed} node comes back empty, so its replicas only recover if the configured recovery
+ * action (e.g. {@link com.shaie.solr.SolrRecoveryUtils#recoverDownNodes}) replaces them.
+ * </p>
+ */
+public class ChaosScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChaosScheduler.class);
+
+    private final MiniSolrCloudCluster cluster;
+    private final ZkStateReader zkStateReader;
+    private final CollectionsStateHelper collectionsStateHelper;
+    private final ClusterStateWaiter clusterStateWaiter;
+    private final Config config;
+    private final Random random;
+    private volatile boolean stopped = false;
+
+    public ChaosScheduler(MiniSolrCloudCluster cluster, ZkStateReader zkStateReader, Config config) {
+        this.cluster = cluster;
+        this.zkStateReader = zkStateReader;
+        this.collectionsStateHelper = new CollectionsStateHelper(zkStateReader);
+        this.clusterStateWaiter = new ClusterStateWaiter(zkStateReader);
+        this.config = config;
+        this.random = new Random(config.seed);
+    }
+
+    /**
+     * Injects faults of random types into random nodes for the given duration, pausing a random interval between
+     * consecutive faults. The returned future completes after the last fault's recovery was measured.
+     */
+    public CompletableFuture<ChaosReport> runRandom(final long duration, final TimeUnit unit) {
+        return runAsync(new Supplier<ChaosReport>() {
+            @Override
+            public ChaosReport get() {
+                final long startNanos = System.nanoTime();
+                final long endNanos = startNanos + unit.toNanos(duration);
+                final List<FaultEvent> events = Lists.newArrayList();
+                final List<FaultType> faultTypes = ImmutableList.copyOf(config.faultTypes);
+                while (!stopped && System.nanoTime() < endNanos) {
+                    final long pauseMillis = config.minIntervalMillis
+                            + (long) (random.nextDouble() * (config.maxIntervalMillis - config.minIntervalMillis));
+                    sleep(Math.min(pauseMillis, TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime())));
+                    final List<String> nodeIds = Lists.newArrayList(Sets.newTreeSet(cluster.getNodeIds()));
+                    if (stopped || System.nanoTime() >= endNanos || nodeIds.isEmpty()) {
+                        break;
+                    }
+                    final String nodeId = nodeIds.get(random.nextInt(nodeIds.size()));
+                    final FaultType type = faultTypes.get(random.nextInt(faultTypes.size()));
+                    events.add(injectAndMeasure(type, nodeId, startNanos));
+                }
+                return new ChaosReport(events);
+            }
+        });
+    }
+
+    /** Injects the scripted faults, each at its offset from the start of the run or after the previous recovery. */
+    public CompletableFuture<ChaosReport> runScript(final List<ScriptedFault> script) {
+        return runAsync(new Supplier<ChaosReport>() {
+            @Override
+            public ChaosReport get() {
+                final long startNanos = System.nanoTime();
+                final List<FaultEvent> events = Lists.newArrayList();
+                for (final ScriptedFault fault : script) {
+                    sleep(fault.offsetMillis - elapsedMillis(startNanos));
+                    if (stopped) {
+                        break;
+                    }
+                    events.add(injectAndMeasure(fault.type, fault.nodeId, startNanos));
+                }
+                return new ChaosReport(events);
+            }
+        });
+    }
+
+    /** Stops injecting faults. A fault whose recovery is being measured is still measured. */
+    public void stop() {
+        stopped = true;
+    }
+
+    private CompletableFuture<ChaosReport> runAsync(Supplier<ChaosReport> run) {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("chaos-scheduler").setDaemon(true).build());
+        final CompletableFuture<ChaosReport> future = CompletableFuture.supplyAsync(run, executor);
+        executor.shutdown();
+        return future;
+    }
+
+    private FaultEvent injectAndMeasure(FaultType type, String nodeId, long runStartNanos) {
+        final Collection<String> collections = getWatchedCollections();
+        // A fault is only measured from a fully active cluster, otherwise it would be observed as degraded at once
+        if (!waitForRecovery(collections, config.activeTimeoutMillis)) {
+            LOGGER.warn("Skipping fault {} of node [{}], since collections {} are not fully active", type, nodeId,
+                    collections);
+            final FaultEvent event = FaultEvent.skipped(type, nodeId, elapsedMillis(runStartNanos));
+            LOGGER.info("{}", event);
+            return event;
+        }
+        final JettySolrRunner solrRunner = cluster.getJettySolrRunner(nodeId);
+        final String nodeName = solrRunner.getNodeName();
+        final int numReplicas = collectionsStateHelper.getAllNodeReplicas(nodeName).size();
+        final long indexSizeInBytes = getIndexSizeInBytes(solrRunner);
+
+        // Watch for the fault before injecting it, so that a short-lived degradation isn't missed
+        final List<CompletableFuture<DocCollection>> degradedFutures = Lists.newArrayList();
+        for (final String collection : collections) {
+            degradedFutures.add(clusterStateWaiter.waitForCollectionState(collection, new CollectionStatePredicate() {
+                @Override
+                public boolean matches(Set<String> liveNodes, DocCollection collectionState) {
+                    return !CollectionsStateHelper.isCollectionFullyActive(collectionState, liveNodes);
+                }
+            }, config.degradeTimeoutMillis, TimeUnit.MILLISECONDS));
+        }
+
+        LOGGER.info("Injecting fault {} into node [{}] ({} replicas, {} bytes)", type, nodeId, numReplicas,
+                indexSizeInBytes);
+        final long injectedAtMillis = elapsedMillis(runStartNanos);
+        final long faultNanos = System.nanoTime();
+        long degradedAfterMillis = -1;
+        long recoveredAfterMillis = -1;
+        Throwable error = null;
+        try {
+            type.inject(cluster, nodeId);
+            if (!degradedFutures.isEmpty() && Waiter.waitFor(CompletableFuture.anyOf(
+                    degradedFutures.toArray(new CompletableFuture<?>[0])))) {
+                degradedAfterMillis = elapsedMillis(faultNanos);
+            }
+            sleep(config.downtimeMillis - elapsedMillis(faultNanos));
+            cluster.startSolrNodes(nodeId);
+            if (type == FaultType.DESTROY && config.recoveryAction != null) {
+                config.recoveryAction.run();
+            }
+            if (waitForRecovery(collections, config.recoveryTimeoutMillis - elapsedMillis(faultNanos))) {
+                recoveredAfterMillis = elapsedMillis(faultNanos);
+            }
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Fault {} of node [{}] failed", type, nodeId, e);
+            error = e;
+        } finally {
+            for (final CompletableFuture<DocCollection> future : degradedFutures) {
+                future.cancel(false);
+            }
+        }
+
+        final FaultEvent event = new FaultEvent(type, nodeId, numReplicas, indexSizeInBytes, injectedAtMillis,
+                degradedAfterMillis, recoveredAfterMillis, error);
+        LOGGER.info("{}", event);
+        return event;
+    }
+
+    private boolean waitForRecovery(Collection<String> collections, long timeoutMillis) {
+        final List<CompletableFuture<DocCollection>> futures = Lists.newArrayList();
+        for (final String collection : collections) {
+            futures.add(clusterStateWaiter.waitForAllActive(collection, Math.max(0, timeoutMillis),
+                    TimeUnit.MILLISECONDS));
+        }
+        try {
+            return Waiter.waitFor(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])));
+        } finally {
+            for (final CompletableFuture<DocCollection> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private Collection<String> getWatchedCollections() {
+        if (!config.collections.isEmpty()) {
+            return config.collections;
+        }
+        return Lists.newArrayList(zkStateReader.getClusterState().getCollectionsMap().keySet());
+    }
+
+    private static long getIndexSizeInBytes(JettySolrRunner solrRunner) {
+        final CoreContainer coreContainer = solrRunner.getCoreContainer();
+        if (coreContainer == null) {
+            return 0;
+        }
+        long size = 0;
+        for (final SolrCore core : coreContainer.getCores()) {
+            size += core.getIndexSize();
+        }
+        return size;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** A fault to inject into a node at an offset from the start of the run. */
+    public static final class ScriptedFault {
+
+        private final long offsetMillis;
+        private final String nodeId;
+        private final FaultType type;
+
+        public ScriptedFault(long offset, TimeUnit unit, String nodeId, FaultType type) {
+            this.offsetMillis = unit.toMillis(offset);
+            this.nodeId = nodeId;
+            this.type = type;
+        }
+
+        public long getOffsetMillis() {
+            return offsetMillis;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public FaultType getType() {
+            return type;
+        }
+    }
+
+    /** Configures a {@link ChaosScheduler}. Setters return the config for chaining. */
+    public static final class Config {
+
+        private List<String> collections = ImmutableList.of();
+        private Set<FaultType> faultTypes = EnumSet.allOf(FaultType.class);
+        private long minIntervalMillis = 5000;
+        private long maxIntervalMillis = 15000;
+        private long downtimeMillis = 5000;
+        private long activeTimeoutMillis = 30000;
+        private long degradeTimeoutMillis = 10000;
+        private long recoveryTimeoutMillis = 120000;
+        private Runnable recoveryAction = null;
+        private long seed = 0;
+
+        /** Sets the collections whose recovery is measured. By default all collections are watched. */
+        public Config setCollections(String... collections) {
+            this.collections = ImmutableList.copyOf(collections);
+            return this;
+        }
+
+        /** Sets the fault types to inject in random runs. */
+        public Config setFaultTypes(FaultType first, FaultType... rest) {
+            this.faultTypes = EnumSet.of(first, rest);
+            return this;
+        }
+
+        /** Sets the range of the random pause between consecutive faults in random runs. */
+        public Config setInterval(long minIntervalMillis, long maxIntervalMillis) {
+            this.minIntervalMillis = minIntervalMillis;
+            this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+            return this;
+        }
+
+        /** Sets the time from injecting a fault until the node is started again. */
+        public Config setDowntimeMillis(long downtimeMillis) {
+            this.downtimeMillis = downtimeMillis;
+            return this;
+        }
+
+        /**
+         * Sets how long to wait for the watched collections to be fully active before injecting a fault. If they are
+         * not active by then, e.g. since the previous fault did not recover, the fault is skipped.
+         */
+        public Config setActiveTimeoutMillis(long activeTimeoutMillis) {
+            this.activeTimeoutMillis = activeTimeoutMillis;
+            return this;
+        }
+
+        /** Sets how long to wait for the cluster state to reflect a fault. */
+        public Config setDegradeTimeoutMillis(long degradeTimeoutMillis) {
+            this.degradeTimeoutMillis = degradeTimeoutMillis;
+            return this;
+        }
+
+        /** Sets how long, from injecting a fault, to wait for the cluster to recover. */
+        public Config setRecoveryTimeoutMillis(long recoveryTimeoutMillis) {
+            this.recoveryTimeoutMillis = recoveryTimeoutMillis;
+            return this;
+        }
+
+        /** Sets an action to run after a destroyed node is replaced by an empty one, e.g. to re-create its replicas. */
+        public Config setRecoveryAction(Runnable recoveryAction) {
+            this.recoveryAction = recoveryAction;
+            return this;
+        }
+
+        public Config setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import com.shaie.utils.Utils;
+
+/**
+ * Records an injected fault and the cluster's recovery from it. Times are relative to the start of the chaos run. The
+ * number of replicas and the index size of the faulted node are recorded, so that recovery times can be related to
+ * them.
+ */
+public class FaultEvent {
+
+    private final FaultType type;
+    private final String nodeId;
+    private final int numReplicas;
+    private final long indexSizeInBytes;
+    private final long injectedAtMillis;
+    private final long degradedAfterMillis;
+    private final long recoveredAfterMillis;
+    private final Throwable error;
+    private final boolean skipped;
+
+    public FaultEvent(FaultType type, String nodeId, int numReplicas, long indexSizeInBytes, long injectedAtMillis,
+            long degradedAfterMillis, long recoveredAfterMillis, Throwable error) {
+        this(type, nodeId, numReplicas, indexSizeInBytes, injectedAtMillis, degradedAfterMillis, recoveredAfterMillis,
+                error, false);
+    }
+
+    private FaultEvent(FaultType type, String nodeId, int numReplicas, long indexSizeInBytes, long injectedAtMillis,
+            long degradedAfterMillis, long recoveredAfterMillis, Throwable error, boolean skipped) {
+        this.type = type;
+        this.nodeId = nodeId;
+        this.numReplicas = numReplicas;
+        this.indexSizeInBytes = indexSizeInBytes;
+        this.injectedAtMillis = injectedAtMillis;
+        this.degradedAfterMillis = degradedAfterMillis;
+        this.recoveredAfterMillis = recoveredAfterMillis;
+        this.error = error;
+        this.skipped = skipped;
+    }
+
+    /** Returns an event of a fault which was not injected, since the cluster was not fully active at the time. */
+    public static FaultEvent skipped(FaultType type, String nodeId, long atMillis) {
+        return new FaultEvent(type, nodeId, 0, 0, atMillis, -1, -1, null, true);
+    }
+
+    public FaultType getType() {
+        return type;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Returns the number of replicas the node held when the fault was injected. */
+    public int getNumReplicas() {
+        return numReplicas;
+    }
+
+    /** Returns the total index size of the node's cores when the fault was injected. */
+    public long getIndexSizeInBytes() {
+        return indexSizeInBytes;
+    }
+
+    public long getInjectedAtMillis() {
+        return injectedAtMillis;
+    }
+
+    /**
+     * Returns the time from injecting the fault until the cluster state reflected it, or {@code -1} if it was not
+     * observed.
+     */
+    public long getDegradedAfterMillis() {
+        return degradedAfterMillis;
+    }
+
+    /**
+     * Returns the time from injecting the fault until all replicas of the watched collections were active again, or
+     * {@code -1} if they did not recover in time.
+     */
+    public long getRecoveredAfterMillis() {
+        return recoveredAfterMillis;
+    }
+
+    public boolean isRecovered() {
+        return recoveredAfterMillis >= 0;
+    }
+
+    /** Returns whether the fault was skipped, since the cluster was not fully active when it was due. */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /** Returns the error which failed injecting the fault or restarting the node, or {@code null}. */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (skipped) {
+            return Utils.format("[%dms] %s %s: skipped", injectedAtMillis, type, nodeId);
+        }
+        return Utils.format("[%dms] %s %s: replicas=%d indexSize=%.1fMB degradedAfter=%s recoveredAfter=%s%s",
+                injectedAtMillis, type, nodeId, numReplicas, indexSizeInBytes / (1024.0 * 1024.0),
+                formatMillis(degradedAfterMillis), formatMillis(recoveredAfterMillis),
+                error == null ? "" : " error=" + error);
+    }
+
+    private static String formatMillis(long millis) {
+        return millis < 0 ? "n/a" : millis + "ms";
+    }
+
+}
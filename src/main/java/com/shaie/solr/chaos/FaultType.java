@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import com.shaie.solr.MiniSolrCloudCluster;
+
+/** The types of faults a {@link ChaosScheduler} injects into a {@link MiniSolrCloudCluster}. */
+public enum FaultType {
+
+    /** Gracefully stops a node, and later restarts it. */
+    STOP {
+        @Override
+        void inject(MiniSolrCloudCluster cluster, String nodeId) {
+            cluster.stopSolr(nodeId);
+        }
+    },
+
+    /** Kills a node without a graceful shutdown, and later restarts it. */
+    KILL {
+        @Override
+        void inject(MiniSolrCloudCluster cluster, String nodeId) {
+            cluster.killSolr(nodeId);
+        }
+    },
+
+    /** Stops a node and deletes its data, and later starts a new, empty, node in its place. */
+    DESTROY {
+        @Override
+        void inject(MiniSolrCloudCluster cluster, String nodeId) {
+            cluster.destroySolr(nodeId);
+        }
+    };
+
+    abstract void inject(MiniSolrCloudCluster cluster, String nodeId);
+
+}
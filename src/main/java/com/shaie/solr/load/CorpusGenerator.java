@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.shaie.utils.ZipfSampler;
+
+/**
+ * Generates documents and queries which resemble natural language text. Words are drawn from a synthetic vocabulary
+ * following a Zipf distribution, so that term frequencies, posting list lengths and query costs are skewed like in real
+ * corpora, unlike uniformly random strings. Document lengths vary from short to long with most documents being short.
+ *
+ * <p>
+ * The vocabulary is derived from a seed, therefore generators created with the same seed produce the same words.
+ * Generating methods take a {@link Random} so that multiple threads can share a generator.
+ * </p>
+ */
+public class CorpusGenerator {
+
+    public static final String ID_FIELD = "id";
+    public static final String TITLE_FIELD = "title_t";
+    public static final String BODY_FIELD = "body_t";
+    public static final String CATEGORY_FIELD = "category_s";
+    public static final String LENGTH_FIELD = "length_i";
+
+    private static final String[] SYLLABLES = { "ka", "lo", "mi", "ne", "ru", "sa", "te", "vi", "zo", "ba", "de",
+            "fu", "gi", "ho", "ja", "pe", "qui", "ri", "so", "tu", "an", "el", "in", "or", "us" };
+    private static final double WORDS_EXPONENT = 1.1;
+    private static final double CATEGORIES_EXPONENT = 1.5;
+    private static final int NUM_CATEGORIES = 20;
+    private static final int MIN_BODY_WORDS = 20;
+    private static final int MAX_BODY_WORDS = 2000;
+
+    private final String[] vocabulary;
+    private final ZipfSampler wordSampler;
+    private final ZipfSampler categorySampler = new ZipfSampler(NUM_CATEGORIES, CATEGORIES_EXPONENT);
+
+    public CorpusGenerator(int vocabularySize, long seed) {
+        this.vocabulary = createVocabulary(vocabularySize, new Random(seed));
+        this.wordSampler = new ZipfSampler(vocabularySize, WORDS_EXPONENT);
+    }
+
+    /** Returns the vocabulary, ordered from the most to the least frequent word. */
+    public List<String> getVocabulary() {
+        return Lists.newArrayList(vocabulary);
+    }
+
+    /** Returns a random word. */
+    public String nextWord(Random random) {
+        return vocabulary[wordSampler.sample(random)];
+    }
+
+    /** Returns a document with the given ID, a title, a body, a category and the body's length in words. */
+    public SolrInputDocument nextDocument(String id, Random random) {
+        final int numBodyWords = nextBodyLength(random);
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.setField(ID_FIELD, id);
+        doc.setField(TITLE_FIELD, nextText(3 + random.nextInt(8), random));
+        doc.setField(BODY_FIELD, nextText(numBodyWords, random));
+        doc.setField(CATEGORY_FIELD, "category-" + categorySampler.sample(random));
+        doc.setField(LENGTH_FIELD, numBodyWords);
+        return doc;
+    }
+
+    /** Returns {@code numDocs} documents whose IDs are {@code idPrefix} followed by a running number. */
+    public List<SolrInputDocument> nextDocuments(String idPrefix, int firstId, int numDocs, Random random) {
+        final List<SolrInputDocument> docs = Lists.newArrayListWithCapacity(numDocs);
+        for (int i = 0; i < numDocs; i++) {
+            docs.add(nextDocument(idPrefix + (firstId + i), random));
+        }
+        return docs;
+    }
+
+    /**
+     * Returns a query of one to three words on the body field. Most queries are a single word, and multi-word queries
+     * are sometimes phrases. Some queries also filter by category.
+     */
+    public SolrQuery nextQuery(Random random) {
+        final int numWords = random.nextInt(10) < 6 ? 1 : 2 + random.nextInt(2);
+        final String text = nextText(numWords, random);
+        final String queryText = numWords > 1 && random.nextBoolean() ? "\"" + text + "\"" : text;
+        final SolrQuery query = new SolrQuery(BODY_FIELD + ":(" + queryText + ")");
+        if (random.nextInt(10) == 0) {
+            query.addFilterQuery(CATEGORY_FIELD + ":category-" + categorySampler.sample(random));
+        }
+        return query;
+    }
+
+    private String nextText(int numWords, Random random) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(nextWord(random));
+        }
+        return sb.toString();
+    }
+
+    /** Returns a length whose logarithm is uniformly distributed, so that short documents are the most common. */
+    private static int nextBodyLength(Random random) {
+        final double logMin = Math.log(MIN_BODY_WORDS);
+        final double logMax = Math.log(MAX_BODY_WORDS);
+        return (int) Math.exp(logMin + random.nextDouble() * (logMax - logMin));
+    }
+
+    /** Creates distinct pronounceable words, shorter words first so that frequent words are short as in real text. */
+    private static String[] createVocabulary(int size, Random random) {
+        final Set<String> words = Sets.newLinkedHashSet();
+        int numSyllables = 1;
+        int attempts = 0;
+        while (words.size() < size) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < numSyllables; i++) {
+                sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(sb.toString());
+            // Move to longer words once short ones are mostly exhausted
+            if (++attempts > 4 * Math.pow(SYLLABLES.length, numSyllables)) {
+                ++numSyllables;
+                attempts = 0;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+}
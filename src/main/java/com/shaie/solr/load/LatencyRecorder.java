@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records operation latencies, in microseconds, into HdrHistograms. Latencies are measured from the time an operation
+ * was <em>intended</em> to start, rather than from the time it actually started. When the system under test stalls, a
+ * rate-limited load generator falls behind its schedule, and the operations that should have been issued during the
+ * stall are charged with the time they waited. Without that, a stall is recorded as a single slow operation, and tail
+ * latencies are grossly under-reported (a.k.a. coordinated omission).
+ *
+ * <p>
+ * Recording is thread-safe and wait-free. Interval histograms are taken with {@link #sampleInterval()}, and the totals
+ * are accumulated with every sample.
+ * </p>
+ */
+public class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_LATENCY_US = TimeUnit.HOURS.toMicros(1);
+    private static final int NUM_SIGNIFICANT_DIGITS = 3;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_US, NUM_SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_LATENCY_US, NUM_SIGNIFICANT_DIGITS);
+    private Histogram interval = null;
+
+    /** Records an operation which was intended to start at {@code intendedStartNanos} and ended at {@code endNanos}. */
+    public void record(long intendedStartNanos, long endNanos) {
+        final long latencyUs = TimeUnit.NANOSECONDS.toMicros(Math.max(0, endNanos - intendedStartNanos));
+        recorder.recordValue(Math.min(latencyUs, HIGHEST_TRACKABLE_LATENCY_US));
+    }
+
+    /**
+     * Returns the latencies recorded since the previous call, and adds them to the totals. The returned histogram is
+     * owned by the caller.
+     */
+    public synchronized Histogram sampleInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval.copy();
+    }
+
+    /** Returns a copy of all latencies sampled so far. */
+    public synchronized Histogram getTotal() {
+        return total.copy();
+    }
+
+}
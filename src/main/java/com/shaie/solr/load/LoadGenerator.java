@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Drives indexing and query load against a SolrCloud collection, optionally while executing a {@link Scenario}.
+ *
+ * <p>
+ * Each indexing or query thread issues requests at a fixed rate (its share of the configured total rate), following a
+ * schedule which is independent of the responses. When requests take longer than the schedule allows, the thread falls
+ * behind and issues the following requests immediately, while their latencies are measured from their scheduled
+ * times, so that stalls are fully accounted for (see {@link LatencyRecorder}). A rate of {@code 0} means the threads
+ * issue requests back-to-back, in which case latencies are plain service times.
+ * </p>
+ *
+ * <p>
+ * Request failures (which are expected while the cluster's topology changes) are counted and logged, but do not stop
+ * the run.
+ * </p>
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final CloudSolrClient solrClient;
+    private final CorpusGenerator corpusGenerator;
+    private final Config config;
+
+    // Continues across runs, so that every run indexes new documents
+    private final AtomicInteger nextDocId = new AtomicInteger();
+
+    public LoadGenerator(CloudSolrClient solrClient, CorpusGenerator corpusGenerator, Config config) {
+        this.solrClient = solrClient;
+        this.corpusGenerator = corpusGenerator;
+        this.config = config;
+    }
+
+    /** Runs load for the given duration, and returns its report. */
+    public LoadReport run(long duration, TimeUnit unit) {
+        return run(duration, unit, new Scenario());
+    }
+
+    /**
+     * Runs load for the given duration while executing the scenario, and returns the report. Scenario steps execute
+     * sequentially on a dedicated thread; steps which are due after the run ends are not executed. A generator may run
+     * multiple times, and every report covers only its own run.
+     */
+    public LoadReport run(long duration, TimeUnit unit, Scenario scenario) {
+        final int numThreads = config.numIndexingThreads + config.numQueryThreads;
+        final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, numThreads),
+                new ThreadFactoryBuilder().setNameFormat("load-generator-%d").setDaemon(true).build());
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("load-generator-scheduler").setDaemon(true).build());
+        final ScheduledThreadPoolExecutor scenarioExecutor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("load-generator-scenario").setDaemon(true).build());
+        scenarioExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        final Run run = new Run(System.nanoTime());
+        final long endNanos = run.startNanos + unit.toNanos(duration);
+
+        for (int i = 0; i < config.numIndexingThreads; i++) {
+            workers.execute(new Worker(run, true, rateToIntervalNanos(config.indexingBatchesPerSecond,
+                    config.numIndexingThreads), endNanos, new Random(config.seed + i)));
+        }
+        for (int i = 0; i < config.numQueryThreads; i++) {
+            workers.execute(new Worker(run, false, rateToIntervalNanos(config.queriesPerSecond,
+                    config.numQueryThreads), endNanos, new Random(config.seed - i - 1)));
+        }
+        final IntervalSampler sampler = new IntervalSampler(run);
+        scheduler.scheduleAtFixedRate(sampler, config.reportIntervalMillis, config.reportIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        for (final Scenario.Step step : scenario.getSteps()) {
+            scenarioExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executeStep(step, run);
+                }
+            }, step.getOffsetMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            workers.shutdown();
+            workers.awaitTermination(unit.toMillis(duration) + config.requestTimeoutMillis, TimeUnit.MILLISECONDS);
+            scenarioExecutor.shutdown();
+            scenarioExecutor.awaitTermination(config.requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            run.stopped = true;
+            workers.shutdownNow();
+            scenarioExecutor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+        sampler.run();
+
+        return new LoadReport(elapsedMillis(run.startNanos), run.intervals, run.events,
+                run.indexingLatencies.getTotal(), run.queryLatencies.getTotal(), run.numIndexedDocs.get(),
+                run.numErrors.get());
+    }
+
+    private void executeStep(Scenario.Step step, Run run) {
+        final long stepStartMillis = elapsedMillis(run.startNanos);
+        LOGGER.info("Executing scenario step [{}]", step.getName());
+        Throwable error = null;
+        try {
+            step.getAction().run();
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Scenario step [{}] failed", step.getName(), e);
+            error = e;
+        }
+        run.events.add(new Scenario.Event(step.getName(), stepStartMillis, elapsedMillis(run.startNanos), error));
+    }
+
+    private void indexBatch(Random random, Run run) throws Exception {
+        final int firstId = nextDocId.getAndAdd(config.batchSize);
+        final List<SolrInputDocument> docs = corpusGenerator.nextDocuments("doc-", firstId, config.batchSize, random);
+        solrClient.add(config.collection, docs, config.commitWithinMillis);
+        run.numIndexedDocs.addAndGet(docs.size());
+    }
+
+    private void query(Random random) throws Exception {
+        solrClient.query(config.collection, corpusGenerator.nextQuery(random));
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static long rateToIntervalNanos(double totalRatePerSecond, int numThreads) {
+        if (totalRatePerSecond <= 0) {
+            return 0;
+        }
+        return (long) (TimeUnit.SECONDS.toNanos(1) * numThreads / totalRatePerSecond);
+    }
+
+    /** The state of a single {@link #run(long, TimeUnit, Scenario)}, which its workers and sampler share. */
+    private static final class Run {
+
+        private final long startNanos;
+        private final LatencyRecorder indexingLatencies = new LatencyRecorder();
+        private final LatencyRecorder queryLatencies = new LatencyRecorder();
+        private final AtomicLong numIndexedDocs = new AtomicLong();
+        private final AtomicLong numErrors = new AtomicLong();
+        private final AtomicLong numIntervalErrors = new AtomicLong();
+        private final List<LoadReport.Interval> intervals = Collections.synchronizedList(
+                Lists.<LoadReport.Interval> newArrayList());
+        private final List<Scenario.Event> events = Collections.synchronizedList(
+                Lists.<Scenario.Event> newArrayList());
+        private volatile boolean stopped = false;
+
+        Run(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    /** Issues requests according to its schedule until the end of the run. */
+    private final class Worker implements Runnable {
+
+        private final Run run;
+        private final boolean indexing;
+        private final long intervalNanos;
+        private final long endNanos;
+        private final Random random;
+        private long nextStartNanos;
+
+        Worker(Run run, boolean indexing, long intervalNanos, long endNanos, Random random) {
+            this.run = run;
+            this.indexing = indexing;
+            this.intervalNanos = intervalNanos;
+            this.endNanos = endNanos;
+            this.random = random;
+            this.nextStartNanos = run.startNanos;
+        }
+
+        @Override
+        public void run() {
+            while (!run.stopped) {
+                final long intendedStartNanos = intervalNanos > 0 ? nextStartNanos : System.nanoTime();
+                if (intendedStartNanos >= endNanos) {
+                    return;
+                }
+                waitUntil(intendedStartNanos);
+                try {
+                    if (indexing) {
+                        indexBatch(random, run);
+                    } else {
+                        query(random);
+                    }
+                } catch (final Exception e) {
+                    run.numErrors.incrementAndGet();
+                    run.numIntervalErrors.incrementAndGet();
+                    LOGGER.debug("{} request failed", indexing ? "Indexing" : "Query", e);
+                }
+                (indexing ? run.indexingLatencies : run.queryLatencies).record(intendedStartNanos, System.nanoTime());
+                nextStartNanos += intervalNanos;
+            }
+        }
+
+        private void waitUntil(long nanos) {
+            long remaining;
+            while ((remaining = nanos - System.nanoTime()) > 0 && !run.stopped) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /** Samples the latency recorders every reporting interval. */
+    private final class IntervalSampler implements Runnable {
+
+        private final Run run;
+        private long lastSampleMillis = 0;
+
+        IntervalSampler(Run run) {
+            this.run = run;
+        }
+
+        @Override
+        public synchronized void run() {
+            final long nowMillis = elapsedMillis(run.startNanos);
+            if (nowMillis <= lastSampleMillis) {
+                return;
+            }
+            run.intervals.add(new LoadReport.Interval(lastSampleMillis, nowMillis,
+                    run.indexingLatencies.sampleInterval(), run.queryLatencies.sampleInterval(),
+                    run.numIntervalErrors.getAndSet(0)));
+            lastSampleMillis = nowMillis;
+        }
+    }
+
+    /** Configures a {@link LoadGenerator}. Setters return the config for chaining. */
+    public static final class Config {
+
+        private final String collection;
+        private int numIndexingThreads = 1;
+        private double indexingBatchesPerSecond = 0;
+        private int batchSize = 100;
+        private int commitWithinMillis = 1000;
+        private int numQueryThreads = 1;
+        private double queriesPerSecond = 0;
+        private long reportIntervalMillis = 1000;
+        private long requestTimeoutMillis = 60000;
+        private long seed = 0;
+
+        public Config(String collection) {
+            this.collection = collection;
+        }
+
+        public Config setNumIndexingThreads(int numIndexingThreads) {
+            this.numIndexingThreads = numIndexingThreads;
+            return this;
+        }
+
+        /** Sets the total rate of indexing requests (batches) across all indexing threads, or 0 for no limit. */
+        public Config setIndexingBatchesPerSecond(double indexingBatchesPerSecond) {
+            this.indexingBatchesPerSecond = indexingBatchesPerSecond;
+            return this;
+        }
+
+        public Config setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Config setCommitWithinMillis(int commitWithinMillis) {
+            this.commitWithinMillis = commitWithinMillis;
+            return this;
+        }
+
+        public Config setNumQueryThreads(int numQueryThreads) {
+            this.numQueryThreads = numQueryThreads;
+            return this;
+        }
+
+        /** Sets the total rate of queries across all query threads, or 0 for no limit. */
+        public Config setQueriesPerSecond(double queriesPerSecond) {
+            this.queriesPerSecond = queriesPerSecond;
+            return this;
+        }
+
+        public Config setReportIntervalMillis(long reportIntervalMillis) {
+            this.reportIntervalMillis = reportIntervalMillis;
+            return this;
+        }
+
+        /** Sets how long to wait for in-flight requests and scenario steps once the run's duration elapses. */
+        public Config setRequestTimeoutMillis(long requestTimeoutMillis) {
+            this.requestTimeoutMillis = requestTimeoutMillis;
+            return this;
+        }
+
+        public Config setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+    }
+
+}
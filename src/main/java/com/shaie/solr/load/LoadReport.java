@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
+
+import com.google.common.collect.ImmutableList;
+import com.shaie.utils.Utils;
+
+/**
+ * The results of a {@link LoadGenerator} run: per-interval throughput and latencies, the {@link Scenario} events that
+ * happened during the run, and the overall latency histograms. Latencies are in microseconds and are corrected for
+ * coordinated omission (see {@link LatencyRecorder}).
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+    private final long durationMillis;
+    private final List<Interval> intervals;
+    private final List<Scenario.Event> events;
+    private final Histogram indexingLatencies;
+    private final Histogram queryLatencies;
+    private final long numIndexedDocs;
+    private final long numErrors;
+
+    public LoadReport(long durationMillis, List<Interval> intervals, List<Scenario.Event> events,
+            Histogram indexingLatencies, Histogram queryLatencies, long numIndexedDocs, long numErrors) {
+        this.durationMillis = durationMillis;
+        this.intervals = ImmutableList.copyOf(intervals);
+        this.events = ImmutableList.copyOf(events);
+        this.indexingLatencies = indexingLatencies;
+        this.queryLatencies = queryLatencies;
+        this.numIndexedDocs = numIndexedDocs;
+        this.numErrors = numErrors;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public List<Interval> getIntervals() {
+        return intervals;
+    }
+
+    public List<Scenario.Event> getEvents() {
+        return events;
+    }
+
+    /** Returns the latencies of indexing requests (one per batch). */
+    public Histogram getIndexingLatencies() {
+        return indexingLatencies;
+    }
+
+    public Histogram getQueryLatencies() {
+        return queryLatencies;
+    }
+
+    public long getNumIndexedDocs() {
+        return numIndexedDocs;
+    }
+
+    public long getNumErrors() {
+        return numErrors;
+    }
+
+    /** Prints the report: a line per interval, with scenario events interleaved, followed by the totals. */
+    public void print(PrintStream out) {
+        out.println(Utils.format("%8s %10s %9s %9s %9s %10s %9s %9s %9s %7s", "time(s)", "index/s", "p50(ms)",
+                "p99(ms)", "max(ms)", "query/s", "p50(ms)", "p99(ms)", "max(ms)", "errors"));
+        int nextEvent = 0;
+        for (final Interval interval : intervals) {
+            while (nextEvent < events.size() && events.get(nextEvent).getStartMillis() < interval.endMillis) {
+                out.println("  >> " + events.get(nextEvent++));
+            }
+            final double seconds = (interval.endMillis - interval.startMillis) / 1000.0;
+            out.println(Utils.format("%8.1f %10.1f %9.2f %9.2f %9.2f %10.1f %9.2f %9.2f %9.2f %7d",
+                    interval.endMillis / 1000.0,
+                    interval.indexingLatencies.getTotalCount() / seconds,
+                    toMillis(interval.indexingLatencies.getValueAtPercentile(50)),
+                    toMillis(interval.indexingLatencies.getValueAtPercentile(99)),
+                    toMillis(interval.indexingLatencies.getMaxValue()),
+                    interval.queryLatencies.getTotalCount() / seconds,
+                    toMillis(interval.queryLatencies.getValueAtPercentile(50)),
+                    toMillis(interval.queryLatencies.getValueAtPercentile(99)),
+                    toMillis(interval.queryLatencies.getMaxValue()),
+                    interval.numErrors));
+        }
+        while (nextEvent < events.size()) {
+            out.println("  >> " + events.get(nextEvent++));
+        }
+
+        final double seconds = durationMillis / 1000.0;
+        out.println(Utils.format("duration=%.1fs indexedDocs=%d (%.1f docs/s) queries=%d (%.1f q/s) errors=%d",
+                seconds, numIndexedDocs, numIndexedDocs / seconds, queryLatencies.getTotalCount(),
+                queryLatencies.getTotalCount() / seconds, numErrors));
+        printPercentiles(out, "indexing", indexingLatencies);
+        printPercentiles(out, "query", queryLatencies);
+    }
+
+    private static void printPercentiles(PrintStream out, String name, Histogram histogram) {
+        final StringBuilder sb = new StringBuilder(name).append(" latency(ms):");
+        for (final double percentile : PERCENTILES) {
+            sb.append(Utils.format(" p%s=%.2f", formatPercentile(percentile),
+                    toMillis(histogram.getValueAtPercentile(percentile))));
+        }
+        sb.append(Utils.format(" max=%.2f", toMillis(histogram.getMaxValue())));
+        out.println(sb);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /** The latencies and errors of one reporting interval, with times relative to the start of the run. */
+    public static final class Interval {
+
+        private final long startMillis;
+        private final long endMillis;
+        private final Histogram indexingLatencies;
+        private final Histogram queryLatencies;
+        private final long numErrors;
+
+        public Interval(long startMillis, long endMillis, Histogram indexingLatencies, Histogram queryLatencies,
+                long numErrors) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.indexingLatencies = indexingLatencies;
+            this.queryLatencies = queryLatencies;
+            this.numErrors = numErrors;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public Histogram getIndexingLatencies() {
+            return indexingLatencies;
+        }
+
+        public Histogram getQueryLatencies() {
+            return queryLatencies;
+        }
+
+        public long getNumErrors() {
+            return numErrors;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.shaie.solr.MiniSolrCloudCluster;
+
+/**
+ * A script of actions (e.g. killing a node or splitting a shard) to execute at given offsets from the start of a load
+ * run. Scenarios are built by chaining {@link #at(long, TimeUnit, String, Runnable)} calls, e.g.:
+ *
+ * <pre>
+ * new Scenario()
+ *     .at(10, TimeUnit.SECONDS, "kill node2", Scenario.killNode(cluster, "node2"))
+ *     .at(20, TimeUnit.SECONDS, "split shard1", Scenario.splitShard(solrClient, "collection", "shard1"));
+ * </pre>
+ */
+public class Scenario {
+
+    private final List<Step> steps = Lists.newArrayList();
+
+    /** Adds a step which executes the action at the given offset from the start of the run. */
+    public Scenario at(long offset, TimeUnit unit, String name, Runnable action) {
+        steps.add(new Step(unit.toMillis(offset), name, action));
+        return this;
+    }
+
+    /** Returns the steps of the scenario, ordered by their offset. */
+    public List<Step> getSteps() {
+        final List<Step> sorted = Lists.newArrayList(steps);
+        Collections.sort(sorted, new Comparator<Step>() {
+            @Override
+            public int compare(Step s1, Step s2) {
+                return Long.compare(s1.offsetMillis, s2.offsetMillis);
+            }
+        });
+        return ImmutableList.copyOf(sorted);
+    }
+
+    /** Returns an action which kills a node, so that it does not shut down gracefully. */
+    public static Runnable killNode(final MiniSolrCloudCluster cluster, final String nodeId) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                cluster.killSolr(nodeId);
+            }
+        };
+    }
+
+    /** Returns an action which gracefully stops a node. */
+    public static Runnable stopNode(final MiniSolrCloudCluster cluster, final String nodeId) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                cluster.stopSolr(nodeId);
+            }
+        };
+    }
+
+    /** Returns an action which starts a node. */
+    public static Runnable startNode(final MiniSolrCloudCluster cluster, final String nodeId) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                cluster.startSolrNodes(nodeId);
+            }
+        };
+    }
+
+    /** Returns an action which splits a shard, and waits for the split to complete. */
+    public static Runnable splitShard(final CloudSolrClient solrClient, final String collection,
+            final String shard) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CollectionAdminRequest.splitShard(collection).setShardName(shard).process(solrClient);
+                } catch (IOException | SolrServerException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /** Returns an action which adds a replica of a shard to the given node. */
+    public static Runnable addReplica(final CloudSolrClient solrClient, final String collection, final String shard,
+            final String nodeName) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CollectionAdminRequest.addReplicaToShard(collection, shard).setNode(nodeName).process(solrClient);
+                } catch (IOException | SolrServerException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /** A single step of a {@link Scenario}. */
+    public static final class Step {
+
+        private final long offsetMillis;
+        private final String name;
+        private final Runnable action;
+
+        Step(long offsetMillis, String name, Runnable action) {
+            this.offsetMillis = offsetMillis;
+            this.name = name;
+            this.action = action;
+        }
+
+        public long getOffsetMillis() {
+            return offsetMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Runnable getAction() {
+            return action;
+        }
+    }
+
+    /** Records the execution of a {@link Step}, with times relative to the start of the run. */
+    public static final class Event {
+
+        private final String name;
+        private final long startMillis;
+        private final long endMillis;
+        private final Throwable error;
+
+        public Event(String name, long startMillis, long endMillis, Throwable error) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.error = error;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        /** Returns the error the action failed with, or {@code null} if it succeeded. */
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + startMillis + "ms-" + endMillis + "ms] " + name + (error == null ? "" : " FAILED: " + error);
+        }
+    }
+
+}
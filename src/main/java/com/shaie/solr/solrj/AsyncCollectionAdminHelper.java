@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.solrj;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest.AsyncCollectionAdminRequest;
+import org.apache.solr.client.solrj.response.CollectionAdminResponse;
+import org.apache.solr.client.solrj.response.RequestStatusState;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.util.NamedList;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.solr.ReplicaInfo;
+
+/**
+ * An asynchronous version of {@link CollectionAdminHelper}. Requests are submitted with Solr async request IDs, and
+ * their status is tracked with {@code REQUESTSTATUS} requests, so no thread is blocked while the Overseer executes them.
+ * At most {@code maxConcurrentRequests} requests are in flight at any time; the rest are queued, which allows
+ * submitting large batches of operations (e.g. re-homing all replicas of a node) without overwhelming the Overseer.
+ * Status polls which fail (e.g. while the Overseer is re-elected) are retried, until they keep failing for longer than
+ * {@code maxPollFailureMillis}. In that case the operation fails, but its async ID is kept, since the request may
+ * still be running.
+ *
+ * <p>
+ * The responses of created cores (e.g. {@link CreateCollectionResponse#getCoreNames()}) are read from the cluster
+ * state once the request completed, since the status of an async request does not include them.
+ * </p>
+ *
+ * <p>
+ * Collections existence is checked against the {@link ClusterState} cached by the client's
+ * {@link org.apache.solr.common.cloud.ZkStateReader}, rather than by issuing a {@code LIST} request per operation.
+ * </p>
+ */
+public class AsyncCollectionAdminHelper implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCollectionAdminHelper.class);
+
+    private static final int DEFAULT_NUM_THREADS = 4;
+    private static final long MIN_POLL_INTERVAL_MS = 50;
+    private static final long MAX_POLL_INTERVAL_MS = 1000;
+    private static final long DEFAULT_MAX_POLL_FAILURE_MS = 60000;
+
+    private final CloudSolrClient solrClient;
+    private final int maxConcurrentRequests;
+    private final long maxPollFailureMillis;
+    private final ScheduledExecutorService executor;
+
+    private final Queue<AsyncOperation<?>> pendingOperations = new ArrayDeque<>();
+    private final Set<AsyncOperation<?>> inFlightOperations = Sets.newHashSet();
+    private boolean closed = false;
+
+    public AsyncCollectionAdminHelper(CloudSolrClient solrClient, int maxConcurrentRequests) {
+        this(solrClient, maxConcurrentRequests, DEFAULT_MAX_POLL_FAILURE_MS);
+    }
+
+    public AsyncCollectionAdminHelper(CloudSolrClient solrClient, int maxConcurrentRequests,
+            long maxPollFailureMillis) {
+        this.solrClient = solrClient;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxPollFailureMillis = maxPollFailureMillis;
+        this.executor = Executors.newScheduledThreadPool(DEFAULT_NUM_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("async-collection-admin-%d").setDaemon(true).build());
+    }
+
+    /** Returns true if the collection denoted by {@code collectionName} exists in the cached cluster state. */
+    public boolean collectionExists(String collectionName) {
+        return getClusterState().hasCollection(collectionName);
+    }
+
+    /** Creates a collection. The future completes with {@code null} if the collection already exists. */
+    public CompletableFuture<CreateCollectionResponse> createCollection(String collectionName, int numShards,
+            int numReplicas, String configName) {
+        if (collectionExists(collectionName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(CollectionAdminRequest.createCollection(collectionName, configName, numShards, numReplicas),
+                new Function<CollectionAdminResponse, CreateCollectionResponse>() {
+                    @Override
+                    public CreateCollectionResponse apply(CollectionAdminResponse response) {
+                        final DocCollection collection = getUpdatedCollection(collectionName);
+                        return new CreateCollectionResponse(toSyncResponse(response, collection.getReplicas()));
+                    }
+                });
+    }
+
+    /** Deletes a collection. The future completes with {@code null} if the collection does not exist. */
+    public CompletableFuture<DeleteCollectionResponse> deleteCollection(String collectionName) {
+        if (!collectionExists(collectionName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(CollectionAdminRequest.deleteCollection(collectionName),
+                new Function<CollectionAdminResponse, DeleteCollectionResponse>() {
+                    @Override
+                    public DeleteCollectionResponse apply(CollectionAdminResponse response) {
+                        return new DeleteCollectionResponse(response);
+                    }
+                });
+    }
+
+    /** Adds a replica to the given collection and shard. */
+    public CompletableFuture<AddReplicaResponse> addReplica(String collectionName, String shardName,
+            String nodeName) {
+        if (!collectionExists(collectionName)) {
+            return failedFuture(new IllegalArgumentException("collection [" + collectionName + "] does not exist"));
+        }
+        final Set<String> existingReplicas = getReplicaNames(getClusterState().getCollection(collectionName),
+                shardName);
+        return submit(CollectionAdminRequest.addReplicaToShard(collectionName, shardName).setNode(nodeName),
+                new Function<CollectionAdminResponse, AddReplicaResponse>() {
+                    @Override
+                    public AddReplicaResponse apply(CollectionAdminResponse response) {
+                        // the added replica is the shard's replica on the node, which did not exist before
+                        final List<Replica> addedReplicas = Lists.newArrayList();
+                        final Slice slice = getUpdatedCollection(collectionName).getSlice(shardName);
+                        for (final Replica replica : slice.getReplicas()) {
+                            if (nodeName.equals(replica.getNodeName())
+                                    && !existingReplicas.contains(replica.getName())) {
+                                addedReplicas.add(replica);
+                            }
+                        }
+                        return new AddReplicaResponse(toSyncResponse(response, addedReplicas));
+                    }
+                });
+    }
+
+    /**
+     * Deletes a replica from the given collection and shard. If the replica's node does not respond, the replica will
+     * be deleted only from ZK.
+     */
+    public CompletableFuture<Void> deleteReplica(String collectionName, String shardName, String replicaName) {
+        if (!collectionExists(collectionName)) {
+            return failedFuture(new IllegalArgumentException("collection [" + collectionName + "] does not exist"));
+        }
+        return submit(CollectionAdminRequest.deleteReplica(collectionName, shardName, replicaName)
+                .setOnlyIfDown(false), new Function<CollectionAdminResponse, Void>() {
+                    @Override
+                    public Void apply(CollectionAdminResponse response) {
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Splits a shard into two sub-shards. The future completes once the sub-shards are active and the parent shard
+     * became inactive. The parent shard is not deleted.
+     */
+    public CompletableFuture<Void> splitShard(String collectionName, String shardName) {
+        if (!collectionExists(collectionName)) {
+            return failedFuture(new IllegalArgumentException("collection [" + collectionName + "] does not exist"));
+        }
+        return submit(CollectionAdminRequest.splitShard(collectionName).setShardName(shardName),
+                new Function<CollectionAdminResponse, Void>() {
+                    @Override
+                    public Void apply(CollectionAdminResponse response) {
+                        return null;
+                    }
+                });
+    }
+
+    /** Deletes a shard. Only inactive shards, e.g. the parent of a split shard, can be deleted. */
+    public CompletableFuture<Void> deleteShard(String collectionName, String shardName) {
+        if (!collectionExists(collectionName)) {
+            return failedFuture(new IllegalArgumentException("collection [" + collectionName + "] does not exist"));
+        }
+        return submit(CollectionAdminRequest.deleteShard(collectionName, shardName),
+                new Function<CollectionAdminResponse, Void>() {
+                    @Override
+                    public Void apply(CollectionAdminResponse response) {
+                        return null;
+                    }
+                });
+    }
+
+    /** Adds a replica of each of the given replicas' shards to the given node. */
+    public List<CompletableFuture<AddReplicaResponse>> addReplicas(Collection<ReplicaInfo> replicas,
+            String nodeName) {
+        final List<CompletableFuture<AddReplicaResponse>> futures = Lists.newArrayList();
+        for (final ReplicaInfo replicaInfo : replicas) {
+            futures.add(addReplica(replicaInfo.getCollectionName(), replicaInfo.getShardName(), nodeName));
+        }
+        return futures;
+    }
+
+    /** Deletes all the given replicas. */
+    public List<CompletableFuture<Void>> deleteReplicas(Collection<ReplicaInfo> replicas) {
+        final List<CompletableFuture<Void>> futures = Lists.newArrayList();
+        for (final ReplicaInfo replicaInfo : replicas) {
+            futures.add(deleteReplica(replicaInfo.getCollectionName(), replicaInfo.getShardName(),
+                    replicaInfo.getReplica().getName()));
+        }
+        return futures;
+    }
+
+    /** Returns the number of requests that were submitted to Solr and haven't completed yet. */
+    public synchronized int getNumInFlight() {
+        return inFlightOperations.size();
+    }
+
+    /** Returns the number of requests that are waiting to be submitted to Solr. */
+    public synchronized int getNumPending() {
+        return pendingOperations.size();
+    }
+
+    /** Stops polling, and fails the operations which did not complete yet. Their requests may still run in Solr. */
+    @Override
+    public void close() {
+        final List<AsyncOperation<?>> operations;
+        synchronized (this) {
+            closed = true;
+            operations = Lists.newArrayList(pendingOperations);
+            operations.addAll(inFlightOperations);
+            pendingOperations.clear();
+            inFlightOperations.clear();
+        }
+        executor.shutdownNow();
+        for (final AsyncOperation<?> operation : operations) {
+            operation.future.completeExceptionally(new IllegalStateException(
+                    "Async request [" + operation.asyncId + "] was abandoned since the helper was closed"));
+        }
+    }
+
+    /**
+     * Obtains the {@link ClusterState} from the client's {@link org.apache.solr.common.cloud.ZkStateReader}. This state
+     * is kept up-to-date by ZooKeeper watches.
+     */
+    private ClusterState getClusterState() {
+        return solrClient.getZkStateReader().getClusterState();
+    }
+
+    private <T> CompletableFuture<T> submit(AsyncCollectionAdminRequest request,
+            Function<CollectionAdminResponse, T> responseFactory) {
+        final AsyncOperation<T> operation = new AsyncOperation<>(request, responseFactory);
+        synchronized (this) {
+            if (closed) {
+                return failedFuture(new IllegalStateException("helper is closed"));
+            }
+            pendingOperations.add(operation);
+        }
+        dispatch();
+        return operation.future;
+    }
+
+    /** Submits pending operations as long as there are less than {@link #maxConcurrentRequests} in flight. */
+    private void dispatch() {
+        while (true) {
+            final AsyncOperation<?> operation;
+            synchronized (this) {
+                if (closed || inFlightOperations.size() >= maxConcurrentRequests || pendingOperations.isEmpty()) {
+                    return;
+                }
+                operation = pendingOperations.poll();
+                inFlightOperations.add(operation);
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        operation.start();
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // closed concurrently, and the operation was failed by close()
+                return;
+            }
+        }
+    }
+
+    private void onOperationDone(AsyncOperation<?> operation) {
+        synchronized (this) {
+            inFlightOperations.remove(operation);
+        }
+        dispatch();
+    }
+
+    /** Returns the collection's state, after reading its latest state from ZooKeeper. */
+    private DocCollection getUpdatedCollection(String collectionName) {
+        try {
+            solrClient.getZkStateReader().forceUpdateCollection(collectionName);
+        } catch (final KeeperException e) {
+            throw new RuntimeException(e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return getClusterState().getCollection(collectionName);
+    }
+
+    private static Set<String> getReplicaNames(DocCollection collection, String shardName) {
+        final Set<String> replicaNames = Sets.newHashSet();
+        final Slice slice = collection.getSlice(shardName);
+        if (slice != null) {
+            for (final Replica replica : slice.getReplicas()) {
+                replicaNames.add(replica.getName());
+            }
+        }
+        return replicaNames;
+    }
+
+    /**
+     * Returns the response of a completed async request, with a {@code success} section which lists the given cores
+     * per node, like the response of the equivalent synchronous request. The status of an async request only lists
+     * the nodes which succeeded, without the cores that they created.
+     */
+    private static CollectionAdminResponse toSyncResponse(CollectionAdminResponse statusResponse,
+            Collection<Replica> replicas) {
+        final NamedList<Object> success = new NamedList<>();
+        for (final Replica replica : replicas) {
+            final NamedList<Object> coreResponse = new NamedList<>();
+            coreResponse.add("core", replica.getCoreName());
+            success.add(replica.getNodeName(), coreResponse);
+        }
+        final NamedList<Object> response = new NamedList<>();
+        for (final Map.Entry<String, Object> entry : statusResponse.getResponse()) {
+            if (!"success".equals(entry.getKey())) {
+                response.add(entry.getKey(), entry.getValue());
+            }
+        }
+        response.add("success", success);
+        final CollectionAdminResponse syncResponse = new CollectionAdminResponse();
+        syncResponse.setResponse(response);
+        syncResponse.setElapsedTime(statusResponse.getElapsedTime());
+        return syncResponse;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /** An operation which is submitted asynchronously and whose status is polled until it completes. */
+    private final class AsyncOperation<T> {
+
+        private final AsyncCollectionAdminRequest request;
+        private final Function<CollectionAdminResponse, T> responseFactory;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final String asyncId = UUID.randomUUID().toString();
+        private long pollIntervalMs = MIN_POLL_INTERVAL_MS;
+        private boolean submitted = false;
+        /** The time of the first of consecutive poll failures, or -1 if the last poll succeeded. */
+        private long firstPollFailureNanos = -1;
+
+        AsyncOperation(AsyncCollectionAdminRequest request, Function<CollectionAdminResponse, T> responseFactory) {
+            this.request = request;
+            this.responseFactory = responseFactory;
+        }
+
+        void start() {
+            try {
+                request.processAsync(asyncId, solrClient);
+                submitted = true;
+                schedulePoll();
+            } catch (IOException | SolrServerException | RuntimeException e) {
+                complete(null, e, false);
+            }
+        }
+
+        private void schedulePoll() {
+            try {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll();
+                    }
+                }, pollIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                // closed, and the operation was failed by close()
+                return;
+            }
+            pollIntervalMs = Math.min(pollIntervalMs * 2, MAX_POLL_INTERVAL_MS);
+        }
+
+        private void poll() {
+            final CollectionAdminRequest.RequestStatusResponse response;
+            try {
+                response = CollectionAdminRequest.requestStatus(asyncId).process(solrClient);
+                firstPollFailureNanos = -1;
+            } catch (IOException | SolrServerException | SolrException e) {
+                onPollFailure(e);
+                return;
+            }
+            try {
+                final RequestStatusState state = response.getRequestStatus();
+                switch (state) {
+                    case COMPLETED:
+                        complete(responseFactory.apply(response), null, true);
+                        break;
+                    case FAILED:
+                    case NOT_FOUND:
+                        complete(null, new RuntimeException(
+                                "Async request [" + asyncId + "] " + state.getKey() + ": " + response.getResponse()),
+                                true);
+                        break;
+                    default:
+                        schedulePoll();
+                }
+            } catch (final RuntimeException e) {
+                complete(null, e, true);
+            }
+        }
+
+        /** Retries the poll, unless polls have been failing for longer than {@link #maxPollFailureMillis}. */
+        private void onPollFailure(Exception e) {
+            final long now = System.nanoTime();
+            if (firstPollFailureNanos == -1) {
+                firstPollFailureNanos = now;
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(now - firstPollFailureNanos) < maxPollFailureMillis) {
+                LOGGER.warn("Failed to poll the status of async request [{}], retrying", asyncId, e);
+                schedulePoll();
+            } else {
+                // the request may still be running, so keep its async ID for tracking it later
+                complete(null, new RuntimeException("Failed to poll the status of async request [" + asyncId
+                        + "] for " + maxPollFailureMillis + " ms", e), false);
+            }
+        }
+
+        private void complete(T result, Throwable error, boolean deleteAsyncId) {
+            if (deleteAsyncId && submitted) {
+                deleteAsyncId();
+            }
+            onOperationDone(this);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+
+        /** Deletes the stored status of the request, so that it does not pile up in ZooKeeper. */
+        private void deleteAsyncId() {
+            try {
+                CollectionAdminRequest.deleteAsyncId(asyncId).process(solrClient);
+            } catch (IOException | SolrServerException | RuntimeException e) {
+                LOGGER.warn("Failed to delete async request [{}] status", asyncId, e);
+            }
+        }
+    }
+
+}
@@ -16,21 +16,43 @@
  */
 package com.shaie.solr.solrj;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.solr.common.cloud.Replica;
 import org.apache.solr.common.cloud.Slice;
 import org.apache.solr.common.util.NamedList;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+/**
+ * A CLUSTERSTATUS response. Collections are parsed lazily from the raw response: {@link #getCollections()} returns a
+ * view which materializes a {@link Collection} only when it is accessed, and a {@link Collection} materializes its
+ * {@link Slice}s only when they are accessed. Callers which are interested in only some collections can iterate over
+ * them with {@link #getCollections(Predicate)}, which does not retain the parsed collections.
+ */
 public class ClusterStatusResponse extends CollectionAdminResponse {
 
+    private static final ObjectWriter JSON_WRITER = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+    private final NamedList<Object> rawCollections;
     private final Map<String, Collection> collections;
     private final Map<String, String> aliases;
     private final Map<String, List<String>> roles;
@@ -42,66 +64,55 @@ public class ClusterStatusResponse extends CollectionAdminResponse {
 
         if (rawResponse.getStatus() == 0) {
             final NamedList<Object> cluster = (NamedList<Object>) rawResponse.getResponse().get("cluster");
-            collections = getCollections(cluster);
+            rawCollections = (NamedList<Object>) cluster.get("collections");
+            collections = rawCollections == null ? Collections.<String, Collection> emptyMap()
+                    : new LazyCollectionsMap(rawCollections);
             aliases = (Map<String, String>) cluster.get("aliases");
             roles = (Map<String, List<String>>) cluster.get("roles");
             liveNodes = (List<String>) cluster.get("live_nodes");
         } else {
-            collections = null;
+            rawCollections = null;
+            collections = Collections.emptyMap();
             aliases = null;
             roles = null;
             liveNodes = null;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, Collection> getCollections(NamedList<Object> cluster) {
-        final Map<String, Collection> collections = Maps.newHashMap();
-        for (final Entry<String, Object> collectionEntry : (NamedList<Object>) cluster.get("collections")) {
-            final String name = collectionEntry.getKey();
-            final Map<String, Object> collectionValue = (Map<String, Object>) collectionEntry.getValue();
-            final int maxShardsPerNode = Integer.parseInt((String) collectionValue.get("maxShardsPerNode"));
-            final int replicationFactor = Integer.parseInt((String) collectionValue.get("replicationFactor"));
-            final boolean autoCreated = Boolean.parseBoolean((String) collectionValue.get("autoCreated"));
-            final List<String> aliases = (List<String>) collectionValue.get("aliases");
-            final List<Slice> slices = getSlices(collectionValue);
-            collections.put(name, new Collection(name, maxShardsPerNode, replicationFactor, autoCreated, aliases,
-                    slices));
-        }
-        return collections;
-    }
-
-    @SuppressWarnings("unchecked")
-    private static List<Slice> getSlices(final Map<String, Object> collectionValue) {
-        final List<Slice> slices = Lists.newArrayList();
-        for (final Entry<String, Object> shardEntry : ((Map<String, Object>) collectionValue.get("shards"))
-                .entrySet()) {
-            final Map<String, Object> shardValue = (Map<String, Object>) shardEntry.getValue();
-            final Map<String, Replica> shardReplicas = getSliceReplicas(shardValue);
-            slices.add(new Slice(shardEntry.getKey(), shardReplicas, shardValue));
-        }
-        return slices;
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Map<String, Replica> getSliceReplicas(final Map<String, Object> shardValue) {
-        final Map<String, Replica> shardReplicas = Maps.newHashMap();
-        for (final Entry<String, Object> replicaEntry : ((Map<String, Object>) shardValue.get("replicas")).entrySet()) {
-            final String replicaName = replicaEntry.getKey();
-            final Replica replica = new Replica(replicaName, (Map<String, Object>) replicaEntry.getValue());
-            shardReplicas.put(replicaName, replica);
-        }
-        return shardReplicas;
-    }
-
     public Map<String, String> getAliases() {
         return aliases;
     }
 
+    /**
+     * Returns a read-only view of the collections, which parses each collection on first access. Returns an empty map if
+     * the response holds no collections.
+     */
     public Map<String, Collection> getCollections() {
         return collections;
     }
 
+    /**
+     * Returns the collections whose names are accepted by the filter. Collections are parsed while iterating, and are
+     * not cached, so iterating over a few collections of a large response is cheap. Returns an empty iterable if the
+     * response holds no collections.
+     */
+    public Iterable<Collection> getCollections(final Predicate<String> nameFilter) {
+        if (rawCollections == null) {
+            return Collections.emptyList();
+        }
+        return FluentIterable.from(rawCollections).filter(new Predicate<Entry<String, Object>>() {
+            @Override
+            public boolean apply(Entry<String, Object> entry) {
+                return nameFilter.apply(entry.getKey());
+            }
+        }).transform(new Function<Entry<String, Object>, Collection>() {
+            @Override
+            public Collection apply(Entry<String, Object> entry) {
+                return parseCollection(entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
     public List<String> getLiveNodes() {
         return liveNodes;
     }
@@ -120,6 +131,123 @@ public class ClusterStatusResponse extends CollectionAdminResponse {
         return sb.toString();
     }
 
+    @SuppressWarnings("unchecked")
+    private static Collection parseCollection(String name, Object rawCollection) {
+        final Map<String, Object> collectionValue = (Map<String, Object>) rawCollection;
+        final int maxShardsPerNode = toInt(collectionValue.get("maxShardsPerNode"));
+        final int replicationFactor = toInt(collectionValue.get("replicationFactor"));
+        final boolean autoCreated = toBoolean(collectionValue.get("autoCreated"));
+        final List<String> aliases = (List<String>) collectionValue.get("aliases");
+        final Map<String, Object> shards = (Map<String, Object>) collectionValue.get("shards");
+        return new Collection(name, maxShardsPerNode, replicationFactor, autoCreated, aliases,
+                shards == null ? Collections.<String, Object> emptyMap() : shards);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Slice parseSlice(String name, Object rawShard) {
+        final Map<String, Object> shardValue = (Map<String, Object>) rawShard;
+        final Map<String, Replica> shardReplicas = Maps.newLinkedHashMap();
+        final Map<String, Object> replicas = (Map<String, Object>) shardValue.get("replicas");
+        if (replicas != null) {
+            for (final Entry<String, Object> replicaEntry : replicas.entrySet()) {
+                final String replicaName = replicaEntry.getKey();
+                shardReplicas.put(replicaName, new Replica(replicaName, (Map<String, Object>) replicaEntry.getValue()));
+            }
+        }
+        return new Slice(name, shardReplicas, shardValue);
+    }
+
+    /** Converts a numeric property, which javabin responses hold as a number and older responses as a string. */
+    private static int toInt(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    /** A read-only map over the raw collections, which parses and caches each collection on first access. */
+    private static final class LazyCollectionsMap extends AbstractMap<String, Collection> {
+
+        private final NamedList<Object> rawCollections;
+        private final ConcurrentMap<String, Collection> parsed = new ConcurrentHashMap<>();
+        private volatile Map<String, Object> index = null;
+
+        LazyCollectionsMap(NamedList<Object> rawCollections) {
+            this.rawCollections = rawCollections;
+        }
+
+        @Override
+        public Collection get(Object key) {
+            final Collection collection = parsed.get(key);
+            if (collection != null) {
+                return collection;
+            }
+            final Object rawCollection = getIndex().get(key);
+            if (rawCollection == null) {
+                return null;
+            }
+            final Collection newCollection = parseCollection((String) key, rawCollection);
+            final Collection existing = parsed.putIfAbsent((String) key, newCollection);
+            return existing == null ? newCollection : existing;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return getIndex().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return rawCollections.size();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(getIndex().keySet());
+        }
+
+        @Override
+        public Set<Entry<String, Collection>> entrySet() {
+            return new AbstractSet<Entry<String, Collection>>() {
+                @Override
+                public Iterator<Entry<String, Collection>> iterator() {
+                    return Iterators.transform(getIndex().keySet().iterator(),
+                            new Function<String, Entry<String, Collection>>() {
+                                @Override
+                                public Entry<String, Collection> apply(String name) {
+                                    return new SimpleImmutableEntry<>(name, get(name));
+                                }
+                            });
+                }
+
+                @Override
+                public int size() {
+                    return rawCollections.size();
+                }
+            };
+        }
+
+        /** Maps collection names to their raw values, since {@link NamedList} lookups are linear. */
+        private Map<String, Object> getIndex() {
+            Map<String, Object> result = index;
+            if (result == null) {
+                result = Maps.newLinkedHashMap();
+                for (final Entry<String, Object> entry : rawCollections) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+                index = result;
+            }
+            return result;
+        }
+    }
+
     public static class Collection {
 
         private final String name;
@@ -127,16 +255,25 @@ public class ClusterStatusResponse extends CollectionAdminResponse {
         private final int replicationFactor;
         private final boolean autoCreated;
         private final List<String> aliases;
-        private final List<Slice> slices;
+        private final Map<String, Object> rawShards;
+        private final ConcurrentMap<String, Slice> slices = new ConcurrentHashMap<>();
 
         public Collection(String name, int maxShardsPerNode, int replicationFactor, boolean autoCreated,
                 List<String> aliases, List<Slice> slices) {
+            this(name, maxShardsPerNode, replicationFactor, autoCreated, aliases, toRawShards(slices));
+            for (final Slice slice : slices) {
+                this.slices.put(slice.getName(), slice);
+            }
+        }
+
+        private Collection(String name, int maxShardsPerNode, int replicationFactor, boolean autoCreated,
+                List<String> aliases, Map<String, Object> rawShards) {
             this.name = name;
             this.maxShardsPerNode = maxShardsPerNode;
             this.replicationFactor = replicationFactor;
             this.autoCreated = autoCreated;
             this.aliases = aliases;
-            this.slices = slices;
+            this.rawShards = rawShards;
         }
 
         public String getName() {
@@ -159,18 +296,51 @@ public class ClusterStatusResponse extends CollectionAdminResponse {
             return aliases;
         }
 
+        /** Returns the names of the collection's slices, without parsing them. */
+        @JsonIgnore
+        public Set<String> getSliceNames() {
+            return Collections.unmodifiableSet(rawShards.keySet());
+        }
+
+        /** Returns the slice with the given name, or {@code null} if there is no such slice. */
+        public Slice getSlice(String sliceName) {
+            final Slice slice = slices.get(sliceName);
+            if (slice != null) {
+                return slice;
+            }
+            final Object rawShard = rawShards.get(sliceName);
+            if (rawShard == null) {
+                return null;
+            }
+            final Slice newSlice = parseSlice(sliceName, rawShard);
+            final Slice existing = slices.putIfAbsent(sliceName, newSlice);
+            return existing == null ? newSlice : existing;
+        }
+
         public List<Slice> getSlices() {
-            return slices;
+            final List<Slice> result = Lists.newArrayListWithCapacity(rawShards.size());
+            for (final String sliceName : rawShards.keySet()) {
+                result.add(getSlice(sliceName));
+            }
+            return result;
         }
 
         @Override
         public String toString() {
             try {
-                return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(this);
+                return JSON_WRITER.writeValueAsString(this);
             } catch (final JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
         }
+
+        private static Map<String, Object> toRawShards(List<Slice> slices) {
+            final Map<String, Object> rawShards = Maps.newLinkedHashMap();
+            for (final Slice slice : slices) {
+                rawShards.put(slice.getName(), slice.getProperties());
+            }
+            return rawShards;
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Caches the results of {@link UpdatableInfixSuggester} lookups, keyed by the prefix, contexts, number of results and
+ * flags, so that cached lookups do not run a Lucene query at all. The cache holds the results of a single
+ * {@link UpdatableInfixSuggester#getGeneration() generation} of the suggester's searcher: when a refresh publishes a new
+ * searcher, all entries are dropped on the next lookup, and results which were computed by an older searcher are never
+ * stored.
+ *
+ * <p>
+ * Since suggestion traffic is very skewed, the cache uses TinyLFU admission: every lookup is counted in a
+ * {@link FrequencySketch}, and when the cache is full, a new entry replaces the least recently used entry only if its
+ * prefix was looked up more frequently. This keeps popular prefixes cached even when many rare prefixes are looked up
+ * once.
+ * </p>
+ */
+public class CachingSuggester {
+
+    private final UpdatableInfixSuggester suggester;
+    private final int capacity;
+    private final FrequencySketch sketch;
+    /** The cached results in access order, so that the first entry is the least recently used. */
+    private final LinkedHashMap<CacheKey, List<LookupResult>> cache;
+    private long generation = -1;
+
+    private long numHits = 0;
+    private long numMisses = 0;
+    private long numRejected = 0;
+
+    public CachingSuggester(UpdatableInfixSuggester suggester, int capacity) {
+        this.suggester = suggester;
+        this.capacity = capacity;
+        this.sketch = new FrequencySketch(capacity);
+        this.cache = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached results of the lookup, or looks up the suggester. See
+     * {@link UpdatableInfixSuggester#lookup(CharSequence, Set, int, boolean, boolean)}.
+     */
+    public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, int num, boolean allTermsRequired,
+            boolean doHighlight) throws IOException {
+        final CacheKey cacheKey = new CacheKey(key.toString(), contexts, num, allTermsRequired, doHighlight);
+        final long currentGeneration = suggester.getGeneration();
+        synchronized (this) {
+            if (currentGeneration != generation) {
+                cache.clear();
+                generation = currentGeneration;
+            }
+            sketch.increment(cacheKey);
+            final List<LookupResult> results = cache.get(cacheKey);
+            if (results != null) {
+                ++numHits;
+                return results;
+            }
+            ++numMisses;
+        }
+
+        final List<LookupResult> results = ImmutableList.copyOf(
+                suggester.lookup(key, contexts, num, allTermsRequired, doHighlight));
+        synchronized (this) {
+            // do not cache results of a searcher which was already replaced
+            if (currentGeneration == generation) {
+                admit(cacheKey, results);
+            }
+        }
+        return results;
+    }
+
+    /** Returns the number of cached lookups. */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getNumHits() {
+        return numHits;
+    }
+
+    public synchronized long getNumMisses() {
+        return numMisses;
+    }
+
+    /** Returns the number of results which were not cached, since they were less popular than the evicted entry. */
+    public synchronized long getNumRejected() {
+        return numRejected;
+    }
+
+    public synchronized double getHitRate() {
+        final long numLookups = numHits + numMisses;
+        return numLookups == 0 ? 0 : (double) numHits / numLookups;
+    }
+
+    private void admit(CacheKey cacheKey, List<LookupResult> results) {
+        if (cache.size() < capacity || cache.containsKey(cacheKey)) {
+            cache.put(cacheKey, results);
+            return;
+        }
+        final Iterator<Map.Entry<CacheKey, List<LookupResult>>> it = cache.entrySet().iterator();
+        if (!it.hasNext()) {
+            return;
+        }
+        final CacheKey victim = it.next().getKey();
+        if (sketch.frequency(cacheKey) > sketch.frequency(victim)) {
+            it.remove();
+            cache.put(cacheKey, results);
+        } else {
+            ++numRejected;
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final String prefix;
+        private final Set<BytesRef> contexts;
+        private final int num;
+        private final boolean allTermsRequired;
+        private final boolean doHighlight;
+        private final int hashCode;
+
+        CacheKey(String prefix, Set<BytesRef> contexts, int num, boolean allTermsRequired, boolean doHighlight) {
+            this.prefix = prefix;
+            this.contexts = contexts == null ? null : ImmutableSet.copyOf(contexts);
+            this.num = num;
+            this.allTermsRequired = allTermsRequired;
+            this.doHighlight = doHighlight;
+            int result = prefix.hashCode();
+            result = 31 * result + (this.contexts == null ? 0 : this.contexts.hashCode());
+            result = 31 * result + num;
+            result = 31 * result + (allTermsRequired ? 1 : 0);
+            result = 31 * result + (doHighlight ? 1 : 0);
+            this.hashCode = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return prefix.equals(other.prefix) && num == other.num && allTermsRequired == other.allTermsRequired
+                    && doHighlight == other.doHighlight
+                    && (contexts == null ? other.contexts == null : contexts.equals(other.contexts));
+        }
+    }
+
+}
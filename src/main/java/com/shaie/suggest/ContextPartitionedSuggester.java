@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A suggester which builds a separate weighted FST ({@link WFSTCompletionLookup}) for every context, e.g. a user or a
+ * tenant, and one more FST over all suggestions for lookups without contexts. Unlike {@link
+ * org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester}, which filters contexts with a query over its
+ * sidecar index, a lookup only traverses the FSTs of the requested contexts: it finds the top-N suggestions of every
+ * context, and merges them into the overall top-N with a bounded priority queue. A suggestion which appears in several
+ * contexts is returned once, with its highest weight and all its matching contexts.
+ *
+ * <p>
+ * Suggestions are matched by exact prefix (no analysis), weights must be between 0 and {@link Integer#MAX_VALUE}, and
+ * payloads are not supported. Lookups are lock-free and may run concurrently with {@link #build(InputIterator)}, which
+ * publishes the new FSTs atomically when done.
+ * </p>
+ */
+public class ContextPartitionedSuggester extends Lookup {
+
+    private final Directory tempDir;
+    private final String tempFileNamePrefix;
+
+    private volatile Partitions partitions = new Partitions(null, ImmutableMap.<BytesRef, WFSTCompletionLookup> of(),
+            0);
+
+    /** Creates a suggester which uses the given directory for sorting the suggestions while building. */
+    public ContextPartitionedSuggester(Directory tempDir, String tempFileNamePrefix) {
+        this.tempDir = tempDir;
+        this.tempFileNamePrefix = tempFileNamePrefix;
+    }
+
+    @Override
+    public void build(InputIterator inputIterator) throws IOException {
+        if (inputIterator.hasPayloads()) {
+            throw new IllegalArgumentException("this suggester doesn't support payloads");
+        }
+        final List<Entry> allEntries = Lists.newArrayList();
+        final Map<BytesRef, List<Entry>> contextEntries = Maps.newHashMap();
+        BytesRef surface;
+        while ((surface = inputIterator.next()) != null) {
+            final Entry entry = new Entry(BytesRef.deepCopyOf(surface), inputIterator.weight());
+            allEntries.add(entry);
+            if (inputIterator.hasContexts() && inputIterator.contexts() != null) {
+                for (final BytesRef context : inputIterator.contexts()) {
+                    List<Entry> entries = contextEntries.get(context);
+                    if (entries == null) {
+                        entries = Lists.newArrayList();
+                        contextEntries.put(BytesRef.deepCopyOf(context), entries);
+                    }
+                    entries.add(entry);
+                }
+            }
+        }
+
+        final ImmutableMap.Builder<BytesRef, WFSTCompletionLookup> contextLookups = ImmutableMap.builder();
+        for (final Map.Entry<BytesRef, List<Entry>> entries : contextEntries.entrySet()) {
+            contextLookups.put(entries.getKey(), buildLookup(entries.getValue()));
+        }
+        partitions = new Partitions(buildLookup(allEntries), contextLookups.build(), allEntries.size());
+    }
+
+    /**
+     * Returns the top {@code num} suggestions for the given prefix, from the given contexts. If {@code contexts} is
+     * {@code null}, returns the top suggestions of all contexts.
+     */
+    @Override
+    public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, boolean onlyMorePopular, int num)
+            throws IOException {
+        final Partitions current = partitions;
+        if (contexts == null) {
+            return current.allLookup == null ? Collections.<LookupResult> emptyList()
+                    : current.allLookup.lookup(key, null, onlyMorePopular, num);
+        }
+        if (contexts.size() == 1) {
+            final BytesRef context = contexts.iterator().next();
+            return withContext(lookup(current, context, key, onlyMorePopular, num), context);
+        }
+
+        // a suggestion may appear in several contexts, so keep its highest weight and all its contexts
+        final Map<String, Long> weights = Maps.newHashMap();
+        final Map<String, Set<BytesRef>> keyContexts = Maps.newHashMap();
+        for (final BytesRef context : contexts) {
+            for (final LookupResult result : lookup(current, context, key, onlyMorePopular, num)) {
+                final String resultKey = result.key.toString();
+                final Long weight = weights.get(resultKey);
+                if (weight == null || weight.longValue() < result.value) {
+                    weights.put(resultKey, result.value);
+                }
+                Set<BytesRef> resultContexts = keyContexts.get(resultKey);
+                if (resultContexts == null) {
+                    resultContexts = Sets.newHashSet();
+                    keyContexts.put(resultKey, resultContexts);
+                }
+                resultContexts.add(context);
+            }
+        }
+        final LookupPriorityQueue queue = new LookupPriorityQueue(num);
+        for (final Map.Entry<String, Long> weight : weights.entrySet()) {
+            queue.insertWithOverflow(new LookupResult(weight.getKey(), weight.getValue(),
+                    keyContexts.get(weight.getKey())));
+        }
+        return Lists.newArrayList(queue.getResults());
+    }
+
+    /** Returns the contexts which have at least one suggestion. */
+    public Set<BytesRef> getContexts() {
+        return partitions.contextLookups.keySet();
+    }
+
+    @Override
+    public long getCount() {
+        return partitions.count;
+    }
+
+    /**
+     * Stores all FSTs: the number of suggestions, the FST of all suggestions, the number of contexts, and then every
+     * context followed by its FST. An empty build has no FSTs, and is stored as a count of 0 only.
+     */
+    @Override
+    public boolean store(DataOutput output) throws IOException {
+        final Partitions current = partitions;
+        if (current.allLookup == null) {
+            return false;
+        }
+        output.writeVLong(current.count);
+        if (current.count == 0) {
+            return true;
+        }
+        if (!current.allLookup.store(output)) {
+            return false;
+        }
+        output.writeVInt(current.contextLookups.size());
+        for (final Map.Entry<BytesRef, WFSTCompletionLookup> entry : current.contextLookups.entrySet()) {
+            output.writeVInt(entry.getKey().length);
+            output.writeBytes(entry.getKey().bytes, entry.getKey().offset, entry.getKey().length);
+            if (!entry.getValue().store(output)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean load(DataInput input) throws IOException {
+        final long count = input.readVLong();
+        final WFSTCompletionLookup allLookup = newLookup();
+        if (count == 0) {
+            // same as an empty build, whose lookup has no FST
+            partitions = new Partitions(allLookup, ImmutableMap.<BytesRef, WFSTCompletionLookup> of(), 0);
+            return true;
+        }
+        allLookup.load(input);
+        final int numContexts = input.readVInt();
+        final ImmutableMap.Builder<BytesRef, WFSTCompletionLookup> contextLookups = ImmutableMap.builder();
+        for (int i = 0; i < numContexts; i++) {
+            final byte[] context = new byte[input.readVInt()];
+            input.readBytes(context, 0, context.length);
+            final WFSTCompletionLookup lookup = newLookup();
+            lookup.load(input);
+            contextLookups.put(new BytesRef(context), lookup);
+        }
+        partitions = new Partitions(allLookup, contextLookups.build(), count);
+        return true;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        final Partitions current = partitions;
+        long size = current.allLookup == null ? 0 : current.allLookup.ramBytesUsed();
+        for (final Map.Entry<BytesRef, WFSTCompletionLookup> entry : current.contextLookups.entrySet()) {
+            size += entry.getKey().length + entry.getValue().ramBytesUsed();
+        }
+        return size;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        final Partitions current = partitions;
+        final List<Accountable> resources = Lists.newArrayList();
+        if (current.allLookup != null) {
+            resources.add(Accountables.namedAccountable("all", current.allLookup));
+        }
+        for (final Map.Entry<BytesRef, WFSTCompletionLookup> entry : current.contextLookups.entrySet()) {
+            resources.add(Accountables.namedAccountable("context " + entry.getKey().utf8ToString(), entry.getValue()));
+        }
+        return resources;
+    }
+
+    private static List<LookupResult> lookup(Partitions partitions, BytesRef context, CharSequence key,
+            boolean onlyMorePopular, int num) throws IOException {
+        final WFSTCompletionLookup lookup = partitions.contextLookups.get(context);
+        if (lookup == null) {
+            return Collections.emptyList();
+        }
+        return lookup.lookup(key, null, onlyMorePopular, num);
+    }
+
+    private static List<LookupResult> withContext(List<LookupResult> results, BytesRef context) {
+        final Set<BytesRef> contexts = ImmutableSet.of(context);
+        final List<LookupResult> resultsWithContext = Lists.newArrayListWithCapacity(results.size());
+        for (final LookupResult result : results) {
+            resultsWithContext.add(new LookupResult(result.key, result.value, contexts));
+        }
+        return resultsWithContext;
+    }
+
+    private WFSTCompletionLookup buildLookup(List<Entry> entries) throws IOException {
+        final WFSTCompletionLookup lookup = newLookup();
+        lookup.build(new EntriesIterator(entries));
+        return lookup;
+    }
+
+    private WFSTCompletionLookup newLookup() {
+        return new WFSTCompletionLookup(tempDir, tempFileNamePrefix);
+    }
+
+    /** The FSTs of a single build, which are published together. */
+    private static final class Partitions {
+
+        private final WFSTCompletionLookup allLookup;
+        private final Map<BytesRef, WFSTCompletionLookup> contextLookups;
+        private final long count;
+
+        Partitions(WFSTCompletionLookup allLookup, Map<BytesRef, WFSTCompletionLookup> contextLookups, long count) {
+            this.allLookup = allLookup;
+            this.contextLookups = contextLookups;
+            this.count = count;
+        }
+    }
+
+    private static final class Entry {
+
+        private final BytesRef surface;
+        private final long weight;
+
+        Entry(BytesRef surface, long weight) {
+            this.surface = surface;
+            this.weight = weight;
+        }
+    }
+
+    /** Iterates over the suggestions of a single partition. */
+    private static final class EntriesIterator implements InputIterator {
+
+        private final Iterator<Entry> entries;
+        private Entry current;
+
+        EntriesIterator(List<Entry> entries) {
+            this.entries = entries.iterator();
+        }
+
+        @Override
+        public BytesRef next() {
+            current = entries.hasNext() ? entries.next() : null;
+            return current == null ? null : current.surface;
+        }
+
+        @Override
+        public long weight() {
+            return current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+
+}
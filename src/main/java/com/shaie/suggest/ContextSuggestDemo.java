@@ -49,6 +49,11 @@ import org.apache.lucene.util.BytesRef;
  * {@link AnalyzingInfixSuggester#build(org.apache.lucene.search.suggest.InputIterator)} directly, if the dictionary for
  * suggestions exists elsewhere (e.g. in a separate file).
  * </p>
+ *
+ * <p>
+ * AnalyzingInfixSuggester filters the contexts with a query over its sidecar index. For prefix suggestions with many
+ * contexts, {@link ContextPartitionedSuggester} is much faster, since it keeps a separate FST per context.
+ * </p>
  */
 public class ContextSuggestDemo {
 
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+/**
+ * A count-min sketch which estimates the recent access frequency of keys, as used by TinyLFU cache admission. Every
+ * key is counted in {@link #DEPTH} rows, and its frequency is the minimum of its counters, which are capped at
+ * {@link #MAX_COUNT}. After {@code 10 * capacity} increments all counters are halved, so that the sketch reflects
+ * recent popularity rather than all-time popularity. Not thread-safe.
+ */
+final class FrequencySketch {
+
+    static final int DEPTH = 4;
+    static final int MAX_COUNT = 15;
+
+    private static final int[] SEEDS = { 0x97cb3127, 0x2f0b7b25, 0x6a09e667, 0xbb67ae85 };
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int numIncrements = 0;
+
+    /** Creates a sketch for a cache of the given capacity. */
+    FrequencySketch(int capacity) {
+        final int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(1, capacity) * 10;
+    }
+
+    /** Records an access to the key. */
+    void increment(Object key) {
+        final int hash = spread(key.hashCode());
+        boolean incremented = false;
+        for (int i = 0; i < DEPTH; i++) {
+            final int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                ++table[i][index];
+                incremented = true;
+            }
+        }
+        if (incremented && ++numIncrements >= sampleSize) {
+            reset();
+        }
+    }
+
+    /** Returns the estimated number of recent accesses to the key. */
+    int frequency(Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /** Halves all counters. */
+    private void reset() {
+        for (final byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        numIncrements /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        final int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        final int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+}
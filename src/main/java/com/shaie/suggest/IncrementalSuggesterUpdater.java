@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.suggest.DocumentDictionary;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps an {@link UpdatableInfixSuggester} up-to-date with a source index, by applying only the source documents that
+ * changed since the last update, instead of rebuilding the suggester from a {@link DocumentDictionary} over the entire
+ * index. Every source document must index its last update time in {@link Config#setUpdateTimeField(String)
+ * updateTimeField}, as both a {@link LongPoint} and a {@link org.apache.lucene.document.NumericDocValuesField}. The
+ * largest update time that was applied is stored as a watermark in the commit user data of the suggester's sidecar
+ * index, so that updates resume from it after a restart.
+ *
+ * <p>
+ * Documents are read like {@link DocumentDictionary} does: the suggestion's text is the stored value of
+ * {@code textField}, its weight is the numeric doc value of {@code weightField}, and its contexts are the stored values
+ * of {@code contextsField}. Deleted documents must be kept as tombstones, which index {@code deletedField} with the
+ * value {@code true}, until the suggester was updated. Their suggestion is deleted, unless {@code exactTextField}, an
+ * un-analyzed copy of the text, is set and another live document still has the same text.
+ * </p>
+ *
+ * <p>
+ * <b>NOTE:</b> the suggester holds a single suggestion per text, and does not know which documents it came from.
+ * Therefore if a document's text changes, its previous suggestion remains until it is deleted, or the suggester is
+ * rebuilt. Also, only documents with update times larger than the watermark are applied, so update times must increase
+ * in the order documents become visible, e.g. by assigning them from a sequence in the indexing process.
+ * </p>
+ */
+public class IncrementalSuggesterUpdater {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalSuggesterUpdater.class);
+
+    /** The commit user data key of the update watermark. */
+    public static final String WATERMARK_KEY = "suggest.watermark";
+
+    private static final String DELETED_VALUE = "true";
+
+    private final UpdatableInfixSuggester suggester;
+    private final Config config;
+
+    public IncrementalSuggesterUpdater(UpdatableInfixSuggester suggester, Config config) {
+        this.suggester = suggester;
+        this.config = config;
+    }
+
+    /**
+     * Applies the documents of the source index which changed since the last update, and commits and (optionally)
+     * refreshes the suggester. If the suggester was never updated, all documents are applied.
+     */
+    public synchronized Result update(IndexReader source) throws IOException {
+        final long watermark = getWatermark();
+        final IndexSearcher searcher = new IndexSearcher(source);
+        final long minUpdateTime = watermark == Long.MIN_VALUE ? Long.MIN_VALUE : watermark + 1;
+        final Query changed = LongPoint.newRangeQuery(config.updateTimeField, minUpdateTime, Long.MAX_VALUE);
+        final ChangesCollector changes = new ChangesCollector();
+        if (config.deletedField != null) {
+            searcher.search(new BooleanQuery.Builder()
+                    .add(changed, Occur.FILTER)
+                    .add(new TermQuery(new Term(config.deletedField, DELETED_VALUE)), Occur.MUST_NOT)
+                    .build(), changes);
+            changes.collectingDeletes = true;
+            searcher.search(new BooleanQuery.Builder()
+                    .add(changed, Occur.FILTER)
+                    .add(new TermQuery(new Term(config.deletedField, DELETED_VALUE)), Occur.FILTER)
+                    .build(), changes);
+        } else {
+            searcher.search(changed, changes);
+        }
+
+        // deletes are applied first, so that a text which was both deleted and updated remains
+        int numDeleted = 0;
+        for (final BytesRef text : changes.deletes) {
+            if (!hasLiveDocument(searcher, text)) {
+                suggester.delete(text);
+                ++numDeleted;
+            }
+        }
+        for (final Suggestion suggestion : changes.updates) {
+            suggester.update(suggestion.text, suggestion.contexts, suggestion.weight, null);
+        }
+        // the watermark advances even if no suggestion changed, e.g. when all deleted texts are still live, so that
+        // the same documents are not read again
+        final long newWatermark = Math.max(watermark, changes.maxUpdateTime);
+        final boolean suggestionsChanged = !changes.updates.isEmpty() || numDeleted > 0;
+        if (!suggestionsChanged && newWatermark == watermark) {
+            return new Result(0, 0, watermark);
+        }
+
+        suggester.commit(ImmutableMap.of(WATERMARK_KEY, Long.toString(newWatermark)));
+        if (config.refreshOnUpdate && suggestionsChanged) {
+            suggester.refresh();
+        }
+        final Result result = new Result(changes.updates.size(), numDeleted, newWatermark);
+        LOGGER.debug("Updated suggester: {}", result);
+        return result;
+    }
+
+    /** Returns the largest update time that was applied, or {@link Long#MIN_VALUE} if none. */
+    public long getWatermark() throws IOException {
+        final String watermark = suggester.getCommitData().get(WATERMARK_KEY);
+        return watermark == null ? Long.MIN_VALUE : Long.parseLong(watermark);
+    }
+
+    private boolean hasLiveDocument(IndexSearcher searcher, BytesRef text) throws IOException {
+        if (config.exactTextField == null) {
+            return false;
+        }
+        final BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(config.exactTextField, text)), Occur.FILTER);
+        if (config.deletedField != null) {
+            query.add(new TermQuery(new Term(config.deletedField, DELETED_VALUE)), Occur.MUST_NOT);
+        }
+        return searcher.count(query.build()) > 0;
+    }
+
+    /** Reads the changed documents' suggestions, and their largest update time. */
+    private final class ChangesCollector extends SimpleCollector {
+
+        private final List<Suggestion> updates = Lists.newArrayList();
+        private final List<BytesRef> deletes = Lists.newArrayList();
+        private long maxUpdateTime = Long.MIN_VALUE;
+        private boolean collectingDeletes = false;
+
+        private LeafReader reader;
+        private NumericDocValues updateTimes;
+        private NumericDocValues weights;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            reader = context.reader();
+            updateTimes = DocValues.getNumeric(reader, config.updateTimeField);
+            weights = config.weightField == null ? null : DocValues.getNumeric(reader, config.weightField);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (updateTimes.advanceExact(doc)) {
+                maxUpdateTime = Math.max(maxUpdateTime, updateTimes.longValue());
+            }
+            final Document document = reader.document(doc);
+            final IndexableField text = document.getField(config.textField);
+            if (text == null) {
+                return;
+            }
+            final BytesRef textValue = toBytesRef(text);
+            if (collectingDeletes) {
+                deletes.add(textValue);
+                return;
+            }
+            final long weight = weights != null && weights.advanceExact(doc) ? weights.longValue() : 0;
+            Set<BytesRef> contexts = null;
+            if (config.contextsField != null) {
+                contexts = Sets.newHashSet();
+                for (final IndexableField context : document.getFields(config.contextsField)) {
+                    contexts.add(toBytesRef(context));
+                }
+            }
+            updates.add(new Suggestion(textValue, contexts, weight));
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        private BytesRef toBytesRef(IndexableField field) {
+            final BytesRef value = field.binaryValue();
+            return value != null ? BytesRef.deepCopyOf(value) : new BytesRef(field.stringValue());
+        }
+    }
+
+    private static final class Suggestion {
+
+        private final BytesRef text;
+        private final Set<BytesRef> contexts;
+        private final long weight;
+
+        Suggestion(BytesRef text, Set<BytesRef> contexts, long weight) {
+            this.text = text;
+            this.contexts = contexts;
+            this.weight = weight;
+        }
+    }
+
+    /** The source index fields. */
+    public static final class Config {
+
+        private String textField;
+        private String weightField;
+        private String contextsField;
+        private String updateTimeField;
+        private String deletedField;
+        private String exactTextField;
+        private boolean refreshOnUpdate = true;
+
+        public Config setTextField(String textField) {
+            this.textField = textField;
+            return this;
+        }
+
+        public Config setWeightField(String weightField) {
+            this.weightField = weightField;
+            return this;
+        }
+
+        public Config setContextsField(String contextsField) {
+            this.contextsField = contextsField;
+            return this;
+        }
+
+        /** Sets the field which holds the documents' last update time, e.g. in milliseconds since the epoch. */
+        public Config setUpdateTimeField(String updateTimeField) {
+            this.updateTimeField = updateTimeField;
+            return this;
+        }
+
+        /** Sets the field which marks tombstones of deleted documents. */
+        public Config setDeletedField(String deletedField) {
+            this.deletedField = deletedField;
+            return this;
+        }
+
+        /** Sets the field which holds an un-analyzed copy of the text, used to keep texts of live documents. */
+        public Config setExactTextField(String exactTextField) {
+            this.exactTextField = exactTextField;
+            return this;
+        }
+
+        /**
+         * Sets whether to refresh the suggester after every update. Disable it if the suggester is refreshed in the
+         * background, e.g. by a {@link SuggesterRefreshManager}.
+         */
+        public Config setRefreshOnUpdate(boolean refreshOnUpdate) {
+            this.refreshOnUpdate = refreshOnUpdate;
+            return this;
+        }
+    }
+
+    /** Summarizes an update. */
+    public static final class Result {
+
+        private final int numUpdated;
+        private final int numDeleted;
+        private final long watermark;
+
+        Result(int numUpdated, int numDeleted, long watermark) {
+            this.numUpdated = numUpdated;
+            this.numDeleted = numDeleted;
+            this.watermark = watermark;
+        }
+
+        /** Returns the number of suggestions which were added or updated. */
+        public int getNumUpdated() {
+            return numUpdated;
+        }
+
+        public int getNumDeleted() {
+            return numDeleted;
+        }
+
+        /** Returns the watermark after the update. */
+        public long getWatermark() {
+            return watermark;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [updated=" + numUpdated + ", deleted=" + numDeleted + ", watermark=" + watermark + "]";
+        }
+    }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A suggester which partitions the suggestions into N {@link AnalyzingInfixSuggester} shards by the hash of their
+ * text, so that builds and lookups use several cores. {@link #build(InputIterator)} reads the suggestions once and
+ * streams every suggestion to its shard through a bounded queue, while all shards build concurrently. A lookup runs on
+ * all shards in parallel on a {@link ForkJoinPool}, and the shards' top-N results are merged by weight. Since a text is
+ * always routed to the same shard, the merged results hold no duplicates.
+ *
+ * <p>
+ * Like {@link AnalyzingInfixSuggester}, the shards are stored in their own directories, and therefore
+ * {@link #store(DataOutput)} and {@link #load(DataInput)} are not supported.
+ * </p>
+ */
+public class ShardedSuggester extends Lookup implements Closeable {
+
+    /** Creates the suggester of every shard. */
+    public static interface ShardFactory {
+        AnalyzingInfixSuggester create(int shard) throws IOException;
+    }
+
+    private static final int QUEUE_SIZE = 10000;
+    private static final Entry END = new Entry(null, 0, null, null);
+
+    private final List<AnalyzingInfixSuggester> shards;
+    private final ForkJoinPool pool;
+
+    /** Creates a sharded suggester whose lookups run on the common {@link ForkJoinPool}. */
+    public ShardedSuggester(int numShards, ShardFactory shardFactory) throws IOException {
+        this(numShards, shardFactory, ForkJoinPool.commonPool());
+    }
+
+    public ShardedSuggester(int numShards, ShardFactory shardFactory, ForkJoinPool pool) throws IOException {
+        final List<AnalyzingInfixSuggester> shards = Lists.newArrayList();
+        for (int i = 0; i < numShards; i++) {
+            shards.add(shardFactory.create(i));
+        }
+        this.shards = ImmutableList.copyOf(shards);
+        this.pool = pool;
+    }
+
+    /** Builds all shards concurrently, and refreshes them. */
+    @Override
+    public void build(final InputIterator inputIterator) throws IOException {
+        final List<BlockingQueue<Entry>> queues = Lists.newArrayList();
+        final List<Future<?>> builds = Lists.newArrayList();
+        final ExecutorService executor = Executors.newFixedThreadPool(shards.size(),
+                new ThreadFactoryBuilder().setNameFormat("suggester-build-%d").setDaemon(true).build());
+        try {
+            for (final AnalyzingInfixSuggester shard : shards) {
+                final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+                queues.add(queue);
+                builds.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        shard.build(new QueueInputIterator(queue, inputIterator.hasPayloads(),
+                                inputIterator.hasContexts()));
+                        shard.refresh();
+                        return null;
+                    }
+                }));
+            }
+
+            BytesRef surface;
+            while ((surface = inputIterator.next()) != null) {
+                final Entry entry = new Entry(BytesRef.deepCopyOf(surface), inputIterator.weight(),
+                        inputIterator.hasPayloads() ? copyOf(inputIterator.payload()) : null,
+                        inputIterator.hasContexts() ? copyOf(inputIterator.contexts()) : null);
+                final int shard = getShard(surface);
+                put(queues.get(shard), entry, builds.get(shard));
+            }
+            for (int i = 0; i < shards.size(); i++) {
+                put(queues.get(i), END, builds.get(i));
+            }
+            for (final Future<?> build : builds) {
+                get(build);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public List<LookupResult> lookup(final CharSequence key, final Set<BytesRef> contexts,
+            final boolean onlyMorePopular, final int num) throws IOException {
+        return lookup(num, new ShardLookup() {
+            @Override
+            public List<LookupResult> lookup(AnalyzingInfixSuggester shard) throws IOException {
+                return shard.lookup(key, contexts, onlyMorePopular, num);
+            }
+        });
+    }
+
+    /** See {@link AnalyzingInfixSuggester#lookup(CharSequence, Set, int, boolean, boolean)}. */
+    public List<LookupResult> lookup(final CharSequence key, final Set<BytesRef> contexts, final int num,
+            final boolean allTermsRequired, final boolean doHighlight) throws IOException {
+        return lookup(num, new ShardLookup() {
+            @Override
+            public List<LookupResult> lookup(AnalyzingInfixSuggester shard) throws IOException {
+                return shard.lookup(key, contexts, num, allTermsRequired, doHighlight);
+            }
+        });
+    }
+
+    /** Refreshes all shards. */
+    public void refresh() throws IOException {
+        for (final AnalyzingInfixSuggester shard : shards) {
+            shard.refresh();
+        }
+    }
+
+    public int getNumShards() {
+        return shards.size();
+    }
+
+    @Override
+    public long getCount() throws IOException {
+        long count = 0;
+        for (final AnalyzingInfixSuggester shard : shards) {
+            count += shard.getCount();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean store(DataOutput output) throws IOException {
+        return false;
+    }
+
+    @Override
+    public boolean load(DataInput input) throws IOException {
+        return false;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        long size = 0;
+        for (final AnalyzingInfixSuggester shard : shards) {
+            size += shard.ramBytesUsed();
+        }
+        return size;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        final List<Accountable> resources = Lists.newArrayList();
+        for (int i = 0; i < shards.size(); i++) {
+            resources.add(Accountables.namedAccountable("shard " + i, shards.get(i)));
+        }
+        return resources;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOUtils.close(shards);
+    }
+
+    /** Runs the lookup on all shards in parallel, and merges their top results. */
+    private List<LookupResult> lookup(int num, final ShardLookup shardLookup) throws IOException {
+        if (shards.size() == 1) {
+            return shardLookup.lookup(shards.get(0));
+        }
+        final List<ForkJoinTask<List<LookupResult>>> tasks = Lists.newArrayList();
+        for (final AnalyzingInfixSuggester shard : shards) {
+            tasks.add(pool.submit(new Callable<List<LookupResult>>() {
+                @Override
+                public List<LookupResult> call() throws IOException {
+                    return shardLookup.lookup(shard);
+                }
+            }));
+        }
+        final LookupPriorityQueue queue = new LookupPriorityQueue(num);
+        for (final ForkJoinTask<List<LookupResult>> task : tasks) {
+            for (final LookupResult result : get(task)) {
+                queue.insertWithOverflow(result);
+            }
+        }
+        return Lists.newArrayList(queue.getResults());
+    }
+
+    private int getShard(BytesRef surface) {
+        // BytesRef's hash code is a murmur hash, so texts are spread evenly
+        return Math.floorMod(surface.hashCode(), shards.size());
+    }
+
+    /** Puts the entry in the queue, unless the shard's build failed. */
+    private static void put(BlockingQueue<Entry> queue, Entry entry, Future<?> build) throws IOException {
+        try {
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                if (build.isDone()) {
+                    get(build);
+                    throw new IllegalStateException("shard build completed before all suggestions were read");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static BytesRef copyOf(BytesRef bytes) {
+        return bytes == null ? null : BytesRef.deepCopyOf(bytes);
+    }
+
+    private static Set<BytesRef> copyOf(Set<BytesRef> contexts) {
+        if (contexts == null) {
+            return null;
+        }
+        final Set<BytesRef> copy = Sets.newHashSetWithExpectedSize(contexts.size());
+        for (final BytesRef context : contexts) {
+            copy.add(BytesRef.deepCopyOf(context));
+        }
+        return copy;
+    }
+
+    private static interface ShardLookup {
+        List<LookupResult> lookup(AnalyzingInfixSuggester shard) throws IOException;
+    }
+
+    private static final class Entry {
+
+        private final BytesRef surface;
+        private final long weight;
+        private final BytesRef payload;
+        private final Set<BytesRef> contexts;
+
+        Entry(BytesRef surface, long weight, BytesRef payload, Set<BytesRef> contexts) {
+            this.surface = surface;
+            this.weight = weight;
+            this.payload = payload;
+            this.contexts = contexts;
+        }
+    }
+
+    /** Iterates over the suggestions of a single shard, as they are read from the input. */
+    private static final class QueueInputIterator implements InputIterator {
+
+        private final BlockingQueue<Entry> queue;
+        private final boolean hasPayloads;
+        private final boolean hasContexts;
+        private Entry current;
+
+        QueueInputIterator(BlockingQueue<Entry> queue, boolean hasPayloads, boolean hasContexts) {
+            this.queue = queue;
+            this.hasPayloads = hasPayloads;
+            this.hasContexts = hasContexts;
+        }
+
+        @Override
+        public BytesRef next() throws IOException {
+            try {
+                current = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            return current == END ? null : current.surface;
+        }
+
+        @Override
+        public long weight() {
+            return current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return current.payload;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return hasPayloads;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return current.contexts;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return hasContexts;
+        }
+    }
+
+}
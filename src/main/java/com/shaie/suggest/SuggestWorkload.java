@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.shaie.solr.load.CorpusGenerator;
+import com.shaie.utils.ZipfSampler;
+
+/**
+ * Generates suggestions and lookups which resemble a real suggestion workload. Suggestions are phrases of one to four
+ * words from a {@link CorpusGenerator} vocabulary, each belonging to one to three contexts (e.g. users), where the
+ * contexts follow a Zipf distribution. The popularity of suggestions follows a Zipf distribution too: the weight of a
+ * suggestion is proportional to its popularity, and lookups are prefixes of suggestions drawn by popularity, so that a
+ * few prefixes are very frequent and most are rare. Most prefixes are short, as they are typed by users.
+ *
+ * <p>
+ * Workloads created with the same parameters and seed generate the same suggestions. Generating lookups takes a
+ * {@link Random} so that multiple threads can share a workload.
+ * </p>
+ */
+public class SuggestWorkload {
+
+    private static final int VOCABULARY_SIZE = 50000;
+    private static final double POPULARITY_EXPONENT = 1.0;
+    private static final double CONTEXTS_EXPONENT = 1.2;
+    private static final long MAX_WEIGHT = 1000000;
+    private static final int MAX_PREFIX_CHARS = 12;
+
+    private final List<Suggestion> suggestions;
+    private final List<BytesRef> contexts;
+    private final ZipfSampler popularitySampler;
+    private final ZipfSampler contextSampler;
+
+    public SuggestWorkload(int numSuggestions, int numContexts, long seed) {
+        final Random random = new Random(seed);
+        final CorpusGenerator generator = new CorpusGenerator(VOCABULARY_SIZE, seed);
+        this.contextSampler = new ZipfSampler(numContexts, CONTEXTS_EXPONENT);
+        final List<BytesRef> contexts = Lists.newArrayListWithCapacity(numContexts);
+        for (int i = 0; i < numContexts; i++) {
+            contexts.add(new BytesRef("context" + i));
+        }
+        this.contexts = ImmutableList.copyOf(contexts);
+
+        final Set<String> texts = Sets.newLinkedHashSet();
+        while (texts.size() < numSuggestions) {
+            final int numWords = 1 + random.nextInt(4);
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < numWords; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(generator.nextWord(random));
+            }
+            texts.add(sb.toString());
+        }
+        final List<Suggestion> suggestions = Lists.newArrayListWithCapacity(numSuggestions);
+        for (final String text : texts) {
+            final int rank = suggestions.size();
+            final long weight = Math.max(1, MAX_WEIGHT / (rank + 1));
+            suggestions.add(new Suggestion(new BytesRef(text), weight, nextContexts(random)));
+        }
+        this.suggestions = ImmutableList.copyOf(suggestions);
+        this.popularitySampler = new ZipfSampler(numSuggestions, POPULARITY_EXPONENT);
+    }
+
+    /** Returns the suggestions, ordered from the most to the least popular. */
+    public List<Suggestion> getSuggestions() {
+        return suggestions;
+    }
+
+    /** Returns an iterator over all suggestions, with or without their contexts, for building a suggester. */
+    public InputIterator newInputIterator(boolean withContexts) {
+        return new SuggestionIterator(suggestions.iterator(), withContexts);
+    }
+
+    /**
+     * Returns a random lookup: a prefix of a suggestion drawn by popularity, and with probability
+     * {@code contextProbability} a single context to filter by.
+     */
+    public PrefixLookup nextLookup(Random random, double contextProbability) {
+        final String text = suggestions.get(popularitySampler.sample(random)).text.utf8ToString();
+        final int prefixLength = 1 + random.nextInt(Math.min(text.length(), MAX_PREFIX_CHARS));
+        final String prefix = text.substring(0, prefixLength).trim();
+        final Set<BytesRef> lookupContexts = random.nextDouble() < contextProbability
+                ? ImmutableSet.of(contexts.get(contextSampler.sample(random))) : null;
+        return new PrefixLookup(prefix, lookupContexts);
+    }
+
+    private Set<BytesRef> nextContexts(Random random) {
+        final int numContexts = Math.min(contexts.size(), 1 + random.nextInt(3));
+        final Set<BytesRef> suggestionContexts = Sets.newHashSet();
+        while (suggestionContexts.size() < numContexts) {
+            suggestionContexts.add(contexts.get(contextSampler.sample(random)));
+        }
+        return ImmutableSet.copyOf(suggestionContexts);
+    }
+
+    /** A generated suggestion. */
+    public static final class Suggestion {
+
+        private final BytesRef text;
+        private final long weight;
+        private final Set<BytesRef> contexts;
+
+        Suggestion(BytesRef text, long weight, Set<BytesRef> contexts) {
+            this.text = text;
+            this.weight = weight;
+            this.contexts = contexts;
+        }
+
+        public BytesRef getText() {
+            return text;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public Set<BytesRef> getContexts() {
+            return contexts;
+        }
+    }
+
+    /** A generated lookup, whose contexts are {@code null} if it does not filter by contexts. */
+    public static final class PrefixLookup {
+
+        private final String prefix;
+        private final Set<BytesRef> contexts;
+
+        PrefixLookup(String prefix, Set<BytesRef> contexts) {
+            this.prefix = prefix;
+            this.contexts = contexts;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public Set<BytesRef> getContexts() {
+            return contexts;
+        }
+    }
+
+    private static final class SuggestionIterator implements InputIterator {
+
+        private final Iterator<Suggestion> it;
+        private final boolean withContexts;
+        private Suggestion current;
+
+        SuggestionIterator(Iterator<Suggestion> it, boolean withContexts) {
+            this.it = it;
+            this.withContexts = withContexts;
+        }
+
+        @Override
+        public BytesRef next() {
+            current = it.hasNext() ? it.next() : null;
+            return current == null ? null : current.text;
+        }
+
+        @Override
+        public long weight() {
+            return current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return withContexts ? current.contexts : null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return withContexts;
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.RAMDirectory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.shaie.solr.load.LatencyRecorder;
+import com.shaie.utils.Utils;
+
+/**
+ * Benchmarks suggesters on a {@link SuggestWorkload}. For every suggester it measures the build time, the memory
+ * footprint as reported by {@link Lookup#ramBytesUsed()}, and the throughput and latencies of lookups which run
+ * concurrently on several threads. Every thread looks up its own Zipfian stream of prefixes, which is derived from the
+ * configured seed, so that all suggesters are measured with the same lookups.
+ *
+ * <p>
+ * Suggesters which do not support contexts (e.g. {@link WFSTCompletionLookup}) are built without contexts, and their
+ * lookups do not filter by contexts. {@link #print(List, PrintStream)} prints a fixed set of columns, in a fixed order
+ * and units, so that reports of different runs and suggesters can be compared and diffed.
+ * </p>
+ */
+public class SuggesterBenchmark {
+
+    /** Creates the suggester under test. */
+    public static interface SuggesterFactory {
+        Lookup create() throws IOException;
+    }
+
+    private final SuggestWorkload workload;
+    private final Config config;
+
+    public SuggesterBenchmark(SuggestWorkload workload, Config config) {
+        this.workload = workload;
+        this.config = config;
+    }
+
+    /** Builds the suggester, runs the lookups and closes the suggester. */
+    public Result run(String name, boolean supportsContexts, SuggesterFactory factory) throws IOException {
+        final Lookup suggester = factory.create();
+        try {
+            final long buildStart = System.nanoTime();
+            suggester.build(workload.newInputIterator(supportsContexts));
+            final long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+            final long ramBytesUsed = suggester.ramBytesUsed();
+
+            runLookups(suggester, supportsContexts, config.numWarmupLookups, config.seed - 1, new LatencyRecorder());
+            final LatencyRecorder latencies = new LatencyRecorder();
+            final long lookupsStart = System.nanoTime();
+            runLookups(suggester, supportsContexts, config.numLookups, config.seed, latencies);
+            final long lookupsNanos = System.nanoTime() - lookupsStart;
+
+            final long numLookups = (long) config.numLookups * config.numThreads;
+            return new Result(name, buildMillis, ramBytesUsed, numLookups,
+                    numLookups * TimeUnit.SECONDS.toNanos(1) / (double) lookupsNanos, latencies.sampleInterval());
+        } finally {
+            if (suggester instanceof Closeable) {
+                ((Closeable) suggester).close();
+            }
+        }
+    }
+
+    /** Runs {@code numLookups} lookups on each of the configured number of threads, which start together. */
+    private void runLookups(final Lookup suggester, final boolean supportsContexts, final int numLookups, long seed,
+            final LatencyRecorder latencies) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(config.numThreads,
+                new ThreadFactoryBuilder().setNameFormat("suggester-benchmark-%d").setDaemon(true).build());
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Void>> futures = Lists.newArrayList();
+            for (int i = 0; i < config.numThreads; i++) {
+                final Random random = new Random(seed * 31 + i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < numLookups; j++) {
+                            final SuggestWorkload.PrefixLookup lookup = workload.nextLookup(random,
+                                    supportsContexts ? config.contextProbability : 0);
+                            final long lookupStart = System.nanoTime();
+                            suggester.lookup(lookup.getPrefix(), lookup.getContexts(), false, config.numResults);
+                            latencies.record(lookupStart, System.nanoTime());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Prints a header line and a line per result, with latencies in microseconds. */
+    public static void print(List<Result> results, PrintStream out) {
+        out.println(Utils.format("%-24s %10s %12s %10s %12s %9s %9s %9s %9s", "suggester", "build(ms)", "ram(bytes)",
+                "lookups", "lookups/s", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (final Result result : results) {
+            out.println(Utils.format("%-24s %10d %12d %10d %12.1f %9d %9d %9d %9d", result.name, result.buildMillis,
+                    result.ramBytesUsed, result.numLookups, result.lookupsPerSecond,
+                    result.latencies.getValueAtPercentile(50), result.latencies.getValueAtPercentile(99),
+                    result.latencies.getValueAtPercentile(99.9), result.latencies.getMaxValue()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final SuggestWorkload workload = new SuggestWorkload(100000, 1000, 42);
+        final SuggesterBenchmark benchmark = new SuggesterBenchmark(workload, new Config());
+        final Analyzer analyzer = new SimpleAnalyzer();
+        final List<Result> results = Lists.newArrayList();
+        results.add(benchmark.run("AnalyzingInfixSuggester", true, new SuggesterFactory() {
+            @Override
+            public Lookup create() throws IOException {
+                return new AnalyzingInfixSuggester(new RAMDirectory(), analyzer, analyzer, 1, true);
+            }
+        }));
+        results.add(benchmark.run("ShardedSuggester", true, new SuggesterFactory() {
+            @Override
+            public Lookup create() throws IOException {
+                return new ShardedSuggester(Runtime.getRuntime().availableProcessors(),
+                        new ShardedSuggester.ShardFactory() {
+                            @Override
+                            public AnalyzingInfixSuggester create(int shard) throws IOException {
+                                return new AnalyzingInfixSuggester(new RAMDirectory(), analyzer, analyzer, 1, true);
+                            }
+                        });
+            }
+        }));
+        results.add(benchmark.run("ContextPartitioned", true, new SuggesterFactory() {
+            @Override
+            public Lookup create() throws IOException {
+                return new ContextPartitionedSuggester(new RAMDirectory(), "suggest");
+            }
+        }));
+        results.add(benchmark.run("WFSTCompletionLookup", false, new SuggesterFactory() {
+            @Override
+            public Lookup create() throws IOException {
+                return new WFSTCompletionLookup(new RAMDirectory(), "suggest");
+            }
+        }));
+        print(results, System.out);
+    }
+
+    /** The results of benchmarking a single suggester. Latencies are in microseconds. */
+    public static final class Result {
+
+        private final String name;
+        private final long buildMillis;
+        private final long ramBytesUsed;
+        private final long numLookups;
+        private final double lookupsPerSecond;
+        private final Histogram latencies;
+
+        public Result(String name, long buildMillis, long ramBytesUsed, long numLookups, double lookupsPerSecond,
+                Histogram latencies) {
+            this.name = name;
+            this.buildMillis = buildMillis;
+            this.ramBytesUsed = ramBytesUsed;
+            this.numLookups = numLookups;
+            this.lookupsPerSecond = lookupsPerSecond;
+            this.latencies = latencies;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBuildMillis() {
+            return buildMillis;
+        }
+
+        public long getRamBytesUsed() {
+            return ramBytesUsed;
+        }
+
+        public long getNumLookups() {
+            return numLookups;
+        }
+
+        public double getLookupsPerSecond() {
+            return lookupsPerSecond;
+        }
+
+        public Histogram getLatencies() {
+            return latencies;
+        }
+    }
+
+    /** The benchmark settings. */
+    public static final class Config {
+
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int numWarmupLookups = 10000;
+        private int numLookups = 100000;
+        private int numResults = 10;
+        private double contextProbability = 0.3;
+        private long seed = 0;
+
+        /** Sets the number of threads which run lookups concurrently. */
+        public Config setNumThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /** Sets the number of unmeasured lookups per thread, which run before the measured ones. */
+        public Config setNumWarmupLookups(int numWarmupLookups) {
+            this.numWarmupLookups = numWarmupLookups;
+            return this;
+        }
+
+        /** Sets the number of measured lookups per thread. */
+        public Config setNumLookups(int numLookups) {
+            this.numLookups = numLookups;
+            return this;
+        }
+
+        /** Sets the number of suggestions every lookup requests. */
+        public Config setNumResults(int numResults) {
+            this.numResults = numResults;
+            return this;
+        }
+
+        /** Sets the probability that a lookup filters by a context, for suggesters which support contexts. */
+        public Config setContextProbability(double contextProbability) {
+            this.contextProbability = contextProbability;
+            return this;
+        }
+
+        /** Sets the seed of the lookup streams. */
+        public Config setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+    }
+
+}
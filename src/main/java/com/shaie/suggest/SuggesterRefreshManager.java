@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Refreshes an {@link UpdatableInfixSuggester} in the background, instead of calling {@link
+ * UpdatableInfixSuggester#refresh()} synchronously after every change. Refreshes run on a single thread, periodically
+ * and whenever {@link #requestRefresh()} is called (requests which arrive while a refresh is pending are coalesced).
+ *
+ * <p>
+ * The suggester's searchers are managed by a {@link org.apache.lucene.search.SearcherManager}: lookups acquire the
+ * current searcher without waiting for a refresh, and a refresh publishes a new searcher only after it was warmed. New
+ * searchers are warmed by running the lookups of the most popular recent prefixes, which are tracked by
+ * {@link #lookup(CharSequence, Set, int, boolean, boolean)}. Therefore lookups never block on a refresh nor see a cold
+ * searcher.
+ * </p>
+ */
+public class SuggesterRefreshManager implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SuggesterRefreshManager.class);
+
+    private final UpdatableInfixSuggester suggester;
+    private final Config config;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicLong numRefreshes = new AtomicLong();
+
+    private final PrefixTracker prefixTracker;
+    private volatile List<String> warmingPrefixes = ImmutableList.of();
+
+    public SuggesterRefreshManager(UpdatableInfixSuggester suggester, Config config) {
+        this.suggester = suggester;
+        this.config = config;
+        this.prefixTracker = new PrefixTracker(config.maxTrackedPrefixes, config.numWarmingPrefixes);
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("suggester-refresh-%d").setDaemon(true).build());
+    }
+
+    /** Installs the warming searcher factory in the suggester, and starts the periodic refreshes. */
+    public void start() throws IOException {
+        suggester.setSearcherFactory(new WarmingSearcherFactory());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, config.refreshIntervalMillis, config.refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Requests an asynchronous refresh, e.g. after the suggester was updated. */
+    public void requestRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refreshPending.set(false);
+                    refresh();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // closed
+            refreshPending.set(false);
+        }
+    }
+
+    /**
+     * Looks up suggestions from the current searcher, and records the prefix for warming future searchers, unless the
+     * prefix tracker is busy recording another lookup's prefix.
+     */
+    public List<LookupResult> lookup(CharSequence key, Set<BytesRef> contexts, int num, boolean allTermsRequired,
+            boolean doHighlight) throws IOException {
+        prefixTracker.record(key.toString());
+        return suggester.lookup(key, contexts, num, allTermsRequired, doHighlight);
+    }
+
+    /** Returns the number of refreshes which completed. */
+    public long getNumRefreshes() {
+        return numRefreshes.get();
+    }
+
+    /** Returns the prefixes which warm new searchers. */
+    public List<String> getWarmingPrefixes() {
+        return warmingPrefixes;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void refresh() {
+        updateWarmingPrefixes();
+        try {
+            suggester.refresh();
+            numRefreshes.incrementAndGet();
+        } catch (final Exception e) {
+            LOGGER.warn("Failed to refresh the suggester", e);
+        }
+    }
+
+    /** Sets the most popular recent prefixes as the warming prefixes. */
+    private void updateWarmingPrefixes() {
+        final List<String> prefixes = prefixTracker.getTopPrefixes();
+        if (!prefixes.isEmpty()) {
+            warmingPrefixes = prefixes;
+        }
+    }
+
+    /**
+     * Tracks the most popular recent prefixes. The popularity of every prefix is estimated by a {@link FrequencySketch},
+     * which ages its counts, and only the top prefixes are retained: a new prefix replaces the least popular retained
+     * one once its estimated popularity is higher. Therefore the memory is bounded, while prefixes which become popular
+     * late are still tracked.
+     *
+     * <p>
+     * Recording is best-effort: a lookup which finds the tracker busy skips recording its prefix instead of waiting,
+     * so lookups never contend on the tracker. Under contention the prefixes are thus sampled, which preserves their
+     * relative popularity.
+     * </p>
+     */
+    private static final class PrefixTracker {
+
+        private final FrequencySketch sketch;
+        private final int maxTopPrefixes;
+        private final ReentrantLock lock = new ReentrantLock();
+        /** The retained prefixes, with their estimated popularity when they were last looked up. */
+        private final Map<String, Integer> topPrefixes = Maps.newHashMap();
+        /** A lower bound on the popularity of the retained prefixes, recomputed when one is replaced. */
+        private int minTopFrequency = 0;
+
+        PrefixTracker(int sketchCapacity, int maxTopPrefixes) {
+            this.sketch = new FrequencySketch(sketchCapacity);
+            this.maxTopPrefixes = maxTopPrefixes;
+        }
+
+        void record(String prefix) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                recordLocked(prefix);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void recordLocked(String prefix) {
+            sketch.increment(prefix);
+            final int frequency = sketch.frequency(prefix);
+            if (topPrefixes.containsKey(prefix) || topPrefixes.size() < maxTopPrefixes) {
+                topPrefixes.put(prefix, frequency);
+                // the estimate drops when the sketch ages its counts
+                minTopFrequency = Math.min(minTopFrequency, frequency);
+                return;
+            }
+            if (frequency <= minTopFrequency) {
+                return;
+            }
+            String minPrefix = null;
+            int minFrequency = Integer.MAX_VALUE;
+            for (final Map.Entry<String, Integer> entry : topPrefixes.entrySet()) {
+                if (entry.getValue() < minFrequency) {
+                    minPrefix = entry.getKey();
+                    minFrequency = entry.getValue();
+                }
+            }
+            if (frequency > minFrequency) {
+                topPrefixes.remove(minPrefix);
+                topPrefixes.put(prefix, frequency);
+            } else {
+                minTopFrequency = minFrequency;
+            }
+        }
+
+        /** Returns the retained prefixes, most popular first, as currently estimated by the sketch. */
+        List<String> getTopPrefixes() {
+            final List<Map.Entry<String, Integer>> frequencies = Lists.newArrayList();
+            lock.lock();
+            try {
+                for (final String prefix : topPrefixes.keySet()) {
+                    final int frequency = sketch.frequency(prefix);
+                    topPrefixes.put(prefix, frequency);
+                    frequencies.add(Maps.immutableEntry(prefix, frequency));
+                }
+                minTopFrequency = 0;
+            } finally {
+                lock.unlock();
+            }
+            Collections.sort(frequencies, new Comparator<Map.Entry<String, Integer>>() {
+                @Override
+                public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+                    return Integer.compare(e2.getValue(), e1.getValue());
+                }
+            });
+            final List<String> prefixes = Lists.newArrayList();
+            for (final Map.Entry<String, Integer> entry : frequencies) {
+                prefixes.add(entry.getKey());
+            }
+            return ImmutableList.copyOf(prefixes);
+        }
+    }
+
+    /** Warms every new searcher with the lookups of the warming prefixes, before it is published. */
+    private final class WarmingSearcherFactory extends SearcherFactory {
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            final IndexSearcher searcher = super.newSearcher(reader, previousReader);
+            final long start = System.nanoTime();
+            final List<String> prefixes = warmingPrefixes;
+            for (final String prefix : prefixes) {
+                suggester.warm(searcher, prefix, config.numWarmingSuggestions);
+            }
+            LOGGER.debug("Warmed searcher with {} prefixes in {} ms", prefixes.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return searcher;
+        }
+    }
+
+    /** The refresh settings. */
+    public static final class Config {
+
+        private long refreshIntervalMillis = 1000;
+        private int numWarmingPrefixes = 100;
+        private int numWarmingSuggestions = 10;
+        private int maxTrackedPrefixes = 10000;
+
+        public Config setRefreshIntervalMillis(long refreshIntervalMillis) {
+            this.refreshIntervalMillis = refreshIntervalMillis;
+            return this;
+        }
+
+        /** Sets the number of most popular prefixes which warm every new searcher. */
+        public Config setNumWarmingPrefixes(int numWarmingPrefixes) {
+            this.numWarmingPrefixes = numWarmingPrefixes;
+            return this;
+        }
+
+        /** Sets the number of suggestions which are read for every warming prefix. */
+        public Config setNumWarmingSuggestions(int numWarmingSuggestions) {
+            this.numWarmingSuggestions = numWarmingSuggestions;
+            return this;
+        }
+
+        /**
+         * Sets the number of distinct recent prefixes whose popularity is estimated accurately, i.e. the capacity of
+         * the frequency sketch. More prefixes are still counted, though less accurately.
+         */
+        public Config setMaxTrackedPrefixes(int maxTrackedPrefixes) {
+            this.maxTrackedPrefixes = maxTrackedPrefixes;
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An {@link AnalyzingInfixSuggester} which supports deleting suggestions, and storing user data (e.g. an update
+ * watermark) in the commits of its sidecar index. Unlike the default, its {@link #writer} stays open after
+ * {@link #build}, so that suggestions can be added, updated and deleted without reopening it.
+ *
+ * <p>
+ * A {@link SearcherFactory} can be set with {@link #setSearcherFactory(SearcherFactory)}, e.g. to warm new searchers
+ * before {@link #refresh()} publishes them. Whenever the suggester opens a new {@link SearcherManager} over its writer,
+ * it is replaced by one which uses the factory.
+ * </p>
+ */
+public class UpdatableInfixSuggester extends AnalyzingInfixSuggester {
+
+    private static final Sort WEIGHT_SORT = new Sort(new SortField("weight", SortField.Type.LONG, true));
+
+    private final Directory dir;
+    private SearcherFactory searcherFactory;
+    /** The last searcher manager which was created with {@link #searcherFactory}. */
+    private SearcherManager installedSearcherMgr;
+
+    public UpdatableInfixSuggester(Directory dir, Analyzer indexAnalyzer, Analyzer queryAnalyzer, int minPrefixChars,
+            boolean highlight) throws IOException {
+        super(dir, indexAnalyzer, queryAnalyzer, minPrefixChars, true, DEFAULT_ALL_TERMS_REQUIRED, highlight, false);
+        this.dir = dir;
+    }
+
+    /** Sets the factory of the suggester's searchers, which applies from the next refresh. */
+    public synchronized void setSearcherFactory(SearcherFactory searcherFactory) throws IOException {
+        this.searcherFactory = searcherFactory;
+        this.installedSearcherMgr = null;
+        installSearcherFactory();
+    }
+
+    @Override
+    public void build(InputIterator iter) throws IOException {
+        super.build(iter);
+        installSearcherFactory();
+    }
+
+    @Override
+    public void add(BytesRef text, Set<BytesRef> contexts, long weight, BytesRef payload) throws IOException {
+        super.add(text, contexts, weight, payload);
+        installSearcherFactory();
+    }
+
+    @Override
+    public void update(BytesRef text, Set<BytesRef> contexts, long weight, BytesRef payload) throws IOException {
+        super.update(text, contexts, weight, payload);
+        installSearcherFactory();
+    }
+
+    /**
+     * Returns the generation of the current searcher, which changes whenever a refresh publishes a new searcher, or
+     * {@code -1} if the suggester has no searcher yet.
+     */
+    public long getGeneration() throws IOException {
+        final SearcherManager mgr;
+        final IndexSearcher searcher;
+        synchronized (searcherMgrLock) {
+            if (searcherMgr == null) {
+                return -1;
+            }
+            mgr = searcherMgr;
+            searcher = mgr.acquire();
+        }
+        try {
+            return ((DirectoryReader) searcher.getIndexReader()).getVersion();
+        } finally {
+            mgr.release(searcher);
+        }
+    }
+
+    /**
+     * Runs the query of a lookup of the given prefix against the given searcher, and reads the top suggestions' texts.
+     * This loads the parts of the index that the lookup needs, and can be used to warm new searchers.
+     */
+    public void warm(IndexSearcher searcher, String prefix, int num) throws IOException {
+        final List<String> tokens = Lists.newArrayList();
+        try (TokenStream ts = queryAnalyzer.tokenStream("", prefix)) {
+            final CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(termAtt.toString());
+            }
+            ts.end();
+        }
+        if (tokens.isEmpty()) {
+            return;
+        }
+        final BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            query.add(new TermQuery(new Term(TEXT_FIELD_NAME, tokens.get(i))), Occur.SHOULD);
+        }
+        query.add(getLastTokenQuery(tokens.get(tokens.size() - 1)), Occur.SHOULD);
+        final TopDocs hits = searcher.search(query.build(), num, WEIGHT_SORT);
+        final ScoreDoc[] scoreDocs = hits.scoreDocs.clone();
+        Arrays.sort(scoreDocs, new Comparator<ScoreDoc>() {
+            @Override
+            public int compare(ScoreDoc sd1, ScoreDoc sd2) {
+                return Integer.compare(sd1.doc, sd2.doc);
+            }
+        });
+        final BinaryDocValues texts = MultiDocValues.getBinaryValues(searcher.getIndexReader(), TEXT_FIELD_NAME);
+        if (texts != null) {
+            for (final ScoreDoc scoreDoc : scoreDocs) {
+                if (texts.advanceExact(scoreDoc.doc)) {
+                    texts.binaryValue();
+                }
+            }
+        }
+    }
+
+    /** Deletes the suggestion with the exact given text. Like {@link #add}, changes are visible after refresh. */
+    public synchronized void delete(BytesRef text) throws IOException {
+        if (writer == null) {
+            if (!DirectoryReader.indexExists(dir)) {
+                return;
+            }
+            // the writer is opened lazily by a private method, so open it by updating the suggestion being deleted
+            update(text, null, 0, null);
+        }
+        writer.deleteDocuments(new Term(EXACT_TEXT_FIELD_NAME, text.utf8ToString()));
+    }
+
+    /** Returns the user data of the last commit, including changes that were set but not committed yet. */
+    public synchronized Map<String, String> getCommitData() throws IOException {
+        if (writer != null) {
+            final Map<String, String> commitData = Maps.newHashMap();
+            final Iterable<Map.Entry<String, String>> liveCommitData = writer.getLiveCommitData();
+            if (liveCommitData != null) {
+                for (final Map.Entry<String, String> entry : liveCommitData) {
+                    commitData.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return commitData;
+        }
+        if (DirectoryReader.indexExists(dir)) {
+            return SegmentInfos.readLatestCommit(dir).getUserData();
+        }
+        return ImmutableMap.of();
+    }
+
+    /** Commits all changes, along with the given user data which is merged with the existing user data. */
+    public synchronized void commit(Map<String, String> commitData) throws IOException {
+        final Map<String, String> newCommitData = Maps.newHashMap(getCommitData());
+        newCommitData.putAll(commitData);
+        if (writer == null) {
+            throw new IllegalStateException("Cannot commit before suggestions were added");
+        }
+        writer.setLiveCommitData(newCommitData.entrySet());
+        commit();
+    }
+
+    /** Replaces the current searcher manager by one which uses {@link #searcherFactory}, if not done already. */
+    private synchronized void installSearcherFactory() throws IOException {
+        if (searcherFactory == null || writer == null || searcherMgr == installedSearcherMgr) {
+            return;
+        }
+        // the new manager opens (and warms) its first searcher before it replaces the current one
+        final SearcherManager newSearcherMgr = new SearcherManager(writer, searcherFactory);
+        final SearcherManager oldSearcherMgr;
+        synchronized (searcherMgrLock) {
+            oldSearcherMgr = searcherMgr;
+            searcherMgr = newSearcherMgr;
+        }
+        installedSearcherMgr = newSearcherMgr;
+        if (oldSearcherMgr != null) {
+            oldSearcherMgr.close();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Clones directory trees. Files accepted by a {@link Predicate} are hard-linked rather than copied, which makes cloning
+ * almost free for files that are never modified in place (e.g. Lucene index files). If hard links are not supported, or
+ * the source and target are on different file systems, such files are copied too.
+ */
+public abstract class DirectoryCloner {
+
+    /** Accepts files of Lucene indexes, which are written once and never modified. */
+    public static final Predicate<Path> INDEX_FILES = new Predicate<Path>() {
+        @Override
+        public boolean apply(Path file) {
+            final Path parent = file.getParent();
+            return parent != null && parent.getFileName() != null
+                    && parent.getFileName().toString().startsWith("index")
+                    && !file.getFileName().toString().equals("write.lock");
+        }
+    };
+
+    private DirectoryCloner() {
+        // should not be instantiated
+    }
+
+    /** Clones {@code source} into {@code target}, hard-linking the files accepted by the filter. */
+    public static void cloneDirectory(final Path source, final Path target, final Predicate<Path> linkFilter) {
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    final Path targetFile = target.resolve(source.relativize(file));
+                    if (!linkFilter.apply(file) || !tryLink(targetFile, file)) {
+                        Files.copy(file, targetFile, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Deletes the directory and all its content, if it exists. */
+    public static void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean tryLink(Path link, Path existing) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (final IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import static com.shaie.utils.Utils.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Compares two indexes term-by-term, e.g. to verify that a reindex produced equivalent postings. The terms of every
+ * field are merge-iterated, and the postings (documents, frequencies, positions and payloads) of terms which exist in
+ * both indexes are compared. Documents are matched by their top-level document ID, so the two indexes are expected to
+ * contain the same documents, in the same order. Deleted documents are skipped, and so are terms which only exist in
+ * deleted documents. If the two indexes record different postings data for a field (e.g. one has positions and the
+ * other does not), an {@link DifferenceType#INDEX_OPTIONS} difference is reported, and the postings are compared by
+ * what both record.
+ *
+ * <p>
+ * Fields are compared in parallel, each by a single task, and the comparison streams over the terms and postings
+ * without collecting them, so memory consumption does not depend on the size of the indexes. Differences are reported
+ * to a {@link Reporter} as they are found, up to {@code maxDifferencesPerField} per field.
+ * </p>
+ */
+public class IndexDiff {
+
+    private final IndexReader left;
+    private final IndexReader right;
+    private final int maxDifferencesPerField;
+
+    public IndexDiff(IndexReader left, IndexReader right, int maxDifferencesPerField) {
+        this.left = left;
+        this.right = right;
+        this.maxDifferencesPerField = maxDifferencesPerField;
+    }
+
+    /**
+     * Compares the two indexes, running a task per field on the given executor, and returns the number of differences
+     * that were reported. Note that the reporter is called concurrently from multiple tasks.
+     */
+    public int diff(ExecutorService executor, final Reporter reporter) {
+        final Set<String> fields = Sets.newTreeSet(MultiFields.getIndexedFields(left));
+        fields.addAll(MultiFields.getIndexedFields(right));
+
+        final List<Future<Integer>> futures = Lists.newArrayList();
+        for (final String field : fields) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return diffField(field, reporter);
+                }
+            }));
+        }
+
+        int numDifferences = 0;
+        try {
+            for (final Future<Integer> future : futures) {
+                numDifferences += future.get();
+            }
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("IndexDiff aborted", e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return numDifferences;
+    }
+
+    /** Compares the given field in both indexes and returns the number of differences that were reported. */
+    public int diffField(String field, Reporter reporter) throws IOException {
+        final FieldDiff fieldDiff = new FieldDiff(field, reporter);
+        fieldDiff.diff();
+        return fieldDiff.numDifferences;
+    }
+
+    /** Compares a single field. Stops as soon as {@link IndexDiff#maxDifferencesPerField} were reported. */
+    private final class FieldDiff {
+
+        private final String field;
+        private final Reporter reporter;
+        private int numDifferences = 0;
+
+        private PostingsEnum leftPostings = null;
+        private PostingsEnum rightPostings = null;
+
+        FieldDiff(String field, Reporter reporter) {
+            this.field = field;
+            this.reporter = reporter;
+        }
+
+        void diff() throws IOException {
+            final Terms leftTerms = MultiFields.getTerms(left, field);
+            final Terms rightTerms = MultiFields.getTerms(right, field);
+            if (leftTerms == null || rightTerms == null) {
+                final Side missingFrom = leftTerms == null ? Side.LEFT : Side.RIGHT;
+                report(DifferenceType.MISSING_FIELD, null, -1, missingFrom + " index has no terms");
+                return;
+            }
+
+            final String leftOptions = describeIndexOptions(leftTerms);
+            final String rightOptions = describeIndexOptions(rightTerms);
+            if (!leftOptions.equals(rightOptions)) {
+                report(DifferenceType.INDEX_OPTIONS, null, -1, format("left=%s, right=%s", leftOptions,
+                        rightOptions));
+            }
+
+            // Compare what both indexes record, after any mismatch of the index options was reported
+            final int flags = postingsFlags(leftTerms, rightTerms);
+            final LiveTerms leftLiveTerms = new LiveTerms(leftTerms.iterator(), MultiFields.getLiveDocs(left), flags);
+            final LiveTerms rightLiveTerms = new LiveTerms(rightTerms.iterator(), MultiFields.getLiveDocs(right),
+                    flags);
+            BytesRef leftTerm = leftLiveTerms.next();
+            BytesRef rightTerm = rightLiveTerms.next();
+            while ((leftTerm != null || rightTerm != null) && !isDone()) {
+                final int cmp = compare(leftTerm, rightTerm);
+                if (cmp < 0) {
+                    report(DifferenceType.MISSING_TERM, leftTerm, -1, "term missing from " + Side.RIGHT + " index");
+                    leftTerm = leftLiveTerms.next();
+                } else if (cmp > 0) {
+                    report(DifferenceType.MISSING_TERM, rightTerm, -1, "term missing from " + Side.LEFT + " index");
+                    rightTerm = rightLiveTerms.next();
+                } else {
+                    leftPostings = leftLiveTerms.postings();
+                    rightPostings = rightLiveTerms.postings();
+                    diffPostings(leftTerm, leftLiveTerms, rightLiveTerms, flags);
+                    leftTerm = leftLiveTerms.next();
+                    rightTerm = rightLiveTerms.next();
+                }
+            }
+        }
+
+        private void diffPostings(BytesRef term, LiveTerms leftLiveTerms, LiveTerms rightLiveTerms, int flags)
+                throws IOException {
+            int leftDoc = leftPostings.docID();
+            int rightDoc = rightPostings.docID();
+            while ((leftDoc != DocIdSetIterator.NO_MORE_DOCS || rightDoc != DocIdSetIterator.NO_MORE_DOCS)
+                    && !isDone()) {
+                if (leftDoc < rightDoc) {
+                    report(DifferenceType.MISSING_DOC, term, leftDoc, "doc missing from " + Side.RIGHT + " postings");
+                    leftDoc = leftLiveTerms.nextDoc();
+                } else if (leftDoc > rightDoc) {
+                    report(DifferenceType.MISSING_DOC, term, rightDoc, "doc missing from " + Side.LEFT + " postings");
+                    rightDoc = rightLiveTerms.nextDoc();
+                } else {
+                    diffDoc(term, leftDoc, flags);
+                    leftDoc = leftLiveTerms.nextDoc();
+                    rightDoc = rightLiveTerms.nextDoc();
+                }
+            }
+        }
+
+        private void diffDoc(BytesRef term, int doc, int flags) throws IOException {
+            final int leftFreq = leftPostings.freq();
+            final int rightFreq = rightPostings.freq();
+            if (leftFreq != rightFreq) {
+                report(DifferenceType.FREQ, term, doc, format("left=%d, right=%d", leftFreq, rightFreq));
+                return;
+            }
+            if (!PostingsEnum.featureRequested(flags, PostingsEnum.POSITIONS)) {
+                return;
+            }
+            for (int i = 0; i < leftFreq; i++) {
+                final int leftPos = leftPostings.nextPosition();
+                final int rightPos = rightPostings.nextPosition();
+                if (leftPos != rightPos) {
+                    report(DifferenceType.POSITION, term, doc, format("left=%d, right=%d", leftPos, rightPos));
+                    return;
+                }
+                final BytesRef leftPayload = leftPostings.getPayload();
+                final BytesRef rightPayload = rightPostings.getPayload();
+                if (!payloadsEqual(leftPayload, rightPayload)) {
+                    report(DifferenceType.PAYLOAD, term, doc,
+                            format("pos=%d, left=%s, right=%s", leftPos, leftPayload, rightPayload));
+                    return;
+                }
+            }
+        }
+
+        private boolean isDone() {
+            return numDifferences >= maxDifferencesPerField;
+        }
+
+        private void report(DifferenceType type, BytesRef term, int doc, String details) {
+            ++numDifferences;
+            reporter.report(new Difference(type, field, term == null ? null : BytesRef.deepCopyOf(term), doc,
+                    details));
+        }
+    }
+
+    /**
+     * Iterates over the terms of one index which have at least one live document, so that deleted documents, and terms
+     * which only exist in deleted documents, are not reported as differences.
+     */
+    private static final class LiveTerms {
+
+        private final TermsEnum termsEnum;
+        private final Bits liveDocs;
+        private final int flags;
+        private PostingsEnum postings = null;
+
+        LiveTerms(TermsEnum termsEnum, Bits liveDocs, int flags) {
+            this.termsEnum = termsEnum;
+            this.liveDocs = liveDocs;
+            this.flags = flags;
+        }
+
+        /** Advances to the next term with a live document, whose postings are then positioned on that document. */
+        BytesRef next() throws IOException {
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                postings = termsEnum.postings(postings, flags);
+                if (nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    return term;
+                }
+            }
+            return null;
+        }
+
+        PostingsEnum postings() {
+            return postings;
+        }
+
+        /** Advances the postings to the next live document. */
+        int nextDoc() throws IOException {
+            int doc = postings.nextDoc();
+            while (doc != DocIdSetIterator.NO_MORE_DOCS && liveDocs != null && !liveDocs.get(doc)) {
+                doc = postings.nextDoc();
+            }
+            return doc;
+        }
+    }
+
+    /** Returns what the index records for the field's postings, e.g. {@code [freqs, positions]}. */
+    private static String describeIndexOptions(Terms terms) {
+        final List<String> options = Lists.newArrayList();
+        if (terms.hasFreqs()) {
+            options.add("freqs");
+        }
+        if (terms.hasPositions()) {
+            options.add("positions");
+        }
+        if (terms.hasOffsets()) {
+            options.add("offsets");
+        }
+        if (terms.hasPayloads()) {
+            options.add("payloads");
+        }
+        return options.toString();
+    }
+
+    /** Returns the postings flags that are needed to compare the field, based on what both indexes record. */
+    private static int postingsFlags(Terms leftTerms, Terms rightTerms) {
+        if (leftTerms.hasPayloads() && rightTerms.hasPayloads()) {
+            return PostingsEnum.PAYLOADS;
+        }
+        if (leftTerms.hasPositions() && rightTerms.hasPositions()) {
+            return PostingsEnum.POSITIONS;
+        }
+        return PostingsEnum.FREQS;
+    }
+
+    /** Compares two terms, where {@code null} (an exhausted {@link TermsEnum}) sorts last. */
+    private static int compare(BytesRef leftTerm, BytesRef rightTerm) {
+        if (leftTerm == null) {
+            return 1;
+        }
+        if (rightTerm == null) {
+            return -1;
+        }
+        return leftTerm.compareTo(rightTerm);
+    }
+
+    private static boolean payloadsEqual(BytesRef leftPayload, BytesRef rightPayload) {
+        if (leftPayload == null || leftPayload.length == 0) {
+            return rightPayload == null || rightPayload.length == 0;
+        }
+        return leftPayload.bytesEquals(rightPayload == null ? new BytesRef() : rightPayload);
+    }
+
+    /** Receives the differences found by {@link IndexDiff}. */
+    public interface Reporter {
+        /** Called for every difference that is found. May be called concurrently for different fields. */
+        void report(Difference difference);
+    }
+
+    public enum DifferenceType {
+        MISSING_FIELD, INDEX_OPTIONS, MISSING_TERM, MISSING_DOC, FREQ, POSITION, PAYLOAD
+    }
+
+    private enum Side {
+        LEFT, RIGHT;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** A single difference between the two indexes. */
+    public static class Difference {
+
+        private final DifferenceType type;
+        private final String field;
+        private final BytesRef term;
+        private final int doc;
+        private final String details;
+
+        public Difference(DifferenceType type, String field, BytesRef term, int doc, String details) {
+            this.type = type;
+            this.field = field;
+            this.term = term;
+            this.doc = doc;
+            this.details = details;
+        }
+
+        public DifferenceType getType() {
+            return type;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        /** Returns the term, or {@code null} if the difference is of the whole field. */
+        public BytesRef getTerm() {
+            return term;
+        }
+
+        /** Returns the document, or {@code -1} if the difference is not of a specific document. */
+        public int getDoc() {
+            return doc;
+        }
+
+        public String getDetails() {
+            return details;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s: field=%s, term=%s, doc=%d, %s", type, field,
+                    term == null ? null : term.utf8ToString(), doc, details);
+        }
+    }
+
+}
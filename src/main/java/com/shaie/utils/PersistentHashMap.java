@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * An immutable hash map whose {@link #plus(Object, Object)} and {@link #minus(Object)} return a new map which shares
+ * all but the modified path with this one. The map is a hash array mapped trie, where every level consumes 5 bits of
+ * the keys' hashes, and therefore an update copies at most 7 small arrays regardless of the size of the map. Keys whose
+ * hashes are equal are kept in a list at the bottom of the trie.
+ *
+ * <p>
+ * The {@link java.util.Map} mutators are not supported. Keys and values may not be {@code null}.
+ * </p>
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node<K, V> root;
+    private final int size;
+    private Set<Entry<K, V>> entrySet = null;
+
+    private PersistentHashMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** Returns an empty map. */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /** Returns a map with the given mapping in addition to, or instead of an existing mapping of, this map's. */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        Preconditions.checkNotNull(key, "key");
+        Preconditions.checkNotNull(value, "value");
+        final boolean[] added = new boolean[1];
+        final int hash = hash(key);
+        final Node<K, V> newRoot;
+        if (root == null) {
+            newRoot = new BitmapNode<K, V>(0, new Object[0]).put(key, value, hash, 0, added);
+        } else {
+            newRoot = root.put(key, value, hash, 0, added);
+        }
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /** Returns a map without the given key. */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        final Node<K, V> newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? PersistentHashMap.<K, V> empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public V get(Object key) {
+        return root == null || key == null ? null : root.get(key, hash(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns a node which holds the two entries, whose hashes are equal in all the bits before {@code shift}. */
+    private static <K, V> Node<K, V> newNode(Entry<K, V> e1, int h1, Entry<K, V> e2, int h2, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new CollisionNode<>(h1, new Object[] { e1, e2 });
+        }
+        final int b1 = 1 << ((h1 >>> shift) & MASK);
+        final int b2 = 1 << ((h2 >>> shift) & MASK);
+        if (b1 == b2) {
+            return new BitmapNode<>(b1, new Object[] { newNode(e1, h1, e2, h2, shift + BITS) });
+        }
+        return new BitmapNode<>(b1 | b2, Integer.compareUnsigned(b1, b2) < 0 ? new Object[] { e1, e2 }
+                : new Object[] { e2, e1 });
+    }
+
+    private static Object[] copyWith(Object[] array, int index, Object value) {
+        final Object[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+
+    private static Object[] insert(Object[] array, int index, Object value) {
+        final Object[] copy = new Object[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Object[] delete(Object[] array, int index) {
+        final Object[] copy = new Object[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, copy.length - index);
+        return copy;
+    }
+
+    /**
+     * A node of the trie. Its children are either {@link Entry entries} or nodes. Updates return {@code this} if
+     * nothing changed, and {@link #remove(Object, int, int)} returns {@code null} if the node became empty.
+     */
+    private static abstract class Node<K, V> {
+
+        final Object[] children;
+
+        Node(Object[] children) {
+            this.children = children;
+        }
+
+        abstract V get(Object key, int hash, int shift);
+
+        abstract Node<K, V> put(K key, V value, int hash, int shift, boolean[] added);
+
+        abstract Node<K, V> remove(Object key, int hash, int shift);
+
+        /** Returns the node's single entry, if it has exactly one child which is an entry. */
+        @SuppressWarnings("unchecked")
+        Entry<K, V> singleEntry() {
+            if (children.length == 1 && !(children[0] instanceof Node)) {
+                return (Entry<K, V>) children[0];
+            }
+            return null;
+        }
+    }
+
+    /** A node which holds a child for every set bit of its bitmap, ordered by the bits. */
+    private static final class BitmapNode<K, V> extends Node<K, V> {
+
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] children) {
+            super(children);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V get(Object key, int hash, int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final Object child = children[index(bit)];
+            if (child instanceof Node) {
+                return ((Node<K, V>) child).get(key, hash, shift + BITS);
+            }
+            final Entry<K, V> entry = (Entry<K, V>) child;
+            return key.equals(entry.getKey()) ? entry.getValue() : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> put(K key, V value, int hash, int shift, boolean[] added) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                return new BitmapNode<>(bitmap | bit, insert(children, index, Maps.immutableEntry(key, value)));
+            }
+            final Object child = children[index];
+            if (child instanceof Node) {
+                final Node<K, V> newChild = ((Node<K, V>) child).put(key, value, hash, shift + BITS, added);
+                return newChild == child ? this : new BitmapNode<K, V>(bitmap, copyWith(children, index, newChild));
+            }
+            final Entry<K, V> entry = (Entry<K, V>) child;
+            if (key.equals(entry.getKey())) {
+                if (value == entry.getValue()) {
+                    return this;
+                }
+                return new BitmapNode<>(bitmap, copyWith(children, index, Maps.immutableEntry(key, value)));
+            }
+            added[0] = true;
+            final Node<K, V> newChild = newNode(entry, PersistentHashMap.hash(entry.getKey()),
+                    Maps.immutableEntry(key, value), hash, shift + BITS);
+            return new BitmapNode<>(bitmap, copyWith(children, index, newChild));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> remove(Object key, int hash, int shift) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int index = index(bit);
+            final Object child = children[index];
+            if (child instanceof Node) {
+                final Node<K, V> newChild = ((Node<K, V>) child).remove(key, hash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    return without(bit, index);
+                }
+                // Pull a lone entry up, so that removals keep the trie as shallow as insertions would
+                final Entry<K, V> singleEntry = newChild.singleEntry();
+                return new BitmapNode<>(bitmap, copyWith(children, index, singleEntry != null ? singleEntry
+                        : newChild));
+            }
+            if (!key.equals(((Entry<K, V>) child).getKey())) {
+                return this;
+            }
+            return without(bit, index);
+        }
+
+        private Node<K, V> without(int bit, int index) {
+            if (bitmap == bit) {
+                return null;
+            }
+            return new BitmapNode<>(bitmap & ~bit, delete(children, index));
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /** A node which holds entries whose hashes are all equal. */
+    private static final class CollisionNode<K, V> extends Node<K, V> {
+
+        private final int hash;
+
+        CollisionNode(int hash, Object[] children) {
+            super(children);
+            this.hash = hash;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V get(Object key, int hash, int shift) {
+            final int index = indexOf(key);
+            return index == -1 ? null : ((Entry<K, V>) children[index]).getValue();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> put(K key, V value, int hash, int shift, boolean[] added) {
+            final int index = indexOf(key);
+            if (index == -1) {
+                added[0] = true;
+                return new CollisionNode<>(this.hash, insert(children, children.length,
+                        Maps.immutableEntry(key, value)));
+            }
+            if (((Entry<K, V>) children[index]).getValue() == value) {
+                return this;
+            }
+            return new CollisionNode<>(this.hash, copyWith(children, index, Maps.immutableEntry(key, value)));
+        }
+
+        @Override
+        Node<K, V> remove(Object key, int hash, int shift) {
+            final int index = indexOf(key);
+            if (index == -1) {
+                return this;
+            }
+            return children.length == 1 ? null : new CollisionNode<K, V>(this.hash, delete(children, index));
+        }
+
+        @SuppressWarnings("unchecked")
+        private int indexOf(Object key) {
+            for (int i = 0; i < children.length; i++) {
+                if (key.equals(((Entry<K, V>) children[i]).getKey())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Iterates over the entries of the trie, depth first. */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        private final Deque<Node<K, V>> nodes = new ArrayDeque<>();
+        private final Deque<Integer> indexes = new ArrayDeque<>();
+        private Entry<K, V> next = null;
+
+        EntryIterator(Node<K, V> root) {
+            if (root != null) {
+                nodes.push(root);
+                indexes.push(0);
+            }
+            next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final Entry<K, V> result = next;
+            next = advance();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<K, V> advance() {
+            while (!nodes.isEmpty()) {
+                final Node<K, V> node = nodes.peek();
+                final int index = indexes.pop();
+                if (index == node.children.length) {
+                    nodes.pop();
+                    continue;
+                }
+                indexes.push(index + 1);
+                final Object child = node.children[index];
+                if (child instanceof Node) {
+                    nodes.push((Node<K, V>) child);
+                    indexes.push(0);
+                } else {
+                    return (Entry<K, V>) child;
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -16,7 +16,10 @@
  */
 package com.shaie.utils;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /** Wait for some condition to become true, or for a timeout to expire. */
 public class Waiter {
@@ -72,6 +75,27 @@ public class Waiter {
         return false;
     }
 
+    /**
+     * Waits for a future to complete, e.g. one returned by {@link com.shaie.solr.ClusterStateWaiter}, which handles its
+     * own timeout.
+     *
+     * @return true if the future completed successfully, false if it completed with a {@link TimeoutException}.
+     */
+    public static boolean waitFor(Future<?> future) {
+        try {
+            future.get();
+            return true;
+        } catch (final InterruptedException e) {
+            future.cancel(false);
+            throw new RuntimeException("WaitFor aborted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return false;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     public interface Condition {
         /** Returns true/false indicating whether or not the condition has been met. */
         boolean isSatisfied();
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks in {@code [0, numElements)} following a Zipf distribution, i.e. the probability of rank {@code k} is
+ * proportional to {@code 1 / (k + 1)^exponent}. Sampling is a binary search over the precomputed cumulative
+ * distribution. Instances are immutable and thread-safe, as long as every thread uses its own {@link Random}.
+ */
+public class ZipfSampler {
+
+    private final double[] cumulativeProbabilities;
+
+    public ZipfSampler(int numElements, double exponent) {
+        if (numElements <= 0) {
+            throw new IllegalArgumentException("numElements must be positive: " + numElements);
+        }
+        cumulativeProbabilities = new double[numElements];
+        double sum = 0;
+        for (int i = 0; i < numElements; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulativeProbabilities[i] = sum;
+        }
+        for (int i = 0; i < numElements; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    /** Returns the number of elements sampled from. */
+    public int getNumElements() {
+        return cumulativeProbabilities.length;
+    }
+
+    /** Returns a random rank, where lower ranks are more probable. */
+    public int sample(Random random) {
+        final int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        final int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulativeProbabilities.length - 1);
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.facet;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/** Unit tests for {@link FacetFilterQuery} and {@link FacetFilterCache}. */
+public class FacetFilterQueryTest {
+
+    private static final String AUTHOR = "Author";
+    private static final String CATEGORY = "Category";
+
+    private final Directory indexDir = new RAMDirectory();
+    private final Directory taxoDir = new RAMDirectory();
+    private final FacetsConfig config = new FacetsConfig();
+    private final FacetFilterCache cache = new FacetFilterCache(1024 * 1024);
+    private IndexWriter indexWriter;
+    private DirectoryTaxonomyWriter taxoWriter;
+
+    @Before
+    public void setUp() throws IOException {
+        indexWriter = new IndexWriter(indexDir, new IndexWriterConfig(new WhitespaceAnalyzer()));
+        taxoWriter = new DirectoryTaxonomyWriter(taxoDir);
+        addDocument("1", "Bob", "fiction");
+        addDocument("2", "Lisa", "fiction");
+        indexWriter.commit(); // create two segments
+        addDocument("3", "Frank", "science");
+        addDocument("4", "Bob", "science");
+        addDocument("5", "Susan", "fiction");
+        indexWriter.commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexWriter.close();
+        taxoWriter.close();
+    }
+
+    @Test
+    public void excludes_multiple_facet_values_in_one_filter() throws IOException {
+        final Query filter = new FacetFilterQuery(cache, ImmutableList.<Term> of(),
+                ImmutableList.of(authorTerm("Lisa"), authorTerm("Bob")));
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            assertThat(search(reader, filter)).containsOnly("3", "5");
+        }
+    }
+
+    @Test
+    public void includes_and_excludes_facet_values() throws IOException {
+        final Query filter = new FacetFilterQuery(cache,
+                ImmutableList.of(FacetFilterQuery.facetTerm(config, CATEGORY, "fiction")),
+                ImmutableList.of(authorTerm("Bob")));
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            assertThat(search(reader, filter)).containsOnly("2", "5");
+        }
+    }
+
+    @Test
+    public void bitsets_are_cached_per_segment_and_evicted_on_close() throws IOException {
+        final Query filter = new FacetFilterQuery(cache, ImmutableList.<Term> of(),
+                ImmutableList.of(authorTerm("Lisa"), authorTerm("Bob")));
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            search(reader, filter);
+            assertThat(cache.size()).isEqualTo(4);
+            assertThat(cache.getNumMisses()).isEqualTo(4);
+
+            search(reader, filter);
+            assertThat(cache.getNumHits()).isEqualTo(4);
+            assertThat(cache.ramBytesUsed()).isGreaterThan(0);
+        }
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.ramBytesUsed()).isEqualTo(0);
+    }
+
+    @Test
+    public void deleted_documents_do_not_match() throws IOException {
+        final Query filter = new FacetFilterQuery(cache, ImmutableList.<Term> of(),
+                ImmutableList.of(authorTerm("Lisa")));
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            assertThat(search(reader, filter)).containsOnly("1", "3", "4", "5");
+        }
+        indexWriter.deleteDocuments(new Term("id", "4"));
+        indexWriter.commit();
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            assertThat(search(reader, filter)).containsOnly("1", "3", "5");
+        }
+    }
+
+    @Test
+    public void matches_same_documents_as_drill_down_clauses() throws IOException {
+        // a segment which spans multiple words of the bitsets
+        for (int i = 0; i < 200; i++) {
+            addDocument("doc" + i, "author" + (i % 5), "category" + (i % 3));
+        }
+        indexWriter.commit();
+        final Term category = FacetFilterQuery.facetTerm(config, CATEGORY, "category0");
+        final Query filter = new FacetFilterQuery(cache, ImmutableList.of(category),
+                ImmutableList.of(authorTerm("author1"), authorTerm("author2")));
+        final Query expected = new BooleanQuery.Builder()
+                .add(new TermQuery(category), Occur.FILTER)
+                .add(new TermQuery(authorTerm("author1")), Occur.MUST_NOT)
+                .add(new TermQuery(authorTerm("author2")), Occur.MUST_NOT)
+                .build();
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            assertThat(search(reader, filter)).isEqualTo(search(reader, expected));
+
+            // a conjunction with a sparse clause advances the filter, rather than iterating it
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            final Query author = new TermQuery(authorTerm("author3"));
+            assertThat(searcher.count(new BooleanQuery.Builder()
+                    .add(author, Occur.MUST)
+                    .add(filter, Occur.FILTER)
+                    .build())).isEqualTo(searcher.count(new BooleanQuery.Builder()
+                            .add(author, Occur.MUST)
+                            .add(new TermQuery(category), Occur.FILTER)
+                            .build()));
+        }
+    }
+
+    private Term authorTerm(String author) {
+        return FacetFilterQuery.facetTerm(config, AUTHOR, author);
+    }
+
+    private void addDocument(String id, String author, String category) throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField("id", id, Store.YES));
+        doc.add(new FacetField(AUTHOR, author));
+        doc.add(new FacetField(CATEGORY, category));
+        indexWriter.addDocument(config.build(taxoWriter, doc));
+    }
+
+    private static List<String> search(DirectoryReader reader, Query filter) throws IOException {
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final Query query = new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), Occur.MUST)
+                .add(filter, Occur.FILTER)
+                .build();
+        final TopDocs topDocs = searcher.search(query, reader.maxDoc(), Sort.INDEXORDER);
+        final List<String> ids = Lists.newArrayList();
+        for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            ids.add(searcher.doc(scoreDoc.doc).get("id"));
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.facet;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link ParallelTaxonomyFacetCounts}. */
+public class ParallelTaxonomyFacetCountsTest {
+
+    private static final String AUTHOR = "Author";
+    private static final String DATE = "Date";
+
+    private final Directory indexDir = new RAMDirectory();
+    private final Directory taxoDir = new RAMDirectory();
+    private final FacetsConfig config = new FacetsConfig();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private DirectoryReader indexReader;
+    private TaxonomyReader taxoReader;
+
+    @Before
+    public void setUp() throws IOException {
+        config.setHierarchical(DATE, true);
+        final Random random = new Random(0);
+        final IndexWriterConfig conf = new IndexWriterConfig(new WhitespaceAnalyzer()).setMaxBufferedDocs(50)
+                .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter indexWriter = new IndexWriter(indexDir, conf);
+                DirectoryTaxonomyWriter taxoWriter = new DirectoryTaxonomyWriter(taxoDir)) {
+            for (int i = 0; i < 1000; i++) {
+                final Document doc = new Document();
+                doc.add(new StringField("parity", i % 2 == 0 ? "even" : "odd", Store.NO));
+                doc.add(new FacetField(AUTHOR, "author" + random.nextInt(20)));
+                doc.add(new FacetField(DATE, Integer.toString(2010 + random.nextInt(5)),
+                        Integer.toString(1 + random.nextInt(12))));
+                indexWriter.addDocument(config.build(taxoWriter, doc));
+            }
+        }
+        indexReader = DirectoryReader.open(indexDir);
+        taxoReader = new DirectoryTaxonomyReader(taxoDir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        indexReader.close();
+        taxoReader.close();
+    }
+
+    @Test
+    public void counts_equal_sequential_counts() throws IOException {
+        assertThat(indexReader.leaves().size()).isGreaterThan(4);
+        final IndexSearcher searcher = new IndexSearcher(indexReader, executor);
+
+        for (final Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("parity", "odd")) }) {
+            final FacetsCollector fc = ParallelTaxonomyFacetCounts.collect(searcher, query);
+            final Facets expected = new FastTaxonomyFacetCounts(taxoReader, config, fc);
+            final Facets actual = new ParallelTaxonomyFacetCounts(taxoReader, config, fc, executor, 4);
+
+            assertThat(actual.getTopChildren(10, AUTHOR).toString())
+                    .isEqualTo(expected.getTopChildren(10, AUTHOR).toString());
+            assertThat(actual.getTopChildren(10, DATE).toString())
+                    .isEqualTo(expected.getTopChildren(10, DATE).toString());
+            assertThat(actual.getTopChildren(10, DATE, "2012").toString())
+                    .isEqualTo(expected.getTopChildren(10, DATE, "2012").toString());
+        }
+    }
+
+    @Test
+    public void counts_drill_down_with_single_thread() throws IOException {
+        final IndexSearcher searcher = new IndexSearcher(indexReader);
+        final DrillDownQuery query = new DrillDownQuery(config);
+        query.add(AUTHOR, "author3");
+        final FacetsCollector fc = ParallelTaxonomyFacetCounts.collect(searcher, query);
+        final Facets facets = new ParallelTaxonomyFacetCounts(taxoReader, config, fc, executor, 1);
+
+        assertThat(facets.getSpecificValue(AUTHOR, "author3")).isEqualTo(searcher.count(query));
+        assertThat(facets.getTopChildren(10, AUTHOR).childCount).isEqualTo(1);
+    }
+
+}
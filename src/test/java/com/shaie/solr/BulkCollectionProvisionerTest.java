@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.shaie.solr.BulkCollectionProvisioner.CollectionSpec;
+import com.shaie.solr.BulkCollectionProvisioner.Progress;
+import com.shaie.solr.BulkCollectionProvisioner.Report;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link BulkCollectionProvisioner}. */
+public class BulkCollectionProvisionerTest {
+
+    private static final String CONFIG_NAME = "bulkCollectionProvisionerTest";
+    private static final String EXISTING_COLLECTION_NAME = "existing";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private final Path confDir = Utils.getPathResource("solr/conf");
+    private final Map<String, Path> configSets = ImmutableMap.of(CONFIG_NAME, confDir);
+    private final List<Progress> progressEvents = Collections.synchronizedList(Lists.<Progress> newArrayList());
+    private AsyncCollectionAdminHelper collectionAdminHelper;
+    private BulkCollectionProvisioner provisioner;
+
+    @Before
+    public void setUp() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, confDir);
+        CollectionAdminRequest.createCollection(EXISTING_COLLECTION_NAME, CONFIG_NAME, 1, 1).process(solrClient);
+        SolrCloudUtils.waitForAllActive(EXISTING_COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+        collectionAdminHelper = new AsyncCollectionAdminHelper(solrClient, 2);
+        provisioner = new BulkCollectionProvisioner(solrClient, collectionAdminHelper,
+                new BulkCollectionProvisioner.ProgressListener() {
+                    @Override
+                    public void onProgress(Progress progress) {
+                        progressEvents.add(progress);
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        collectionAdminHelper.close();
+    }
+
+    @Test
+    public void provisions_new_collections_and_skips_existing_ones() throws Exception {
+        final Report report = provision(ImmutableList.of(
+                new CollectionSpec("c1", CONFIG_NAME, 1, 1),
+                new CollectionSpec("c2", CONFIG_NAME, 2, 1),
+                new CollectionSpec(EXISTING_COLLECTION_NAME, CONFIG_NAME, 1, 1),
+                new CollectionSpec("noconfig", "missingConfig", 1, 1)));
+
+        assertThat(report.getConfigUploads()).hasSize(1);
+        assertThat(report.getConfigUploads().get(CONFIG_NAME)).isNotNull();
+        assertThat(report.getCreatedCollections()).containsOnly("c1", "c2");
+        assertThat(report.getExistingCollections()).containsOnly(EXISTING_COLLECTION_NAME);
+        assertThat(report.getFailedCollections().keySet()).containsOnly("noconfig");
+        assertThat(report.isSuccessful()).isFalse();
+        for (final String collectionName : ImmutableList.of("c1", "c2")) {
+            SolrCloudUtils.waitForAllActive(collectionName, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+        }
+
+        // The listener is notified once per collection, and the last notification covers all of them
+        assertThat(progressEvents).hasSize(4);
+        int maxNumDone = 0;
+        for (final Progress progress : progressEvents) {
+            assertThat(progress.getNumTotal()).isEqualTo(4);
+            maxNumDone = Math.max(maxNumDone, progress.getNumDone());
+        }
+        assertThat(maxNumDone).isEqualTo(4);
+
+        assertProgress(provisioner.getProgress(), 4, 2, 1, 1);
+    }
+
+    @Test
+    public void counters_are_cumulative_while_reports_are_per_call() throws Exception {
+        final Report firstReport = provision(ImmutableList.of(new CollectionSpec("c1", CONFIG_NAME, 1, 1)));
+        assertThat(firstReport.getCreatedCollections()).containsOnly("c1");
+        assertThat(firstReport.getExistingCollections()).isEmpty();
+        assertProgress(provisioner.getProgress(), 1, 1, 0, 0);
+
+        final Report secondReport = provision(ImmutableList.of(
+                new CollectionSpec("c1", CONFIG_NAME, 1, 1),
+                new CollectionSpec("c2", CONFIG_NAME, 1, 1)));
+        assertThat(secondReport.getCreatedCollections()).containsOnly("c2");
+        assertThat(secondReport.getExistingCollections()).containsOnly("c1");
+        assertThat(secondReport.getFailedCollections()).isEmpty();
+        assertProgress(provisioner.getProgress(), 3, 2, 1, 0);
+        assertThat(progressEvents).hasSize(3);
+    }
+
+    private Report provision(List<CollectionSpec> collections) throws Exception {
+        return provisioner.provision(configSets, collections).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void assertProgress(Progress progress, int numTotal, int numCreated, int numExisting,
+            int numFailed) {
+        assertThat(progress.getNumTotal()).isEqualTo(numTotal);
+        assertThat(progress.getNumCreated()).isEqualTo(numCreated);
+        assertThat(progress.getNumExisting()).isEqualTo(numExisting);
+        assertThat(progress.getNumFailed()).isEqualTo(numFailed);
+        assertThat(progress.getNumDone()).isEqualTo(numTotal);
+        assertThat(progress.getNumInFlight()).isEqualTo(0);
+        assertThat(progress.getNumPending()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static com.shaie.solr.utils.ClusterStateFixtures.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.shaie.solr.ClusterChangeEvent.Type;
+
+/** Unit tests for {@link ClusterStateDiffer}. */
+public class ClusterStateDifferTest {
+
+    private static final String NODE1 = "127.0.0.1:8983_solr";
+    private static final String NODE2 = "127.0.0.1:8984_solr";
+
+    @Test
+    public void identical_states_have_no_changes() {
+        final DocCollection collection = collection("c1", 1, slice("shard1", "r1",
+                replica("r1", NODE1, Replica.State.ACTIVE)));
+        final ClusterState state = clusterState(ImmutableSet.of(NODE1), collection);
+
+        assertThat(ClusterStateDiffer.diff(state, state)).isEmpty();
+        assertThat(ClusterStateDiffer.diff(state, clusterState(ImmutableSet.of(NODE1), collection))).isEmpty();
+    }
+
+    @Test
+    public void same_version_collections_are_not_compared() {
+        final DocCollection oldState = collection("c1", 3, slice("shard1", "r1",
+                replica("r1", NODE1, Replica.State.ACTIVE)));
+        final DocCollection newState = collection("c1", 3, slice("shard1", "r1",
+                replica("r1", NODE1, Replica.State.DOWN)));
+
+        assertThat(ClusterStateDiffer.diffCollection("c1", oldState, newState)).isEmpty();
+    }
+
+    @Test
+    public void detects_live_node_and_collection_changes() {
+        final ClusterState oldState = clusterState(ImmutableSet.of(NODE1),
+                collection("c1", 1, slice("shard1", "r1", replica("r1", NODE1, Replica.State.ACTIVE))));
+        final ClusterState newState = clusterState(ImmutableSet.of(NODE2),
+                collection("c2", 1, slice("shard1", "r2", replica("r2", NODE2, Replica.State.ACTIVE))));
+
+        assertThat(ClusterStateDiffer.diff(oldState, newState)).containsOnly(
+                ClusterChangeEvent.liveNode(Type.LIVE_NODE_REMOVED, NODE1),
+                ClusterChangeEvent.liveNode(Type.LIVE_NODE_ADDED, NODE2),
+                ClusterChangeEvent.collection(Type.COLLECTION_REMOVED, "c1"),
+                ClusterChangeEvent.collection(Type.COLLECTION_ADDED, "c2"));
+    }
+
+    @Test
+    public void detects_replica_and_leader_changes() {
+        final Replica r1 = replica("r1", NODE1, Replica.State.ACTIVE);
+        final DocCollection oldState = collection("c1", 1,
+                slice("shard1", "r1", r1, replica("r2", NODE2, Replica.State.ACTIVE)));
+        final DocCollection newState = collection("c1", 2,
+                slice("shard1", "r3", r1, replica("r3", NODE2, Replica.State.RECOVERING)));
+
+        final List<ClusterChangeEvent> events = ClusterStateDiffer.diffCollection("c1", oldState, newState);
+        assertThat(events).containsOnly(
+                ClusterChangeEvent.replica(Type.REPLICA_REMOVED, "c1", "shard1", "r2", NODE2, null, null),
+                ClusterChangeEvent.replica(Type.REPLICA_ADDED, "c1", "shard1", "r3", NODE2, null, "recovering"),
+                ClusterChangeEvent.shard(Type.LEADER_CHANGED, "c1", "shard1", "r1", "r3"));
+    }
+
+    @Test
+    public void detects_shard_and_replica_state_changes() {
+        final DocCollection oldState = collection("c1", 1,
+                slice("shard1", "r1", replica("r1", NODE1, Replica.State.ACTIVE)));
+        final DocCollection newState = collection("c1", 2,
+                slice("shard1", "r1", replica("r1", NODE1, Replica.State.DOWN)),
+                slice("shard2", replica("r2", NODE2, Replica.State.ACTIVE)));
+
+        final List<ClusterChangeEvent> events = ClusterStateDiffer.diffCollection("c1", oldState, newState);
+        assertThat(events).containsOnly(
+                ClusterChangeEvent.replica(Type.REPLICA_STATE_CHANGED, "c1", "shard1", "r1", NODE1, "active", "down"),
+                ClusterChangeEvent.shard(Type.SHARD_ADDED, "c1", "shard2", null, null),
+                ClusterChangeEvent.replica(Type.REPLICA_ADDED, "c1", "shard2", "r2", NODE2, null, "active"));
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.cloud.CollectionStatePredicate;
+import org.apache.solr.common.cloud.DocCollection;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link ClusterStateWaiter}. */
+public class ClusterStateWaiterTest {
+
+    private static final String CONFIG_NAME = "clusterStateWaiterTest";
+    private static final String COLLECTION_NAME = "waiter";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private ClusterStateWaiter clusterStateWaiter;
+
+    @Before
+    public void setUp() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        CollectionAdminRequest.createCollection(COLLECTION_NAME, CONFIG_NAME, 1, 2).process(solrClient);
+        SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+        clusterStateWaiter = new ClusterStateWaiter(solrClient.getZkStateReader());
+    }
+
+    @Test
+    public void collection_wait_completes_when_state_changes() throws Exception {
+        final CompletableFuture<DocCollection> future = waitForNotFullyActive();
+        assertThat(future.isDone()).isFalse();
+
+        solrCluster.stopSolr(getNonLeaderNodeId());
+
+        assertThat(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    public void collection_wait_completes_when_only_live_nodes_change() throws Exception {
+        final CompletableFuture<DocCollection> future = waitForNotFullyActive();
+        assertThat(future.isDone()).isFalse();
+
+        // A killed node does not mark its replicas DOWN, and since it does not host the leader, the collection's
+        // state does not change at all
+        solrCluster.killSolr(getNonLeaderNodeId());
+
+        assertThat(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    private CompletableFuture<DocCollection> waitForNotFullyActive() {
+        return clusterStateWaiter.waitForCollectionState(COLLECTION_NAME, new CollectionStatePredicate() {
+            @Override
+            public boolean matches(Set<String> liveNodes, DocCollection collectionState) {
+                return !CollectionsStateHelper.isCollectionFullyActive(collectionState, liveNodes);
+            }
+        }, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private String getNonLeaderNodeId() {
+        final String leaderNodeName = solrClient.getZkStateReader().getClusterState().getCollection(COLLECTION_NAME)
+                .getSlice("shard1").getLeader().getNodeName();
+        for (final String nodeId : solrCluster.getNodeIds()) {
+            if (!SolrCloudUtils.baseUrlToNodeName(solrCluster.getBaseUrl(nodeId)).equals(leaderNodeName)) {
+                return nodeId;
+            }
+        }
+        throw new IllegalStateException("no node without the leader of " + COLLECTION_NAME);
+    }
+
+}
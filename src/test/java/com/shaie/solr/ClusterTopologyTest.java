@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static com.shaie.solr.utils.ClusterStateFixtures.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link ClusterTopology}. */
+public class ClusterTopologyTest {
+
+    private static final String NODE1 = "127.0.0.1:8983_solr";
+    private static final String NODE2 = "127.0.0.1:8984_solr";
+    private static final String NODE3 = "127.0.0.1:8985_solr";
+
+    @Test
+    public void indexes_replicas_by_node_and_shard() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE1, Replica.State.ACTIVE), replica("r2", NODE2,
+                        Replica.State.ACTIVE))),
+                collection("c2", slice("shard1", replica("r3", NODE1, Replica.State.ACTIVE)))));
+
+        assertThat(topology.getCollectionNames()).containsOnly("c1", "c2");
+        assertThat(topology.getNumNodeReplicas(NODE1)).isEqualTo(2);
+        assertThat(topology.getNumNodeReplicas(NODE2)).isEqualTo(1);
+        assertThat(topology.getShardReplicas("c1").get("shard1").size()).isEqualTo(2);
+        assertThat(topology.getStateCounts()).isEqualTo(ImmutableMap.of(Replica.State.ACTIVE, 3));
+        assertThat(topology.getDownReplicas()).isEmpty();
+    }
+
+    @Test
+    public void replacing_collection_updates_indexes() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2, NODE3),
+                collection("c1", slice("shard1", replica("r1", NODE1, Replica.State.ACTIVE), replica("r2", NODE2,
+                        Replica.State.ACTIVE))),
+                collection("c2", slice("shard1", replica("r3", NODE1, Replica.State.ACTIVE)))));
+
+        final ClusterTopology updated = topology.withCollection(
+                collection("c1", slice("shard1", replica("r1", NODE1, Replica.State.ACTIVE), replica("r4", NODE3,
+                        Replica.State.RECOVERING))));
+
+        assertThat(updated.getNumNodeReplicas(NODE1)).isEqualTo(2);
+        assertThat(updated.getNumNodeReplicas(NODE2)).isEqualTo(0);
+        assertThat(updated.getReplicaNodes()).containsOnly(NODE1, NODE3);
+        assertThat(updated.getStateCounts()).isEqualTo(
+                ImmutableMap.of(Replica.State.ACTIVE, 2, Replica.State.RECOVERING, 1));
+
+        // the original snapshot is not modified
+        assertThat(topology.getNumNodeReplicas(NODE2)).isEqualTo(1);
+
+        final ClusterTopology removed = updated.withoutCollection("c1");
+        assertThat(removed.getCollectionNames()).containsOnly("c2");
+        assertThat(removed.getReplicaNodes()).containsOnly(NODE1);
+        assertThat(removed.getStateCounts()).isEqualTo(ImmutableMap.of(Replica.State.ACTIVE, 1));
+    }
+
+    @Test
+    public void incremental_updates_match_full_rebuild() {
+        final Set<String> liveNodes = ImmutableSet.of(NODE1, NODE2, NODE3);
+        final String[] nodes = { NODE1, NODE2, NODE3 };
+        final Replica.State[] states = { Replica.State.ACTIVE, Replica.State.DOWN, Replica.State.RECOVERING };
+        final Random random = new Random(17);
+        final Map<String, DocCollection> collections = Maps.newTreeMap();
+        ClusterTopology topology = ClusterTopology.EMPTY.withLiveNodes(liveNodes);
+        for (int i = 0; i < 500; i++) {
+            final String name = "c" + random.nextInt(50);
+            if (random.nextInt(4) == 0) {
+                collections.remove(name);
+                topology = topology.withoutCollection(name);
+            } else {
+                final DocCollection collection = collection(name, slice("shard1",
+                        replica(name + "_r1", nodes[random.nextInt(3)], states[random.nextInt(3)]),
+                        replica(name + "_r2", nodes[random.nextInt(3)], states[random.nextInt(3)])));
+                collections.put(name, collection);
+                topology = topology.withCollection(collection);
+            }
+        }
+
+        final ClusterTopology rebuilt = ClusterTopology.from(clusterState(liveNodes,
+                collections.values().toArray(new DocCollection[0])));
+        assertThat(topology.getCollectionNames()).isEqualTo(rebuilt.getCollectionNames());
+        assertThat(topology.getReplicaNodes()).isEqualTo(rebuilt.getReplicaNodes());
+        assertThat(topology.getStateCounts()).isEqualTo(rebuilt.getStateCounts());
+        assertThat(topology.getDownReplicas().keySet()).isEqualTo(rebuilt.getDownReplicas().keySet());
+        for (final String node : nodes) {
+            assertThat(topology.getNumNodeReplicas(node)).isEqualTo(rebuilt.getNumNodeReplicas(node));
+        }
+    }
+
+    @Test
+    public void down_replicas_include_dead_nodes_and_down_states() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE1, Replica.State.ACTIVE), replica("r2", NODE2,
+                        Replica.State.DOWN))),
+                collection("c2", slice("shard1", replica("r3", NODE3, Replica.State.ACTIVE)))));
+
+        final Map<String, ?> downReplicas = topology.getDownReplicas();
+        assertThat(downReplicas.keySet()).containsOnly(NODE2, NODE3);
+
+        final ClusterTopology withAllLive = topology.withLiveNodes(ImmutableSet.of(NODE1, NODE2, NODE3));
+        assertThat(withAllLive.getDownReplicas().keySet()).containsOnly(NODE2);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.data.ACL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.shaie.solr.utils.TestingServerResource;
+import com.shaie.utils.Waiter;
+
+/** Unit tests for {@link ConfigCollectionsIndex}. */
+public class ConfigCollectionsIndexTest {
+
+    /** An ACL which allows everything but reading, so that reads fail with NOAUTH. */
+    private static final List<ACL> UNREADABLE_ACL = ImmutableList.of(
+            new ACL(ZooDefs.Perms.ALL & ~ZooDefs.Perms.READ, ZooDefs.Ids.ANYONE_ID_UNSAFE));
+
+    @Rule
+    public final TestingServerResource zkServer = new TestingServerResource();
+
+    private SolrZkClient zkClient;
+    private ConfigCollectionsIndex index;
+
+    @Before
+    public void setUp() {
+        zkClient = new SolrZkClient(zkServer.getConnectString(), 10000);
+        index = new ConfigCollectionsIndex(zkClient);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        zkClient.close();
+    }
+
+    @Test
+    public void builds_index_from_existing_collections() throws Exception {
+        createCollection("c1", "conf1");
+        createCollection("c2", "conf1");
+        createCollection("c3", "conf2");
+
+        assertThat(index.start(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(index.getCollections("conf1")).isEqualTo(ImmutableSet.of("c1", "c2"));
+        assertThat(index.getCollections("conf2")).isEqualTo(ImmutableSet.of("c3"));
+        assertThat(index.getCollections("conf3")).isEmpty();
+        assertThat(index.getConfigName("c3")).isEqualTo("conf2");
+        assertThat(index.getConfigNames()).isEqualTo(ImmutableSet.of("conf1", "conf2"));
+    }
+
+    @Test
+    public void starts_when_no_collections_exist() throws Exception {
+        assertThat(index.start(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(index.getConfigNames()).isEmpty();
+
+        createCollection("c1", "conf1");
+
+        assertThat(waitForCollections("conf1", ImmutableSet.of("c1"))).isTrue();
+    }
+
+    @Test
+    public void follows_collection_changes() throws Exception {
+        createCollection("c1", "conf1");
+        assertThat(index.start(10, TimeUnit.SECONDS)).isTrue();
+
+        createCollection("c2", "conf1");
+        assertThat(waitForCollections("conf1", ImmutableSet.of("c1", "c2"))).isTrue();
+
+        zkClient.setData("/collections/c1", collectionData("conf2"), true);
+        assertThat(waitForCollections("conf2", ImmutableSet.of("c1"))).isTrue();
+        assertThat(index.getCollections("conf1")).isEqualTo(ImmutableSet.of("c2"));
+
+        zkClient.delete("/collections/c2", -1, true);
+        assertThat(waitForCollections("conf1", ImmutableSet.<String> of())).isTrue();
+        assertThat(index.getConfigNames()).isEqualTo(ImmutableSet.of("conf2"));
+        assertThat(index.getConfigName("c2")).isNull();
+    }
+
+    @Test
+    public void retries_failed_collection_reads() throws Exception {
+        createCollection("c1", "conf1");
+        createCollection("c2", "conf1");
+        zkClient.getSolrZooKeeper().setACL("/collections/c2", UNREADABLE_ACL, -1);
+
+        assertThat(index.start(1, TimeUnit.SECONDS)).isFalse();
+        assertThat(index.getCollections("conf1")).isEqualTo(ImmutableSet.of("c1"));
+
+        zkClient.getSolrZooKeeper().setACL("/collections/c2", ZooDefs.Ids.OPEN_ACL_UNSAFE, -1);
+        assertThat(waitForCollections("conf1", ImmutableSet.of("c1", "c2"))).isTrue();
+
+        // the retried read also watches the collection
+        zkClient.setData("/collections/c2", collectionData("conf2"), true);
+        assertThat(waitForCollections("conf2", ImmutableSet.of("c2"))).isTrue();
+    }
+
+    @Test
+    public void retries_failed_collections_listing() throws Exception {
+        createCollection("c1", "conf1");
+        zkClient.getSolrZooKeeper().setACL("/collections", UNREADABLE_ACL, -1);
+
+        assertThat(index.start(1, TimeUnit.SECONDS)).isFalse();
+        assertThat(index.getConfigNames()).isEmpty();
+
+        zkClient.getSolrZooKeeper().setACL("/collections", ZooDefs.Ids.OPEN_ACL_UNSAFE, -1);
+        assertThat(waitForCollections("conf1", ImmutableSet.of("c1"))).isTrue();
+
+        // the retried listing also watches the collections
+        createCollection("c2", "conf1");
+        assertThat(waitForCollections("conf1", ImmutableSet.of("c1", "c2"))).isTrue();
+    }
+
+    private void createCollection(String collection, String configName) throws Exception {
+        zkClient.makePath("/collections/" + collection, collectionData(configName), true);
+    }
+
+    private static byte[] collectionData(String configName) {
+        return ("{\"configName\":\"" + configName + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean waitForCollections(final String configName, final ImmutableSet<String> expected) {
+        return Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return index.getCollections(configName).equals(expected);
+            }
+        }, 10, TimeUnit.SECONDS);
+    }
+
+}
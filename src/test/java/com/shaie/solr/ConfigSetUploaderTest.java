@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.zookeeper.KeeperException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.shaie.solr.utils.TestingServerResource;
+
+/** Unit tests for {@link ConfigSetUploader}. */
+public class ConfigSetUploaderTest {
+
+    @Rule
+    public final TestingServerResource zkServer = new TestingServerResource();
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SolrZkClient zkClient;
+    private Path confDir;
+
+    @Before
+    public void setUp() throws IOException {
+        zkClient = new SolrZkClient(zkServer.getConnectString(), 10000);
+        confDir = tempFolder.newFolder("conf").toPath();
+        write("solrconfig.xml", "<config/>");
+        write("schema.xml", "<schema/>");
+        write("lang/stopwords.txt", "a\nthe");
+    }
+
+    @After
+    public void tearDown() {
+        zkClient.close();
+    }
+
+    @Test
+    public void creates_files_and_parent_directories() throws Exception {
+        final ConfigSetUploader.Result result = new ConfigSetUploader(zkClient).upload("myconf", confDir);
+
+        assertThat(result.getNumCreated()).isEqualTo(3);
+        assertThat(result.getNumWriteRequests()).isEqualTo(2);
+        assertThat(read("/configs/myconf/lang/stopwords.txt")).isEqualTo("a\nthe");
+        assertThat(read("/configs/myconf/schema.xml")).isEqualTo("<schema/>");
+    }
+
+    @Test
+    public void writes_only_modified_files() throws Exception {
+        final ConfigSetUploader uploader = new ConfigSetUploader(zkClient);
+        uploader.upload("myconf", confDir);
+
+        final ConfigSetUploader.Result unchanged = uploader.upload("myconf", confDir);
+        assertThat(unchanged.getNumUnchanged()).isEqualTo(3);
+        assertThat(unchanged.getNumWriteRequests()).isEqualTo(0);
+
+        write("schema.xml", "<schema name=\"modified\"/>");
+        final ConfigSetUploader.Result modified = uploader.upload("myconf", confDir);
+        assertThat(modified.getNumUpdated()).isEqualTo(1);
+        assertThat(modified.getNumUnchanged()).isEqualTo(2);
+        assertThat(modified.getNumWriteRequests()).isEqualTo(1);
+        assertThat(read("/configs/myconf/schema.xml")).isEqualTo("<schema name=\"modified\"/>");
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        final Path file = confDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String path) throws KeeperException, InterruptedException {
+        return new String(zkClient.getData(path, null, null, true), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static com.shaie.solr.utils.ClusterStateFixtures.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link PlacementEngine}. */
+public class PlacementEngineTest {
+
+    private static final String NODE1 = "127.0.0.1:8983_solr";
+    private static final String NODE2 = "127.0.0.1:8984_solr";
+    private static final String NODE3 = "127.0.0.1:8985_solr";
+    private static final String NODE4 = "127.0.0.1:8986_solr";
+
+    @Test
+    public void prefers_nodes_with_lower_disk_usage() {
+        // NODE3 is down, NODE1 and NODE2 have the same number of replicas, but NODE1's is larger
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE1))),
+                collection("c2", slice("shard1", replica("r2", NODE2))),
+                collection("c3", slice("shard1", replica("r3", NODE3)))));
+        final PlacementEngine engine = new PlacementEngine(new PlacementEngine.Config().setShardStats(
+                ImmutableList.of(new ShardStats("c1", "shard1", 1000, 0, 0), new ShardStats("c2", "shard1", 10, 0, 0),
+                        new ShardStats("c3", "shard1", 10, 0, 0))));
+
+        assertThat(getTargets(engine.plan(topology))).isEqualTo(ImmutableMap.of("r3", NODE2));
+        assertThat(engine.getNodeLoads(topology).get(NODE1)).isGreaterThan(engine.getNodeLoads(topology).get(NODE2));
+    }
+
+    @Test
+    public void spreads_shard_replicas_across_racks() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2, NODE4),
+                collection("c1", slice("shard1", replica("r1", NODE1), replica("r2", NODE3))),
+                collection("c2", slice("shard1", replica("r3", NODE2))),
+                collection("c3", slice("shard1", replica("r4", NODE4)))));
+        final PlacementEngine engine = new PlacementEngine(new PlacementEngine.Config().setNodeRacks(
+                ImmutableMap.of(NODE1, "rack1", NODE2, "rack1", NODE3, "rack2", NODE4, "rack2")));
+
+        // NODE2 and NODE4 are equally loaded, but NODE2 is in the same rack as r1
+        assertThat(getTargets(engine.plan(topology))).isEqualTo(ImmutableMap.of("r2", NODE4));
+    }
+
+    @Test
+    public void avoids_colocating_replicas_of_same_collection() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE1)), slice("shard2", replica("r2", NODE3))),
+                collection("c2", slice("shard1", replica("r3", NODE2)))));
+
+        assertThat(getTargets(new PlacementEngine(new PlacementEngine.Config()).plan(topology)))
+                .isEqualTo(ImmutableMap.of("r2", NODE2));
+        assertThat(getTargets(new PlacementEngine(new PlacementEngine.Config().setColocationWeight(0)).plan(topology)))
+                .isEqualTo(ImmutableMap.of("r2", NODE1));
+    }
+
+    @Test
+    public void balances_replicas_of_down_nodes() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE3))),
+                collection("c2", slice("shard1", replica("r2", NODE3))),
+                collection("c3", slice("shard1", replica("r3", NODE4))),
+                collection("c4", slice("shard1", replica("r4", NODE4)))));
+
+        final RecoveryPlan plan = new PlacementEngine(new PlacementEngine.Config()).plan(topology);
+
+        assertThat(plan.getMoves()).hasSize(4);
+        assertThat(Collections.frequency(getTargets(plan).values(), NODE1)).isEqualTo(2);
+    }
+
+    private static Map<String, String> getTargets(RecoveryPlan plan) {
+        final Map<String, String> targets = Maps.newHashMap();
+        for (final RecoveryPlan.Move move : plan.getMoves()) {
+            targets.put(move.getReplica().getReplica().getName(), move.getTargetNode());
+        }
+        return targets;
+    }
+
+}
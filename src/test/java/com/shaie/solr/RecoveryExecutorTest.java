@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.shaie.solr.solrj.AddReplicaResponse;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link RecoveryExecutor}. */
+public class RecoveryExecutorTest {
+
+    private static final String CONFIG_NAME = "recoveryExecutorTest";
+    private static final String[] COLLECTION_NAMES = { "c1", "c2", "c3" };
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private RecordingCollectionAdminHelper collectionAdminHelper;
+    private String sourceNodeName;
+    private String targetNodeName;
+
+    @Before
+    public void setUp() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        sourceNodeName = SolrCloudUtils.baseUrlToNodeName(solrCluster.getBaseUrl("node1"));
+        targetNodeName = SolrCloudUtils.baseUrlToNodeName(solrCluster.getBaseUrl("node2"));
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        for (final String collectionName : COLLECTION_NAMES) {
+            CollectionAdminRequest.createCollection(collectionName, CONFIG_NAME, 1, 1)
+                    .setCreateNodeSet(sourceNodeName)
+                    .process(solrClient);
+            SolrCloudUtils.waitForAllActive(collectionName, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+            final SolrInputDocument doc = new SolrInputDocument();
+            doc.setField("id", "doc1");
+            solrClient.add(collectionName, doc);
+            solrClient.commit(collectionName);
+        }
+        collectionAdminHelper = new RecordingCollectionAdminHelper(solrClient);
+    }
+
+    @After
+    public void tearDown() {
+        collectionAdminHelper.close();
+    }
+
+    @Test
+    public void old_replicas_are_deleted_after_new_replicas_are_active() throws Exception {
+        try (RecoveryExecutor recoveryExecutor = newRecoveryExecutor(2, Long.MAX_VALUE)) {
+            final RecoveryExecutor.Result result = execute(recoveryExecutor);
+
+            assertThat(result.isSuccessful()).isTrue();
+            assertThat(result.getCompletedMoves()).hasSize(COLLECTION_NAMES.length);
+            assertThat(collectionAdminHelper.errors).isEmpty();
+            assertThat(recoveryExecutor.getNumMovesInFlight()).isEqualTo(0);
+            assertThat(recoveryExecutor.getBytesInFlight()).isEqualTo(0);
+        }
+        for (final String collectionName : COLLECTION_NAMES) {
+            final Collection<Replica> replicas = getSlice(collectionName).getReplicas();
+            assertThat(replicas).hasSize(1);
+            assertThat(replicas.iterator().next().getNodeName()).isEqualTo(targetNodeName);
+        }
+    }
+
+    @Test
+    public void moves_in_flight_are_bounded_by_max_concurrent_moves() throws Exception {
+        try (RecoveryExecutor recoveryExecutor = newRecoveryExecutor(2, 0)) {
+            final RecoveryExecutor.Result result = execute(recoveryExecutor);
+
+            assertThat(result.isSuccessful()).isTrue();
+            assertThat(collectionAdminHelper.errors).isEmpty();
+            // The first two moves start together, and the third waits for one of them to complete
+            assertThat(collectionAdminHelper.numMovesInFlight).containsOnly(1, 2);
+            assertThat(collectionAdminHelper.numMovesInFlight.get(1)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void move_larger_than_byte_budget_runs_alone() throws Exception {
+        // Every shard has an index larger than a single byte, so each move exceeds the budget on its own
+        try (RecoveryExecutor recoveryExecutor = newRecoveryExecutor(COLLECTION_NAMES.length, 1)) {
+            final RecoveryExecutor.Result result = execute(recoveryExecutor);
+
+            assertThat(result.isSuccessful()).isTrue();
+            assertThat(result.getCompletedMoves()).hasSize(COLLECTION_NAMES.length);
+            assertThat(collectionAdminHelper.errors).isEmpty();
+            assertThat(collectionAdminHelper.bytesInFlight).containsOnly(1L);
+            assertThat(collectionAdminHelper.maxNumRecovering).isEqualTo(1);
+        }
+    }
+
+    private RecoveryExecutor newRecoveryExecutor(int maxConcurrentMoves, long maxBytesInFlight) {
+        final RecoveryExecutor recoveryExecutor = new RecoveryExecutor(solrClient, collectionAdminHelper,
+                maxConcurrentMoves, maxBytesInFlight, TIMEOUT_SECONDS);
+        collectionAdminHelper.recoveryExecutor = recoveryExecutor;
+        return recoveryExecutor;
+    }
+
+    private RecoveryExecutor.Result execute(RecoveryExecutor recoveryExecutor) throws Exception {
+        final List<RecoveryPlan.Move> moves = Lists.newArrayList();
+        for (final String collectionName : COLLECTION_NAMES) {
+            final Replica replica = getSlice(collectionName).getReplicas().iterator().next();
+            moves.add(new RecoveryPlan.Move(new ReplicaInfo(replica, collectionName, "shard1"), targetNodeName));
+        }
+        final RecoveryPlan plan = new RecoveryPlan(moves, Collections.<ReplicaInfo> emptyList());
+        return recoveryExecutor.execute(plan).get(TIMEOUT_SECONDS * COLLECTION_NAMES.length, TimeUnit.SECONDS);
+    }
+
+    private Slice getSlice(String collectionName) {
+        final DocCollection collection = solrClient.getZkStateReader().getClusterState()
+                .getCollection(collectionName);
+        return collection.getSlice("shard1");
+    }
+
+    /**
+     * Records the executor's budgets whenever a move starts, and verifies that the old replica is deleted only after
+     * the new replica became active.
+     */
+    private final class RecordingCollectionAdminHelper extends AsyncCollectionAdminHelper {
+
+        private final List<String> errors = Collections.synchronizedList(Lists.<String> newArrayList());
+        private final List<Integer> numMovesInFlight = Collections.synchronizedList(Lists.<Integer> newArrayList());
+        private final List<Long> bytesInFlight = Collections.synchronizedList(Lists.<Long> newArrayList());
+        private final List<String> startedCollections = Lists.newArrayList();
+        private volatile RecoveryExecutor recoveryExecutor;
+        private int maxNumRecovering = 0;
+
+        RecordingCollectionAdminHelper(CloudSolrClient solrClient) {
+            super(solrClient, 4);
+        }
+
+        @Override
+        public CompletableFuture<AddReplicaResponse> addReplica(String collectionName, String shardName,
+                String nodeName) {
+            numMovesInFlight.add(recoveryExecutor.getNumMovesInFlight());
+            bytesInFlight.add(recoveryExecutor.getBytesInFlight());
+            synchronized (this) {
+                // A started move is recovering until its new replica becomes active
+                int numRecovering = 1;
+                for (final String startedCollection : startedCollections) {
+                    if (!hasActiveReplicaOnTargetNode(startedCollection, null)) {
+                        ++numRecovering;
+                    }
+                }
+                maxNumRecovering = Math.max(maxNumRecovering, numRecovering);
+                startedCollections.add(collectionName);
+            }
+            return super.addReplica(collectionName, shardName, nodeName);
+        }
+
+        @Override
+        public CompletableFuture<Void> deleteReplica(String collectionName, String shardName, String replicaName) {
+            if (!hasActiveReplicaOnTargetNode(collectionName, replicaName)) {
+                errors.add("deleted replica [" + replicaName + "] of [" + collectionName
+                        + "] before the new replica became active");
+            }
+            return super.deleteReplica(collectionName, shardName, replicaName);
+        }
+
+        private boolean hasActiveReplicaOnTargetNode(String collectionName, String deletedReplicaName) {
+            for (final Replica replica : getSlice(collectionName).getReplicas()) {
+                if (!replica.getName().equals(deletedReplicaName) && replica.getNodeName().equals(targetNodeName)
+                        && replica.getState() == Replica.State.ACTIVE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
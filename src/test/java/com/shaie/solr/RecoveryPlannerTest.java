@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static com.shaie.solr.utils.ClusterStateFixtures.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link RecoveryPlanner}. */
+public class RecoveryPlannerTest {
+
+    private static final String NODE1 = "127.0.0.1:8983_solr";
+    private static final String NODE2 = "127.0.0.1:8984_solr";
+    private static final String NODE3 = "127.0.0.1:8985_solr";
+    private static final String NODE4 = "127.0.0.1:8986_solr";
+
+    private final RecoveryPlanner planner = new RecoveryPlanner();
+
+    @Test
+    public void spreads_replicas_of_down_node_by_load() {
+        // NODE3 is down, NODE1 is more loaded than NODE2
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE1), replica("r2", NODE3))),
+                collection("c2", slice("shard1", replica("r3", NODE1), replica("r4", NODE3))),
+                collection("c3", slice("shard1", replica("r5", NODE3)))));
+
+        final RecoveryPlan plan = planner.plan(topology);
+
+        assertThat(plan.getUnplacedReplicas()).isEmpty();
+        final Map<String, String> targets = Maps.newHashMap();
+        for (final RecoveryPlan.Move move : plan.getMoves()) {
+            targets.put(move.getReplica().getReplica().getName(), move.getTargetNode());
+        }
+        // r2 and r4 cannot be placed on NODE1 which already holds their shards
+        assertThat(targets).isEqualTo(ImmutableMap.of("r2", NODE2, "r4", NODE2, "r5", NODE2));
+        // c3/shard1 has no active replicas, therefore it is recovered first
+        assertThat(plan.getMoves().get(0).getCollectionName()).isEqualTo("c3");
+    }
+
+    @Test
+    public void alternates_between_equally_loaded_nodes() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1, NODE2),
+                collection("c1", slice("shard1", replica("r1", NODE3))),
+                collection("c2", slice("shard1", replica("r2", NODE3))),
+                collection("c3", slice("shard1", replica("r3", NODE4))),
+                collection("c4", slice("shard1", replica("r4", NODE4)))));
+
+        final RecoveryPlan plan = planner.plan(topology);
+
+        int numOnNode1 = 0;
+        for (final RecoveryPlan.Move move : plan.getMoves()) {
+            if (move.getTargetNode().equals(NODE1)) {
+                ++numOnNode1;
+            }
+        }
+        assertThat(plan.getMoves()).hasSize(4);
+        assertThat(numOnNode1).isEqualTo(2);
+    }
+
+    @Test
+    public void replicas_without_candidate_nodes_are_unplaced() {
+        final ClusterTopology topology = ClusterTopology.from(clusterState(ImmutableSet.of(NODE1),
+                collection("c1", slice("shard1", replica("r1", NODE1), replica("r2", NODE2)))));
+
+        final RecoveryPlan plan = planner.plan(topology);
+
+        assertThat(plan.getMoves()).isEmpty();
+        assertThat(plan.getUnplacedReplicas()).hasSize(1);
+        assertThat(plan.getUnplacedReplicas().get(0).getReplica().getName()).isEqualTo("r2");
+    }
+
+}
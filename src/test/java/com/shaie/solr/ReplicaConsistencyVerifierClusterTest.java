@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.shaie.solr.ReplicaConsistencyVerifier.Report;
+import com.shaie.solr.ReplicaConsistencyVerifier.ReplicaStatus;
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link ReplicaConsistencyVerifier}. */
+public class ReplicaConsistencyVerifierClusterTest {
+
+    private static final String CONFIG_NAME = "replicaConsistencyTest";
+    private static final String COLLECTION_NAME = "consistency";
+    private static final int NUM_DOCS = 20;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private ReplicaConsistencyVerifier verifier;
+
+    @Before
+    public void setUp() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        CollectionAdminRequest.createCollection(COLLECTION_NAME, CONFIG_NAME, 2, 2)
+                .setMaxShardsPerNode(2)
+                .process(solrClient);
+        SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+
+        final List<SolrInputDocument> docs = Lists.newArrayList();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            final SolrInputDocument doc = new SolrInputDocument();
+            doc.setField("id", "doc" + i);
+            docs.add(doc);
+        }
+        solrClient.add(COLLECTION_NAME, docs);
+        solrClient.commit(COLLECTION_NAME);
+        verifier = new ReplicaConsistencyVerifier(solrClient, 4, true);
+    }
+
+    @After
+    public void tearDown() {
+        verifier.close();
+    }
+
+    @Test
+    public void replicas_of_healthy_collection_are_consistent() {
+        final Report report = verifier.verify(COLLECTION_NAME, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(report.isConsistent()).isTrue();
+        assertThat(report.getReplicas()).hasSize(4);
+        long numLeaderDocs = 0;
+        for (final ReplicaStatus status : report.getReplicas()) {
+            assertThat(status.getGeneration()).isGreaterThan(0);
+            assertThat(status.getFingerprint()).isNotNull();
+            if (status.isLeader()) {
+                numLeaderDocs += status.getNumDocs();
+            }
+        }
+        assertThat(numLeaderDocs).isEqualTo(NUM_DOCS);
+    }
+
+    @Test
+    public void replicas_of_stopped_node_are_reported_as_failed() {
+        final String stoppedNodeName = SolrCloudUtils.baseUrlToNodeName(solrCluster.getBaseUrl("node2"));
+        solrCluster.stopSolr("node2");
+
+        final Report report = verifier.verify(COLLECTION_NAME, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(report.isConsistent()).isFalse();
+        assertThat(report.getFailedReplicas()).hasSize(2);
+        for (final ReplicaStatus status : report.getFailedReplicas()) {
+            assertThat(status.getNode()).isEqualTo(stoppedNodeName);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Map;
+
+import org.apache.solr.common.cloud.Replica;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.shaie.solr.ReplicaConsistencyVerifier.Report;
+import com.shaie.solr.ReplicaConsistencyVerifier.ReplicaStatus;
+
+/** Unit tests for {@link ReplicaConsistencyVerifier}. */
+public class ReplicaConsistencyVerifierTest {
+
+    @Test
+    public void parses_generation_from_segments_file() {
+        assertThat(ReplicaConsistencyVerifier.parseGeneration("segments_1")).isEqualTo(1);
+        assertThat(ReplicaConsistencyVerifier.parseGeneration("segments_a")).isEqualTo(10);
+        assertThat(ReplicaConsistencyVerifier.parseGeneration("segments_10")).isEqualTo(36);
+        assertThat(ReplicaConsistencyVerifier.parseGeneration(null)).isEqualTo(-1);
+    }
+
+    @Test
+    public void nrt_replicas_are_compared_by_num_docs() {
+        final ReplicaStatus leader = status("r1", Replica.Type.NRT, true, 100, 5, 3, null);
+        final ReplicaStatus sameDocs = status("r2", Replica.Type.NRT, false, 100, 7, 4, null);
+        final ReplicaStatus missingDocs = status("r3", Replica.Type.NRT, false, 90, 5, 3, null);
+
+        final Report report = new Report("c1", ImmutableList.of(leader, sameDocs, missingDocs));
+        assertThat(report.getDivergentReplicas()).containsOnly(missingDocs);
+        assertThat(report.getFailedReplicas()).isEmpty();
+        assertThat(report.isConsistent()).isFalse();
+    }
+
+    @Test
+    public void tlog_replicas_are_compared_by_commit() {
+        final ReplicaStatus leader = status("r1", Replica.Type.TLOG, true, 100, 5, 3, null);
+        final ReplicaStatus sameCommit = status("r2", Replica.Type.TLOG, false, 100, 5, 3, null);
+        final ReplicaStatus staleCommit = status("r3", Replica.Type.PULL, false, 100, 4, 2, null);
+
+        final Report report = new Report("c1", ImmutableList.of(leader, sameCommit, staleCommit));
+        assertThat(report.getDivergentReplicas()).containsOnly(staleCommit);
+    }
+
+    @Test
+    public void compares_fingerprints_and_reports_failures() {
+        final Map<String, Object> fingerprint = ImmutableMap.<String, Object> of("maxVersionEncountered", 10L,
+                "versionsHash", 1234L, "numVersions", 100L);
+        final Map<String, Object> otherFingerprint = ImmutableMap.<String, Object> of("maxVersionEncountered", 10L,
+                "versionsHash", 4321L, "numVersions", 100L);
+        final ReplicaStatus leader = status("r1", Replica.Type.NRT, true, 100, 5, 3, fingerprint);
+        final ReplicaStatus same = status("r2", Replica.Type.NRT, false, 100, 6, 3, fingerprint);
+        final ReplicaStatus different = status("r3", Replica.Type.NRT, false, 100, 6, 3, otherFingerprint);
+        final ReplicaStatus failed = new ReplicaStatus("c1", "shard1", "r4", "node", Replica.Type.NRT, false, -1, -1,
+                -1, -1, null, "timeout");
+
+        final Report report = new Report("c1", ImmutableList.of(leader, same, different, failed));
+        assertThat(report.getDivergentReplicas()).containsOnly(different);
+        assertThat(report.getFailedReplicas()).containsOnly(failed);
+    }
+
+    private static ReplicaStatus status(String name, Replica.Type type, boolean leader, long numDocs,
+            long indexVersion, long generation, Map<String, Object> fingerprint) {
+        return new ReplicaStatus("c1", "shard1", name, "node", type, leader, numDocs, numDocs, indexVersion,
+                generation, fingerprint, null);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.ZkConfigManager;
+import org.apache.solr.common.params.CommonParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link RollingConfigDeployer}. */
+public class RollingConfigDeployerClusterTest {
+
+    private static final String CONFIG_NAME = "rollingConfigTest";
+    private static final String COLLECTION_NAME = "rolling";
+    private static final String SOLRCONFIG_PATH = ZkConfigManager.CONFIGS_ZKNODE + "/" + CONFIG_NAME
+            + "/solrconfig.xml";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private RollingConfigDeployer deployer;
+
+    @Before
+    public void setUp() throws Exception {
+        solrClusterResource.getSolrCluster().startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        CollectionAdminRequest.createCollection(COLLECTION_NAME, CONFIG_NAME, 2, 2)
+                .setMaxShardsPerNode(2)
+                .process(solrClient);
+        SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+        deployer = new RollingConfigDeployer(solrClient, new RollingConfigDeployer.Config()
+                .setMaxParallelReloads(1)
+                .setHealthTimeoutSeconds(TIMEOUT_SECONDS)
+                .setNumProbeQueries(3));
+    }
+
+    @After
+    public void tearDown() {
+        deployer.close();
+    }
+
+    @Test
+    public void breached_probe_threshold_restores_previous_config() throws Exception {
+        final byte[] previousSolrConfig = getSolrConfig();
+
+        // The new version removes the /select handler which the probe queries are sent to, so they all fail
+        final Path confDir = tempFolder.newFolder("conf").toPath();
+        final Path originalConfDir = Utils.getPathResource("solr/conf");
+        Files.copy(originalConfDir.resolve("schema.xml"), confDir.resolve("schema.xml"));
+        final String solrConfig = new String(Files.readAllBytes(originalConfDir.resolve("solrconfig.xml")),
+                StandardCharsets.UTF_8);
+        Files.write(confDir.resolve("solrconfig.xml"),
+                solrConfig.replace("name=\"/select\"", "name=\"/search\"").getBytes(StandardCharsets.UTF_8));
+
+        final RollingConfigDeployer.Report report = deployer.deploy(CONFIG_NAME, confDir);
+
+        assertThat(report.getStatus()).isEqualTo(RollingConfigDeployer.Status.ROLLED_BACK);
+        assertThat(report.getFailure()).contains("error rate");
+        assertThat(report.getReloadedReplicas()).hasSize(1);
+        assertThat(getSolrConfig()).isEqualTo(previousSolrConfig);
+
+        // The reloaded replica was reloaded again with the previous version, which serves /select
+        assertThat(SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(),
+                TIMEOUT_SECONDS)).isTrue();
+        for (final Replica replica : solrClient.getZkStateReader().getClusterState().getCollection(COLLECTION_NAME)
+                .getReplicas()) {
+            try (HttpSolrClient client = new HttpSolrClient.Builder(replica.getBaseUrl()).build()) {
+                final SolrQuery query = new SolrQuery("*:*");
+                query.set(CommonParams.DISTRIB, false);
+                assertThat(client.query(replica.getCoreName(), query).getStatus()).isEqualTo(0);
+            }
+        }
+    }
+
+    private byte[] getSolrConfig() throws Exception {
+        return solrClient.getZkStateReader().getZkClient().getData(SOLRCONFIG_PATH, null, null, true);
+    }
+
+}
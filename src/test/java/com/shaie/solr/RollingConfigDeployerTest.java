@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static com.shaie.solr.utils.ClusterStateFixtures.*;
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link RollingConfigDeployer}. */
+public class RollingConfigDeployerTest {
+
+    private static final String NODE = "127.0.0.1:8983_solr";
+
+    @Test
+    public void reload_order_alternates_shards_and_reloads_leaders_last() {
+        final DocCollection collection = collection("c1",
+                slice("shard1", "r1", replica("r1", NODE), replica("r2", NODE), replica("r3", NODE)),
+                slice("shard2", "r5", replica("r4", NODE), replica("r5", NODE)));
+
+        assertThat(names(RollingConfigDeployer.getReloadOrder(collection))).containsExactly(
+                "r2", "r4", "r3", "r5", "r1");
+    }
+
+    @Test
+    public void reload_order_skips_inactive_shards() {
+        final Map<String, Slice> slices = Maps.newLinkedHashMap();
+        slices.put("shard1", slice("shard1", "r1", replica("r1", NODE)));
+        slices.put("shard2", new Slice("shard2", ImmutableMap.of("r2", replica("r2", NODE)),
+                ImmutableMap.<String, Object> of(ZkStateReader.STATE_PROP, Slice.State.INACTIVE.toString())));
+        final DocCollection collection = new DocCollection("c1", slices, Collections.<String, Object> emptyMap(),
+                DocRouter.DEFAULT);
+
+        assertThat(names(RollingConfigDeployer.getReloadOrder(collection))).containsExactly("r1");
+    }
+
+    private static List<String> names(List<Replica> replicas) {
+        final List<String> result = Lists.newArrayList();
+        for (final Replica replica : replicas) {
+            result.add(replica.getName());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** Unit tests for {@link ShardSplitPlanner}. */
+public class ShardSplitPlannerTest {
+
+    private final ShardStats small = new ShardStats("c1", "shard1", 100, 10, 1);
+    private final ShardStats large = new ShardStats("c1", "shard2", 3000, 10, 1);
+    private final ShardStats busy = new ShardStats("c2", "shard1", 100, 10, 50);
+    private final ShardStats manyDocs = new ShardStats("c2", "shard2", 100, 1500, 1);
+
+    @Test
+    public void splits_shards_exceeding_any_threshold_largest_first() {
+        final ShardSplitPlanner planner = new ShardSplitPlanner(new ShardSplitPlanner.Config()
+                .setMaxIndexSizeInBytes(1000)
+                .setMaxNumDocs(1000)
+                .setMaxQueriesPerSecond(10));
+
+        final List<ShardStats> plan = planner.plan(ImmutableList.of(small, large, busy, manyDocs));
+        assertThat(plan).isEqualTo(ImmutableList.of(busy, large, manyDocs));
+    }
+
+    @Test
+    public void disabled_thresholds_are_ignored() {
+        final ShardSplitPlanner planner = new ShardSplitPlanner(new ShardSplitPlanner.Config()
+                .setMaxIndexSizeInBytes(1000));
+
+        final List<ShardStats> plan = planner.plan(ImmutableList.of(small, large, busy, manyDocs));
+        assertThat(plan).isEqualTo(ImmutableList.of(large));
+    }
+
+    @Test
+    public void limits_number_of_splits() {
+        final ShardSplitPlanner planner = new ShardSplitPlanner(new ShardSplitPlanner.Config()
+                .setMaxIndexSizeInBytes(1000)
+                .setMaxNumDocs(1000)
+                .setMaxQueriesPerSecond(10)
+                .setMaxSplits(1));
+
+        final List<ShardStats> plan = planner.plan(ImmutableList.of(small, large, busy, manyDocs));
+        assertThat(plan).isEqualTo(ImmutableList.of(busy));
+    }
+
+}
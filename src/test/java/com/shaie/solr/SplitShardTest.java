@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -38,7 +39,9 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.shaie.solr.solrj.AsyncCollectionAdminHelper;
 import com.shaie.solr.solrj.CollectionAdminHelper;
 import com.shaie.solr.utils.MiniSolrCloudClusterResource;
 import com.shaie.utils.Utils;
@@ -111,6 +114,34 @@ public class SplitShardTest {
         // }
     }
 
+    @Test
+    public void split_planner_splits_and_cleans_up_large_shards() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        createCollectionAndWaitForRecoveries();
+        indexDocs(1000);
+
+        final List<ShardStats> shards;
+        try (ShardStatsCollector statsCollector = new ShardStatsCollector(solrClient, 2)) {
+            shards = statsCollector.collect(ImmutableList.of(COLLECTION_NAME), WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        final List<ShardStats> plan = new ShardSplitPlanner(new ShardSplitPlanner.Config().setMaxNumDocs(500))
+                .plan(shards);
+        assertThat(plan.size()).isEqualTo(1);
+
+        try (AsyncCollectionAdminHelper asyncHelper = new AsyncCollectionAdminHelper(solrClient, 2)) {
+            final ShardSplitExecutor executor = new ShardSplitExecutor(asyncHelper,
+                    new ClusterStateWaiter(solrClient.getZkStateReader()), 1, 60);
+            final ShardSplitExecutor.Result result = executor.execute(plan).get();
+            assertThat(result.isSuccessful()).overridingErrorMessage(result.getFailedSplits().toString()).isTrue();
+        }
+
+        final DocCollection collection = solrClient.getZkStateReader().getClusterState()
+                .getCollection(COLLECTION_NAME);
+        assertThat(collection.getSlice("shard1")).isNull();
+        assertThat(collection.getActiveSlices().size()).isEqualTo(2);
+        assertThat(solrClient.query(new SolrQuery("*:*")).getResults().getNumFound()).isEqualTo(1000);
+    }
+
     private void printClusterStatus() {
         final ClusterState clusterState = solrClient.getZkStateReader().getClusterState();
         System.out.println("live nodes: " + clusterState.getLiveNodes());
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** Unit tests for {@link ChaosReport}. */
+public class ChaosReportTest {
+
+    private final ChaosReport report = new ChaosReport(ImmutableList.of(
+            new FaultEvent(FaultType.KILL, "node1", 2, 1024, 0, 100, 3000, null),
+            new FaultEvent(FaultType.KILL, "node2", 4, 2048, 5000, 150, 5000, null),
+            new FaultEvent(FaultType.DESTROY, "node1", 2, 1024, 10000, 120, -1, null),
+            FaultEvent.skipped(FaultType.DESTROY, "node2", 130000)));
+
+    @Test
+    public void groups_events_by_fault_type() {
+        assertThat(report.getEvents(FaultType.KILL)).hasSize(2);
+        assertThat(report.getEvents(FaultType.DESTROY)).hasSize(2);
+        assertThat(report.getEvents(FaultType.STOP)).isEmpty();
+        assertThat(report.getEvents(FaultType.DESTROY).get(0).isRecovered()).isFalse();
+    }
+
+    @Test
+    public void prints_recovery_statistics_per_fault_type() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        report.print(new PrintStream(bytes, true));
+        final String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+
+        // KILL: 2 events, both recovered, min=3000 p50=5000 max=5000, 8000ms over 6 replicas
+        assertThat(output).contains("KILL           2       0         2       3000       5000       5000     1333.3");
+        // DESTROY: 2 events, one skipped and one which did not recover
+        assertThat(output).contains("DESTROY        2       1         0        n/a        n/a        n/a        n/a");
+        assertThat(output).contains("DESTROY node2: skipped");
+        assertThat(output).doesNotContain("STOP ");
+    }
+
+}
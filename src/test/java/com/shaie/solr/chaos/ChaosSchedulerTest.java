@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.chaos;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.shaie.solr.MiniSolrCloudCluster;
+import com.shaie.solr.SolrCloudUtils;
+import com.shaie.solr.chaos.ChaosScheduler.ScriptedFault;
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link ChaosScheduler}. */
+public class ChaosSchedulerTest {
+
+    private static final String CONFIG_NAME = "chaosTest";
+    private static final String COLLECTION_NAME = "chaos";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+    private final ChaosScheduler.Config config = new ChaosScheduler.Config()
+            .setCollections(COLLECTION_NAME)
+            .setDowntimeMillis(1000)
+            .setDegradeTimeoutMillis(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS))
+            .setRecoveryTimeoutMillis(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+    @Before
+    public void setUp() throws Exception {
+        solrCluster.startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        CollectionAdminRequest.createCollection(COLLECTION_NAME, CONFIG_NAME, 1, 2).process(solrClient);
+        SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+    }
+
+    @Test
+    public void scripted_faults_are_injected_and_recovered_from() throws Exception {
+        final ChaosScheduler scheduler = new ChaosScheduler(solrCluster, solrClient.getZkStateReader(), config);
+
+        final ChaosReport report = scheduler.runScript(ImmutableList.of(
+                new ScriptedFault(0, TimeUnit.MILLISECONDS, "node2", FaultType.STOP),
+                new ScriptedFault(0, TimeUnit.MILLISECONDS, "node2", FaultType.KILL))).get();
+
+        final List<FaultEvent> events = report.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getType()).isEqualTo(FaultType.STOP);
+        assertThat(events.get(1).getType()).isEqualTo(FaultType.KILL);
+        for (final FaultEvent event : events) {
+            assertThat(event.getNodeId()).isEqualTo("node2");
+            assertThat(event.isSkipped()).isFalse();
+            assertThat(event.getError()).isNull();
+            assertThat(event.getNumReplicas()).isEqualTo(1);
+            assertThat(event.getDegradedAfterMillis()).isGreaterThanOrEqualTo(0);
+            assertThat(event.isRecovered()).isTrue();
+            assertThat(event.getRecoveredAfterMillis()).isGreaterThanOrEqualTo(event.getDegradedAfterMillis());
+        }
+        // The second fault is injected only after the first one recovered
+        assertThat(events.get(1).getInjectedAtMillis()).isGreaterThanOrEqualTo(
+                events.get(0).getInjectedAtMillis() + events.get(0).getRecoveredAfterMillis());
+        assertThat(solrCluster.getNodeIds()).containsOnly("node1", "node2");
+    }
+
+    @Test
+    public void faults_are_skipped_while_collections_are_not_fully_active() throws Exception {
+        solrCluster.stopSolr("node2");
+        final ChaosScheduler scheduler = new ChaosScheduler(solrCluster, solrClient.getZkStateReader(),
+                config.setActiveTimeoutMillis(1000));
+
+        final ChaosReport report = scheduler.runScript(ImmutableList.of(
+                new ScriptedFault(0, TimeUnit.MILLISECONDS, "node1", FaultType.KILL))).get();
+
+        assertThat(report.getEvents()).hasSize(1);
+        final FaultEvent event = report.getEvents().get(0);
+        assertThat(event.isSkipped()).isTrue();
+        assertThat(event.getDegradedAfterMillis()).isEqualTo(-1);
+        assertThat(solrCluster.getNodeIds()).containsOnly("node1");
+        assertThat(solrCluster.getJettySolrRunner("node1").isRunning()).isTrue();
+    }
+
+}
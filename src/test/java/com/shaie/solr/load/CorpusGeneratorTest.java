@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link CorpusGenerator}. */
+public class CorpusGeneratorTest {
+
+    @Test
+    public void same_seed_generates_same_vocabulary() {
+        final List<String> vocabulary = new CorpusGenerator(1000, 17).getVocabulary();
+        assertThat(vocabulary).hasSize(1000);
+        assertThat(new CorpusGenerator(1000, 17).getVocabulary()).isEqualTo(vocabulary);
+        assertThat(new CorpusGenerator(1000, 18).getVocabulary()).isNotEqualTo(vocabulary);
+    }
+
+    @Test
+    public void word_frequencies_are_skewed() {
+        final CorpusGenerator generator = new CorpusGenerator(1000, 17);
+        final Random random = new Random(0);
+        final Map<String, Integer> counts = Maps.newHashMap();
+        final int numWords = 100000;
+        for (int i = 0; i < numWords; i++) {
+            final String word = generator.nextWord(random);
+            final Integer count = counts.get(word);
+            counts.put(word, count == null ? 1 : count + 1);
+        }
+        final String mostFrequent = generator.getVocabulary().get(0);
+        final String leastFrequent = generator.getVocabulary().get(999);
+        // With a Zipf distribution, the top word alone accounts for over 10% of the words
+        assertThat(counts.get(mostFrequent)).isGreaterThan(numWords / 10);
+        final int leastFrequentCount = counts.containsKey(leastFrequent) ? counts.get(leastFrequent) : 0;
+        assertThat(leastFrequentCount).isLessThan(100);
+    }
+
+    @Test
+    public void documents_have_all_fields() {
+        final CorpusGenerator generator = new CorpusGenerator(1000, 17);
+        final List<SolrInputDocument> docs = generator.nextDocuments("doc-", 5, 3, new Random(0));
+        assertThat(docs).hasSize(3);
+        assertThat(docs.get(0).getFieldValue(CorpusGenerator.ID_FIELD)).isEqualTo("doc-5");
+        assertThat(docs.get(2).getFieldValue(CorpusGenerator.ID_FIELD)).isEqualTo("doc-7");
+        for (final SolrInputDocument doc : docs) {
+            final String body = (String) doc.getFieldValue(CorpusGenerator.BODY_FIELD);
+            assertThat(body.split(" ").length).isEqualTo((int) doc.getFieldValue(CorpusGenerator.LENGTH_FIELD));
+            assertThat(doc.getFieldValue(CorpusGenerator.TITLE_FIELD)).isNotNull();
+            assertThat((String) doc.getFieldValue(CorpusGenerator.CATEGORY_FIELD)).startsWith("category-");
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+/** Unit tests for {@link LatencyRecorder}. */
+public class LatencyRecorderTest {
+
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    public void latency_is_measured_from_intended_start_time() {
+        // A 1 second stall: the first request took 1s, and the next 9 (intended every 100ms) were issued after it
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        final long stallEndNanos = TimeUnit.SECONDS.toNanos(1);
+        recorder.record(0, stallEndNanos);
+        for (int i = 1; i < 10; i++) {
+            recorder.record(i * intervalNanos, stallEndNanos + TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        final Histogram histogram = recorder.sampleInterval();
+        assertThat(histogram.getTotalCount()).isEqualTo(10);
+        // Requests which waited for the stall are charged with the wait, so the median is not 1ms
+        assertThat(histogram.getValueAtPercentile(50)).isGreaterThan(TimeUnit.MILLISECONDS.toMicros(400));
+        assertThat(histogram.getMaxValue()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(999));
+    }
+
+    @Test
+    public void intervals_are_accumulated_into_total() {
+        recorder.record(0, TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(recorder.sampleInterval().getTotalCount()).isEqualTo(1);
+
+        recorder.record(0, TimeUnit.MILLISECONDS.toNanos(10));
+        recorder.record(0, TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(recorder.sampleInterval().getTotalCount()).isEqualTo(2);
+
+        assertThat(recorder.sampleInterval().getTotalCount()).isEqualTo(0);
+        assertThat(recorder.getTotal().getTotalCount()).isEqualTo(3);
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.load;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.ZkClientClusterStateProvider;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.util.NamedList;
+import org.junit.After;
+import org.junit.Test;
+
+/** Unit tests for {@link LoadGenerator} and {@link Scenario}, against a client which does not send requests. */
+public class LoadGeneratorTest {
+
+    private static final String COLLECTION_NAME = "load";
+    private static final int BATCH_SIZE = 10;
+
+    private final StubSolrClient solrClient = new StubSolrClient();
+    private final LoadGenerator loadGenerator = new LoadGenerator(solrClient, new CorpusGenerator(100, 17),
+            new LoadGenerator.Config(COLLECTION_NAME)
+                    .setIndexingBatchesPerSecond(200)
+                    .setBatchSize(BATCH_SIZE)
+                    .setQueriesPerSecond(200)
+                    .setReportIntervalMillis(100));
+
+    @After
+    public void tearDown() throws IOException {
+        solrClient.close();
+    }
+
+    @Test
+    public void every_report_covers_only_its_own_run() {
+        final LoadReport firstReport = loadGenerator.run(300, TimeUnit.MILLISECONDS);
+        final long firstNumIndexedDocs = solrClient.numIndexedDocs.getAndSet(0);
+        final long firstNumQueries = solrClient.numQueries.getAndSet(0);
+
+        final LoadReport secondReport = loadGenerator.run(300, TimeUnit.MILLISECONDS);
+        final long secondNumIndexedDocs = solrClient.numIndexedDocs.get();
+        final long secondNumQueries = solrClient.numQueries.get();
+
+        assertThat(firstNumIndexedDocs).isGreaterThan(0);
+        assertThat(firstReport.getNumIndexedDocs()).isEqualTo(firstNumIndexedDocs);
+        assertThat(firstReport.getIndexingLatencies().getTotalCount()).isEqualTo(firstNumIndexedDocs / BATCH_SIZE);
+        assertThat(firstReport.getQueryLatencies().getTotalCount()).isEqualTo(firstNumQueries);
+        assertThat(secondNumIndexedDocs).isGreaterThan(0);
+        assertThat(secondReport.getNumIndexedDocs()).isEqualTo(secondNumIndexedDocs);
+        assertThat(secondReport.getIndexingLatencies().getTotalCount()).isEqualTo(secondNumIndexedDocs / BATCH_SIZE);
+        assertThat(secondReport.getQueryLatencies().getTotalCount()).isEqualTo(secondNumQueries);
+        assertThat(secondReport.getNumErrors()).isEqualTo(0);
+    }
+
+    @Test
+    public void failed_requests_are_counted_per_run() {
+        solrClient.failQueries = true;
+        final LoadReport firstReport = loadGenerator.run(300, TimeUnit.MILLISECONDS);
+        final long firstNumQueries = solrClient.numQueries.getAndSet(0);
+        solrClient.failQueries = false;
+
+        final LoadReport secondReport = loadGenerator.run(300, TimeUnit.MILLISECONDS);
+
+        assertThat(firstNumQueries).isGreaterThan(0);
+        assertThat(firstReport.getNumErrors()).isEqualTo(firstNumQueries);
+        long numIntervalErrors = 0;
+        for (final LoadReport.Interval interval : firstReport.getIntervals()) {
+            numIntervalErrors += interval.getNumErrors();
+        }
+        assertThat(numIntervalErrors).isEqualTo(firstNumQueries);
+        assertThat(secondReport.getNumErrors()).isEqualTo(0);
+        for (final LoadReport.Interval interval : secondReport.getIntervals()) {
+            assertThat(interval.getNumErrors()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void scenario_steps_are_recorded_as_events() {
+        final Scenario scenario = new Scenario()
+                .at(100, TimeUnit.MILLISECONDS, "fail", new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new IllegalStateException("step failed");
+                    }
+                })
+                .at(0, TimeUnit.MILLISECONDS, "succeed", new Runnable() {
+                    @Override
+                    public void run() {
+                        // no-op
+                    }
+                })
+                .at(10, TimeUnit.SECONDS, "after run", new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new AssertionError("should not execute after the run ends");
+                    }
+                });
+
+        final LoadReport report = loadGenerator.run(300, TimeUnit.MILLISECONDS, scenario);
+
+        final List<Scenario.Event> events = report.getEvents();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getName()).isEqualTo("succeed");
+        assertThat(events.get(0).getError()).isNull();
+        assertThat(events.get(1).getName()).isEqualTo("fail");
+        assertThat(events.get(1).getStartMillis()).isGreaterThanOrEqualTo(100);
+        assertThat(events.get(1).getError()).isInstanceOf(IllegalStateException.class);
+
+        // The events of a previous run are not reported again
+        assertThat(loadGenerator.run(100, TimeUnit.MILLISECONDS).getEvents()).isEmpty();
+    }
+
+    /** Counts the indexed documents and queries instead of sending them. */
+    private static final class StubSolrClient extends CloudSolrClient {
+
+        private final AtomicLong numIndexedDocs = new AtomicLong();
+        private final AtomicLong numQueries = new AtomicLong();
+        private volatile boolean failQueries = false;
+
+        StubSolrClient() {
+            super(new CloudSolrClient.Builder()
+                    .withClusterStateProvider(new ZkClientClusterStateProvider("localhost:0")));
+        }
+
+        @Override
+        public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+                throws SolrServerException, IOException {
+            assertThat(collection).isEqualTo(COLLECTION_NAME);
+            if (request instanceof UpdateRequest) {
+                numIndexedDocs.addAndGet(((UpdateRequest) request).getDocuments().size());
+            } else if (request instanceof QueryRequest) {
+                numQueries.incrementAndGet();
+                if (failQueries) {
+                    throw new SolrServerException("query failed");
+                }
+            }
+            return new NamedList<>();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.solrj;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.shaie.solr.MiniSolrCloudCluster;
+import com.shaie.solr.SolrCloudUtils;
+import com.shaie.solr.utils.MiniSolrCloudClusterResource;
+import com.shaie.utils.Utils;
+
+/** Integration tests for {@link AsyncCollectionAdminHelper}. */
+public class AsyncCollectionAdminHelperTest {
+
+    private static final String CONFIG_NAME = "asyncCollectionAdminTest";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Rule
+    public final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    private final MiniSolrCloudCluster solrCluster = solrClusterResource.getSolrCluster();
+    private final CloudSolrClient solrClient = new CloudSolrClient.Builder()
+            .withZkHost(solrClusterResource.getConnectString())
+            .build();
+    private AsyncCollectionAdminHelper helper;
+
+    @Before
+    public void setUp() {
+        solrCluster.startSolrNodes("node1", "node2");
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        helper = new AsyncCollectionAdminHelper(solrClient, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        helper.close();
+        solrClient.close();
+    }
+
+    @Test
+    public void operations_complete_with_their_responses() throws Exception {
+        final CreateCollectionResponse createResponse = get(helper.createCollection("c1", 1, 1, CONFIG_NAME));
+        assertThat(createResponse.isSuccess()).isTrue();
+        assertThat(createResponse.getCoreNames()).hasSize(1);
+        assertThat(createResponse.getCoreNames().get(0)).startsWith("c1_shard1_replica");
+        SolrCloudUtils.waitForAllActive("c1", solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+
+        final String nodeName = SolrCloudUtils.baseUrlToNodeName(solrCluster.getBaseUrl("node2"));
+        final AddReplicaResponse addReplicaResponse = get(helper.addReplica("c1", "shard1", nodeName));
+        assertThat(addReplicaResponse.isSuccess()).isTrue();
+        assertThat(addReplicaResponse.getCoreName()).startsWith("c1_shard1_replica");
+
+        assertThat(get(helper.deleteCollection("c1")).isSuccess()).isTrue();
+        assertThat(helper.getNumInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void operations_beyond_max_concurrent_requests_are_queued() throws Exception {
+        final CompletableFuture<CreateCollectionResponse> f1 = helper.createCollection("c1", 1, 1, CONFIG_NAME);
+        final CompletableFuture<CreateCollectionResponse> f2 = helper.createCollection("c2", 1, 1, CONFIG_NAME);
+        final CompletableFuture<CreateCollectionResponse> f3 = helper.createCollection("c3", 1, 1, CONFIG_NAME);
+        assertThat(helper.getNumInFlight() + helper.getNumPending()).isEqualTo(3);
+        assertThat(helper.getNumInFlight()).isLessThanOrEqualTo(2);
+
+        assertThat(get(f1).isSuccess()).isTrue();
+        assertThat(get(f2).isSuccess()).isTrue();
+        assertThat(get(f3).isSuccess()).isTrue();
+    }
+
+    @Test
+    public void close_fails_incomplete_operations() throws Exception {
+        final CompletableFuture<CreateCollectionResponse> future = helper.createCollection("c1", 1, 1, CONFIG_NAME);
+        helper.close();
+
+        assertThat(future.isCompletedExceptionally()).isTrue();
+        assertThat(helper.getNumInFlight()).isEqualTo(0);
+        assertThat(helper.getNumPending()).isEqualTo(0);
+        assertThat(helper.createCollection("c2", 1, 1, CONFIG_NAME).isCompletedExceptionally()).isTrue();
+    }
+
+    private static <T> T get(CompletableFuture<T> future)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+}
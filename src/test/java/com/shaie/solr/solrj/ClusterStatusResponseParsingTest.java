@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.solrj;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.shaie.solr.solrj.ClusterStatusResponse.Collection;
+
+/** Unit tests for the parsing of {@link ClusterStatusResponse}, without a Solr cluster. */
+public class ClusterStatusResponseParsingTest {
+
+    @Test
+    public void parses_numeric_and_string_properties() {
+        final ClusterStatusResponse response = new ClusterStatusResponse(rawResponse(collections(
+                collection("c1", 2, "3", 2),
+                collection("c2", "1", 1, 1))));
+
+        final Map<String, Collection> collections = response.getCollections();
+        assertThat(collections.keySet()).containsOnly("c1", "c2");
+        assertThat(collections.get("c1").getMaxShardsPerNode()).isEqualTo(2);
+        assertThat(collections.get("c1").getReplicationFactor()).isEqualTo(3);
+        assertThat(collections.get("c2").getMaxShardsPerNode()).isEqualTo(1);
+        assertThat(collections.get("c3")).isNull();
+        assertThat(response.getLiveNodes()).containsOnly("node1");
+    }
+
+    @Test
+    public void collections_and_slices_are_parsed_once() {
+        final ClusterStatusResponse response = new ClusterStatusResponse(
+                rawResponse(collections(collection("c1", 1, 1, 3))));
+
+        final Collection collection = response.getCollections().get("c1");
+        assertThat(response.getCollections().get("c1")).isSameAs(collection);
+        assertThat(collection.getSliceNames()).containsOnly("shard0", "shard1", "shard2");
+
+        final Slice slice = collection.getSlice("shard1");
+        assertThat(slice.getReplicas()).hasSize(1);
+        assertThat(collection.getSlice("shard1") == slice).isTrue();
+        assertThat(collection.getSlices()).hasSize(3).contains(slice);
+        assertThat(collection.getSlice("shard3")).isNull();
+    }
+
+    @Test
+    public void filtered_collections_are_parsed_while_iterating() {
+        final ClusterStatusResponse response = new ClusterStatusResponse(rawResponse(collections(
+                collection("logs-1", 1, 1, 1),
+                collection("users", 1, 1, 1),
+                collection("logs-2", 1, 1, 1))));
+
+        final List<String> names = Lists.newArrayList();
+        for (final Collection collection : response.getCollections(new Predicate<String>() {
+            @Override
+            public boolean apply(String name) {
+                return name.startsWith("logs-");
+            }
+        })) {
+            names.add(collection.getName());
+        }
+        assertThat(names).containsExactly("logs-1", "logs-2");
+    }
+
+    private static org.apache.solr.client.solrj.response.CollectionAdminResponse rawResponse(
+            NamedList<Object> collections) {
+        final NamedList<Object> cluster = new SimpleOrderedMap<>();
+        cluster.add("collections", collections);
+        cluster.add("live_nodes", ImmutableList.of("node1"));
+        final NamedList<Object> header = new SimpleOrderedMap<>();
+        header.add("status", 0);
+        final NamedList<Object> response = new NamedList<>();
+        response.add("responseHeader", header);
+        response.add("cluster", cluster);
+        final org.apache.solr.client.solrj.response.CollectionAdminResponse rawResponse =
+                new org.apache.solr.client.solrj.response.CollectionAdminResponse();
+        rawResponse.setResponse(response);
+        return rawResponse;
+    }
+
+    @SafeVarargs
+    private static NamedList<Object> collections(Map.Entry<String, Object>... collections) {
+        final NamedList<Object> result = new SimpleOrderedMap<>();
+        for (final Map.Entry<String, Object> collection : collections) {
+            result.add(collection.getKey(), collection.getValue());
+        }
+        return result;
+    }
+
+    private static Map.Entry<String, Object> collection(String name, Object maxShardsPerNode,
+            Object replicationFactor, int numShards) {
+        final ImmutableMap.Builder<String, Object> shards = ImmutableMap.builder();
+        for (int i = 0; i < numShards; i++) {
+            shards.put("shard" + i, ImmutableMap.<String, Object> of(
+                    "state", "active",
+                    "replicas", ImmutableMap.of("core_node" + i, ImmutableMap.<String, Object> of(
+                            "core", name + "_shard" + i + "_replica1",
+                            "node_name", "node1",
+                            "state", "active"))));
+        }
+        return Maps.immutableEntry(name, (Object) ImmutableMap.<String, Object> of(
+                "maxShardsPerNode", maxShardsPerNode,
+                "replicationFactor", replicationFactor,
+                "shards", shards.build()));
+    }
+
+}
@@ -32,6 +32,7 @@ import org.apache.solr.common.cloud.Slice;
 import org.junit.Rule;
 import org.junit.Test;
 
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.internal.Lists;
 import com.shaie.solr.MiniSolrCloudCluster;
@@ -81,6 +82,18 @@ public class ClusterStatusResponseTest {
         assertResponseCollection2(collections.get("collection2"));
     }
 
+    @Test
+    public void cluster_status_without_collections_returns_empty_collections()
+            throws SolrServerException, IOException {
+        solrCluster.startSolrNodes("node1");
+
+        final CollectionAdminResponse response = new CollectionAdminRequest.ClusterStatus().process(solrClient);
+        final ClusterStatusResponse clusterStatusResponse = new ClusterStatusResponse(response);
+
+        assertThat(clusterStatusResponse.getCollections()).isEmpty();
+        assertThat(clusterStatusResponse.getCollections(Predicates.<String> alwaysTrue())).isEmpty();
+    }
+
     private void initCluster() {
         uploadConfiguration();
         createCollectionAndWaitForRecoveries("collection1", 2, 2);
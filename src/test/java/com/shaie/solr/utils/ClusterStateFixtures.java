@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.DocRouter;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.ZkStateReader;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/** Creates {@link ClusterState} objects for unit tests which do not need a running cluster. */
+public final class ClusterStateFixtures {
+
+    private ClusterStateFixtures() {
+        // should not be instantiated
+    }
+
+    public static ClusterState clusterState(Set<String> liveNodes, DocCollection... collections) {
+        final Map<String, DocCollection> collectionStates = Maps.newHashMap();
+        for (final DocCollection collection : collections) {
+            collectionStates.put(collection.getName(), collection);
+        }
+        return new ClusterState(1, liveNodes, collectionStates);
+    }
+
+    /** Returns a collection with the given slices, in the order they were given. */
+    public static DocCollection collection(String name, Slice... slices) {
+        return new DocCollection(name, toSliceMap(slices), Collections.<String, Object> emptyMap(),
+                DocRouter.DEFAULT);
+    }
+
+    /** Returns a collection with the given slices, whose state has the given ZooKeeper version. */
+    public static DocCollection collection(String name, int version, Slice... slices) {
+        return new DocCollection(name, toSliceMap(slices), Collections.<String, Object> emptyMap(),
+                DocRouter.DEFAULT, version, ZkStateReader.getCollectionPath(name));
+    }
+
+    /** Returns an active slice without a leader. */
+    public static Slice slice(String name, Replica... replicas) {
+        return slice(name, (String) null, replicas);
+    }
+
+    /** Returns an active slice whose leader is the replica named {@code leader}. */
+    public static Slice slice(String name, String leader, Replica... replicas) {
+        final Map<String, Replica> sliceReplicas = Maps.newLinkedHashMap();
+        for (final Replica replica : replicas) {
+            sliceReplicas.put(replica.getName(), replica.getName().equals(leader) ? leader(replica) : replica);
+        }
+        return new Slice(name, sliceReplicas, Collections.<String, Object> emptyMap());
+    }
+
+    /** Returns an active replica on the given node, whose core name is the replica's name. */
+    public static Replica replica(String name, String nodeName) {
+        return replica(name, nodeName, Replica.State.ACTIVE);
+    }
+
+    /** Returns a replica on the given node, whose core name is the replica's name. */
+    public static Replica replica(String name, String nodeName, Replica.State state) {
+        return new Replica(name, ImmutableMap.<String, Object> of(
+                ZkStateReader.NODE_NAME_PROP, nodeName,
+                ZkStateReader.CORE_NAME_PROP, name,
+                ZkStateReader.STATE_PROP, state.toString()));
+    }
+
+    /** Returns a copy of the replica, marked as its shard's leader. */
+    public static Replica leader(Replica replica) {
+        final Map<String, Object> props = Maps.newHashMap(replica.getProperties());
+        props.put(ZkStateReader.LEADER_PROP, "true");
+        return new Replica(replica.getName(), props);
+    }
+
+    private static Map<String, Slice> toSliceMap(Slice... slices) {
+        final Map<String, Slice> collectionSlices = Maps.newLinkedHashMap();
+        for (final Slice slice : slices) {
+            collectionSlices.put(slice.getName(), slice);
+        }
+        return collectionSlices;
+    }
+
+}
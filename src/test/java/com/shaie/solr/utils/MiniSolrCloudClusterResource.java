@@ -18,32 +18,70 @@ package com.shaie.solr.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.curator.test.TestingServer;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.common.cloud.ZkStateReader;
 import org.junit.rules.ExternalResource;
 
+import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import com.shaie.solr.MiniSolrCloudCluster;
 import com.shaie.solr.SolrCloudUtils;
+import com.shaie.utils.DirectoryCloner;
 
-/** Manages a {@link MiniSolrCloudCluster} and a {@link TestingServer}. */
+/**
+ * Manages a {@link MiniSolrCloudCluster} and a {@link TestingServer}.
+ *
+ * <p>
+ * The cluster's state (ZooKeeper's data and the Solr nodes' directories) can be snapshotted with
+ * {@link #takeSnapshot()} and later restored with {@link #restoreSnapshot()}, which is much faster than creating a
+ * cluster, uploading configurations and creating collections per test. Typically the resource is used as a
+ * {@code @ClassRule} and {@link #restoreSnapshotBeforeEachTest()} as a {@code @Rule}.
+ * </p>
+ *
+ * <p>
+ * Restoring rolls ZooKeeper's transaction ID back, and ZooKeeper refuses clients which have seen a newer one. The
+ * cluster's own {@link ZkStateReader} and the client returned by {@link #getSolrClient()} are therefore recreated on
+ * restore, while any other ZooKeeper client must be created after the restore.
+ * </p>
+ */
 public class MiniSolrCloudClusterResource extends ExternalResource {
 
+    private static final int ZK_TIMEOUT_MS = 30000;
+    private static final long ACTIVE_TIMEOUT_SECONDS = 60;
+
     private final TestingServer zkServer;
     private final MiniSolrCloudCluster solrCluster;
     private final File workDir;
+    private File snapshotDir = null;
+    private CloudSolrClient solrClient = null;
 
     public MiniSolrCloudClusterResource(File solrXml) {
         workDir = Files.createTempDir();
-        zkServer = startZooKeeper(new File(workDir, "zookeeper"));
-        solrCluster = new MiniSolrCloudCluster(new File(workDir, "solr"), solrXml, zkServer.getConnectString());
+        zkServer = startZooKeeper(getZooKeeperDir(workDir));
+        solrCluster = new MiniSolrCloudCluster(getSolrDir(workDir), solrXml, zkServer.getConnectString());
+    }
+
+    /**
+     * Points {@link SolrCloudUtils#ZK_HOST_PROP_NAME} at this resource's ZooKeeper. It is set again here since a
+     * {@code @ClassRule} may be created long before it is applied, and other resources may have changed it meanwhile.
+     */
+    @Override
+    protected void before() {
+        System.setProperty(SolrCloudUtils.ZK_HOST_PROP_NAME, zkServer.getConnectString());
     }
 
     @Override
     protected void after() {
         try {
+            closeSolrClient();
             solrCluster.close();
             zkServer.close();
             FileUtils.deleteDirectory(workDir);
@@ -56,6 +94,14 @@ public class MiniSolrCloudClusterResource extends ExternalResource {
         return solrCluster;
     }
 
+    /** Returns a {@link CloudSolrClient} connected to the cluster, which is recreated when the cluster is restored. */
+    public synchronized CloudSolrClient getSolrClient() {
+        if (solrClient == null) {
+            solrClient = new CloudSolrClient.Builder().withZkHost(getConnectString()).build();
+        }
+        return solrClient;
+    }
+
     public File getWorkDir() {
         return workDir;
     }
@@ -64,6 +110,130 @@ public class MiniSolrCloudClusterResource extends ExternalResource {
         return zkServer.getConnectString();
     }
 
+    /** Returns true if a snapshot was taken. */
+    public boolean hasSnapshot() {
+        return snapshotDir != null;
+    }
+
+    /**
+     * Takes a snapshot of the cluster, replacing any previous snapshot. The Solr nodes and ZooKeeper are stopped while
+     * their directories are cloned, and then restarted, after which all collections are waited for to become active.
+     */
+    public void takeSnapshot() {
+        final File newSnapshotDir = new File(workDir, "snapshot");
+        final Set<String> nodeIds = stopCluster();
+        try {
+            DirectoryCloner.deleteDirectory(newSnapshotDir.toPath());
+            cloneClusterDirs(workDir, newSnapshotDir);
+            snapshotDir = newSnapshotDir;
+        } finally {
+            startCluster(nodeIds);
+        }
+        waitForAllCollectionsActive();
+    }
+
+    /**
+     * Restores the cluster to the last snapshot, and waits for all collections to become active. Nodes that were
+     * started after the snapshot was taken are left stopped.
+     */
+    public void restoreSnapshot() {
+        if (snapshotDir == null) {
+            throw new IllegalStateException("No snapshot was taken");
+        }
+        // Close the ZooKeeper clients while ZooKeeper is still up, as they cannot reconnect after the restore
+        closeSolrClient();
+        solrCluster.resetZkStateReader();
+        stopCluster();
+        DirectoryCloner.deleteDirectory(getZooKeeperDir(workDir).toPath());
+        DirectoryCloner.deleteDirectory(getSolrDir(workDir).toPath());
+        cloneClusterDirs(snapshotDir, workDir);
+        startCluster(getSnapshotNodeIds());
+        waitForAllCollectionsActive();
+    }
+
+    /**
+     * Returns a rule which restores the cluster to its snapshot before every test. If no snapshot exists, one is taken
+     * before the first test, so that whatever the test class set up (e.g. in {@code @BeforeClass}) is preserved.
+     */
+    public ExternalResource restoreSnapshotBeforeEachTest() {
+        return new ExternalResource() {
+            @Override
+            protected void before() {
+                if (hasSnapshot()) {
+                    restoreSnapshot();
+                } else {
+                    takeSnapshot();
+                }
+            }
+        };
+    }
+
+    /** Stops all Solr nodes and ZooKeeper, returning the IDs of the stopped nodes. */
+    private Set<String> stopCluster() {
+        final Set<String> nodeIds = solrCluster.getNodeIds();
+        solrCluster.stopSolrNodes(nodeIds.toArray(new String[0]));
+        try {
+            zkServer.stop();
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return nodeIds;
+    }
+
+    private void startCluster(Set<String> nodeIds) {
+        try {
+            zkServer.restart();
+        } catch (final Exception e) {
+            throw Throwables.propagate(e);
+        }
+        solrCluster.startSolrNodes(nodeIds.toArray(new String[0]));
+    }
+
+    private synchronized void closeSolrClient() {
+        if (solrClient != null) {
+            try {
+                solrClient.close();
+            } catch (final IOException e) {
+                throw new RuntimeException(e);
+            }
+            solrClient = null;
+        }
+    }
+
+    private Set<String> getSnapshotNodeIds() {
+        final String[] nodeIds = getSolrDir(snapshotDir).list();
+        return nodeIds == null ? Collections.<String> emptySet() : Sets.newHashSet(nodeIds);
+    }
+
+    private void waitForAllCollectionsActive() {
+        try (final ZkStateReader zkStateReader = new ZkStateReader(getConnectString(), ZK_TIMEOUT_MS, ZK_TIMEOUT_MS)) {
+            zkStateReader.createClusterStateWatchersAndUpdate();
+            for (final String collection : zkStateReader.getClusterState().getCollectionsMap().keySet()) {
+                if (!SolrCloudUtils.waitForAllActive(collection, zkStateReader, ACTIVE_TIMEOUT_SECONDS)) {
+                    throw new RuntimeException("Collection [" + collection + "] did not become active after restore");
+                }
+            }
+        } catch (final Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /** Clones the ZooKeeper and Solr directories, hard-linking Lucene index files. */
+    private static void cloneClusterDirs(File sourceDir, File targetDir) {
+        DirectoryCloner.cloneDirectory(getZooKeeperDir(sourceDir).toPath(), getZooKeeperDir(targetDir).toPath(),
+                Predicates.<Path> alwaysFalse());
+        DirectoryCloner.cloneDirectory(getSolrDir(sourceDir).toPath(), getSolrDir(targetDir).toPath(),
+                DirectoryCloner.INDEX_FILES);
+    }
+
+    private static File getZooKeeperDir(File dir) {
+        return new File(dir, "zookeeper");
+    }
+
+    private static File getSolrDir(File dir) {
+        return new File(dir, "solr");
+    }
+
     private static TestingServer startZooKeeper(File workDir) {
         try {
             final TestingServer zkServer = new TestingServer(-1, workDir, false);
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.solr.utils;
+
+import static org.fest.assertions.Assertions.*;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+
+import com.shaie.solr.SolrCloudUtils;
+import com.shaie.utils.Utils;
+
+/** Integration tests for the snapshot and restore support of {@link MiniSolrCloudClusterResource}. */
+public class MiniSolrCloudClusterResourceTest {
+
+    private static final String CONFIG_NAME = "snapshotTest";
+    private static final String COLLECTION_NAME = "snapshot";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @ClassRule
+    public static final MiniSolrCloudClusterResource solrClusterResource = new MiniSolrCloudClusterResource(
+            Utils.getFileResource("solr/solr.xml"));
+
+    @Rule
+    public final ExternalResource restoreSnapshot = solrClusterResource.restoreSnapshotBeforeEachTest();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        solrClusterResource.getSolrCluster().startSolrNodes("node1");
+        final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+        SolrCloudUtils.uploadConfigToZk(solrClient, CONFIG_NAME, Utils.getPathResource("solr/conf"));
+        CollectionAdminRequest.createCollection(COLLECTION_NAME, CONFIG_NAME, 1, 1).process(solrClient);
+        SolrCloudUtils.waitForAllActive(COLLECTION_NAME, solrClient.getZkStateReader(), TIMEOUT_SECONDS);
+        addDocument(solrClient, "1");
+    }
+
+    @Test
+    public void restore_discards_changes_made_after_snapshot() throws Exception {
+        assertSnapshotState();
+        final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+        addDocument(solrClient, "2");
+        CollectionAdminRequest.createCollection("other", CONFIG_NAME, 1, 1).process(solrClient);
+        assertThat(getNumDocs(solrClient)).isEqualTo(2);
+
+        solrClusterResource.restoreSnapshot();
+
+        assertSnapshotState();
+    }
+
+    @Test
+    public void nodes_can_be_started_after_restore() throws Exception {
+        assertSnapshotState();
+        solrClusterResource.getSolrCluster().startSolrNodes("node2");
+        assertThat(solrClusterResource.getSolrCluster().getNodeIds()).containsOnly("node1", "node2");
+
+        solrClusterResource.restoreSnapshot();
+
+        assertThat(solrClusterResource.getSolrCluster().getNodeIds()).containsOnly("node1");
+        solrClusterResource.getSolrCluster().startSolrNodes("node2");
+        assertThat(solrClusterResource.getSolrClient().getZkStateReader().getClusterState().getLiveNodes())
+                .hasSize(2);
+    }
+
+    @Test
+    public void each_test_starts_from_snapshot() throws Exception {
+        assertSnapshotState();
+        // Modify the cluster, so that whichever test runs next verifies it was restored
+        addDocument(solrClusterResource.getSolrClient(), "3");
+    }
+
+    private static void assertSnapshotState() throws Exception {
+        final CloudSolrClient solrClient = solrClusterResource.getSolrClient();
+        solrClient.connect();
+        assertThat(solrClient.getZkStateReader().getClusterState().getCollectionsMap().keySet())
+                .containsOnly(COLLECTION_NAME);
+        assertThat(getNumDocs(solrClient)).isEqualTo(1);
+    }
+
+    private static void addDocument(CloudSolrClient solrClient, String id) throws Exception {
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.setField("id", id);
+        solrClient.add(COLLECTION_NAME, doc);
+        solrClient.commit(COLLECTION_NAME);
+    }
+
+    private static long getNumDocs(CloudSolrClient solrClient) throws Exception {
+        return solrClient.query(COLLECTION_NAME, new SolrQuery("*:*")).getResults().getNumFound();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/** Unit tests for {@link CachingSuggester}. */
+public class CachingSuggesterTest {
+
+    private final Analyzer analyzer = new SimpleAnalyzer();
+    private UpdatableInfixSuggester suggester;
+
+    @Before
+    public void setUp() throws IOException {
+        suggester = new UpdatableInfixSuggester(new RAMDirectory(), analyzer, analyzer, 1, false);
+        suggester.add(new BytesRef("quick brown fox"), ImmutableSet.of(new BytesRef("user1")), 10, null);
+        suggester.add(new BytesRef("brown bear"), ImmutableSet.of(new BytesRef("user2")), 20, null);
+        suggester.refresh();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        suggester.close();
+    }
+
+    @Test
+    public void repeated_lookups_are_cached() throws IOException {
+        final CachingSuggester cache = new CachingSuggester(suggester, 10);
+
+        assertThat(lookup(cache, "br", null)).containsExactly("brown bear", "quick brown fox");
+        assertThat(lookup(cache, "br", null)).containsExactly("brown bear", "quick brown fox");
+        assertThat(lookup(cache, "br", ImmutableSet.of(new BytesRef("user1")))).containsExactly("quick brown fox");
+
+        assertThat(cache.getNumHits()).isEqualTo(1);
+        assertThat(cache.getNumMisses()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void refresh_invalidates_cached_lookups() throws IOException {
+        final CachingSuggester cache = new CachingSuggester(suggester, 10);
+        lookup(cache, "br", null);
+
+        suggester.add(new BytesRef("brave heart"), null, 30, null);
+        assertThat(lookup(cache, "br", null)).containsExactly("brown bear", "quick brown fox");
+
+        suggester.refresh();
+        assertThat(lookup(cache, "br", null)).containsExactly("brave heart", "brown bear", "quick brown fox");
+        assertThat(cache.getNumHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void rare_prefixes_do_not_evict_popular_ones() throws IOException {
+        final CachingSuggester cache = new CachingSuggester(suggester, 1);
+        for (int i = 0; i < 5; i++) {
+            lookup(cache, "br", null);
+        }
+
+        lookup(cache, "qu", null);
+        lookup(cache, "bea", null);
+        lookup(cache, "br", null);
+
+        assertThat(cache.getNumRejected()).isEqualTo(2);
+        assertThat(cache.getNumHits()).isEqualTo(5);
+    }
+
+    private static List<String> lookup(CachingSuggester cache, String prefix, Set<BytesRef> contexts)
+            throws IOException {
+        final List<String> keys = Lists.newArrayList();
+        for (final LookupResult result : cache.lookup(prefix, contexts, 10, true, false)) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.suggest.DocumentDictionary;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/** Unit tests for {@link ContextPartitionedSuggester}. */
+public class ContextPartitionedSuggesterTest {
+
+    private static final BytesRef USER1 = new BytesRef("user1");
+    private static final BytesRef USER2 = new BytesRef("user2");
+
+    private final Directory indexDir = new RAMDirectory();
+    private final Directory tempDir = new RAMDirectory();
+    private ContextPartitionedSuggester suggester;
+
+    @Before
+    public void setUp() throws IOException {
+        try (IndexWriter writer = new IndexWriter(indexDir, new IndexWriterConfig(new SimpleAnalyzer()))) {
+            writer.addDocument(newDocument("quick brown fox", 10, USER1));
+            writer.addDocument(newDocument("quick blue fox", 20, USER2));
+            writer.addDocument(newDocument("quiet night", 5, USER1, USER2));
+            writer.addDocument(newDocument("slow turtle", 50, USER1));
+        }
+        suggester = new ContextPartitionedSuggester(tempDir, "suggest");
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            suggester.build(new DocumentDictionary(reader, "content", "weight", null, "username"));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexDir.close();
+        tempDir.close();
+    }
+
+    @Test
+    public void lookup_without_contexts_returns_all_suggestions() throws IOException {
+        assertThat(keys(suggester.lookup("qui", null, false, 10))).containsExactly(
+                "quick blue fox", "quick brown fox", "quiet night");
+        assertThat(suggester.getCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void lookup_with_context_returns_only_its_suggestions() throws IOException {
+        final List<LookupResult> results = suggester.lookup("qui", ImmutableSet.of(USER1), false, 10);
+
+        assertThat(keys(results)).containsExactly("quick brown fox", "quiet night");
+        assertThat(results.get(0).contexts).containsOnly(USER1);
+        assertThat(suggester.lookup("qui", ImmutableSet.of(new BytesRef("user3")), false, 10)).isEmpty();
+    }
+
+    @Test
+    public void lookup_with_several_contexts_merges_top_n() throws IOException {
+        final List<LookupResult> results = suggester.lookup("qui", ImmutableSet.of(USER1, USER2), false, 2);
+
+        assertThat(keys(results)).containsExactly("quick blue fox", "quick brown fox");
+
+        final List<LookupResult> all = suggester.lookup("quie", ImmutableSet.of(USER1, USER2), false, 10);
+        assertThat(keys(all)).containsExactly("quiet night");
+        assertThat(all.get(0).contexts).containsOnly(USER1, USER2);
+    }
+
+    @Test
+    public void store_and_load_preserve_all_partitions() throws IOException {
+        final GrowableByteArrayDataOutput output = new GrowableByteArrayDataOutput(1024);
+        assertThat(suggester.store(output)).isTrue();
+
+        final ContextPartitionedSuggester loaded = new ContextPartitionedSuggester(tempDir, "suggest");
+        assertThat(loaded.load(new ByteArrayDataInput(output.getBytes(), 0, output.getPosition()))).isTrue();
+
+        assertThat(loaded.getCount()).isEqualTo(4);
+        assertThat(loaded.getContexts()).containsOnly(USER1, USER2);
+        assertThat(keys(loaded.lookup("qui", ImmutableSet.of(USER2), false, 10))).containsExactly(
+                "quick blue fox", "quiet night");
+    }
+
+    @Test
+    public void store_and_load_empty_build() throws IOException {
+        final ContextPartitionedSuggester empty = new ContextPartitionedSuggester(tempDir, "suggest");
+        empty.build(InputIterator.EMPTY);
+        final GrowableByteArrayDataOutput output = new GrowableByteArrayDataOutput(1024);
+        assertThat(empty.store(output)).isTrue();
+
+        // loading replaces the suggestions of the previous build
+        assertThat(suggester.load(new ByteArrayDataInput(output.getBytes(), 0, output.getPosition()))).isTrue();
+
+        assertThat(suggester.getCount()).isEqualTo(0);
+        assertThat(suggester.getContexts()).isEmpty();
+        assertThat(suggester.lookup("qui", null, false, 10)).isEmpty();
+        assertThat(suggester.lookup("qui", ImmutableSet.of(USER1), false, 10)).isEmpty();
+    }
+
+    private static Document newDocument(String content, long weight, BytesRef... contexts) {
+        final Document doc = new Document();
+        doc.add(new TextField("content", content, Store.YES));
+        doc.add(new NumericDocValuesField("weight", weight));
+        for (final BytesRef context : contexts) {
+            doc.add(new StoredField("username", context));
+        }
+        return doc;
+    }
+
+    private static List<String> keys(List<LookupResult> results) {
+        final List<String> keys = Lists.newArrayList();
+        for (final LookupResult result : results) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+}
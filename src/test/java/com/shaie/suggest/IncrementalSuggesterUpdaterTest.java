@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+/** Unit tests for {@link IncrementalSuggesterUpdater}. */
+public class IncrementalSuggesterUpdaterTest {
+
+    private final Analyzer analyzer = new SimpleAnalyzer();
+    private final Directory indexDir = new RAMDirectory();
+    private final IncrementalSuggesterUpdater.Config config = new IncrementalSuggesterUpdater.Config()
+            .setTextField("content")
+            .setWeightField("weight")
+            .setContextsField("username")
+            .setUpdateTimeField("updated")
+            .setDeletedField("deleted")
+            .setExactTextField("content_exact");
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private IndexWriter writer;
+    private Path suggestPath;
+    private UpdatableInfixSuggester suggester;
+
+    @Before
+    public void setUp() throws IOException {
+        writer = new IndexWriter(indexDir, new IndexWriterConfig(analyzer));
+        suggestPath = tempFolder.newFolder("suggest").toPath();
+        suggester = newSuggester();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        // closes the suggester's directory too
+        suggester.close();
+        writer.close();
+        indexDir.close();
+    }
+
+    @Test
+    public void applies_only_changed_documents() throws IOException {
+        final IncrementalSuggesterUpdater updater = new IncrementalSuggesterUpdater(suggester, config);
+        index("1", "quick brown fox", 10, "user1", 1);
+        index("2", "quick blue fox", 20, "user2", 2);
+
+        IncrementalSuggesterUpdater.Result result = update(updater);
+        assertThat(result.getNumUpdated()).isEqualTo(2);
+        assertThat(result.getWatermark()).isEqualTo(2);
+        assertThat(lookup("qu")).containsExactly("quick blue fox", "quick brown fox");
+
+        index("3", "quiet night", 30, "user1", 3);
+        result = update(updater);
+        assertThat(result.getNumUpdated()).isEqualTo(1);
+        assertThat(result.getWatermark()).isEqualTo(3);
+        assertThat(lookup("qu")).containsExactly("quiet night", "quick blue fox", "quick brown fox");
+
+        assertThat(update(updater).getNumUpdated()).isEqualTo(0);
+    }
+
+    @Test
+    public void deletes_suggestions_of_tombstones() throws IOException {
+        final IncrementalSuggesterUpdater updater = new IncrementalSuggesterUpdater(suggester, config);
+        index("1", "quick brown fox", 10, "user1", 1);
+        index("2", "quick blue fox", 20, "user2", 2);
+        index("3", "quick blue fox", 20, "user1", 3);
+        update(updater);
+
+        delete("1", "quick brown fox", 4);
+        delete("2", "quick blue fox", 5);
+        final IncrementalSuggesterUpdater.Result result = update(updater);
+
+        // "quick blue fox" is still the text of a live document
+        assertThat(result.getNumDeleted()).isEqualTo(1);
+        assertThat(result.getWatermark()).isEqualTo(5);
+        assertThat(lookup("qu")).containsExactly("quick blue fox");
+    }
+
+    @Test
+    public void watermark_advances_when_only_live_texts_are_deleted() throws IOException {
+        final IncrementalSuggesterUpdater updater = new IncrementalSuggesterUpdater(suggester, config);
+        index("1", "quick blue fox", 20, "user2", 1);
+        index("2", "quick blue fox", 20, "user1", 2);
+        update(updater);
+
+        delete("1", "quick blue fox", 3);
+        final IncrementalSuggesterUpdater.Result result = update(updater);
+
+        assertThat(result.getNumDeleted()).isEqualTo(0);
+        assertThat(result.getWatermark()).isEqualTo(3);
+        assertThat(updater.getWatermark()).isEqualTo(3);
+        assertThat(lookup("qu")).containsExactly("quick blue fox");
+    }
+
+    @Test
+    public void watermark_survives_reopening_the_suggester() throws IOException {
+        index("1", "quick brown fox", 10, "user1", 7);
+        update(new IncrementalSuggesterUpdater(suggester, config));
+        suggester.close();
+
+        suggester = newSuggester();
+        final IncrementalSuggesterUpdater updater = new IncrementalSuggesterUpdater(suggester, config);
+        assertThat(updater.getWatermark()).isEqualTo(7);
+        assertThat(lookup("qu")).containsExactly("quick brown fox");
+
+        delete("1", "quick brown fox", 8);
+        assertThat(update(updater).getNumDeleted()).isEqualTo(1);
+        assertThat(lookup("qu")).isEmpty();
+    }
+
+    private UpdatableInfixSuggester newSuggester() throws IOException {
+        return new UpdatableInfixSuggester(FSDirectory.open(suggestPath), analyzer, analyzer, 1, false);
+    }
+
+    private IncrementalSuggesterUpdater.Result update(IncrementalSuggesterUpdater updater) throws IOException {
+        writer.commit();
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            return updater.update(reader);
+        }
+    }
+
+    private void index(String id, String content, long weight, String username, long updateTime)
+            throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField("id", id, Store.YES));
+        doc.add(new TextField("content", content, Store.YES));
+        doc.add(new StringField("content_exact", content, Store.NO));
+        doc.add(new NumericDocValuesField("weight", weight));
+        doc.add(new StoredField("username", new BytesRef(username)));
+        addUpdateTime(doc, updateTime);
+        writer.updateDocument(new Term("id", id), doc);
+    }
+
+    private void delete(String id, String content, long updateTime) throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField("id", id, Store.YES));
+        doc.add(new TextField("content", content, Store.YES));
+        doc.add(new StringField("deleted", "true", Store.NO));
+        addUpdateTime(doc, updateTime);
+        writer.updateDocument(new Term("id", id), doc);
+    }
+
+    private static void addUpdateTime(Document doc, long updateTime) {
+        doc.add(new LongPoint("updated", updateTime));
+        doc.add(new NumericDocValuesField("updated", updateTime));
+    }
+
+    private List<String> lookup(String prefix) throws IOException {
+        final List<String> keys = Lists.newArrayList();
+        for (final LookupResult result : suggester.lookup(prefix, (Set<BytesRef>) null, 10, true, false)) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+}
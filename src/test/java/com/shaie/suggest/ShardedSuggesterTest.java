@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.suggest.DocumentDictionary;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/** Unit tests for {@link ShardedSuggester}. */
+public class ShardedSuggesterTest {
+
+    private static final BytesRef USER1 = new BytesRef("user1");
+    private static final BytesRef USER2 = new BytesRef("user2");
+
+    private final Analyzer analyzer = new SimpleAnalyzer();
+    private final Directory indexDir = new RAMDirectory();
+    private ShardedSuggester suggester;
+
+    @Before
+    public void setUp() throws IOException {
+        suggester = new ShardedSuggester(4, new ShardedSuggester.ShardFactory() {
+            @Override
+            public AnalyzingInfixSuggester create(int shard) throws IOException {
+                return new AnalyzingInfixSuggester(new RAMDirectory(), analyzer, analyzer, 1, true);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        suggester.close();
+        indexDir.close();
+    }
+
+    @Test
+    public void lookup_merges_top_results_of_all_shards() throws IOException {
+        try (IndexWriter writer = new IndexWriter(indexDir, new IndexWriterConfig(analyzer))) {
+            for (int i = 0; i < 100; i++) {
+                writer.addDocument(newDocument("suggestion " + i, i, "p" + i, USER1));
+            }
+        }
+        build();
+
+        assertThat(suggester.getCount()).isEqualTo(100);
+        assertThat(keys(suggester.lookup("sug", null, false, 3)))
+                .containsExactly("suggestion 99", "suggestion 98", "suggestion 97");
+
+        final List<LookupResult> all = suggester.lookup("sug", null, false, 200);
+        assertThat(all).hasSize(100);
+        for (int i = 0; i < all.size(); i++) {
+            assertThat(all.get(i).value).isEqualTo(99 - i);
+        }
+    }
+
+    @Test
+    public void lookup_filters_by_contexts() throws IOException {
+        try (IndexWriter writer = new IndexWriter(indexDir, new IndexWriterConfig(analyzer))) {
+            writer.addDocument(newDocument("quick brown fox", 10, "p1", USER1));
+            writer.addDocument(newDocument("brown bear", 20, "p2", USER2));
+            writer.addDocument(newDocument("brave heart", 30, "p3", USER1));
+        }
+        build();
+
+        final List<LookupResult> results = suggester.lookup("br", ImmutableSet.of(USER1), 10, true, false);
+        assertThat(keys(results)).containsExactly("brave heart", "quick brown fox");
+        assertThat(results.get(0).payload).isEqualTo(new BytesRef("p3"));
+        assertThat(results.get(0).contexts).containsOnly(USER1);
+    }
+
+    private void build() throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(indexDir)) {
+            suggester.build(new DocumentDictionary(reader, "content", "weight", "payload", "username"));
+        }
+    }
+
+    private static Document newDocument(String content, long weight, String payload, BytesRef username) {
+        final Document doc = new Document();
+        doc.add(new TextField("content", content, Store.YES));
+        doc.add(new NumericDocValuesField("weight", weight));
+        doc.add(new StoredField("payload", new BytesRef(payload)));
+        doc.add(new StoredField("username", username));
+        return doc;
+    }
+
+    private static List<String> keys(List<LookupResult> results) {
+        final List<String> keys = Lists.newArrayList();
+        for (final LookupResult result : results) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+}
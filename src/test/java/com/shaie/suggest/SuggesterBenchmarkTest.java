@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** Unit tests for {@link SuggesterBenchmark} and {@link SuggestWorkload}. */
+public class SuggesterBenchmarkTest {
+
+    private final SuggestWorkload workload = new SuggestWorkload(1000, 20, 42);
+
+    @Test
+    public void workload_is_deterministic_and_skewed() {
+        final SuggestWorkload other = new SuggestWorkload(1000, 20, 42);
+        assertThat(workload.getSuggestions()).hasSize(1000);
+        for (int i = 0; i < 10; i++) {
+            assertThat(other.getSuggestions().get(i).getText()).isEqualTo(workload.getSuggestions().get(i).getText());
+        }
+        assertThat(workload.getSuggestions().get(0).getWeight())
+                .isGreaterThan(workload.getSuggestions().get(999).getWeight());
+
+        final Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            final SuggestWorkload.PrefixLookup lookup = workload.nextLookup(random, 0);
+            assertThat(lookup.getPrefix()).isNotEmpty();
+            assertThat(lookup.getContexts()).isNull();
+        }
+    }
+
+    @Test
+    public void run_reports_build_and_lookup_measurements() throws IOException {
+        final SuggesterBenchmark benchmark = new SuggesterBenchmark(workload,
+                new SuggesterBenchmark.Config().setNumThreads(2).setNumWarmupLookups(10).setNumLookups(100));
+        final SuggesterBenchmark.Result result = benchmark.run("wfst", false,
+                new SuggesterBenchmark.SuggesterFactory() {
+                    @Override
+                    public Lookup create() throws IOException {
+                        return new WFSTCompletionLookup(new RAMDirectory(), "suggest");
+                    }
+                });
+
+        assertThat(result.getNumLookups()).isEqualTo(200);
+        assertThat(result.getLatencies().getTotalCount()).isEqualTo(200);
+        assertThat(result.getRamBytesUsed()).isGreaterThan(0);
+        assertThat(result.getLookupsPerSecond()).isGreaterThan(0);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SuggesterBenchmark.print(ImmutableList.of(result), new PrintStream(bytes, true));
+        final String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("suggester").contains("p999(us)");
+        assertThat(lines[1]).startsWith("wfst");
+    }
+
+}
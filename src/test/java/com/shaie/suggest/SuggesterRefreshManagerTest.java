@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.suggest;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.SimpleAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.shaie.utils.Waiter;
+
+/** Unit tests for {@link SuggesterRefreshManager}. */
+public class SuggesterRefreshManagerTest {
+
+    private final Analyzer analyzer = new SimpleAnalyzer();
+    /** The suggester closes its directory, so keep the index open for suggesters which are reopened over it. */
+    private final Directory dir = new FilterDirectory(new RAMDirectory()) {
+        @Override
+        public void close() {
+        }
+    };
+    private RecordingSuggester suggester;
+    private SuggesterRefreshManager refreshManager;
+
+    @Before
+    public void setUp() throws IOException {
+        suggester = new RecordingSuggester(dir, analyzer);
+        suggester.add(new BytesRef("quick brown fox"), null, 10, null);
+        suggester.refresh();
+        refreshManager = new SuggesterRefreshManager(suggester, new SuggesterRefreshManager.Config()
+                .setRefreshIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .setNumWarmingPrefixes(1));
+        refreshManager.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        refreshManager.close();
+        suggester.close();
+    }
+
+    @Test
+    public void requested_refresh_publishes_changes() throws IOException {
+        suggester.add(new BytesRef("quick blue fox"), null, 20, null);
+        assertThat(lookup("qu")).containsExactly("quick brown fox");
+
+        refreshManager.requestRefresh();
+
+        assertThat(Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                try {
+                    return lookup("qu").size() == 2;
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, 10, TimeUnit.SECONDS)).isTrue();
+        assertThat(lookup("qu")).containsExactly("quick blue fox", "quick brown fox");
+    }
+
+    @Test
+    public void warms_with_most_popular_prefixes() throws IOException {
+        lookup("qu");
+        lookup("qu");
+        lookup("br");
+        suggester.add(new BytesRef("quiet night"), null, 5, null);
+
+        refreshManager.requestRefresh();
+
+        assertThat(Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return refreshManager.getNumRefreshes() > 0;
+            }
+        }, 10, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshManager.getWarmingPrefixes()).containsExactly("qu");
+    }
+
+    @Test
+    public void prefixes_which_become_popular_late_are_warmed() throws IOException {
+        refreshManager.close();
+        refreshManager = new SuggesterRefreshManager(suggester, new SuggesterRefreshManager.Config()
+                .setRefreshIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .setNumWarmingPrefixes(1)
+                .setMaxTrackedPrefixes(2));
+        refreshManager.start();
+        lookup("br");
+        lookup("fo");
+        lookup("bl");
+        for (int i = 0; i < 3; i++) {
+            lookup("qu");
+        }
+
+        refreshManager.requestRefresh();
+
+        assertThat(Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return refreshManager.getNumRefreshes() > 0;
+            }
+        }, 10, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshManager.getWarmingPrefixes()).containsExactly("qu");
+    }
+
+    @Test
+    public void new_searchers_are_warmed_before_they_are_published() throws IOException {
+        lookup("qu");
+        waitForRefresh();
+        assertThat(refreshManager.getWarmingPrefixes()).containsExactly("qu");
+        suggester.add(new BytesRef("quick blue fox"), null, 20, null);
+
+        refreshManager.requestRefresh();
+
+        assertThat(Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return refreshManager.getNumRefreshes() > 1;
+            }
+        }, 10, TimeUnit.SECONDS)).isTrue();
+        assertWarmedBeforePublished();
+        assertThat(lookup("qu")).containsExactly("quick blue fox", "quick brown fox");
+    }
+
+    @Test
+    public void searcher_factory_is_reinstalled_when_add_reopens_the_writer() throws IOException {
+        reopenSuggesterWithWarmingPrefix("qu");
+
+        suggester.add(new BytesRef("quick blue fox"), null, 20, null);
+
+        assertWarmedBeforePublished();
+    }
+
+    @Test
+    public void searcher_factory_is_reinstalled_when_update_reopens_the_writer() throws IOException {
+        reopenSuggesterWithWarmingPrefix("qu");
+
+        suggester.update(new BytesRef("quick brown fox"), null, 30, null);
+
+        assertWarmedBeforePublished();
+    }
+
+    /**
+     * Verifies that exactly one searcher was warmed, that it was not visible while being warmed, and that it is the
+     * current searcher.
+     */
+    private void assertWarmedBeforePublished() throws IOException {
+        assertThat(suggester.warmedPrefixes).containsExactly("qu");
+        final long warmedGeneration = suggester.warmedGenerations.get(0);
+        assertThat(suggester.visibleGenerations.get(0)).isNotEqualTo(warmedGeneration);
+        assertThat(suggester.getGeneration()).isEqualTo(warmedGeneration);
+    }
+
+    /**
+     * Closes the suggester and opens a new one over its index, whose writer is opened lazily. Its refresh manager warms
+     * new searchers with the given prefix.
+     */
+    private void reopenSuggesterWithWarmingPrefix(String prefix) throws IOException {
+        suggester.commit();
+        refreshManager.close();
+        suggester.close();
+        suggester = new RecordingSuggester(dir, analyzer);
+        refreshManager = new SuggesterRefreshManager(suggester, new SuggesterRefreshManager.Config()
+                .setRefreshIntervalMillis(TimeUnit.HOURS.toMillis(1))
+                .setNumWarmingPrefixes(1));
+        refreshManager.start();
+        lookup(prefix);
+        waitForRefresh();
+        assertThat(refreshManager.getWarmingPrefixes()).containsExactly(prefix);
+        assertThat(suggester.warmedPrefixes).isEmpty();
+    }
+
+    private void waitForRefresh() {
+        final long numRefreshes = refreshManager.getNumRefreshes();
+        refreshManager.requestRefresh();
+        assertThat(Waiter.waitFor(new Waiter.Condition() {
+            @Override
+            public boolean isSatisfied() {
+                return refreshManager.getNumRefreshes() > numRefreshes;
+            }
+        }, 10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private List<String> lookup(String prefix) throws IOException {
+        final List<String> keys = Lists.newArrayList();
+        for (final LookupResult result : refreshManager.lookup(prefix, (Set<BytesRef>) null, 10, true, false)) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+    /** Records every searcher which is warmed, along with the searcher which was visible at that time. */
+    private static final class RecordingSuggester extends UpdatableInfixSuggester {
+
+        private final List<String> warmedPrefixes = Collections.synchronizedList(Lists.<String> newArrayList());
+        private final List<Long> warmedGenerations = Collections.synchronizedList(Lists.<Long> newArrayList());
+        private final List<Long> visibleGenerations = Collections.synchronizedList(Lists.<Long> newArrayList());
+
+        RecordingSuggester(Directory dir, Analyzer analyzer) throws IOException {
+            super(dir, analyzer, analyzer, 1, false);
+        }
+
+        @Override
+        public void warm(IndexSearcher searcher, String prefix, int num) throws IOException {
+            warmedPrefixes.add(prefix);
+            warmedGenerations.add(((DirectoryReader) searcher.getIndexReader()).getVersion());
+            visibleGenerations.add(getGeneration());
+            super.warm(searcher, prefix, num);
+        }
+    }
+
+}
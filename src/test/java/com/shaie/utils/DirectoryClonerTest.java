@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Test;
+
+/** Unit tests for {@link DirectoryCloner}. */
+public class DirectoryClonerTest {
+
+    private final Path workDir = createTempDir();
+
+    @After
+    public void tearDown() {
+        DirectoryCloner.deleteDirectory(workDir);
+    }
+
+    @Test
+    public void clones_directory_tree_linking_index_files() throws IOException {
+        final Path source = workDir.resolve("source");
+        final Path indexFile = write(source.resolve("core1/data/index/_0.cfs"), "segment");
+        write(source.resolve("core1/data/index/write.lock"), "");
+        final Path propsFile = write(source.resolve("core1/core.properties"), "name=core1");
+
+        final Path target = workDir.resolve("target");
+        DirectoryCloner.cloneDirectory(source, target, DirectoryCloner.INDEX_FILES);
+
+        final Path clonedIndexFile = target.resolve("core1/data/index/_0.cfs");
+        assertThat(read(clonedIndexFile)).isEqualTo("segment");
+        assertThat(read(target.resolve("core1/core.properties"))).isEqualTo("name=core1");
+        assertThat(Files.exists(target.resolve("core1/data/index/write.lock"))).isTrue();
+        // index files are hard-linked, while other files are copied
+        assertThat(Files.isSameFile(clonedIndexFile, indexFile)).isTrue();
+        assertThat(Files.isSameFile(target.resolve("core1/core.properties"), propsFile)).isFalse();
+    }
+
+    @Test
+    public void delete_directory_removes_all_content() throws IOException {
+        final Path dir = workDir.resolve("dir");
+        write(dir.resolve("a/b/c.txt"), "c");
+
+        DirectoryCloner.deleteDirectory(dir);
+
+        assertThat(Files.exists(dir)).isFalse();
+        // deleting a non-existing directory is a no-op
+        DirectoryCloner.deleteDirectory(dir);
+    }
+
+    private static Path write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static Path createTempDir() {
+        try {
+            return Files.createTempDirectory("cloner");
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
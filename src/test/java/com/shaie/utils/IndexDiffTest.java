@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.payloads.DelimitedPayloadTokenFilter;
+import org.apache.lucene.analysis.payloads.IdentityEncoder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.shaie.utils.IndexDiff.Difference;
+import com.shaie.utils.IndexDiff.DifferenceType;
+
+/** Unit tests for {@link IndexDiff}. */
+public class IndexDiffTest {
+
+    private static final String ID_FIELD = "id";
+    private static final String BODY_FIELD = "body";
+    private static final String TITLE_FIELD = "title";
+
+    private final Directory leftDir = new RAMDirectory();
+    private final Directory rightDir = new RAMDirectory();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final List<Difference> differences = Lists.newArrayList();
+    private final IndexDiff.Reporter reporter = new IndexDiff.Reporter() {
+        @Override
+        public void report(Difference difference) {
+            synchronized (differences) {
+                differences.add(difference);
+            }
+        }
+    };
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        leftDir.close();
+        rightDir.close();
+    }
+
+    @Test
+    public void identical_indexes_have_no_differences() throws IOException {
+        index(leftDir, "quick brown fox", "lazy dog");
+        index(rightDir, "quick brown fox", "lazy dog");
+
+        assertThat(diff(10)).isEqualTo(0);
+        assertThat(differences).isEmpty();
+    }
+
+    @Test
+    public void reports_missing_term() throws IOException {
+        index(leftDir, "quick brown fox");
+        index(rightDir, "quick brown");
+
+        assertThat(diff(10)).isEqualTo(2);
+        for (final Difference difference : differences) {
+            assertThat(difference.getType()).isEqualTo(DifferenceType.MISSING_TERM);
+            assertThat(difference.getTerm().utf8ToString()).isEqualTo("fox");
+        }
+    }
+
+    @Test
+    public void reports_position_difference() throws IOException {
+        index(leftDir, "quick brown fox");
+        index(rightDir, "brown quick fox");
+
+        assertThat(diff(10)).isEqualTo(4);
+        for (final Difference difference : differences) {
+            assertThat(difference.getType()).isEqualTo(DifferenceType.POSITION);
+        }
+    }
+
+    @Test
+    public void reports_missing_doc() throws IOException {
+        index(leftDir, "quick fox", "lazy fox");
+        index(rightDir, "quick fox", "lazy dog");
+
+        assertThat(diff(10)).isEqualTo(4);
+        int numMissingDocs = 0;
+        for (final Difference difference : differences) {
+            if (difference.getType() == DifferenceType.MISSING_DOC) {
+                assertThat(difference.getTerm().utf8ToString()).isEqualTo("fox");
+                assertThat(difference.getDoc()).isEqualTo(1);
+                ++numMissingDocs;
+            }
+        }
+        assertThat(numMissingDocs).isEqualTo(2);
+    }
+
+    @Test
+    public void stops_after_max_differences_per_field() throws IOException {
+        index(leftDir, "a b c d e f g");
+        index(rightDir, "h i j k l m n");
+
+        assertThat(diff(3)).isEqualTo(2 * 3);
+    }
+
+    @Test
+    public void ignores_deleted_documents() throws IOException {
+        index(leftDir, "quick fox", "lazy dog", "stale fox");
+        deleteDocument(leftDir, 2);
+        index(rightDir, "quick fox", "lazy dog");
+
+        assertThat(diff(10)).isEqualTo(0);
+        assertThat(differences).isEmpty();
+    }
+
+    @Test
+    public void reports_payload_difference() throws IOException {
+        final Analyzer payloadAnalyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                final Tokenizer tokenizer = new WhitespaceTokenizer();
+                return new TokenStreamComponents(tokenizer,
+                        new DelimitedPayloadTokenFilter(tokenizer, '|', new IdentityEncoder()));
+            }
+        };
+        index(leftDir, payloadAnalyzer, "quick|a fox|b");
+        index(rightDir, payloadAnalyzer, "quick|a fox|c");
+
+        assertThat(diff(10)).isEqualTo(2);
+        for (final Difference difference : differences) {
+            assertThat(difference.getType()).isEqualTo(DifferenceType.PAYLOAD);
+            assertThat(difference.getTerm().utf8ToString()).isEqualTo("fox");
+        }
+    }
+
+    @Test
+    public void reports_index_options_difference() throws IOException {
+        index(leftDir, "quick fox");
+        final FieldType freqsOnly = new FieldType(TextField.TYPE_NOT_STORED);
+        freqsOnly.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        freqsOnly.freeze();
+        try (IndexWriter writer = new IndexWriter(rightDir, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            final Document doc = new Document();
+            doc.add(new StringField(ID_FIELD, "0", Store.NO));
+            doc.add(new Field(BODY_FIELD, "quick fox", freqsOnly));
+            doc.add(new TextField(TITLE_FIELD, "quick fox", Store.NO));
+            writer.addDocument(doc);
+        }
+
+        assertThat(diff(10)).isEqualTo(1);
+        final Difference difference = differences.get(0);
+        assertThat(difference.getType()).isEqualTo(DifferenceType.INDEX_OPTIONS);
+        assertThat(difference.getField()).isEqualTo(BODY_FIELD);
+        assertThat(difference.getDetails()).isEqualTo("left=[freqs, positions], right=[freqs]");
+    }
+
+    private int diff(int maxDifferencesPerField) throws IOException {
+        try (DirectoryReader leftReader = DirectoryReader.open(leftDir);
+                DirectoryReader rightReader = DirectoryReader.open(rightDir)) {
+            return new IndexDiff(leftReader, rightReader, maxDifferencesPerField).diff(executor, reporter);
+        }
+    }
+
+    private static void index(Directory dir, String... bodies) throws IOException {
+        index(dir, new WhitespaceAnalyzer(), bodies);
+    }
+
+    private static void index(Directory dir, Analyzer analyzer, String... bodies) throws IOException {
+        try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(analyzer))) {
+            for (int i = 0; i < bodies.length; i++) {
+                final String body = bodies[i];
+                final Document doc = new Document();
+                doc.add(new StringField(ID_FIELD, Integer.toString(i), Store.NO));
+                doc.add(new TextField(BODY_FIELD, body, Store.NO));
+                doc.add(new TextField(TITLE_FIELD, body, Store.NO));
+                writer.addDocument(doc);
+            }
+        }
+    }
+
+    private static void deleteDocument(Directory dir, int id) throws IOException {
+        try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+            writer.deleteDocuments(new Term(ID_FIELD, Integer.toString(id)));
+        }
+    }
+
+}
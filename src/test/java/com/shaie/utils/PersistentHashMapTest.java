@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.shaie.utils;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/** Unit tests for {@link PersistentHashMap}. */
+public class PersistentHashMapTest {
+
+    @Test
+    public void updates_do_not_modify_the_original_map() {
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty()
+                .plus("a", 1)
+                .plus("b", 2);
+
+        final PersistentHashMap<String, Integer> updated = map.plus("a", 3).plus("c", 4).minus("b");
+
+        assertThat(map).isEqualTo(ImmutableMap.of("a", 1, "b", 2));
+        assertThat(updated).isEqualTo(ImmutableMap.of("a", 3, "c", 4));
+        assertThat(updated.minus("c").minus("a")).isEmpty();
+    }
+
+    @Test
+    public void unchanged_map_is_returned_for_noop_updates() {
+        final Integer value = 1;
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer> empty().plus("a", value);
+
+        assertThat(map.plus("a", value)).isSameAs(map);
+        assertThat(map.minus("b")).isSameAs(map);
+    }
+
+    @Test
+    public void random_updates_match_hash_map() {
+        final Random random = new Random(17);
+        final Map<Key, Integer> expected = Maps.newHashMap();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            final Key key = new Key(random.nextInt(2000));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                final int value = random.nextInt();
+                expected.put(key, value);
+                map = map.plus(key, value);
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+        assertThat(map).isEqualTo(expected);
+        for (final Key key : expected.keySet()) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        for (final Key key : expected.keySet()) {
+            map = map.minus(key);
+        }
+        assertThat(map).isEmpty();
+    }
+
+    /** A key with few distinct hashes, so that the trie has deep paths and keys whose hashes collide. */
+    private static final class Key {
+
+        private final int id;
+
+        Key(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            // Keys with equal hashes share all the levels of the trie
+            return (id % 50) * 0x01010101;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).id == id;
+        }
+    }
+
+}